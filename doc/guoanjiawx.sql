@@ -113,6 +113,16 @@ CREATE TABLE `wx_capital_pool` (
 -- ----------------------------
 INSERT INTO `wx_capital_pool` VALUES ('add55', '1.00', '1.00', '2017-01-19 00:00:00', '2017-01-19 23:59:59', '2017-01-10');
 
+-- ----------------------------
+-- Table structure for wx_claim_lock
+-- ----------------------------
+DROP TABLE IF EXISTS `wx_claim_lock`;
+CREATE TABLE `wx_claim_lock` (
+  `cl_key` varchar(64) NOT NULL COMMENT '锁名称(openid:xxx、userphone:xxx)',
+  `cl_createtime` datetime DEFAULT NULL COMMENT '创建时间',
+  PRIMARY KEY (`cl_key`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
 -- ----------------------------
 -- Table structure for wx_prize_detail
 -- ----------------------------
@@ -1,13 +1,14 @@
 package me.chanjar.weixin.common.api;
 
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * <pre>
  * 默认消息重复检查器
- * 将每个消息id保存在内存里，每隔5秒清理已经过期的消息id，每个消息id的过期时间是15秒
+ * 消息id按接收时间分代保存在内存里，每一代覆盖5秒，每个消息id的过期时间是15秒
+ * 代组成一个环，进入新的一代时直接用新的一代替换环上最老的那一代，过期的消息id随之整体丢弃，
+ * 不需要后台线程逐个扫描，也不会在消息高峰时因为清理而停顿
  * </pre>
  */
 public class WxMessageInMemoryDuplicateChecker implements WxMessageDuplicateChecker {
@@ -18,67 +19,38 @@ public class WxMessageInMemoryDuplicateChecker implements WxMessageDuplicateChec
     private final Long timeToLive;
 
     /**
-     * 每隔多少周期检查消息ID是否过期：5秒
+     * 每一代覆盖的时间：5秒
      */
     private final Long clearPeriod;
 
     /**
-     * 消息id->消息时间戳的map
+     * 保留的代，下标为 代号 % 代数
      */
-    private final ConcurrentHashMap<String, Long> msgId2Timestamp = new ConcurrentHashMap<>();
-
-    /**
-     * 后台清理线程是否已经开启
-     */
-    private final AtomicBoolean backgroundProcessStarted = new AtomicBoolean(false);
+    private final AtomicReferenceArray<Generation> generations;
 
     /**
      * WxMsgIdInMemoryDuplicateChecker构造函数
      * <pre>
      * 一个消息ID在内存的过期时间：15秒
-     * 每隔多少周期检查消息ID是否过期：5秒
+     * 每一代覆盖的时间：5秒
      * </pre>
      */
     public WxMessageInMemoryDuplicateChecker() {
-        this.timeToLive = 15 * 1000l;
-        this.clearPeriod = 5 * 1000l;
+        this(15 * 1000L, 5 * 1000L);
     }
 
     /**
      * WxMsgIdInMemoryDuplicateChecker构造函数
      *
      * @param timeToLive  一个消息ID在内存的过期时间：毫秒
-     * @param clearPeriod 每隔多少周期检查消息ID是否过期：毫秒
+     * @param clearPeriod 每一代覆盖的时间，即过期的消息ID多久被整体丢弃一次：毫秒
      */
     public WxMessageInMemoryDuplicateChecker(Long timeToLive, Long clearPeriod) {
         this.timeToLive = timeToLive;
         this.clearPeriod = clearPeriod;
-    }
-
-    protected void checkBackgroundProcessStarted() {
-        if (this.backgroundProcessStarted.getAndSet(true)) {
-            return;
-        }
-        Thread t = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    while (true) {
-                        Thread.sleep(WxMessageInMemoryDuplicateChecker.this.clearPeriod);
-                        Long now = System.currentTimeMillis();
-                        for (Map.Entry<String, Long> entry : WxMessageInMemoryDuplicateChecker.this.msgId2Timestamp.entrySet()) {
-                            if (now - entry.getValue() > WxMessageInMemoryDuplicateChecker.this.timeToLive) {
-                                WxMessageInMemoryDuplicateChecker.this.msgId2Timestamp.entrySet().remove(entry);
-                            }
-                        }
-                    }
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-        });
-        t.setDaemon(true);
-        t.start();
+        // 多保留一代，保证最老一代中最晚加入的消息id也能保留满过期时间
+        int size = (int) ((timeToLive + clearPeriod - 1) / clearPeriod) + 1;
+        this.generations = new AtomicReferenceArray<>(size);
     }
 
     @Override
@@ -86,10 +58,66 @@ public class WxMessageInMemoryDuplicateChecker implements WxMessageDuplicateChec
         if (messageId == null) {
             return false;
         }
-        checkBackgroundProcessStarted();
-        Long timestamp = this.msgId2Timestamp.putIfAbsent(messageId, System.currentTimeMillis());
+        long now = System.currentTimeMillis();
+        long epoch = now / this.clearPeriod;
+
+        // 先在之前的代中查找，消息id在过期时间内出现过就是重复消息
+        Generation current = null;
+        for (int i = 0; i < this.generations.length(); i++) {
+            Generation generation = this.generations.get(i);
+            if (generation == null || epoch - generation.epoch >= this.generations.length()) {
+                continue;
+            }
+            if (generation.epoch == epoch) {
+                current = generation;
+                continue;
+            }
+            Long timestamp = generation.msgId2Timestamp.get(messageId);
+            if (timestamp != null && now - timestamp <= this.timeToLive) {
+                return true;
+            }
+        }
+
+        if (current == null) {
+            current = currentGeneration(epoch);
+        }
+        // 同一代内的并发重试由putIfAbsent保证只有一个不重复
+        Long timestamp = current.msgId2Timestamp.putIfAbsent(messageId, now);
+        if (timestamp != null && now - timestamp > this.timeToLive) {
+            // 过期时间比一代还短的时候，同一代中也可能有过期的消息id
+            return !current.msgId2Timestamp.replace(messageId, timestamp, now);
+        }
         return timestamp != null;
     }
 
+    /**
+     * 进入新的一代时替换环上同一位置的旧代，多个线程同时进入时只有一个替换成功
+     */
+    private Generation currentGeneration(long epoch) {
+        int index = (int) (epoch % this.generations.length());
+        while (true) {
+            Generation generation = this.generations.get(index);
+            if (generation != null && generation.epoch >= epoch) {
+                return generation;
+            }
+            Generation created = new Generation(epoch);
+            if (this.generations.compareAndSet(index, generation, created)) {
+                return created;
+            }
+        }
+    }
+
+    private static class Generation {
+        private final long epoch;
+
+        /**
+         * 消息id->消息时间戳的map
+         */
+        private final ConcurrentHashMap<String, Long> msgId2Timestamp = new ConcurrentHashMap<>();
+
+        private Generation(long epoch) {
+            this.epoch = epoch;
+        }
+    }
 
 }
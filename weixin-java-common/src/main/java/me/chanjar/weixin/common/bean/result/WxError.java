@@ -20,7 +20,11 @@ public class WxError implements Serializable {
     private String json;
 
     public static WxError fromJson(String json) {
-        return WxGsonBuilder.create().fromJson(json, WxError.class);
+        WxError wxError = WxGsonBuilder.create().fromJson(json, WxError.class);
+        if (wxError != null) {
+            wxError.setJson(json);
+        }
+        return wxError;
     }
 
     public static Builder newBuilder() {
@@ -266,6 +266,24 @@ public class StandardSession implements WxSession, InternalSession {
     @Override
     public void setMaxInactiveInterval(int interval) {
         this.maxInactiveInterval = interval;
+        if (this.manager instanceof StandardSessionManager && this.id != null) {
+            // 过期时间变化后重新放入时间轮，原来位置上的记录到期时会被忽略
+            ((StandardSessionManager) this.manager).schedule(this);
+        }
+    }
+
+    /**
+     * <pre>
+     * 按最后访问时间计算的过期时间(毫秒)，不会过期时返回Long.MAX_VALUE
+     * 正在被访问的session不会过期，返回从现在起一个过期周期之后，到时再检查
+     * </pre>
+     */
+    public long getExpireTime() {
+        if (this.maxInactiveInterval <= 0) {
+            return Long.MAX_VALUE;
+        }
+        long base = this.accessCount.get() > 0 ? System.currentTimeMillis() : this.thisAccessedTime;
+        return base + this.maxInactiveInterval * 1000L;
     }
 
 
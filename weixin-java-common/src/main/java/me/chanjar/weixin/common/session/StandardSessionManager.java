@@ -7,9 +7,17 @@ import org.slf4j.LoggerFactory;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * <pre>
  * 基于内存的session manager
+ * session按过期时间放入时间轮(每格1秒)，清理时只检查到期的格子，不再遍历所有session。
+ * 访问session只更新最后访问时间，不移动它在时间轮中的位置；格子到期时还没过期的session按新的过期时间重新放入，
+ * 所以每次访问都是O(1)，每个session在每个过期周期内最多被检查一次
+ * </pre>
  */
 public class StandardSessionManager implements WxSessionManager, InternalSessionManager {
 
@@ -19,13 +27,32 @@ public class StandardSessionManager implements WxSessionManager, InternalSession
      * The descriptive name of this Manager implementation (for logging).
      */
     private static final String name = "SessionManagerImpl";
+
+    /**
+     * 时间轮每一格的时间：1秒
+     */
+    private static final long WHEEL_TICK_MILLIS = 1000L;
+
+    /**
+     * 时间轮的格数，转一圈约68分钟，比默认的过期时间长，大部分session到期前只会被检查一次
+     */
+    private static final int WHEEL_SIZE = 4096;
     protected final Logger log = LoggerFactory.getLogger(StandardSessionManager.class);
-    private final Object maxActiveUpdateLock = new Object();
     /**
      * 后台清理线程是否已经开启
      */
     private final AtomicBoolean backgroundProcessStarted = new AtomicBoolean(false);
 
+    /**
+     * 时间轮，下标为 到期的格数 % 格数，每一格按session id保存(StandardSession的hashCode会随状态变化，不能直接放入Set)
+     */
+    private final AtomicReferenceArray<ConcurrentHashMap<String, InternalSession>> wheel = new AtomicReferenceArray<>(WHEEL_SIZE);
+
+    /**
+     * 已经清理到的格数
+     */
+    private volatile long processedTick = System.currentTimeMillis() / WHEEL_TICK_MILLIS;
+
 
     // -------------------------------------- InternalSessionManager
     /**
@@ -41,7 +68,12 @@ public class StandardSessionManager implements WxSessionManager, InternalSession
     /**
      * Number of session creations that failed due to maxActiveSessions.
      */
-    protected int rejectedSessions = 0;
+    protected final LongAdder rejectedSessions = new LongAdder();
+
+    /**
+     * Number of sessions that have expired.
+     */
+    protected final LongAdder expiredSessions = new LongAdder();
 
     /**
      * The default maximum inactive interval for Sessions created by
@@ -50,13 +82,13 @@ public class StandardSessionManager implements WxSessionManager, InternalSession
     protected int maxInactiveInterval = 30 * 60;
 
     // Number of sessions created by this manager
-    protected long sessionCounter = 0;
+    protected final LongAdder sessionCounter = new LongAdder();
 
-    protected volatile int maxActive = 0;
+    protected final AtomicInteger maxActive = new AtomicInteger();
     /**
      * Processing time during session expiration.
      */
-    protected long processingTime = 0;
+    protected volatile long processingTime = 0;
     /**
      * Frequency of the session expiration, and related manager operations.
      * Manager operations will be done once for the specified amount of
@@ -116,8 +148,8 @@ public class StandardSessionManager implements WxSessionManager, InternalSession
 
     @Override
     public void remove(InternalSession session, boolean update) {
-        if (session.getIdInternal() != null) {
-            this.sessions.remove(session.getIdInternal());
+        if (session.getIdInternal() != null && this.sessions.remove(session.getIdInternal(), session) && update) {
+            this.expiredSessions.increment();
         }
     }
 
@@ -140,7 +172,7 @@ public class StandardSessionManager implements WxSessionManager, InternalSession
 
         if ((this.maxActiveSessions >= 0) &&
                 (getActiveSessions() >= this.maxActiveSessions)) {
-            this.rejectedSessions++;
+            this.rejectedSessions.increment();
             throw new TooManyActiveSessionsException(
                     sm.getString("sessionManagerImpl.createSession.tmase"),
                     this.maxActiveSessions);
@@ -155,7 +187,7 @@ public class StandardSessionManager implements WxSessionManager, InternalSession
         session.setMaxInactiveInterval(this.maxInactiveInterval);
         String id = sessionId;
         session.setId(id);
-        this.sessionCounter++;
+        this.sessionCounter.increment();
 
         return (session);
 
@@ -205,14 +237,8 @@ public class StandardSessionManager implements WxSessionManager, InternalSession
         }
 
         this.sessions.put(session.getIdInternal(), session);
-        int size = getActiveSessions();
-        if (size > this.maxActive) {
-            synchronized (this.maxActiveUpdateLock) {
-                if (size > this.maxActive) {
-                    this.maxActive = size;
-                }
-            }
-        }
+        schedule(session);
+        this.maxActive.accumulateAndGet(getActiveSessions(), Math::max);
 
     }
 
@@ -236,27 +262,114 @@ public class StandardSessionManager implements WxSessionManager, InternalSession
 
     /**
      * Invalidate all sessions that have expired.
+     * 只检查时间轮上已经到期的格子
      */
     public void processExpires() {
 
         long timeNow = System.currentTimeMillis();
-        InternalSession sessions[] = findSessions();
+        long nowTick = timeNow / WHEEL_TICK_MILLIS;
+        // 很久没有清理时，最多转一圈就检查到了所有格子
+        long fromTick = Math.max(this.processedTick + 1, nowTick - WHEEL_SIZE + 1);
+        int checked = 0;
         int expireHere = 0;
 
         if (this.log.isDebugEnabled())
-            this.log.debug("Start expire sessions {} at {} sessioncount {}", getName(), timeNow, sessions.length);
-        for (int i = 0; i < sessions.length; i++) {
-            if (sessions[i] != null && !sessions[i].isValid()) {
-                expireHere++;
+            this.log.debug("Start expire sessions {} at {} sessioncount {}", getName(), timeNow, getActiveSessions());
+        for (long tick = fromTick; tick <= nowTick; tick++) {
+            this.processedTick = tick;
+            Map<String, InternalSession> due = this.wheel.getAndSet(slot(tick), null);
+            if (due == null) {
+                continue;
+            }
+            for (InternalSession session : due.values()) {
+                checked++;
+                if (!session.isValid()) {
+                    expireHere++;
+                } else if (findSession(session.getIdInternal()) == session) {
+                    // 到期前被访问过，按新的过期时间重新放入
+                    schedule(session);
+                }
             }
         }
         long timeEnd = System.currentTimeMillis();
         if (this.log.isDebugEnabled())
-            this.log.debug("End expire sessions {} processingTime {} expired sessions: {}", getName(), timeEnd - timeNow, expireHere);
+            this.log.debug("End expire sessions {} processingTime {} checked sessions: {} expired sessions: {}", getName(), timeEnd - timeNow, checked, expireHere);
         this.processingTime += (timeEnd - timeNow);
 
     }
 
+    /**
+     * 按session当前的过期时间放入时间轮，同一个session在同一格中只保存一次
+     */
+    protected void schedule(InternalSession session) {
+        long expireTime;
+        if (session instanceof StandardSession) {
+            expireTime = ((StandardSession) session).getExpireTime();
+        } else {
+            expireTime = System.currentTimeMillis() + this.maxInactiveInterval * 1000L;
+        }
+        if (expireTime == Long.MAX_VALUE) {
+            return;
+        }
+
+        // 放在过期时间所在的格子，检查时还差不到一格没有过期的放到下一格；已经清理过的格子不会再被检查，最早放到下一格
+        while (true) {
+            long tick = Math.max(expireTime / WHEEL_TICK_MILLIS, this.processedTick + 1);
+            int slot = slot(tick);
+            ConcurrentHashMap<String, InternalSession> bucket = this.wheel.get(slot);
+            while (bucket == null) {
+                this.wheel.compareAndSet(slot, null, new ConcurrentHashMap<>());
+                bucket = this.wheel.get(slot);
+            }
+            bucket.put(session.getIdInternal(), session);
+            // 清理线程可能在放入之前已经摘下了这一格，或者已经清理到这一格，这时放入的格子不会再被检查，撤回后重新放。
+            // 摘下的格子如果已经检查过这个session，它会被放入两次，多检查一次不影响结果
+            if (this.wheel.get(slot) == bucket && tick > this.processedTick) {
+                return;
+            }
+            bucket.remove(session.getIdInternal(), session);
+        }
+    }
+
+    private static int slot(long tick) {
+        return (int) (tick % WHEEL_SIZE);
+    }
+
+    /**
+     * Number of sessions created by this manager
+     */
+    public long getSessionCounter() {
+        return this.sessionCounter.sum();
+    }
+
+    /**
+     * Number of sessions that have expired.
+     */
+    public long getExpiredSessions() {
+        return this.expiredSessions.sum();
+    }
+
+    /**
+     * Number of session creations that failed due to maxActiveSessions.
+     */
+    public long getRejectedSessions() {
+        return this.rejectedSessions.sum();
+    }
+
+    /**
+     * Maximum number of active sessions so far.
+     */
+    public int getMaxActive() {
+        return this.maxActive.get();
+    }
+
+    /**
+     * Processing time during session expiration, in milliseconds.
+     */
+    public long getProcessingTime() {
+        return this.processingTime;
+    }
+
 
     @Override
     public void setMaxInactiveInterval(int interval) {
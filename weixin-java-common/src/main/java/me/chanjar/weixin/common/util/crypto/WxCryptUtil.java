@@ -42,37 +42,49 @@
 package me.chanjar.weixin.common.util.crypto;
 
 import org.apache.commons.codec.binary.Base64;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.xml.sax.InputSource;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.StringReader;
 import java.nio.charset.Charset;
-import java.util.Arrays;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class WxCryptUtil {
 
-    private static final Base64 base64 = new Base64();
     private static final Charset CHARSET = Charset.forName("utf-8");
 
-    private static final ThreadLocal<DocumentBuilder> builderLocal = new ThreadLocal<DocumentBuilder>() {
+    private static final String RANDOM_STR_BASE = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private static final int RANDOM_STR_LENGTH = 16;
+    private static final int BLOCK_SIZE = 32;
+
+    private static final String XML_ENCRYPT_START = "<xml>\n<Encrypt><![CDATA[";
+    private static final String XML_SIGNATURE_START = "]]></Encrypt>\n<MsgSignature><![CDATA[";
+    private static final String XML_TIMESTAMP_START = "]]></MsgSignature>\n<TimeStamp>";
+    private static final String XML_NONCE_START = "</TimeStamp>\n<Nonce><![CDATA[";
+    private static final String XML_END = "]]></Nonce>\n</xml>";
+
+    private static final ThreadLocal<XMLInputFactory> inputFactoryLocal = new ThreadLocal<XMLInputFactory>() {
         @Override
-        protected DocumentBuilder initialValue() {
-            try {
-                return DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            } catch (ParserConfigurationException exc) {
-                throw new IllegalArgumentException(exc);
-            }
+        protected XMLInputFactory initialValue() {
+            XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+            inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            return inputFactory;
         }
     };
 
+    /**
+     * Cipher.getInstance 的开销很大，每个线程各缓存一个加密和一个解密用的实例，
+     * 密钥没变时连 init 也可以省掉(doFinal 之后 Cipher 会回到 init 之后的状态)
+     */
+    private static final ThreadLocal<CipherHolder> encryptCipherLocal = ThreadLocal.withInitial(() -> new CipherHolder(Cipher.ENCRYPT_MODE));
+    private static final ThreadLocal<CipherHolder> decryptCipherLocal = ThreadLocal.withInitial(() -> new CipherHolder(Cipher.DECRYPT_MODE));
+
     protected byte[] aesKey;
     protected String token;
     protected String appidOrCorpid;
@@ -97,58 +109,42 @@ public class WxCryptUtil {
         this.aesKey = Base64.decodeBase64(encodingAesKey + "=");
     }
 
+    /**
+     * 流式读取到第一个Encrypt节点即返回，不需要构建整个DOM
+     */
     static String extractEncryptPart(String xml) {
+        XMLStreamReader reader = null;
         try {
-            DocumentBuilder db = builderLocal.get();
-            Document document = db.parse(new InputSource(new StringReader(xml)));
-
-            Element root = document.getDocumentElement();
-            return root.getElementsByTagName("Encrypt").item(0).getTextContent();
-        } catch (Exception e) {
+            reader = inputFactoryLocal.get().createXMLStreamReader(new StringReader(xml));
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && "Encrypt".equals(reader.getLocalName())) {
+                    return reader.getElementText();
+                }
+            }
+            throw new RuntimeException("加密消息中没有Encrypt节点");
+        } catch (XMLStreamException e) {
             throw new RuntimeException(e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                    // 读取的是字符串，关闭失败不影响结果
+                }
+            }
         }
     }
 
-    /**
-     * 将一个数字转换成生成4个字节的网络字节序bytes数组
-     *
-     * @param number
-     */
-    private static byte[] number2BytesInNetworkOrder(int number) {
-        byte[] orderBytes = new byte[4];
-        orderBytes[3] = (byte) (number & 0xFF);
-        orderBytes[2] = (byte) (number >> 8 & 0xFF);
-        orderBytes[1] = (byte) (number >> 16 & 0xFF);
-        orderBytes[0] = (byte) (number >> 24 & 0xFF);
-        return orderBytes;
-    }
-
-    /**
-     * 4个字节的网络字节序bytes数组还原成一个数字
-     *
-     * @param bytesInNetworkOrder
-     */
-    private static int bytesNetworkOrder2Number(byte[] bytesInNetworkOrder) {
-        int sourceNumber = 0;
-        for (int i = 0; i < 4; i++) {
-            sourceNumber <<= 8;
-            sourceNumber |= bytesInNetworkOrder[i] & 0xff;
-        }
-        return sourceNumber;
-    }
-
     /**
      * 随机生成16位字符串
      */
     private static String genRandomStr() {
-        String base = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
-        Random random = new Random();
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < 16; i++) {
-            int number = random.nextInt(base.length());
-            sb.append(base.charAt(number));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] chars = new char[RANDOM_STR_LENGTH];
+        for (int i = 0; i < RANDOM_STR_LENGTH; i++) {
+            chars[i] = RANDOM_STR_BASE.charAt(random.nextInt(RANDOM_STR_BASE.length()));
         }
-        return sb.toString();
+        return new String(chars);
     }
 
     /**
@@ -162,11 +158,14 @@ public class WxCryptUtil {
      */
     private static String generateXml(String encrypt, String signature,
                                       String timestamp, String nonce) {
-        String format = "<xml>\n" + "<Encrypt><![CDATA[%1$s]]></Encrypt>\n"
-                + "<MsgSignature><![CDATA[%2$s]]></MsgSignature>\n"
-                + "<TimeStamp>%3$s</TimeStamp>\n" + "<Nonce><![CDATA[%4$s]]></Nonce>\n"
-                + "</xml>";
-        return String.format(format, encrypt, signature, timestamp, nonce);
+        StringBuilder xml = new StringBuilder(XML_ENCRYPT_START.length() + XML_SIGNATURE_START.length()
+                + XML_TIMESTAMP_START.length() + XML_NONCE_START.length() + XML_END.length()
+                + encrypt.length() + signature.length() + timestamp.length() + nonce.length());
+        return xml.append(XML_ENCRYPT_START).append(encrypt)
+                .append(XML_SIGNATURE_START).append(signature)
+                .append(XML_TIMESTAMP_START).append(timestamp)
+                .append(XML_NONCE_START).append(nonce)
+                .append(XML_END).toString();
     }
 
     /**
@@ -199,41 +198,43 @@ public class WxCryptUtil {
      * @return 加密后base64编码的字符串
      */
     protected String encrypt(String randomStr, String plainText) {
-        ByteGroup byteCollector = new ByteGroup();
         byte[] randomStringBytes = randomStr.getBytes(CHARSET);
         byte[] plainTextBytes = plainText.getBytes(CHARSET);
-        byte[] bytesOfSizeInNetworkOrder = number2BytesInNetworkOrder(plainTextBytes.length);
         byte[] appIdBytes = this.appidOrCorpid.getBytes(CHARSET);
 
-        // randomStr + networkBytesOrder + text + appid
-        byteCollector.addBytes(randomStringBytes);
-        byteCollector.addBytes(bytesOfSizeInNetworkOrder);
-        byteCollector.addBytes(plainTextBytes);
-        byteCollector.addBytes(appIdBytes);
-
-        // ... + pad: 使用自定义的填充方式对明文进行补位填充
-        byte[] padBytes = PKCS7Encoder.encode(byteCollector.size());
-        byteCollector.addBytes(padBytes);
-
-        // 获得最终的字节流, 未加密
-        byte[] unencrypted = byteCollector.toBytes();
+        // randomStr + networkBytesOrder + text + appid + pad，直接写入同一个数组，加密也在这个数组上原地进行
+        int length = randomStringBytes.length + 4 + plainTextBytes.length + appIdBytes.length;
+        int amountToPad = BLOCK_SIZE - (length % BLOCK_SIZE);
+        byte[] buffer = new byte[length + amountToPad];
+
+        int offset = 0;
+        System.arraycopy(randomStringBytes, 0, buffer, offset, randomStringBytes.length);
+        offset += randomStringBytes.length;
+        buffer[offset++] = (byte) (plainTextBytes.length >> 24 & 0xFF);
+        buffer[offset++] = (byte) (plainTextBytes.length >> 16 & 0xFF);
+        buffer[offset++] = (byte) (plainTextBytes.length >> 8 & 0xFF);
+        buffer[offset++] = (byte) (plainTextBytes.length & 0xFF);
+        System.arraycopy(plainTextBytes, 0, buffer, offset, plainTextBytes.length);
+        offset += plainTextBytes.length;
+        System.arraycopy(appIdBytes, 0, buffer, offset, appIdBytes.length);
+        offset += appIdBytes.length;
+
+        // 使用自定义的填充方式对明文进行补位填充
+        while (offset < buffer.length) {
+            buffer[offset++] = (byte) amountToPad;
+        }
 
+        CipherHolder holder = encryptCipherLocal.get();
         try {
-            // 设置加密模式为AES的CBC模式
-            Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
-            SecretKeySpec keySpec = new SecretKeySpec(this.aesKey, "AES");
-            IvParameterSpec iv = new IvParameterSpec(this.aesKey, 0, 16);
-            cipher.init(Cipher.ENCRYPT_MODE, keySpec, iv);
-
-            // 加密
-            byte[] encrypted = cipher.doFinal(unencrypted);
-
-            // 使用BASE64对加密后的字符串进行编码
-
-            return base64.encodeToString(encrypted);
+            // 设置加密模式为AES的CBC模式，加密
+            holder.getCipher(this.aesKey).doFinal(buffer, 0, buffer.length, buffer, 0);
         } catch (Exception e) {
+            holder.reset();
             throw new RuntimeException(e);
         }
+
+        // 使用BASE64对加密后的字符串进行编码
+        return Base64.encodeBase64String(buffer);
     }
 
     /**
@@ -273,35 +274,36 @@ public class WxCryptUtil {
      * @return 解密得到的明文
      */
     public String decrypt(String cipherText) {
-        byte[] original;
+        // 使用BASE64对密文进行解码，解密直接写回同一个数组
+        byte[] bytes = Base64.decodeBase64(cipherText);
+        int length;
+        CipherHolder holder = decryptCipherLocal.get();
         try {
-            // 设置解密模式为AES的CBC模式
-            Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
-            SecretKeySpec key_spec = new SecretKeySpec(this.aesKey, "AES");
-            IvParameterSpec iv = new IvParameterSpec(Arrays.copyOfRange(this.aesKey, 0, 16));
-            cipher.init(Cipher.DECRYPT_MODE, key_spec, iv);
-
-            // 使用BASE64对密文进行解码
-            byte[] encrypted = Base64.decodeBase64(cipherText);
-
-            // 解密
-            original = cipher.doFinal(encrypted);
+            // 设置解密模式为AES的CBC模式，解密
+            length = holder.getCipher(this.aesKey).doFinal(bytes, 0, bytes.length, bytes, 0);
         } catch (Exception e) {
+            holder.reset();
             throw new RuntimeException(e);
         }
 
         String xmlContent, from_appid;
         try {
             // 去除补位字符
-            byte[] bytes = PKCS7Encoder.decode(original);
+            int pad = bytes[length - 1];
+            if (pad < 1 || pad > BLOCK_SIZE) {
+                pad = 0;
+            }
+            length -= pad;
 
             // 分离16位随机字符串,网络字节序和AppId
-            byte[] networkOrder = Arrays.copyOfRange(bytes, 16, 20);
-
-            int xmlLength = bytesNetworkOrder2Number(networkOrder);
+            int xmlLength = (bytes[16] & 0xff) << 24 | (bytes[17] & 0xff) << 16
+                    | (bytes[18] & 0xff) << 8 | (bytes[19] & 0xff);
+            if (xmlLength < 0 || 20 + xmlLength > length) {
+                throw new IllegalArgumentException("消息长度不正确");
+            }
 
-            xmlContent = new String(Arrays.copyOfRange(bytes, 20, 20 + xmlLength), CHARSET);
-            from_appid = new String(Arrays.copyOfRange(bytes, 20 + xmlLength, bytes.length), CHARSET);
+            xmlContent = new String(bytes, 20, xmlLength, CHARSET);
+            from_appid = new String(bytes, 20 + xmlLength, length - 20 - xmlLength, CHARSET);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -315,4 +317,32 @@ public class WxCryptUtil {
 
     }
 
+    private static class CipherHolder {
+        private final int mode;
+        private Cipher cipher;
+        private byte[] key;
+
+        private CipherHolder(int mode) {
+            this.mode = mode;
+        }
+
+        private Cipher getCipher(byte[] aesKey) throws Exception {
+            if (this.cipher == null) {
+                this.cipher = Cipher.getInstance("AES/CBC/NoPadding");
+            }
+            if (this.key != aesKey) {
+                this.cipher.init(this.mode, new SecretKeySpec(aesKey, "AES"), new IvParameterSpec(aesKey, 0, 16));
+                this.key = aesKey;
+            }
+            return this.cipher;
+        }
+
+        /**
+         * 出现异常后Cipher的状态不确定，下次使用时重新init
+         */
+        private void reset() {
+            this.key = null;
+        }
+    }
+
 }
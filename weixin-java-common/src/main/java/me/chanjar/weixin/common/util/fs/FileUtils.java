@@ -1,15 +1,18 @@
 package me.chanjar.weixin.common.util.fs;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 public class FileUtils {
 
 
     /**
      * 创建临时文件
+     * 不会调用File.deleteOnExit(每个文件都会在JVM中留下一条记录直到退出，长期运行时内存一直增长)，
+     * 临时文件由调用方在使用完后删除；写入失败时会立即删除
      *
      * @param inputStream
      * @param name        文件名
@@ -24,17 +27,12 @@ public class FileUtils {
             tmpFile = File.createTempFile(name, '.' + ext, tmpDirFile);
         }
 
-        tmpFile.deleteOnExit();
-
-        try (FileOutputStream fos = new FileOutputStream(tmpFile)) {
-            int read = 0;
-            byte[] bytes = new byte[1024 * 100];
-            while ((read = inputStream.read(bytes)) != -1) {
-                fos.write(bytes, 0, read);
-            }
-
-            fos.flush();
+        try {
+            Files.copy(inputStream, tmpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
             return tmpFile;
+        } catch (IOException | RuntimeException e) {
+            tmpFile.delete();
+            throw e;
         }
     }
 
@@ -0,0 +1,55 @@
+package me.chanjar.weixin.common.util.http;
+
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+
+import javax.net.ssl.SSLContext;
+
+/**
+ * 异步httpclient build interface
+ *
+ * @see ApacheHttpClientBuilder
+ */
+public interface ApacheHttpAsyncClientBuilder {
+
+    /**
+     * 构建并启动异步httpclient实例
+     *
+     * @return new started instance of CloseableHttpAsyncClient
+     */
+    CloseableHttpAsyncClient build();
+
+    /**
+     * 代理服务器地址
+     *
+     * @param httpProxyHost
+     */
+    ApacheHttpAsyncClientBuilder httpProxyHost(String httpProxyHost);
+
+    /**
+     * 代理服务器端口
+     *
+     * @param httpProxyPort
+     */
+    ApacheHttpAsyncClientBuilder httpProxyPort(int httpProxyPort);
+
+    /**
+     * 代理服务器用户名
+     *
+     * @param httpProxyUsername
+     */
+    ApacheHttpAsyncClientBuilder httpProxyUsername(String httpProxyUsername);
+
+    /**
+     * 代理服务器密码
+     *
+     * @param httpProxyPassword
+     */
+    ApacheHttpAsyncClientBuilder httpProxyPassword(String httpProxyPassword);
+
+    /**
+     * ssl上下文
+     *
+     * @param sslContext
+     */
+    ApacheHttpAsyncClientBuilder sslContext(SSLContext sslContext);
+}
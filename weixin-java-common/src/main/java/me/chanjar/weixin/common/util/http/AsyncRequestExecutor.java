@@ -0,0 +1,27 @@
+package me.chanjar.weixin.common.util.http;
+
+import org.apache.http.HttpHost;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 非阻塞http请求执行器，请求在异步http客户端的I/O线程上完成，调用线程不会被阻塞
+ * <p>
+ * 微信返回错误码时，返回的 {@link CompletableFuture} 以 {@link me.chanjar.weixin.common.exception.WxErrorException} 异常结束
+ * </p>
+ *
+ * @param <T> 返回值类型
+ * @param <E> 请求参数类型
+ */
+public interface AsyncRequestExecutor<T, E> {
+
+    /**
+     * @param httpclient 已启动的异步httpClient
+     * @param httpProxy  http代理对象，如果没有配置代理则为空
+     * @param uri        uri
+     * @param data       数据
+     */
+    CompletableFuture<T> execute(CloseableHttpAsyncClient httpclient, HttpHost httpProxy, String uri, E data);
+
+}
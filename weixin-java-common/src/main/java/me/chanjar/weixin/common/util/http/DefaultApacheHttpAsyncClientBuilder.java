@@ -0,0 +1,181 @@
+package me.chanjar.weixin.common.util.http;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+
+import javax.net.ssl.SSLContext;
+
+/**
+ * 异步httpclient 连接管理器
+ * <p>
+ * 少量I/O线程即可承载大量并发请求，连接数上限决定了同时在途的请求数；与同步版本一样非线程安全
+ * </p>
+ *
+ * @see DefaultApacheHttpClientBuilder
+ */
+public class DefaultApacheHttpAsyncClientBuilder implements ApacheHttpAsyncClientBuilder {
+    private int ioThreadCount = Runtime.getRuntime().availableProcessors();
+    private int connectionRequestTimeout = 3000;
+    private int connectionTimeout = 5000;
+    private int soTimeout = 5000;
+    private int maxConnPerHost = 200;
+    private int maxTotalConn = 1000;
+    private String userAgent;
+    private SSLContext sslContext;
+    private String httpProxyHost;
+    private int httpProxyPort;
+    private String httpProxyUsername;
+    private String httpProxyPassword;
+
+    private DefaultApacheHttpAsyncClientBuilder() {
+    }
+
+    public static DefaultApacheHttpAsyncClientBuilder get() {
+        return new DefaultApacheHttpAsyncClientBuilder();
+    }
+
+    @Override
+    public ApacheHttpAsyncClientBuilder httpProxyHost(String httpProxyHost) {
+        this.httpProxyHost = httpProxyHost;
+        return this;
+    }
+
+    @Override
+    public ApacheHttpAsyncClientBuilder httpProxyPort(int httpProxyPort) {
+        this.httpProxyPort = httpProxyPort;
+        return this;
+    }
+
+    @Override
+    public ApacheHttpAsyncClientBuilder httpProxyUsername(String httpProxyUsername) {
+        this.httpProxyUsername = httpProxyUsername;
+        return this;
+    }
+
+    @Override
+    public ApacheHttpAsyncClientBuilder httpProxyPassword(String httpProxyPassword) {
+        this.httpProxyPassword = httpProxyPassword;
+        return this;
+    }
+
+    @Override
+    public ApacheHttpAsyncClientBuilder sslContext(SSLContext sslContext) {
+        this.sslContext = sslContext;
+        return this;
+    }
+
+    /**
+     * I/O线程数,默认为CPU核数
+     *
+     * @param ioThreadCount I/O线程数
+     */
+    public void setIoThreadCount(int ioThreadCount) {
+        this.ioThreadCount = ioThreadCount;
+    }
+
+    /**
+     * 获取链接的超时时间设置,默认3000ms
+     *
+     * @param connectionRequestTimeout 获取链接的超时时间设置(单位毫秒),默认3000ms
+     */
+    public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    /**
+     * 建立链接的超时时间,默认为5000ms
+     *
+     * @param connectionTimeout 建立链接的超时时间设置(单位毫秒),默认5000ms
+     */
+    public void setConnectionTimeout(int connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    /**
+     * socket超时设置,默认5000ms.
+     *
+     * @param soTimeout socket超时设置,默认5000ms.
+     */
+    public void setSoTimeout(int soTimeout) {
+        this.soTimeout = soTimeout;
+    }
+
+    /**
+     * 每路的最大链接数,默认200
+     *
+     * @param maxConnPerHost 每路的最大链接数,默认200
+     */
+    public void setMaxConnPerHost(int maxConnPerHost) {
+        this.maxConnPerHost = maxConnPerHost;
+    }
+
+    /**
+     * 最大总连接数,默认1000
+     *
+     * @param maxTotalConn 最大总连接数,默认1000
+     */
+    public void setMaxTotalConn(int maxTotalConn) {
+        this.maxTotalConn = maxTotalConn;
+    }
+
+    /**
+     * 自定义httpclient的User Agent
+     *
+     * @param userAgent User Agent
+     */
+    public void setUserAgent(String userAgent) {
+        this.userAgent = userAgent;
+    }
+
+    @Override
+    public CloseableHttpAsyncClient build() {
+        HttpAsyncClientBuilder httpAsyncClientBuilder = HttpAsyncClients.custom()
+                .setMaxConnPerRoute(this.maxConnPerHost)
+                .setMaxConnTotal(this.maxTotalConn)
+                .setDefaultIOReactorConfig(
+                        IOReactorConfig.custom()
+                                .setIoThreadCount(this.ioThreadCount)
+                                .setConnectTimeout(this.connectionTimeout)
+                                .setSoTimeout(this.soTimeout)
+                                .build()
+                )
+                .setDefaultRequestConfig(
+                        RequestConfig.custom()
+                                .setSocketTimeout(this.soTimeout)
+                                .setConnectTimeout(this.connectionTimeout)
+                                .setConnectionRequestTimeout(this.connectionRequestTimeout)
+                                .build()
+                );
+
+        if (this.sslContext != null) {
+            httpAsyncClientBuilder.setSSLContext(this.sslContext);
+        }
+
+        if (StringUtils.isNotBlank(this.httpProxyHost)
+                && StringUtils.isNotBlank(this.httpProxyUsername)) {
+            // 使用代理服务器 需要用户认证的代理服务器
+            CredentialsProvider provider = new BasicCredentialsProvider();
+            provider.setCredentials(
+                    new AuthScope(this.httpProxyHost, this.httpProxyPort),
+                    new UsernamePasswordCredentials(this.httpProxyUsername,
+                            this.httpProxyPassword));
+            httpAsyncClientBuilder.setDefaultCredentialsProvider(provider);
+        }
+
+        if (StringUtils.isNotBlank(this.userAgent)) {
+            httpAsyncClientBuilder.setUserAgent(this.userAgent);
+        }
+
+        CloseableHttpAsyncClient httpAsyncClient = httpAsyncClientBuilder.build();
+        httpAsyncClient.start();
+        return httpAsyncClient;
+    }
+}
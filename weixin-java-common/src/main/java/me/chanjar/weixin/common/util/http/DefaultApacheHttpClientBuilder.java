@@ -1,7 +1,6 @@
 package me.chanjar.weixin.common.util.http;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.annotation.NotThreadSafe;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
@@ -28,11 +27,10 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * httpclient 连接管理器
+ * httpclient 连接管理器，非线程安全，应在启动时配置好后再使用
  *
  * @author kakotor
  */
-@NotThreadSafe
 public class DefaultApacheHttpClientBuilder implements ApacheHttpClientBuilder {
     protected final Logger log = LoggerFactory.getLogger(DefaultApacheHttpClientBuilder.class);
     private final AtomicBoolean prepared = new AtomicBoolean(false);
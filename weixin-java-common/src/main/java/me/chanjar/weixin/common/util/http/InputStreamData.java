@@ -0,0 +1,61 @@
+package me.chanjar.weixin.common.util.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 以流或字节数组的形式上传的媒体文件
+ * 流在第一次上传时读入内存并保留下来，请求重试(系统繁忙、令牌失效)时重新发送同样的内容，而不是已经读完的空流
+ */
+public class InputStreamData {
+
+    private final InputStream inputStream;
+
+    private final String filename;
+
+    private byte[] bytes;
+
+    /**
+     * @param inputStream 文件内容，上传完成后由调用方关闭
+     * @param filename    文件名，微信根据扩展名判断文件格式
+     */
+    public InputStreamData(InputStream inputStream, String filename) {
+        this.inputStream = inputStream;
+        this.filename = filename;
+    }
+
+    /**
+     * @param bytes    文件内容
+     * @param filename 文件名，微信根据扩展名判断文件格式
+     */
+    public InputStreamData(byte[] bytes, String filename) {
+        this.inputStream = null;
+        this.bytes = bytes;
+        this.filename = filename;
+    }
+
+    public InputStream getInputStream() {
+        return this.inputStream;
+    }
+
+    /**
+     * 文件内容，以流的形式创建时只读取一次
+     */
+    public synchronized byte[] getBytes() throws IOException {
+        if (this.bytes == null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = this.inputStream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            this.bytes = out.toByteArray();
+        }
+        return this.bytes;
+    }
+
+    public String getFilename() {
+        return this.filename;
+    }
+}
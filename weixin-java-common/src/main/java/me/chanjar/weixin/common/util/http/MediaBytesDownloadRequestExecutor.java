@@ -0,0 +1,56 @@
+package me.chanjar.weixin.common.util.http;
+
+import me.chanjar.weixin.common.exception.WxErrorException;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHost;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 下载媒体文件请求执行器，请求的参数是String, 返回的结果是byte[]
+ * 直接读到内存中，不写临时文件；需要ByteBuffer或InputStream时用 ByteBuffer.wrap / ByteArrayInputStream 包装即可
+ * 视频文件不支持下载
+ */
+public class MediaBytesDownloadRequestExecutor implements RequestExecutor<byte[], String> {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    @Override
+    public byte[] execute(CloseableHttpClient httpclient, HttpHost httpProxy, String uri, String queryParam) throws WxErrorException, IOException {
+        HttpGet httpGet = MediaDownloadRequestExecutor.createHttpGet(httpProxy, uri, queryParam);
+
+        try (CloseableHttpResponse response = httpclient.execute(httpGet);
+             InputStream inputStream = InputStreamResponseHandler.INSTANCE.handleResponse(response)) {
+
+            MediaDownloadRequestExecutor.checkError(response);
+
+            if (StringUtils.isBlank(MediaDownloadRequestExecutor.getFileName(response)) || inputStream == null) {
+                return null;
+            }
+
+            return toByteArray(inputStream, response.getEntity().getContentLength());
+        } finally {
+            httpGet.releaseConnection();
+        }
+    }
+
+    /**
+     * 有Content-Length时按实际大小分配，避免多次扩容
+     */
+    private static byte[] toByteArray(InputStream inputStream, long contentLength) throws IOException {
+        int initialSize = contentLength > 0 && contentLength <= Integer.MAX_VALUE ? (int) contentLength : DEFAULT_BUFFER_SIZE;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(initialSize);
+        byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -20,12 +20,15 @@ import java.util.regex.Pattern;
 
 /**
  * 下载媒体文件请求执行器，请求的参数是String, 返回的结果是File
+ * 返回的临时文件由调用方在使用完后删除，不需要落盘时请使用 {@link MediaBytesDownloadRequestExecutor}
  * 视频文件不支持下载
  *
  * @author Daniel Qian
  */
 public class MediaDownloadRequestExecutor implements RequestExecutor<File, String> {
 
+    private static final Pattern FILE_NAME_PATTERN = Pattern.compile(".*filename=\"(.*)\"");
+
     private File tmpDirFile;
 
     public MediaDownloadRequestExecutor() {
@@ -37,30 +40,12 @@ public class MediaDownloadRequestExecutor implements RequestExecutor<File, Strin
 
     @Override
     public File execute(CloseableHttpClient httpclient, HttpHost httpProxy, String uri, String queryParam) throws WxErrorException, IOException {
-        if (queryParam != null) {
-            if (uri.indexOf('?') == -1) {
-                uri += '?';
-            }
-            uri += uri.endsWith("?") ? queryParam : '&' + queryParam;
-        }
-
-        HttpGet httpGet = new HttpGet(uri);
-        if (httpProxy != null) {
-            RequestConfig config = RequestConfig.custom().setProxy(httpProxy).build();
-            httpGet.setConfig(config);
-        }
+        HttpGet httpGet = createHttpGet(httpProxy, uri, queryParam);
 
         try (CloseableHttpResponse response = httpclient.execute(httpGet);
              InputStream inputStream = InputStreamResponseHandler.INSTANCE.handleResponse(response)) {
 
-            Header[] contentTypeHeader = response.getHeaders("Content-Type");
-            if (contentTypeHeader != null && contentTypeHeader.length > 0) {
-                if (contentTypeHeader[0].getValue().startsWith(ContentType.APPLICATION_JSON.getMimeType())) {
-                    // application/json; encoding=utf-8 下载媒体文件出错
-                    String responseContent = Utf8ResponseHandler.INSTANCE.handleResponse(response);
-                    throw new WxErrorException(WxError.fromJson(responseContent));
-                }
-            }
+            checkError(response);
 
             String fileName = getFileName(response);
             if (StringUtils.isBlank(fileName)) {
@@ -76,14 +61,42 @@ public class MediaDownloadRequestExecutor implements RequestExecutor<File, Strin
 
     }
 
-    private String getFileName(CloseableHttpResponse response) throws WxErrorException {
+    static HttpGet createHttpGet(HttpHost httpProxy, String uri, String queryParam) {
+        if (queryParam != null) {
+            if (uri.indexOf('?') == -1) {
+                uri += '?';
+            }
+            uri += uri.endsWith("?") ? queryParam : '&' + queryParam;
+        }
+
+        HttpGet httpGet = new HttpGet(uri);
+        if (httpProxy != null) {
+            RequestConfig config = RequestConfig.custom().setProxy(httpProxy).build();
+            httpGet.setConfig(config);
+        }
+        return httpGet;
+    }
+
+    /**
+     * application/json; encoding=utf-8 下载媒体文件出错
+     */
+    static void checkError(CloseableHttpResponse response) throws WxErrorException, IOException {
+        Header[] contentTypeHeader = response.getHeaders("Content-Type");
+        if (contentTypeHeader != null && contentTypeHeader.length > 0) {
+            if (contentTypeHeader[0].getValue().startsWith(ContentType.APPLICATION_JSON.getMimeType())) {
+                String responseContent = Utf8ResponseHandler.INSTANCE.handleResponse(response);
+                throw new WxErrorException(WxError.fromJson(responseContent));
+            }
+        }
+    }
+
+    static String getFileName(CloseableHttpResponse response) throws WxErrorException {
         Header[] contentDispositionHeader = response.getHeaders("Content-disposition");
         if (contentDispositionHeader == null || contentDispositionHeader.length == 0) {
             throw new WxErrorException(WxError.newBuilder().setErrorMsg("无法获取到文件名").build());
         }
 
-        Pattern p = Pattern.compile(".*filename=\"(.*)\"");
-        Matcher m = p.matcher(contentDispositionHeader[0].getValue());
+        Matcher m = FILE_NAME_PATTERN.matcher(contentDispositionHeader[0].getValue());
         if (m.matches()) {
             return m.group(1);
         }
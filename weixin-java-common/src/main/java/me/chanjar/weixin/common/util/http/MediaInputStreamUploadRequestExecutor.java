@@ -0,0 +1,52 @@
+package me.chanjar.weixin.common.util.http;
+
+import me.chanjar.weixin.common.bean.result.WxError;
+import me.chanjar.weixin.common.bean.result.WxMediaUploadResult;
+import me.chanjar.weixin.common.exception.WxErrorException;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.HttpMultipartMode;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+
+import java.io.IOException;
+
+/**
+ * 上传媒体文件请求执行器，请求的参数是InputStreamData, 返回的结果是WxMediaUploadResult
+ * 文件内容以字节数组写入multipart请求体，不需要先写成临时文件；同一个InputStreamData重试时发送的内容相同
+ */
+public class MediaInputStreamUploadRequestExecutor implements RequestExecutor<WxMediaUploadResult, InputStreamData> {
+
+    @Override
+    public WxMediaUploadResult execute(CloseableHttpClient httpclient, HttpHost httpProxy, String uri, InputStreamData data) throws WxErrorException, IOException {
+        HttpPost httpPost = new HttpPost(uri);
+        if (httpProxy != null) {
+            RequestConfig config = RequestConfig.custom().setProxy(httpProxy).build();
+            httpPost.setConfig(config);
+        }
+        if (data != null) {
+            // 不单独设置Content-Type请求头，使用multipart实体自带的(包含boundary)
+            HttpEntity entity = MultipartEntityBuilder
+                    .create()
+                    .addBinaryBody("media", data.getBytes(), ContentType.DEFAULT_BINARY, data.getFilename())
+                    .setMode(HttpMultipartMode.RFC6532)
+                    .build();
+            httpPost.setEntity(entity);
+        }
+        try (CloseableHttpResponse response = httpclient.execute(httpPost)) {
+            String responseContent = Utf8ResponseHandler.INSTANCE.handleResponse(response);
+            WxError error = WxError.fromJson(responseContent);
+            if (error.getErrorCode() != 0) {
+                throw new WxErrorException(error);
+            }
+            return WxMediaUploadResult.fromJson(responseContent);
+        } finally {
+            httpPost.releaseConnection();
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+package me.chanjar.weixin.common.util.http;
+
+import me.chanjar.weixin.common.bean.result.WxError;
+import me.chanjar.weixin.common.exception.WxErrorException;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 简单的非阻塞GET请求执行器，请求的参数是String, 返回的结果也是String
+ *
+ * @see SimpleGetRequestExecutor
+ */
+public class SimpleGetAsyncRequestExecutor implements AsyncRequestExecutor<String, String> {
+
+    @Override
+    public CompletableFuture<String> execute(CloseableHttpAsyncClient httpclient, HttpHost httpProxy, String uri, String queryParam) {
+        if (queryParam != null) {
+            if (uri.indexOf('?') == -1) {
+                uri += '?';
+            }
+            uri += uri.endsWith("?") ? queryParam : '&' + queryParam;
+        }
+        HttpGet httpGet = new HttpGet(uri);
+        if (httpProxy != null) {
+            RequestConfig config = RequestConfig.custom().setProxy(httpProxy).build();
+            httpGet.setConfig(config);
+        }
+
+        Utf8FutureCallback callback = new Utf8FutureCallback();
+        httpclient.execute(httpGet, callback);
+        return callback.getFuture().thenApply(responseContent -> {
+            WxError error = WxError.fromJson(responseContent);
+            if (error.getErrorCode() != 0) {
+                throw new CompletionException(new WxErrorException(error));
+            }
+            return responseContent;
+        });
+    }
+
+}
@@ -0,0 +1,57 @@
+package me.chanjar.weixin.common.util.http;
+
+import me.chanjar.weixin.common.bean.result.WxError;
+import me.chanjar.weixin.common.exception.WxErrorException;
+import org.apache.http.Consts;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 简单的非阻塞POST请求执行器，请求的参数是String, 返回的结果也是String
+ *
+ * @see SimplePostRequestExecutor
+ */
+public class SimplePostAsyncRequestExecutor implements AsyncRequestExecutor<String, String> {
+
+    @Override
+    public CompletableFuture<String> execute(CloseableHttpAsyncClient httpclient, HttpHost httpProxy, String uri, String postEntity) {
+        HttpPost httpPost = new HttpPost(uri);
+        if (httpProxy != null) {
+            RequestConfig config = RequestConfig.custom().setProxy(httpProxy).build();
+            httpPost.setConfig(config);
+        }
+
+        if (postEntity != null) {
+            StringEntity entity = new StringEntity(postEntity, Consts.UTF_8);
+            httpPost.setEntity(entity);
+        }
+
+        Utf8FutureCallback callback = new Utf8FutureCallback();
+        httpclient.execute(httpPost, callback);
+        return callback.getFuture().thenApply(responseContent -> {
+            if (responseContent == null || responseContent.isEmpty()) {
+                throw new CompletionException(new WxErrorException(
+                        WxError.newBuilder().setErrorCode(9999).setErrorMsg("无响应内容")
+                                .build()));
+            }
+
+            if (responseContent.startsWith("<xml>")) {
+                //xml格式输出直接返回
+                return responseContent;
+            }
+
+            WxError error = WxError.fromJson(responseContent);
+            if (error.getErrorCode() != 0) {
+                throw new CompletionException(new WxErrorException(error));
+            }
+            return responseContent;
+        });
+    }
+
+}
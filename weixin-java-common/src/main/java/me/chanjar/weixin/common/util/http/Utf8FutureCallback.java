@@ -0,0 +1,41 @@
+package me.chanjar.weixin.common.util.http;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.FutureCallback;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 把异步http请求的回调转换为 {@link CompletableFuture}，响应内容按UTF-8读取
+ *
+ * @see Utf8ResponseHandler
+ */
+class Utf8FutureCallback implements FutureCallback<HttpResponse> {
+
+    private final CompletableFuture<String> future = new CompletableFuture<>();
+
+    CompletableFuture<String> getFuture() {
+        return this.future;
+    }
+
+    @Override
+    public void completed(HttpResponse response) {
+        try {
+            this.future.complete(Utf8ResponseHandler.INSTANCE.handleResponse(response));
+        } catch (IOException e) {
+            this.future.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void failed(Exception ex) {
+        this.future.completeExceptionally(ex);
+    }
+
+    @Override
+    public void cancelled() {
+        this.future.cancel(false);
+    }
+
+}
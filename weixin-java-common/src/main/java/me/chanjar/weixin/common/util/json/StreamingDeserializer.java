@@ -0,0 +1,127 @@
+package me.chanjar.weixin.common.util.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <pre>
+ * 流式的反序列化器：直接从JsonReader中逐个读取字段，不需要像JsonDeserializer那样先把整个响应解析成JsonElement树。
+ * 只接管反序列化，序列化仍然使用Gson默认的方式。
+ * 通过 GsonBuilder.registerTypeAdapterFactory 注册
+ * </pre>
+ *
+ * @param <T> 要解析的类型
+ */
+public abstract class StreamingDeserializer<T> implements TypeAdapterFactory {
+
+    private final Class<T> type;
+
+    protected StreamingDeserializer(Class<T> type) {
+        this.type = type;
+    }
+
+    /**
+     * 读取一个json对象，调用时reader位于对象开始之前
+     */
+    protected abstract T read(JsonReader in) throws IOException;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <R> TypeAdapter<R> create(Gson gson, TypeToken<R> typeToken) {
+        if (typeToken.getRawType() != this.type) {
+            return null;
+        }
+
+        TypeAdapter<R> delegate = gson.getDelegateAdapter(this, typeToken);
+        return new TypeAdapter<R>() {
+            @Override
+            public void write(JsonWriter out, R value) throws IOException {
+                delegate.write(out, value);
+            }
+
+            @Override
+            public R read(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                return (R) StreamingDeserializer.this.read(in);
+            }
+        };
+    }
+
+    /**
+     * 与 GsonHelper.getAsString 一致：null返回null，数字和布尔值转成字符串
+     */
+    protected static String nextString(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case NULL:
+                in.nextNull();
+                return null;
+            case BOOLEAN:
+                return String.valueOf(in.nextBoolean());
+            default:
+                return in.nextString();
+        }
+    }
+
+    protected static Integer nextInteger(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextInt();
+    }
+
+    protected static Long nextLong(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextLong();
+    }
+
+    protected static Integer[] nextIntArray(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<Integer> result = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            result.add(in.nextInt());
+        }
+        in.endArray();
+        return result.toArray(new Integer[result.size()]);
+    }
+
+    protected static String[] nextStringArray(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<String> result = new ArrayList<>();
+        nextStrings(in, result);
+        return result.toArray(new String[result.size()]);
+    }
+
+    /**
+     * 把字符串数组中的元素追加到集合中
+     */
+    protected static void nextStrings(JsonReader in, List<String> result) throws IOException {
+        in.beginArray();
+        while (in.hasNext()) {
+            result.add(nextString(in));
+        }
+        in.endArray();
+    }
+}
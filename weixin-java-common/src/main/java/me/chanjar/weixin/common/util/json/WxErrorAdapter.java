@@ -8,28 +8,42 @@
  */
 package me.chanjar.weixin.common.util.json;
 
-import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
 import me.chanjar.weixin.common.bean.result.WxError;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 
 /**
+ * 只读取errcode和errmsg，其他字段直接跳过。原始json由 WxError.fromJson 设置
+ *
  * @author Daniel Qian
  */
-public class WxErrorAdapter implements JsonDeserializer<WxError> {
+public class WxErrorAdapter extends StreamingDeserializer<WxError> {
+
+    public WxErrorAdapter() {
+        super(WxError.class);
+    }
 
     @Override
-    public WxError deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
+    protected WxError read(JsonReader in) throws IOException {
         WxError wxError = new WxError();
-        JsonObject wxErrorJsonObject = json.getAsJsonObject();
-
-        if (wxErrorJsonObject.get("errcode") != null && !wxErrorJsonObject.get("errcode").isJsonNull()) {
-            wxError.setErrorCode(GsonHelper.getAsPrimitiveInt(wxErrorJsonObject.get("errcode")));
-        }
-        if (wxErrorJsonObject.get("errmsg") != null && !wxErrorJsonObject.get("errmsg").isJsonNull()) {
-            wxError.setErrorMsg(GsonHelper.getAsString(wxErrorJsonObject.get("errmsg")));
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "errcode":
+                    Integer errorCode = nextInteger(in);
+                    if (errorCode != null) {
+                        wxError.setErrorCode(errorCode);
+                    }
+                    break;
+                case "errmsg":
+                    wxError.setErrorMsg(nextString(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
         }
-        wxError.setJson(json.toString());
+        in.endObject();
         return wxError;
     }
 
@@ -4,7 +4,6 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import me.chanjar.weixin.common.bean.WxAccessToken;
 import me.chanjar.weixin.common.bean.menu.WxMenu;
-import me.chanjar.weixin.common.bean.result.WxError;
 import me.chanjar.weixin.common.bean.result.WxMediaUploadResult;
 
 public class WxGsonBuilder {
@@ -14,13 +13,21 @@ public class WxGsonBuilder {
     static {
         INSTANCE.disableHtmlEscaping();
         INSTANCE.registerTypeAdapter(WxAccessToken.class, new WxAccessTokenAdapter());
-        INSTANCE.registerTypeAdapter(WxError.class, new WxErrorAdapter());
+        INSTANCE.registerTypeAdapterFactory(new WxErrorAdapter());
         INSTANCE.registerTypeAdapter(WxMenu.class, new WxMenuGsonAdapter());
         INSTANCE.registerTypeAdapter(WxMediaUploadResult.class, new WxMediaUploadResultAdapter());
     }
 
+    /**
+     * 返回共用的Gson实例，第一次调用时才用 INSTANCE 构建，
+     * 之后对 INSTANCE 的修改不再生效
+     */
     public static Gson create() {
-        return INSTANCE.create();
+        return GsonHolder.GSON;
+    }
+
+    private static class GsonHolder {
+        private static final Gson GSON = INSTANCE.create();
     }
 
 }
@@ -34,4 +34,12 @@ public class WxErrorTest {
 
     }
 
+    public void testKeepOriginalJson() {
+
+        String json = "{\"errcode\":40013,\"errmsg\":\"invalid appid\"}";
+        WxError wxError = WxError.fromJson(json);
+        Assert.assertEquals(wxError.toString(), json);
+
+    }
+
 }
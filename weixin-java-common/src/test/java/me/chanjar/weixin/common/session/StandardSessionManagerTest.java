@@ -0,0 +1,125 @@
+package me.chanjar.weixin.common.session;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 时间轮清理：只检查到期的session，清理耗时与session总数无关
+ */
+@Test
+public class StandardSessionManagerTest {
+
+    /**
+     * 可以通过 -Dwx.session.benchmark.size 调整，默认500万
+     */
+    private static final int BENCHMARK_SESSIONS = Integer.getInteger("wx.session.benchmark.size", 5000000);
+
+    private static final int EXPIRING_SESSIONS = 100000;
+
+    public void testExpireOnlyIdleSessions() throws InterruptedException {
+        StandardSessionManager manager = new StandardSessionManager();
+        manager.setMaxInactiveInterval(1);
+
+        manager.createSession("idle");
+        InternalSession busy = manager.createSession("busy");
+        busy.access();
+        InternalSession touched = manager.createSession("touched");
+        InternalSession longLived = manager.createSession("longLived");
+        longLived.setMaxInactiveInterval(100);
+
+        Thread.sleep(700L);
+        touched.access();
+        touched.endAccess();
+        Thread.sleep(700L);
+        manager.processExpires();
+        Assert.assertNull(manager.findSession("idle"));
+        Assert.assertSame(manager.findSession("busy"), busy);
+        Assert.assertSame(manager.findSession("touched"), touched);
+        Assert.assertSame(manager.findSession("longLived"), longLived);
+
+        busy.endAccess();
+        Thread.sleep(1100L);
+        manager.processExpires();
+        Assert.assertNull(manager.findSession("busy"));
+        Assert.assertNull(manager.findSession("touched"));
+        Assert.assertSame(manager.findSession("longLived"), longLived);
+        Assert.assertEquals(manager.getExpiredSessions(), 3);
+        Assert.assertEquals(manager.getSessionCounter(), 4);
+    }
+
+    public void testScheduleIntoDetachedSlot() throws InterruptedException {
+        StandardSessionManager manager = new StandardSessionManager() {
+            @Override
+            protected InternalSession getNewSession() {
+                return new StandardSession(this) {
+                    private int idReads;
+
+                    @Override
+                    public String getIdInternal() {
+                        // 第2次读取id在schedule中选好格子之后、放入之前：这时清理线程摘下了这一格
+                        if (++this.idReads == 2) {
+                            try {
+                                Thread.sleep(1100L);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            processExpires();
+                        }
+                        return super.getIdInternal();
+                    }
+                };
+            }
+        };
+        manager.setMaxInactiveInterval(1);
+        manager.createSession("racing");
+
+        Thread.sleep(1100L);
+        manager.processExpires();
+        Assert.assertEquals(manager.getActiveSessions(), 0, "放入已摘下的格子的session没有被清理");
+        Assert.assertEquals(manager.getExpiredSessions(), 1);
+    }
+
+    public void testBenchmark() throws InterruptedException {
+        StandardSessionManager manager = new StandardSessionManager();
+        for (int i = 0; i < BENCHMARK_SESSIONS; i++) {
+            manager.createSession(String.valueOf(i));
+        }
+
+        // 改造前的清理方式：取出所有session逐个检查
+        long start = System.nanoTime();
+        int valid = 0;
+        for (InternalSession session : manager.findSessions()) {
+            if (session.isValid()) {
+                valid++;
+            }
+        }
+        double fullScanMillis = (System.nanoTime() - start) / 1e6;
+        Assert.assertEquals(valid, BENCHMARK_SESSIONS);
+
+        // 访问session只更新访问时间，不移动它在时间轮中的位置
+        int accesses = 1000000;
+        start = System.nanoTime();
+        for (int i = 0; i < accesses; i++) {
+            WxSession session = manager.getSession(String.valueOf(ThreadLocalRandom.current().nextInt(BENCHMARK_SESSIONS)));
+            ((StandardSessionFacade) session).getInternalSession().endAccess();
+        }
+        double accessNanos = (System.nanoTime() - start) / (double) accesses;
+
+        manager.setMaxInactiveInterval(1);
+        for (int i = 0; i < EXPIRING_SESSIONS; i++) {
+            manager.createSession("expiring" + i);
+        }
+        Thread.sleep(2100L);
+        start = System.nanoTime();
+        manager.processExpires();
+        double wheelMillis = (System.nanoTime() - start) / 1e6;
+
+        System.out.println(String.format("BENCH %d sessions, full scan %.1f ms, timer wheel expiring %d sessions %.1f ms, access %.0f ns/op",
+                BENCHMARK_SESSIONS, fullScanMillis, EXPIRING_SESSIONS, wheelMillis, accessNanos));
+        Assert.assertEquals(manager.getActiveSessions(), BENCHMARK_SESSIONS);
+        Assert.assertEquals(manager.getExpiredSessions(), EXPIRING_SESSIONS);
+        Assert.assertTrue(wheelMillis < fullScanMillis, "时间轮只检查到期的session，应该比全量扫描快");
+    }
+}
@@ -4,6 +4,13 @@ import me.chanjar.weixin.common.api.WxMessageInMemoryDuplicateChecker;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 @Test
 public class WxMessageInMemoryDuplicateCheckerTest {
 
@@ -33,4 +40,41 @@ public class WxMessageInMemoryDuplicateCheckerTest {
 
     }
 
+    public void testConcurrentRetries() throws Exception {
+        WxMessageInMemoryDuplicateChecker checker = new WxMessageInMemoryDuplicateChecker(15000L, 5000L);
+        AtomicInteger firstSeen = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executorService.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        if (!checker.isDuplicate("msg" + i)) {
+                            firstSeen.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        // 每个消息id只有一次不是重复消息
+        Assert.assertEquals(firstSeen.get(), 10000);
+    }
+
+    public void testExpireAcrossGenerations() throws InterruptedException {
+        WxMessageInMemoryDuplicateChecker checker = new WxMessageInMemoryDuplicateChecker(300L, 100L);
+        for (int round = 0; round < 5; round++) {
+            String msgId = "round" + round;
+            Assert.assertFalse(checker.isDuplicate(msgId));
+            Thread.sleep(150L);
+            Assert.assertTrue(checker.isDuplicate(msgId));
+            Thread.sleep(400L);
+            Assert.assertFalse(checker.isDuplicate(msgId));
+        }
+    }
+
 }
@@ -7,13 +7,18 @@ import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.Arrays;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 @Test
@@ -104,4 +109,117 @@ public class WxCryptUtilTest {
         fail("错误流程不抛出异常？？？");
     }
 
+    @Test
+    public void testDecryptWithSignature() {
+        WxCryptUtil pc = new WxCryptUtil(this.token, this.encodingAesKey, this.appId);
+        String cipherText = pc.encrypt(this.randomStr, this.replyMsg2);
+        String signature = SHA1.gen(this.token, this.timestamp, this.nonce, cipherText);
+        String fromXML = String.format(this.xmlFormat, cipherText);
+        assertEquals(pc.decrypt(signature, this.timestamp, this.nonce, fromXML), this.replyMsg2);
+    }
+
+    @Test
+    public void testExtractEncryptPart() {
+        assertEquals(WxCryptUtil.extractEncryptPart(String.format(this.xmlFormat, this.afterAesEncrypt)), this.afterAesEncrypt);
+        assertEquals(WxCryptUtil.extractEncryptPart("<xml><AgentID>1</AgentID><Encrypt>" + this.afterAesEncrypt + "</Encrypt></xml>"),
+                this.afterAesEncrypt);
+    }
+
+    @Test
+    public void testGeneratedXmlFormat() {
+        WxCryptUtil pc = new WxCryptUtil(this.token, this.encodingAesKey, this.appId);
+        String encryptedXml = pc.encrypt(this.replyMsg);
+        assertTrue(encryptedXml.matches("<xml>\\n<Encrypt><!\\[CDATA\\[[A-Za-z0-9+/=]+]]></Encrypt>\\n"
+                + "<MsgSignature><!\\[CDATA\\[[0-9a-f]{40}]]></MsgSignature>\\n<TimeStamp>\\d+</TimeStamp>\\n"
+                + "<Nonce><!\\[CDATA\\[[A-Za-z0-9]{16}]]></Nonce>\\n</xml>"), encryptedXml);
+    }
+
+    @Test
+    public void testAlternateKeysOnSameThread() {
+        WxCryptUtil pc = new WxCryptUtil(this.token, this.encodingAesKey, this.appId);
+        WxCryptUtil another = new WxCryptUtil(this.token, "ABCDEFGabcdefghijklmnopqrstuvwxyz0123456789", "wx_another_appid");
+        for (int i = 0; i < 3; i++) {
+            assertEquals(pc.encrypt(this.randomStr, this.replyMsg), this.afterAesEncrypt);
+            assertEquals(another.decrypt(another.encrypt(this.randomStr, this.replyMsg2)), this.replyMsg2);
+            assertEquals(pc.decrypt(this.afterAesEncrypt2), this.replyMsg2);
+        }
+    }
+
+    /**
+     * 对比改造前的实现，加解密约1KB的典型消息的单次耗时
+     */
+    @Test
+    public void testThroughputOf1KbMessage() throws Exception {
+        StringBuilder message = new StringBuilder(this.replyMsg2);
+        while (message.length() < 1024) {
+            message.append("<Extra><![CDATA[1KB消息填充]]></Extra>");
+        }
+        String plainText = message.toString();
+        WxCryptUtil pc = new WxCryptUtil(this.token, this.encodingAesKey, this.appId);
+        String cipherText = pc.encrypt(this.randomStr, plainText);
+        String signature = SHA1.gen(this.token, this.timestamp, this.nonce, cipherText);
+        String fromXML = String.format(this.xmlFormat, cipherText);
+        assertEquals(legacyDecrypt(pc, fromXML), plainText);
+
+        int iterations = 5000;
+        for (int i = 0; i < iterations; i++) {
+            legacyDecrypt(pc, fromXML);
+            legacyEncrypt(pc, plainText);
+            pc.decrypt(signature, this.timestamp, this.nonce, fromXML);
+            pc.encrypt(plainText);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            legacyDecrypt(pc, fromXML);
+            legacyEncrypt(pc, plainText);
+        }
+        double legacyMicros = (System.nanoTime() - start) / 1000.0 / iterations;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            pc.decrypt(signature, this.timestamp, this.nonce, fromXML);
+            pc.encrypt(plainText);
+        }
+        double currentMicros = (System.nanoTime() - start) / 1000.0 / iterations;
+
+        System.out.println(String.format("1KB decrypt+encrypt, legacy: %.1f us/op, current: %.1f us/op",
+                legacyMicros, currentMicros));
+    }
+
+    /**
+     * 改造前的解密过程：DOM解析 + 每次新建Cipher
+     */
+    private static String legacyDecrypt(WxCryptUtil pc, String encryptedXml) throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new InputSource(new StringReader(encryptedXml)));
+        String cipherText = document.getDocumentElement().getElementsByTagName("Encrypt").item(0).getTextContent();
+        Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(pc.aesKey, "AES"),
+                new IvParameterSpec(Arrays.copyOfRange(pc.aesKey, 0, 16)));
+        byte[] bytes = PKCS7Encoder.decode(cipher.doFinal(org.apache.commons.codec.binary.Base64.decodeBase64(cipherText)));
+        int xmlLength = (bytes[16] & 0xff) << 24 | (bytes[17] & 0xff) << 16 | (bytes[18] & 0xff) << 8 | (bytes[19] & 0xff);
+        return new String(Arrays.copyOfRange(bytes, 20, 20 + xmlLength), "UTF-8");
+    }
+
+    /**
+     * 改造前的加密过程：ByteGroup拼接 + 每次新建Cipher + String.format
+     */
+    private static String legacyEncrypt(WxCryptUtil pc, String plainText) throws Exception {
+        byte[] plainTextBytes = plainText.getBytes("UTF-8");
+        ByteGroup byteCollector = new ByteGroup();
+        byteCollector.addBytes("aaaabbbbccccdddd".getBytes("UTF-8"));
+        byteCollector.addBytes(new byte[]{(byte) (plainTextBytes.length >> 24), (byte) (plainTextBytes.length >> 16),
+                (byte) (plainTextBytes.length >> 8), (byte) plainTextBytes.length});
+        byteCollector.addBytes(plainTextBytes);
+        byteCollector.addBytes(pc.appidOrCorpid.getBytes("UTF-8"));
+        byteCollector.addBytes(PKCS7Encoder.encode(byteCollector.size()));
+        Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(pc.aesKey, "AES"), new IvParameterSpec(pc.aesKey, 0, 16));
+        String encrypted = org.apache.commons.codec.binary.Base64.encodeBase64String(cipher.doFinal(byteCollector.toBytes()));
+        String signature = SHA1.gen(pc.token, "1409304348", "xxxxxx", encrypted);
+        return String.format("<xml>\n<Encrypt><![CDATA[%1$s]]></Encrypt>\n<MsgSignature><![CDATA[%2$s]]></MsgSignature>\n"
+                + "<TimeStamp>%3$s</TimeStamp>\n<Nonce><![CDATA[%4$s]]></Nonce>\n</xml>", encrypted, signature, "1409304348", "xxxxxx");
+    }
+
 }
@@ -0,0 +1,232 @@
+package me.chanjar.weixin.common.util.http;
+
+import com.sun.net.httpserver.HttpServer;
+import me.chanjar.weixin.common.bean.result.WxMediaUploadResult;
+import me.chanjar.weixin.common.exception.WxErrorException;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 用本地http服务验证媒体文件的下载和流式上传；长时间下载后堆内存和deleteOnExit记录都不会增长
+ */
+@Test
+public class MediaRequestExecutorTest {
+
+    /**
+     * 默认下载次数，-Dwx.media.soak.downloads=1000000 可以跑完整的浸泡测试
+     */
+    private static final int SOAK_DOWNLOADS = Integer.getInteger("wx.media.soak.downloads", 20000);
+
+    private static final long MAX_HEAP_GROWTH_BYTES = 16 * 1024 * 1024L;
+
+    private final byte[] media = new byte[32 * 1024];
+
+    private final AtomicReference<byte[]> uploaded = new AtomicReference<>();
+
+    private HttpServer server;
+
+    private String baseUrl;
+
+    private CloseableHttpClient httpClient;
+
+    @BeforeClass
+    public void startServer() throws Exception {
+        ThreadLocalRandom.current().nextBytes(this.media);
+        // 响应头和响应体分两次写出，不关闭Nagle算法时每个请求都要等待一次延迟确认(约40ms)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/media/get", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "image/jpeg");
+            exchange.getResponseHeaders().add("Content-disposition", "attachment; filename=\"media.jpg\"");
+            exchange.sendResponseHeaders(200, this.media.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(this.media);
+            }
+        });
+        this.server.createContext("/media/error", exchange -> {
+            byte[] error = "{\"errcode\":40007,\"errmsg\":\"invalid media_id\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json; encoding=utf-8");
+            exchange.sendResponseHeaders(200, error.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(error);
+            }
+        });
+        this.server.createContext("/media/upload", exchange -> {
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    request.write(buffer, 0, read);
+                }
+            }
+            this.uploaded.set(request.toByteArray());
+            byte[] result = "{\"type\":\"image\",\"media_id\":\"media_1\",\"created_at\":1500000000}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, result.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(result);
+            }
+        });
+        this.server.start();
+        this.baseUrl = "http://127.0.0.1:" + this.server.getAddress().getPort();
+        this.httpClient = HttpClients.createDefault();
+    }
+
+    @AfterClass
+    public void stopServer() throws Exception {
+        this.httpClient.close();
+        this.server.stop(0);
+    }
+
+    public void testBytesDownload() throws Exception {
+        byte[] content = new MediaBytesDownloadRequestExecutor().execute(this.httpClient, null,
+                this.baseUrl + "/media/get", "media_id=1");
+        Assert.assertEquals(content, this.media);
+    }
+
+    public void testFileDownloadIsNotRegisteredForDeleteOnExit() throws Exception {
+        File tmpDir = Files.createTempDirectory("wx-media").toFile();
+        int registered = deleteOnExitCount();
+        try {
+            File file = new MediaDownloadRequestExecutor(tmpDir).execute(this.httpClient, null,
+                    this.baseUrl + "/media/get", "media_id=1");
+            Assert.assertEquals(Files.readAllBytes(file.toPath()), this.media);
+            Assert.assertTrue(file.delete());
+            if (registered >= 0) {
+                Assert.assertEquals(deleteOnExitCount(), registered);
+            }
+        } finally {
+            tmpDir.delete();
+        }
+    }
+
+    @Test(expectedExceptions = WxErrorException.class)
+    public void testDownloadError() throws Exception {
+        new MediaBytesDownloadRequestExecutor().execute(this.httpClient, null, this.baseUrl + "/media/error", "media_id=1");
+    }
+
+    public void testStreamingUpload() throws Exception {
+        WxMediaUploadResult result = new MediaInputStreamUploadRequestExecutor().execute(this.httpClient, null,
+                this.baseUrl + "/media/upload?type=image", new InputStreamData(new ByteArrayInputStream(this.media), "poster.png"));
+        Assert.assertEquals(result.getMediaId(), "media_1");
+
+        byte[] body = this.uploaded.get();
+        String head = new String(body, 0, 512, StandardCharsets.ISO_8859_1);
+        Assert.assertTrue(head.contains("name=\"media\"; filename=\"poster.png\""), head);
+        Assert.assertTrue(indexOf(body, this.media) > 0, "请求体中应包含完整的文件内容");
+    }
+
+    public void testRetriedUploadResendsContent() throws Exception {
+        // 系统繁忙或令牌失效时同一个参数会再执行一次，两次上传的内容都必须完整
+        MediaInputStreamUploadRequestExecutor executor = new MediaInputStreamUploadRequestExecutor();
+        String uri = this.baseUrl + "/media/upload?type=image";
+        for (InputStreamData data : Arrays.asList(new InputStreamData(new ByteArrayInputStream(this.media), "poster.png"),
+                new InputStreamData(this.media, "poster.png"))) {
+            for (int attempt = 0; attempt < 2; attempt++) {
+                this.uploaded.set(null);
+                executor.execute(this.httpClient, null, uri, data);
+                Assert.assertTrue(indexOf(this.uploaded.get(), this.media) > 0, "第" + (attempt + 1) + "次上传的请求体不完整");
+            }
+        }
+    }
+
+    public void testHeapStaysFlatOverManyDownloads() throws Exception {
+        File tmpDir = Files.createTempDirectory("wx-media-soak").toFile();
+        try {
+            MediaBytesDownloadRequestExecutor bytesExecutor = new MediaBytesDownloadRequestExecutor();
+            MediaDownloadRequestExecutor fileExecutor = new MediaDownloadRequestExecutor(tmpDir);
+            // 预热，让连接池、类加载等一次性的内存分配先完成
+            download(bytesExecutor, fileExecutor, 1000);
+
+            int registered = deleteOnExitCount();
+            long heapBefore = usedHeapAfterGc();
+            long start = System.nanoTime();
+            download(bytesExecutor, fileExecutor, SOAK_DOWNLOADS);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long heapAfter = usedHeapAfterGc();
+
+            System.out.println(String.format("%d media downloads in %.1f s, heap before: %d KB, after: %d KB",
+                    SOAK_DOWNLOADS, seconds, heapBefore / 1024, heapAfter / 1024));
+            Assert.assertTrue(heapAfter - heapBefore < MAX_HEAP_GROWTH_BYTES,
+                    "堆内存增长: " + (heapAfter - heapBefore) / 1024 + " KB");
+            if (registered >= 0) {
+                Assert.assertEquals(deleteOnExitCount(), registered);
+            }
+            Assert.assertEquals(tmpDir.list().length, 0);
+        } finally {
+            for (File file : tmpDir.listFiles()) {
+                file.delete();
+            }
+            tmpDir.delete();
+        }
+    }
+
+    /**
+     * 一半直接读到内存，一半写临时文件后立即删除
+     */
+    private void download(MediaBytesDownloadRequestExecutor bytesExecutor, MediaDownloadRequestExecutor fileExecutor,
+                          int times) throws Exception {
+        String uri = this.baseUrl + "/media/get";
+        for (int i = 0; i < times; i++) {
+            if ((i & 1) == 0) {
+                Assert.assertEquals(bytesExecutor.execute(this.httpClient, null, uri, "media_id=" + i).length, this.media.length);
+            } else {
+                File file = fileExecutor.execute(this.httpClient, null, uri, "media_id=" + i);
+                Assert.assertTrue(file.delete());
+            }
+        }
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * JDK 8中deleteOnExit登记的文件数，无法读取时返回-1
+     */
+    private static int deleteOnExitCount() {
+        try {
+            Field files = Class.forName("java.io.DeleteOnExitHook").getDeclaredField("files");
+            files.setAccessible(true);
+            Collection<?> registered = (Collection<?>) files.get(null);
+            synchronized (Class.forName("java.io.DeleteOnExitHook")) {
+                return registered == null ? 0 : registered.size();
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static int indexOf(byte[] source, byte[] target) {
+        for (int i = 0; i <= source.length - target.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(source, i, i + target.length), target)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
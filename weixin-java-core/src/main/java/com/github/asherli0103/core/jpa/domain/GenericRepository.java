@@ -104,6 +104,43 @@ public interface GenericRepository<T, ID extends Serializable> extends JpaReposi
     @Lock(value = LockModeType.PESSIMISTIC_WRITE)
     T findOneWithLock(ID id);
 
+    /**
+     * 查找数据 select for update
+     *
+     * @param specification
+     * @return
+     */
     @Lock(value = LockModeType.PESSIMISTIC_WRITE)
     T findOneWithLock(Specification<T> specification);
+
+    /**
+     * 查找数据 select for update，锁定所有符合条件的记录
+     *
+     * @param specification
+     * @return 加锁后的记录，没有时返回空列表
+     */
+    @Lock(value = LockModeType.PESSIMISTIC_WRITE)
+    List<T> findAllWithLock(Specification<T> specification);
+
+    /**
+     * 在数据库中原子扣减数值字段：update ... set field = field - amount where id = ? and field &gt;= amount
+     * 余额不足时不做任何修改。该操作不经过持久化上下文，当前事务中已加载的实体不会同步更新
+     *
+     * @param id        主键
+     * @param fieldName 要扣减的字段名，必须是实体中的属性
+     * @param amount    扣减数量，类型需要与字段类型一致
+     * @return 扣减成功返回true，余额不足或记录不存在返回false
+     */
+    boolean decrement(ID id, String fieldName, Number amount);
+
+    /**
+     * 在数据库中原子增加数值字段：update ... set field = field + amount where id = ?
+     * 该操作不经过持久化上下文，当前事务中已加载的实体不会同步更新
+     *
+     * @param id        主键
+     * @param fieldName 要增加的字段名，必须是实体中的属性
+     * @param amount    增加数量，类型需要与字段类型一致
+     * @return 记录存在并修改成功返回true
+     */
+    boolean increment(ID id, String fieldName, Number amount);
 }
@@ -31,11 +31,14 @@ import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
 import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
 import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 
 import javax.persistence.EmbeddedId;
 import javax.persistence.Entity;
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.NoResultException;
 import javax.persistence.Query;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
@@ -225,14 +228,63 @@ public class GenericRepositoryImpl<T, ID extends Serializable> extends SimpleJpa
     }
 
 
+    /**
+     * 实体可能已经在当前持久化上下文中，加锁时重新读取，保证拿到的是加锁后的最新数据
+     */
     @Override
     public T findOneWithLock(ID id) {
-        return super.findOne(id);
+        Assert.notNull(id, "The given id must not be null!");
+        T entity = em.find(getDomainClass(), id);
+        if (entity != null) {
+            em.refresh(entity, LockModeType.PESSIMISTIC_WRITE);
+        }
+        return entity;
     }
 
     @Override
     public T findOneWithLock(Specification<T> specification) {
-        return super.findOne(specification);
+        try {
+            return getQuery(specification, (Sort) null)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .getSingleResult();
+        } catch (NoResultException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public List<T> findAllWithLock(Specification<T> specification) {
+        return getQuery(specification, (Sort) null)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    @Override
+    @Transactional
+    public boolean decrement(ID id, String fieldName, Number amount) {
+        String field = "o." + fieldName;
+        return executeFieldUpdate(id, fieldName, amount, field + " = " + field + " - :amount", " and " + field + " >= :amount");
+    }
+
+    @Override
+    @Transactional
+    public boolean increment(ID id, String fieldName, Number amount) {
+        String field = "o." + fieldName;
+        return executeFieldUpdate(id, fieldName, amount, field + " = " + field + " + :amount", "");
+    }
+
+    private boolean executeFieldUpdate(ID id, String fieldName, Number amount, String setClause, String guard) {
+        Assert.notNull(id, "The given id must not be null!");
+        Assert.notNull(amount, "The given amount must not be null!");
+        // 校验字段名确实是实体属性，避免拼接出非法的jpql
+        em.getMetamodel().entity(getDomainClass()).getAttribute(fieldName);
+
+        String jpql = "update " + getEntityName(getDomainClass()) + " o set " + setClause
+                + " where o." + jpaEntityInformation.getIdAttribute().getName() + " = :id" + guard;
+        return em.createQuery(jpql)
+                .setParameter("amount", amount)
+                .setParameter("id", id)
+                .executeUpdate() > 0;
     }
 
     private <S, U extends T> Root<U> applySpecificationToCriteria(Specification<U> spec, Class<U> domainClass, CriteriaQuery<S> query) {
@@ -0,0 +1,48 @@
+package me.chanjar.weixin.open.api;
+
+import java.util.Set;
+
+/**
+ * <pre>
+ * 第三方平台代多个公众号调用接口时，按授权方appid分别保存各自的令牌、刷新令牌和jsapi_ticket。
+ * 过期时间与 {@link WxOpenConfigStorage} 一致，保存时会比微信返回的有效期提前200秒
+ * </pre>
+ *
+ * @see me.chanjar.weixin.open.api.impl.WxOpenAuthorizerTokenRefresher
+ */
+public interface WxOpenAuthorizerTokenStorage {
+
+    /**
+     * 所有已保存令牌的授权方appid
+     */
+    Set<String> getAuthorizerAppIds();
+
+    String getAccessToken(String authorizerAppId);
+
+    /**
+     * 令牌过期时间(毫秒)，没有令牌时返回0
+     */
+    long getAccessTokenExpiresTime(String authorizerAppId);
+
+    String getRefreshToken(String authorizerAppId);
+
+    void updateAccessToken(String authorizerAppId, String accessToken, int expiresInSeconds, String refreshToken);
+
+    void expireAccessToken(String authorizerAppId);
+
+    String getJsapiTicket(String authorizerAppId);
+
+    /**
+     * jsapi_ticket过期时间(毫秒)，没有ticket时返回0
+     */
+    long getJsapiTicketExpiresTime(String authorizerAppId);
+
+    void updateJsapiTicket(String authorizerAppId, String jsapiTicket, int expiresInSeconds);
+
+    void expireJsapiTicket(String authorizerAppId);
+
+    /**
+     * 公众号取消授权后删除它的所有令牌
+     */
+    void removeAuthorizer(String authorizerAppId);
+}
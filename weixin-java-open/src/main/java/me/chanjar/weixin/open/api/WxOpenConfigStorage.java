@@ -1,5 +1,6 @@
 package me.chanjar.weixin.open.api;
 
+import me.chanjar.weixin.common.util.http.ApacheHttpAsyncClientBuilder;
 import me.chanjar.weixin.common.util.http.ApacheHttpClientBuilder;
 import me.chanjar.weixin.open.bean.component.WxOpenAccessToken;
 import me.chanjar.weixin.open.bean.component.WxOpenAuthorizationAccessToken;
@@ -87,6 +88,8 @@ public interface WxOpenConfigStorage {
 
     Lock getCardApiTicketLock();
 
+    long getCardApiTicketExpiresTime();
+
     boolean isCardApiTicketExpired();
 
     void updateCardApiTicket(String cardApiTicket, int expiresInSeconds);
@@ -108,4 +111,6 @@ public interface WxOpenConfigStorage {
     SSLContext getSSLContext();
 
     ApacheHttpClientBuilder getApacheHttpClientBuilder();
+
+    ApacheHttpAsyncClientBuilder getApacheHttpAsyncClientBuilder();
 }
@@ -0,0 +1,317 @@
+package me.chanjar.weixin.open.api;
+
+import com.google.common.util.concurrent.RateLimiter;
+import me.chanjar.weixin.common.bean.result.WxError;
+import me.chanjar.weixin.common.exception.WxErrorException;
+import me.chanjar.weixin.open.bean.WxOpenUserQuery;
+import me.chanjar.weixin.open.bean.result.WxOpenUser;
+import me.chanjar.weixin.open.bean.result.WxOpenUserList;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * <pre>
+ * 关注者同步：按 next_openid 逐页拉取关注者列表(每页最多10000个)，每100个openid发出一次批量获取用户信息的请求，
+ * 同时进行的请求数不超过 concurrency，同一个appId的所有同步共用一个每秒 permitsPerSecond 次的限流。
+ *
+ * 请求都是非阻塞的，结果交回调用 sync 的线程，由它攒够 writeBatchSize 个用户后交给 {@link FollowerSink} 批量写入，
+ * 写入不会占用http回调线程。处理当前页时下一页关注者列表已经在请求中。
+ *
+ * 一页的用户全部写入后(且之前的页都已写入)才把这一页的 next_openid 记入 {@link Checkpoint}，
+ * 中断后再次同步时从记录的位置继续，最多重复写入未完成的那几页；全部同步完成后清除记录。
+ *
+ * 使用方法：
+ * new WxOpenFollowerSync(wxOpenService).concurrency(16).permitsPerSecond(100)
+ *   .sync(users -> ..., checkpoint);
+ * </pre>
+ */
+public class WxOpenFollowerSync {
+
+    private static final int USER_INFO_BATCH_SIZE = 100;
+
+    private static final ConcurrentMap<String, RateLimiter> RATE_LIMITERS = new ConcurrentHashMap<>();
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final WxOpenService wxOpenService;
+
+    private int concurrency = 16;
+
+    private double permitsPerSecond = 100;
+
+    private int writeBatchSize = 500;
+
+    public WxOpenFollowerSync(WxOpenService wxOpenService) {
+        this.wxOpenService = wxOpenService;
+    }
+
+    /**
+     * 同时进行的批量获取用户信息请求数，默认16
+     */
+    public WxOpenFollowerSync concurrency(int concurrency) {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * 同一个appId每秒最多发出的请求数(包括拉取关注者列表)，默认100
+     */
+    public WxOpenFollowerSync permitsPerSecond(double permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+        return this;
+    }
+
+    /**
+     * 每次交给 {@link FollowerSink} 写入的最大用户数，默认500
+     */
+    public WxOpenFollowerSync writeBatchSize(int writeBatchSize) {
+        this.writeBatchSize = writeBatchSize;
+        return this;
+    }
+
+    /**
+     * 从上次记录的位置开始同步关注者，直到拉取完全部关注者
+     *
+     * @param sink       写入用户信息，在调用本方法的线程上执行
+     * @param checkpoint 记录同步进度
+     * @return 本次写入的用户数
+     */
+    public long sync(FollowerSink sink, Checkpoint checkpoint) throws WxErrorException {
+        String appId = this.wxOpenService.getWxOpenConfigStorage().getAppId();
+        String cursor = checkpoint.load();
+        this.logger.info("开始同步[{}]的关注者，next_openid: {}", appId, cursor);
+        long synced = new Run(rateLimiter(appId), sink, checkpoint).sync(cursor);
+        this.logger.info("[{}]的关注者同步完成，共{}个", appId, synced);
+        return synced;
+    }
+
+    private RateLimiter rateLimiter(String appId) {
+        RateLimiter rateLimiter = RATE_LIMITERS.computeIfAbsent(StringUtils.defaultString(appId),
+                key -> RateLimiter.create(this.permitsPerSecond));
+        if (rateLimiter.getRate() != this.permitsPerSecond) {
+            rateLimiter.setRate(this.permitsPerSecond);
+        }
+        return rateLimiter;
+    }
+
+    /**
+     * 写入用户信息，同一个openid可能被写入多次，需要按openid更新或插入
+     */
+    public interface FollowerSink {
+        void upsert(List<WxOpenUser> users) throws WxErrorException;
+    }
+
+    /**
+     * 同步进度
+     */
+    public interface Checkpoint {
+        /**
+         * @return 上次记录的 next_openid，没有记录时返回null从头开始
+         */
+        String load();
+
+        /**
+         * @param nextOpenid 在这之前的关注者都已写入，全部同步完成时为null
+         */
+        void save(String nextOpenid);
+    }
+
+    /**
+     * 一次同步的状态，只在调用 sync 的线程上读写
+     */
+    private class Run {
+        private final BlockingQueue<Completion> completions = new LinkedBlockingQueue<>();
+        private final Deque<PageProgress> pendingPages = new ArrayDeque<>();
+        private final List<WxOpenUser> buffer = new ArrayList<>();
+        private final RateLimiter rateLimiter;
+        private final FollowerSink sink;
+        private final Checkpoint checkpoint;
+        private int inFlight;
+        private long synced;
+
+        private Run(RateLimiter rateLimiter, FollowerSink sink, Checkpoint checkpoint) {
+            this.rateLimiter = rateLimiter;
+            this.sink = sink;
+            this.checkpoint = checkpoint;
+        }
+
+        private long sync(String cursor) throws WxErrorException {
+            CompletableFuture<WxOpenUserList> nextPage = fetchPage(cursor);
+            while (nextPage != null) {
+                WxOpenUserList page = awaitPage(nextPage);
+                List<String> openIds = page.getOpenIds();
+                if (openIds == null || openIds.isEmpty()) {
+                    break;
+                }
+                String nextOpenId = page.getNextOpenId();
+                nextPage = StringUtils.isEmpty(nextOpenId) ? null : fetchPage(nextOpenId);
+
+                PageProgress progress = new PageProgress(nextOpenId, (openIds.size() - 1) / USER_INFO_BATCH_SIZE + 1);
+                this.pendingPages.addLast(progress);
+                for (int i = 0; i < openIds.size(); i += USER_INFO_BATCH_SIZE) {
+                    while (this.inFlight >= WxOpenFollowerSync.this.concurrency) {
+                        handle(take());
+                    }
+                    for (Completion completion; (completion = this.completions.poll()) != null; ) {
+                        handle(completion);
+                    }
+                    this.rateLimiter.acquire();
+                    fetchUsers(progress, openIds.subList(i, Math.min(i + USER_INFO_BATCH_SIZE, openIds.size())));
+                }
+            }
+
+            while (this.inFlight > 0) {
+                handle(take());
+            }
+            flush();
+            this.checkpoint.save(null);
+            return this.synced;
+        }
+
+        private CompletableFuture<WxOpenUserList> fetchPage(String nextOpenId) {
+            this.rateLimiter.acquire();
+            CompletableFuture<WxOpenUserList> future = start(() ->
+                    WxOpenFollowerSync.this.wxOpenService.getUserService().userListAsync(nextOpenId));
+            // 等待这一页时也要处理已完成的批量请求
+            future.whenComplete((page, throwable) -> this.completions.offer(Completion.PAGE_READY));
+            return future;
+        }
+
+        private void fetchUsers(PageProgress progress, List<String> openIds) {
+            this.inFlight++;
+            start(() -> WxOpenFollowerSync.this.wxOpenService.getUserService()
+                    .userInfoListAsync(new WxOpenUserQuery(openIds)))
+                    .whenComplete((users, throwable) -> this.completions.offer(new Completion(progress, users, throwable)));
+        }
+
+        private WxOpenUserList awaitPage(CompletableFuture<WxOpenUserList> page) throws WxErrorException {
+            while (!page.isDone()) {
+                handle(take());
+            }
+            try {
+                return page.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw toWxErrorException(e);
+            }
+        }
+
+        private void handle(Completion completion) throws WxErrorException {
+            if (completion.progress == null) {
+                return;
+            }
+            this.inFlight--;
+            if (completion.throwable != null) {
+                throw toWxErrorException(completion.throwable);
+            }
+            if (completion.users != null) {
+                this.buffer.addAll(completion.users);
+            }
+            if (this.buffer.size() >= WxOpenFollowerSync.this.writeBatchSize) {
+                flush();
+            }
+            if (--completion.progress.remainingBatches == 0) {
+                flush();
+                String nextOpenId = null;
+                while (!this.pendingPages.isEmpty() && this.pendingPages.peekFirst().remainingBatches == 0) {
+                    nextOpenId = this.pendingPages.pollFirst().nextOpenId;
+                }
+                if (nextOpenId != null) {
+                    this.checkpoint.save(nextOpenId);
+                }
+            }
+        }
+
+        private void flush() throws WxErrorException {
+            List<WxOpenUser> users = this.buffer;
+            for (int i = 0; i < users.size(); i += WxOpenFollowerSync.this.writeBatchSize) {
+                List<WxOpenUser> batch = users.subList(i, Math.min(i + WxOpenFollowerSync.this.writeBatchSize, users.size()));
+                this.sink.upsert(Collections.unmodifiableList(batch));
+                this.synced += batch.size();
+            }
+            users.clear();
+        }
+
+        private Completion take() throws WxErrorException {
+            try {
+                return this.completions.take();
+            } catch (InterruptedException e) {
+                throw toWxErrorException(e);
+            }
+        }
+    }
+
+    private static <T> CompletableFuture<T> start(Supplier<CompletableFuture<T>> request) {
+        try {
+            return request.get();
+        } catch (RuntimeException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    private static WxErrorException toWxErrorException(Throwable throwable) {
+        if (throwable instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+            return new WxErrorException(new WxError().setErrorCode(100003)
+                    .setErrorMsg(MessageFormat.format("同步关注者时被中断,{0}", throwable.getMessage())));
+        }
+        while ((throwable instanceof CompletionException || throwable instanceof ExecutionException)
+                && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        if (throwable instanceof WxErrorException) {
+            return (WxErrorException) throwable;
+        }
+        if (throwable instanceof RuntimeException) {
+            throw (RuntimeException) throwable;
+        }
+        throw new RuntimeException(throwable);
+    }
+
+    /**
+     * 一页关注者还有多少个批量请求没有写入
+     */
+    private static class PageProgress {
+        private final String nextOpenId;
+        private int remainingBatches;
+
+        private PageProgress(String nextOpenId, int remainingBatches) {
+            this.nextOpenId = nextOpenId;
+            this.remainingBatches = remainingBatches;
+        }
+    }
+
+    private static class Completion {
+        /**
+         * 关注者列表的一页已返回，只用于唤醒等待的线程
+         */
+        private static final Completion PAGE_READY = new Completion(null, null, null);
+
+        private final PageProgress progress;
+        private final List<WxOpenUser> users;
+        private final Throwable throwable;
+
+        private Completion(PageProgress progress, List<WxOpenUser> users, Throwable throwable) {
+            this.progress = progress;
+            this.users = users;
+            this.throwable = throwable;
+        }
+    }
+}
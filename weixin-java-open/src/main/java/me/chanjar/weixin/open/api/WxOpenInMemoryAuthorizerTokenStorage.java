@@ -0,0 +1,105 @@
+package me.chanjar.weixin.open.api;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 基于内存的授权方令牌存储，在实际生产环境中应该将这些令牌持久化
+ */
+public class WxOpenInMemoryAuthorizerTokenStorage implements WxOpenAuthorizerTokenStorage {
+
+    private final ConcurrentMap<String, AuthorizerTokens> authorizers = new ConcurrentHashMap<>();
+
+    @Override
+    public Set<String> getAuthorizerAppIds() {
+        return Collections.unmodifiableSet(this.authorizers.keySet());
+    }
+
+    @Override
+    public String getAccessToken(String authorizerAppId) {
+        AuthorizerTokens tokens = this.authorizers.get(authorizerAppId);
+        return tokens == null ? null : tokens.accessToken;
+    }
+
+    @Override
+    public long getAccessTokenExpiresTime(String authorizerAppId) {
+        AuthorizerTokens tokens = this.authorizers.get(authorizerAppId);
+        return tokens == null ? 0L : tokens.accessTokenExpiresTime;
+    }
+
+    @Override
+    public String getRefreshToken(String authorizerAppId) {
+        AuthorizerTokens tokens = this.authorizers.get(authorizerAppId);
+        return tokens == null ? null : tokens.refreshToken;
+    }
+
+    @Override
+    public void updateAccessToken(String authorizerAppId, String accessToken, int expiresInSeconds, String refreshToken) {
+        AuthorizerTokens tokens = getOrCreate(authorizerAppId);
+        synchronized (tokens) {
+            tokens.accessToken = accessToken;
+            if (StringUtils.isNotBlank(refreshToken)) {
+                tokens.refreshToken = refreshToken;
+            }
+            tokens.accessTokenExpiresTime = System.currentTimeMillis() + (expiresInSeconds - 200) * 1000L;
+        }
+    }
+
+    @Override
+    public void expireAccessToken(String authorizerAppId) {
+        AuthorizerTokens tokens = this.authorizers.get(authorizerAppId);
+        if (tokens != null) {
+            tokens.accessTokenExpiresTime = 0L;
+        }
+    }
+
+    @Override
+    public String getJsapiTicket(String authorizerAppId) {
+        AuthorizerTokens tokens = this.authorizers.get(authorizerAppId);
+        return tokens == null ? null : tokens.jsapiTicket;
+    }
+
+    @Override
+    public long getJsapiTicketExpiresTime(String authorizerAppId) {
+        AuthorizerTokens tokens = this.authorizers.get(authorizerAppId);
+        return tokens == null ? 0L : tokens.jsapiTicketExpiresTime;
+    }
+
+    @Override
+    public void updateJsapiTicket(String authorizerAppId, String jsapiTicket, int expiresInSeconds) {
+        AuthorizerTokens tokens = getOrCreate(authorizerAppId);
+        synchronized (tokens) {
+            tokens.jsapiTicket = jsapiTicket;
+            tokens.jsapiTicketExpiresTime = System.currentTimeMillis() + (expiresInSeconds - 200) * 1000L;
+        }
+    }
+
+    @Override
+    public void expireJsapiTicket(String authorizerAppId) {
+        AuthorizerTokens tokens = this.authorizers.get(authorizerAppId);
+        if (tokens != null) {
+            tokens.jsapiTicketExpiresTime = 0L;
+        }
+    }
+
+    @Override
+    public void removeAuthorizer(String authorizerAppId) {
+        this.authorizers.remove(authorizerAppId);
+    }
+
+    private AuthorizerTokens getOrCreate(String authorizerAppId) {
+        return this.authorizers.computeIfAbsent(authorizerAppId, appId -> new AuthorizerTokens());
+    }
+
+    private static class AuthorizerTokens {
+        private volatile String accessToken;
+        private volatile long accessTokenExpiresTime;
+        private volatile String refreshToken;
+        private volatile String jsapiTicket;
+        private volatile long jsapiTicketExpiresTime;
+    }
+}
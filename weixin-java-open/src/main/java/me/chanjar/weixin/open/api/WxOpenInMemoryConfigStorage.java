@@ -1,5 +1,6 @@
 package me.chanjar.weixin.open.api;
 
+import me.chanjar.weixin.common.util.http.ApacheHttpAsyncClientBuilder;
 import me.chanjar.weixin.common.util.http.ApacheHttpClientBuilder;
 import me.chanjar.weixin.open.bean.component.WxOpenAccessToken;
 import me.chanjar.weixin.open.bean.component.WxOpenAuthorizationAccessToken;
@@ -149,6 +150,10 @@ public class WxOpenInMemoryConfigStorage implements WxOpenConfigStorage {
      * HTTP 连接
      */
     protected volatile ApacheHttpClientBuilder apacheHttpClientBuilder;
+    /**
+     * 异步HTTP 连接
+     */
+    protected volatile ApacheHttpAsyncClientBuilder apacheHttpAsyncClientBuilder;
     /**
      * 代理服务器地址
      */
@@ -453,6 +458,11 @@ public class WxOpenInMemoryConfigStorage implements WxOpenConfigStorage {
         return this.cardApiTicketLock;
     }
 
+    @Override
+    public long getCardApiTicketExpiresTime() {
+        return this.cardApiTicketExpiresTime;
+    }
+
     @Override
     public boolean isCardApiTicketExpired() {
         return System.currentTimeMillis() > this.cardApiTicketExpiresTime;
@@ -542,6 +552,15 @@ public class WxOpenInMemoryConfigStorage implements WxOpenConfigStorage {
         this.apacheHttpClientBuilder = apacheHttpClientBuilder;
     }
 
+    @Override
+    public ApacheHttpAsyncClientBuilder getApacheHttpAsyncClientBuilder() {
+        return this.apacheHttpAsyncClientBuilder;
+    }
+
+    public void setApacheHttpAsyncClientBuilder(ApacheHttpAsyncClientBuilder apacheHttpAsyncClientBuilder) {
+        this.apacheHttpAsyncClientBuilder = apacheHttpAsyncClientBuilder;
+    }
+
 
     @Override
     public String toString() {
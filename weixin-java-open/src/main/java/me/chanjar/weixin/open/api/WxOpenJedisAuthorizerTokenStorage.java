@@ -0,0 +1,126 @@
+package me.chanjar.weixin.open.api;
+
+import org.apache.commons.lang3.StringUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Transaction;
+
+import java.util.Set;
+
+/**
+ * <pre>
+ * 基于Jedis的授权方令牌存储，每个授权方的key都以appid结尾，例如 WX_OPEN_AUTHORIZER_ACCESS_TOKEN:wx123。
+ * 所有授权方的appid保存在 WX_OPEN_AUTHORIZER_APPIDS 集合中，便于各节点启动时加载
+ * </pre>
+ */
+public class WxOpenJedisAuthorizerTokenStorage implements WxOpenAuthorizerTokenStorage {
+
+    private static final String AUTHORIZER_APP_IDS_KEY = "WX_OPEN_AUTHORIZER_APPIDS";
+    private static final String ACCESS_TOKEN_KEY = "WX_OPEN_AUTHORIZER_ACCESS_TOKEN:";
+    private static final String ACCESS_TOKEN_EXPIRES_TIME_KEY = "WX_OPEN_AUTHORIZER_ACCESS_TOKEN_EXPIRES_TIME:";
+    private static final String REFRESH_TOKEN_KEY = "WX_OPEN_AUTHORIZER_REFRESH_TOKEN:";
+    private static final String JS_API_TICKET_KEY = "WX_OPEN_AUTHORIZER_JS_API_TICKET:";
+    private static final String JS_API_TICKET_EXPIRES_TIME_KEY = "WX_OPEN_AUTHORIZER_JS_API_TICKET_EXPIRES_TIME:";
+
+    private final JedisPool jedisPool;
+
+    public WxOpenJedisAuthorizerTokenStorage(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    @Override
+    public Set<String> getAuthorizerAppIds() {
+        try (Jedis jedis = this.jedisPool.getResource()) {
+            return jedis.smembers(AUTHORIZER_APP_IDS_KEY);
+        }
+    }
+
+    @Override
+    public String getAccessToken(String authorizerAppId) {
+        return get(ACCESS_TOKEN_KEY + authorizerAppId);
+    }
+
+    @Override
+    public long getAccessTokenExpiresTime(String authorizerAppId) {
+        return getLong(ACCESS_TOKEN_EXPIRES_TIME_KEY + authorizerAppId);
+    }
+
+    @Override
+    public String getRefreshToken(String authorizerAppId) {
+        return get(REFRESH_TOKEN_KEY + authorizerAppId);
+    }
+
+    @Override
+    public void updateAccessToken(String authorizerAppId, String accessToken, int expiresInSeconds, String refreshToken) {
+        try (Jedis jedis = this.jedisPool.getResource()) {
+            Transaction transaction = jedis.multi();
+            transaction.set(ACCESS_TOKEN_KEY + authorizerAppId, accessToken);
+            transaction.set(ACCESS_TOKEN_EXPIRES_TIME_KEY + authorizerAppId, (System.currentTimeMillis() + (expiresInSeconds - 200) * 1000L) + "");
+            // 刷新令牌的接口不一定返回新的刷新令牌，没有时保留原来的
+            if (StringUtils.isNotBlank(refreshToken)) {
+                transaction.set(REFRESH_TOKEN_KEY + authorizerAppId, refreshToken);
+            }
+            transaction.sadd(AUTHORIZER_APP_IDS_KEY, authorizerAppId);
+            transaction.exec();
+        }
+    }
+
+    @Override
+    public void expireAccessToken(String authorizerAppId) {
+        set(ACCESS_TOKEN_EXPIRES_TIME_KEY + authorizerAppId, "0");
+    }
+
+    @Override
+    public String getJsapiTicket(String authorizerAppId) {
+        return get(JS_API_TICKET_KEY + authorizerAppId);
+    }
+
+    @Override
+    public long getJsapiTicketExpiresTime(String authorizerAppId) {
+        return getLong(JS_API_TICKET_EXPIRES_TIME_KEY + authorizerAppId);
+    }
+
+    @Override
+    public void updateJsapiTicket(String authorizerAppId, String jsapiTicket, int expiresInSeconds) {
+        try (Jedis jedis = this.jedisPool.getResource()) {
+            Transaction transaction = jedis.multi();
+            transaction.set(JS_API_TICKET_KEY + authorizerAppId, jsapiTicket);
+            transaction.set(JS_API_TICKET_EXPIRES_TIME_KEY + authorizerAppId, (System.currentTimeMillis() + (expiresInSeconds - 200) * 1000L) + "");
+            transaction.exec();
+        }
+    }
+
+    @Override
+    public void expireJsapiTicket(String authorizerAppId) {
+        set(JS_API_TICKET_EXPIRES_TIME_KEY + authorizerAppId, "0");
+    }
+
+    @Override
+    public void removeAuthorizer(String authorizerAppId) {
+        try (Jedis jedis = this.jedisPool.getResource()) {
+            Transaction transaction = jedis.multi();
+            transaction.del(ACCESS_TOKEN_KEY + authorizerAppId, ACCESS_TOKEN_EXPIRES_TIME_KEY + authorizerAppId,
+                    REFRESH_TOKEN_KEY + authorizerAppId, JS_API_TICKET_KEY + authorizerAppId,
+                    JS_API_TICKET_EXPIRES_TIME_KEY + authorizerAppId);
+            transaction.srem(AUTHORIZER_APP_IDS_KEY, authorizerAppId);
+            transaction.exec();
+        }
+    }
+
+    private String get(String key) {
+        try (Jedis jedis = this.jedisPool.getResource()) {
+            return jedis.get(key);
+        }
+    }
+
+    private void set(String key, String value) {
+        try (Jedis jedis = this.jedisPool.getResource()) {
+            jedis.set(key, value);
+        }
+    }
+
+    private long getLong(String key) {
+        String value = get(key);
+        return value == null ? 0L : Long.parseLong(value);
+    }
+}
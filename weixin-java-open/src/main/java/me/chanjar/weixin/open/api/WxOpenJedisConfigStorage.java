@@ -18,6 +18,7 @@
 package me.chanjar.weixin.open.api;
 
 import com.sun.org.apache.bcel.internal.generic.IF_ACMPEQ;
+import me.chanjar.weixin.common.util.http.ApacheHttpAsyncClientBuilder;
 import me.chanjar.weixin.common.util.http.ApacheHttpClientBuilder;
 import me.chanjar.weixin.open.bean.component.WxOpenAccessToken;
 import me.chanjar.weixin.open.bean.component.WxOpenAuthorizationAccessToken;
@@ -27,14 +28,23 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Transaction;
 
 import javax.net.ssl.SSLContext;
 import java.io.File;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 基于Jedis的微信配置provider，在实际生产环境中应该将这些配置持久化
+ * <p>
+ * 令牌和ticket在本地有一层缓存：任意节点更新或作废令牌时会把Redis中的版本号加1，
+ * 其他节点每隔 tokenVersionCheckInterval 毫秒检查一次版本号，版本号变化后才重新从Redis读取，
+ * 其余时间读取令牌不需要访问Redis
  *
  * @author chanjarster
  */
@@ -51,6 +61,7 @@ public class WxOpenJedisConfigStorage implements WxOpenConfigStorage {
     private static final String JS_API_TICKET_EXPIRES_TIME_KEY = "WX_OPEN_JS_API_TICKET_EXPIRES_TIME";
     private static final String CARD_API_TICKET_KEY = "WX_CARD_API_TICKET";
     private static final String CARD_API_TICKET_EXPIRES_TIME_KEY = "WX_CARD_API_TICKET_EXPIRES_TIME";
+    private static final String TOKEN_VERSION_KEY = "WX_OPEN_TOKEN_VERSION";
 
     //JEDIS 缓冲池
     private final JedisPool jedisPool;
@@ -154,6 +165,10 @@ public class WxOpenJedisConfigStorage implements WxOpenConfigStorage {
      * HTTP 连接
      */
     protected volatile ApacheHttpClientBuilder apacheHttpClientBuilder;
+    /**
+     * 异步HTTP 连接
+     */
+    protected volatile ApacheHttpAsyncClientBuilder apacheHttpAsyncClientBuilder;
     /**
      * 代理服务器地址
      */
@@ -173,6 +188,20 @@ public class WxOpenJedisConfigStorage implements WxOpenConfigStorage {
 
     protected volatile String parentKeyPath;
 
+    /**
+     * 本地缓存的令牌，按 TokenKey 的顺序存放
+     */
+    private final AtomicReferenceArray<CachedToken> cachedTokens = new AtomicReferenceArray<>(TokenKey.values().length);
+    /**
+     * 已知的最新令牌版本号
+     */
+    private final AtomicLong tokenVersion = new AtomicLong(-1);
+    private final AtomicLong tokenVersionCheckedAt = new AtomicLong();
+    /**
+     * 检查令牌版本号的间隔(毫秒)，即其他节点刷新令牌后本节点最多延迟多久能看到
+     */
+    private volatile long tokenVersionCheckInterval = 1000;
+
     //可用连接实例的最大数目，默认值为8；
     //如果赋值为-1，则表示不限制；如果pool已经分配了maxActive个jedis实例，则此时pool的状态为exhausted(耗尽)。
     private static int MAX_TOTAL = 1024;
@@ -253,9 +282,7 @@ public class WxOpenJedisConfigStorage implements WxOpenConfigStorage {
 
     @Override
     public String getAccessToken() {
-        try (Jedis jedis = this.jedisPool.getResource()) {
-            return jedis.get(ACCESS_TOKEN_KEY);
-        }
+        return getCachedToken(TokenKey.ACCESS_TOKEN).value;
     }
 
     @Override
@@ -265,7 +292,7 @@ public class WxOpenJedisConfigStorage implements WxOpenConfigStorage {
 
     @Override
     public boolean isAccessTokenExpired() {
-        return getBoolean(ACCESS_TOKEN_EXPIRES_TIME_KEY);
+        return getCachedToken(TokenKey.ACCESS_TOKEN).isExpired();
     }
 
     @Override
@@ -275,38 +302,38 @@ public class WxOpenJedisConfigStorage implements WxOpenConfigStorage {
 
     @Override
     public synchronized void updateAccessToken(String accessToken, int expiresInSeconds, String refreshToken) {
+        long expiresTime = System.currentTimeMillis() + (expiresInSeconds - 200) * 1000L;
         try (Jedis jedis = this.jedisPool.getResource()) {
-            jedis.set(ACCESS_TOKEN_KEY, accessToken);
-            jedis.set(ACCESS_TOKEN_EXPIRES_TIME_KEY, (System.currentTimeMillis() + (expiresInSeconds - 200) * 1000L) + "");
-            jedis.set(ACCESS_REFRESH_TOKEN_KEY, refreshToken);
+            Transaction transaction = jedis.multi();
+            transaction.set(ACCESS_TOKEN_KEY, accessToken);
+            transaction.set(ACCESS_TOKEN_EXPIRES_TIME_KEY, expiresTime + "");
+            transaction.set(ACCESS_REFRESH_TOKEN_KEY, refreshToken);
+            Response<Long> version = transaction.incr(TOKEN_VERSION_KEY);
+            transaction.exec();
+            cacheToken(TokenKey.ACCESS_TOKEN, new CachedToken(accessToken, expiresTime, version.get()));
+            cacheToken(TokenKey.REFRESH_TOKEN, new CachedToken(refreshToken, 0L, version.get()));
         }
     }
 
     @Override
     public void expireAccessToken() {
-        try (Jedis jedis = this.jedisPool.getResource()) {
-            jedis.set(ACCESS_TOKEN_EXPIRES_TIME_KEY, "0");
-        }
+        expireToken(TokenKey.ACCESS_TOKEN);
     }
 
     @Override
     public long getExpiresTime() {
-        return getLong(ACCESS_TOKEN_EXPIRES_TIME_KEY);
+        return getCachedToken(TokenKey.ACCESS_TOKEN).expiresTime;
     }
 
 
     @Override
     public String getRefreshToken() {
-        try (Jedis jedis = this.jedisPool.getResource()) {
-            return jedis.get(ACCESS_REFRESH_TOKEN_KEY);
-        }
+        return getCachedToken(TokenKey.REFRESH_TOKEN).value;
     }
 
     @Override
     public String getComponentAccessToken() {
-        try (Jedis jedis = this.jedisPool.getResource()) {
-            return jedis.get(COMPONENT_ACCESS_TOKEN_KEY);
-        }
+        return getCachedToken(TokenKey.COMPONENT_ACCESS_TOKEN).value;
     }
 
     @Override
@@ -321,27 +348,23 @@ public class WxOpenJedisConfigStorage implements WxOpenConfigStorage {
 
     @Override
     public synchronized void updateComponentAccessToken(String componentAccessToken, int componentAccessTokenExpiresTime) {
-        try (Jedis jedis = this.jedisPool.getResource()) {
-            jedis.set(COMPONENT_ACCESS_TOKEN_KEY, componentAccessToken);
-            jedis.set(COMPONENT_ACCESS_TOKEN_EXPIRES_TIME_KEY, (System.currentTimeMillis() + (componentAccessTokenExpiresTime - 200) * 1000L) + "");
-        }
+        updateToken(TokenKey.COMPONENT_ACCESS_TOKEN, componentAccessToken,
+                System.currentTimeMillis() + (componentAccessTokenExpiresTime - 200) * 1000L);
     }
 
     @Override
     public void expireComponentAccessToken() {
-        try (Jedis jedis = this.jedisPool.getResource()) {
-            jedis.set(COMPONENT_ACCESS_TOKEN_EXPIRES_TIME_KEY, "0");
-        }
+        expireToken(TokenKey.COMPONENT_ACCESS_TOKEN);
     }
 
     @Override
     public boolean isComponentAccessTokenExpired() {
-        return getBoolean(COMPONENT_ACCESS_TOKEN_EXPIRES_TIME_KEY);
+        return getCachedToken(TokenKey.COMPONENT_ACCESS_TOKEN).isExpired();
     }
 
     @Override
     public long getComponentAccessTokenExpiresTime() {
-        return getLong(COMPONENT_ACCESS_TOKEN_EXPIRES_TIME_KEY);
+        return getCachedToken(TokenKey.COMPONENT_ACCESS_TOKEN).expiresTime;
     }
 
     @Override
@@ -386,31 +409,22 @@ public class WxOpenJedisConfigStorage implements WxOpenConfigStorage {
 
     @Override
     public String getComponentVerifyTicket() {
-        try (Jedis jedis = this.jedisPool.getResource()) {
-            return jedis.get(COMPONENT_VERIFY_YICKIT);
-        }
+        return getCachedToken(TokenKey.COMPONENT_VERIFY_TICKET).value;
     }
 
     @Override
     public synchronized void updateComponentVerifyTicket(String componentVerifyTicket) {
-        try (Jedis jedis = this.jedisPool.getResource()) {
-            jedis.set(COMPONENT_VERIFY_YICKIT, componentVerifyTicket);
-        }
+        updateToken(TokenKey.COMPONENT_VERIFY_TICKET, componentVerifyTicket, 0L);
     }
 
     @Override
     public String getJsapiTicket() {
-        try (Jedis jedis = this.jedisPool.getResource()) {
-            return jedis.get(JS_API_TICKET_KEY);
-        }
+        return getCachedToken(TokenKey.JS_API_TICKET).value;
     }
 
     @Override
     public synchronized void updateJsapiTicket(String jsapiTicket, int expiresInSeconds) {
-        try (Jedis jedis = this.jedisPool.getResource()) {
-            jedis.set(JS_API_TICKET_KEY, jsapiTicket);
-            jedis.set(JS_API_TICKET_EXPIRES_TIME_KEY, (System.currentTimeMillis() + (expiresInSeconds - 200) * 1000L + ""));
-        }
+        updateToken(TokenKey.JS_API_TICKET, jsapiTicket, System.currentTimeMillis() + (expiresInSeconds - 200) * 1000L);
     }
 
     @Override
@@ -420,26 +434,22 @@ public class WxOpenJedisConfigStorage implements WxOpenConfigStorage {
 
     @Override
     public long getJsapiTicketExpiresTime() {
-        return getLong(JS_API_TICKET_EXPIRES_TIME_KEY);
+        return getCachedToken(TokenKey.JS_API_TICKET).expiresTime;
     }
 
     @Override
     public boolean isJsapiTicketExpired() {
-        return getBoolean(JS_API_TICKET_EXPIRES_TIME_KEY);
+        return getCachedToken(TokenKey.JS_API_TICKET).isExpired();
     }
 
     @Override
     public void expireJsapiTicket() {
-        try (Jedis jedis = this.jedisPool.getResource()) {
-            jedis.set(JS_API_TICKET_EXPIRES_TIME_KEY, "0");
-        }
+        expireToken(TokenKey.JS_API_TICKET);
     }
 
     @Override
     public String getCardApiTicket() {
-        try (Jedis jedis = this.jedisPool.getResource()) {
-            return jedis.get(CARD_API_TICKET_KEY);
-        }
+        return getCachedToken(TokenKey.CARD_API_TICKET).value;
     }
 
     @Override
@@ -447,24 +457,24 @@ public class WxOpenJedisConfigStorage implements WxOpenConfigStorage {
         return this.cardApiTicketLock;
     }
 
+    @Override
+    public long getCardApiTicketExpiresTime() {
+        return getCachedToken(TokenKey.CARD_API_TICKET).expiresTime;
+    }
+
     @Override
     public boolean isCardApiTicketExpired() {
-        return getBoolean(CARD_API_TICKET_EXPIRES_TIME_KEY);
+        return getCachedToken(TokenKey.CARD_API_TICKET).isExpired();
     }
 
     @Override
     public synchronized void updateCardApiTicket(String cardApiTicket, int expiresInSeconds) {
-        try (Jedis jedis = this.jedisPool.getResource()) {
-            jedis.set(CARD_API_TICKET_KEY, cardApiTicket);
-            jedis.set(CARD_API_TICKET_EXPIRES_TIME_KEY, (System.currentTimeMillis() + (expiresInSeconds - 200) * 1000L + ""));
-        }
+        updateToken(TokenKey.CARD_API_TICKET, cardApiTicket, System.currentTimeMillis() + (expiresInSeconds - 200) * 1000L);
     }
 
     @Override
     public void expireCardApiTicket() {
-        try (Jedis jedis = this.jedisPool.getResource()) {
-            jedis.set(CARD_API_TICKET_EXPIRES_TIME_KEY, "0");
-        }
+        expireToken(TokenKey.CARD_API_TICKET);
     }
 
     @Override
@@ -539,27 +549,130 @@ public class WxOpenJedisConfigStorage implements WxOpenConfigStorage {
         this.apacheHttpClientBuilder = apacheHttpClientBuilder;
     }
 
-    private boolean getBoolean(String key) {
+    @Override
+    public ApacheHttpAsyncClientBuilder getApacheHttpAsyncClientBuilder() {
+        return this.apacheHttpAsyncClientBuilder;
+    }
+
+    public void setApacheHttpAsyncClientBuilder(ApacheHttpAsyncClientBuilder apacheHttpAsyncClientBuilder) {
+        this.apacheHttpAsyncClientBuilder = apacheHttpAsyncClientBuilder;
+    }
+
+    public long getTokenVersionCheckInterval() {
+        return this.tokenVersionCheckInterval;
+    }
+
+    public void setTokenVersionCheckInterval(long tokenVersionCheckInterval) {
+        this.tokenVersionCheckInterval = tokenVersionCheckInterval;
+    }
+
+    /**
+     * 版本号没有变化时直接返回本地缓存，每个检查间隔内只有一个线程去Redis读取版本号
+     */
+    private CachedToken getCachedToken(TokenKey tokenKey) {
+        long now = System.currentTimeMillis();
+        long checkedAt = this.tokenVersionCheckedAt.get();
+        if (now - checkedAt >= this.tokenVersionCheckInterval && this.tokenVersionCheckedAt.compareAndSet(checkedAt, now)) {
+            try (Jedis jedis = this.jedisPool.getResource()) {
+                observeTokenVersion(parseLong(jedis.get(TOKEN_VERSION_KEY)));
+            }
+        }
+
+        CachedToken cachedToken = this.cachedTokens.get(tokenKey.ordinal());
+        if (cachedToken != null && cachedToken.version >= this.tokenVersion.get()) {
+            return cachedToken;
+        }
+        return loadToken(tokenKey);
+    }
+
+    /**
+     * 版本号与令牌在同一条MGET中读取，更新令牌时用事务写入，所以读到的版本号和令牌总是对应的
+     */
+    private CachedToken loadToken(TokenKey tokenKey) {
+        List<String> values;
         try (Jedis jedis = this.jedisPool.getResource()) {
-            String expiresTimeStr = jedis.get(key);
-            if (expiresTimeStr != null) {
-                Long expiresTime = Long.parseLong(expiresTimeStr);
-                return System.currentTimeMillis() > expiresTime;
+            if (tokenKey.expiresKey == null) {
+                values = jedis.mget(TOKEN_VERSION_KEY, tokenKey.valueKey);
+            } else {
+                values = jedis.mget(TOKEN_VERSION_KEY, tokenKey.valueKey, tokenKey.expiresKey);
             }
-            return true;
         }
+        CachedToken cachedToken = new CachedToken(values.get(1),
+                tokenKey.expiresKey == null ? 0L : parseLong(values.get(2)), parseLong(values.get(0)));
+        cacheToken(tokenKey, cachedToken);
+        return cachedToken;
     }
 
-    private long getLong(String key) {
+    private void updateToken(TokenKey tokenKey, String value, long expiresTime) {
         try (Jedis jedis = this.jedisPool.getResource()) {
-            String expiresTimeStr = jedis.get(key);
-            if (expiresTimeStr != null) {
-                return Long.parseLong(expiresTimeStr);
+            Transaction transaction = jedis.multi();
+            transaction.set(tokenKey.valueKey, value);
+            if (tokenKey.expiresKey != null) {
+                transaction.set(tokenKey.expiresKey, expiresTime + "");
             }
-            return 0L;
+            Response<Long> version = transaction.incr(TOKEN_VERSION_KEY);
+            transaction.exec();
+            cacheToken(tokenKey, new CachedToken(value, expiresTime, version.get()));
         }
     }
 
+    private void expireToken(TokenKey tokenKey) {
+        try (Jedis jedis = this.jedisPool.getResource()) {
+            Transaction transaction = jedis.multi();
+            transaction.set(tokenKey.expiresKey, "0");
+            Response<Long> version = transaction.incr(TOKEN_VERSION_KEY);
+            transaction.exec();
+            // 令牌本身没有变化，下次读取时重新加载
+            this.cachedTokens.set(tokenKey.ordinal(), null);
+            observeTokenVersion(version.get());
+        }
+    }
+
+    private void cacheToken(TokenKey tokenKey, CachedToken cachedToken) {
+        this.cachedTokens.set(tokenKey.ordinal(), cachedToken);
+        observeTokenVersion(cachedToken.version);
+    }
+
+    private void observeTokenVersion(long version) {
+        this.tokenVersion.accumulateAndGet(version, Math::max);
+    }
+
+    private static long parseLong(String value) {
+        return value == null ? 0L : Long.parseLong(value);
+    }
+
+    private enum TokenKey {
+        ACCESS_TOKEN(ACCESS_TOKEN_KEY, ACCESS_TOKEN_EXPIRES_TIME_KEY),
+        REFRESH_TOKEN(ACCESS_REFRESH_TOKEN_KEY, null),
+        COMPONENT_ACCESS_TOKEN(COMPONENT_ACCESS_TOKEN_KEY, COMPONENT_ACCESS_TOKEN_EXPIRES_TIME_KEY),
+        COMPONENT_VERIFY_TICKET(COMPONENT_VERIFY_YICKIT, null),
+        JS_API_TICKET(JS_API_TICKET_KEY, JS_API_TICKET_EXPIRES_TIME_KEY),
+        CARD_API_TICKET(CARD_API_TICKET_KEY, CARD_API_TICKET_EXPIRES_TIME_KEY);
+
+        private final String valueKey;
+        private final String expiresKey;
+
+        TokenKey(String valueKey, String expiresKey) {
+            this.valueKey = valueKey;
+            this.expiresKey = expiresKey;
+        }
+    }
+
+    private static class CachedToken {
+        private final String value;
+        private final long expiresTime;
+        private final long version;
+
+        private CachedToken(String value, long expiresTime, long version) {
+            this.value = value;
+            this.expiresTime = expiresTime;
+            this.version = version;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() > this.expiresTime;
+        }
+    }
 
     @Override
     public String toString() {
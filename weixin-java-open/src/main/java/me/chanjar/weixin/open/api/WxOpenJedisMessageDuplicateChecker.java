@@ -0,0 +1,63 @@
+package me.chanjar.weixin.open.api;
+
+import me.chanjar.weixin.common.api.WxMessageDuplicateChecker;
+import me.chanjar.weixin.common.api.WxMessageInMemoryDuplicateChecker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * <pre>
+ * 基于Jedis的消息重复检查器，用于多个节点共同接收消息的部署
+ * 每个消息id用 SET key 1 NX PX 过期时间 写入Redis，写入成功的节点处理消息，其他节点视为重复消息。
+ * Redis不可用时退回到本节点的内存检查器，只能排除落到同一节点的重试
+ * </pre>
+ */
+public class WxOpenJedisMessageDuplicateChecker implements WxMessageDuplicateChecker {
+
+    private static final String MESSAGE_ID_KEY = "WX_OPEN_MESSAGE_ID:";
+
+    private final Logger log = LoggerFactory.getLogger(WxOpenJedisMessageDuplicateChecker.class);
+
+    private final JedisPool jedisPool;
+
+    /**
+     * 一个消息ID的过期时间：毫秒
+     */
+    private final long timeToLive;
+
+    private final WxMessageDuplicateChecker fallbackChecker;
+
+    /**
+     * 消息ID的过期时间：15秒
+     */
+    public WxOpenJedisMessageDuplicateChecker(JedisPool jedisPool) {
+        this(jedisPool, 15 * 1000L);
+    }
+
+    /**
+     * @param jedisPool  Redis连接池
+     * @param timeToLive 一个消息ID的过期时间：毫秒
+     */
+    public WxOpenJedisMessageDuplicateChecker(JedisPool jedisPool, long timeToLive) {
+        this.jedisPool = jedisPool;
+        this.timeToLive = timeToLive;
+        this.fallbackChecker = new WxMessageInMemoryDuplicateChecker(timeToLive, Math.max(1L, timeToLive / 3));
+    }
+
+    @Override
+    public boolean isDuplicate(String messageId) {
+        if (messageId == null) {
+            return false;
+        }
+        try (Jedis jedis = this.jedisPool.getResource()) {
+            return !"OK".equals(jedis.set(MESSAGE_ID_KEY + messageId, "1", "NX", "PX", this.timeToLive));
+        } catch (JedisException e) {
+            this.log.warn("Redis unavailable, check duplicate message in memory, messageId={}", messageId, e);
+            return this.fallbackChecker.isDuplicate(messageId);
+        }
+    }
+
+}
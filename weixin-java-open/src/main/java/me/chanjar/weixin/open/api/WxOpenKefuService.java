@@ -7,6 +7,7 @@ import me.chanjar.weixin.open.bean.kefu.result.*;
 
 import java.io.File;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 客服接口 ，
@@ -27,6 +28,11 @@ public interface WxOpenKefuService {
      */
     boolean sendKefuMessage(WxOpenKefuMessage message) throws WxErrorException;
 
+    /**
+     * {@link #sendKefuMessage(WxOpenKefuMessage)} 的非阻塞版本
+     */
+    CompletableFuture<Boolean> sendKefuMessageAsync(WxOpenKefuMessage message);
+
     //*******************客服管理接口***********************//
 
     /**
@@ -57,12 +57,29 @@ public interface WxOpenMaterialService {
      *
      * @param mediaType   媒体类型, 请看{@link me.chanjar.weixin.common.api.WxConsts}
      * @param fileType    文件类型，请看{@link me.chanjar.weixin.common.api.WxConsts}
-     * @param inputStream 输入流
+     * @param inputStream 输入流，上传前读入内存，请求重试时重新发送同样的内容
      * @throws WxErrorException
      * @see #mediaUpload(java.lang.String, java.io.File)
      */
     WxMediaUploadResult mediaUpload(String mediaType, String fileType, InputStream inputStream) throws WxErrorException;
 
+    /**
+     * <pre>
+     * 新增临时素材
+     * 适合已经在内存中的文件(例如生成的图片)，不需要先写到磁盘上
+     *
+     * 详情请见: <a href="http://mp.weixin.qq.com/wiki?t=resource/res_main&id=mp1444738726&token=&lang=zh_CN">新增临时素材</a>
+     * 接口url格式：${@code https://api.weixin.qq.com/cgi-bin/media/upload?access_token=ACCESS_TOKEN&type=TYPE}
+     * </pre>
+     *
+     * @param mediaType 媒体类型, 请看{@link me.chanjar.weixin.common.api.WxConsts}
+     * @param fileType  文件类型，请看{@link me.chanjar.weixin.common.api.WxConsts}
+     * @param data      文件内容
+     * @throws WxErrorException
+     * @see #mediaUpload(String, String, InputStream)
+     */
+    WxMediaUploadResult mediaUpload(String mediaType, String fileType, byte[] data) throws WxErrorException;
+
     /**
      * <pre>
      * 获取临时素材
@@ -74,11 +91,26 @@ public interface WxOpenMaterialService {
      * </pre>
      *
      * @param media_id
-     * @return 保存到本地的临时文件
+     * @return 保存到本地的临时文件，使用完后由调用方删除
      * @throws WxErrorException
+     * @see #mediaDownloadBytes(String)
      */
     File mediaDownload(String media_id) throws WxErrorException;
 
+    /**
+     * <pre>
+     * 获取临时素材，直接读到内存中，不写临时文件
+     * 根据微信文档，视频文件下载不了，会返回null
+     * 详情请见: <a href="http://mp.weixin.qq.com/wiki?t=resource/res_main&id=mp1444738727&token=&lang=zh_CN">获取临时素材</a>
+     * 接口url格式：${@code https://api.weixin.qq.com/cgi-bin/media/get?access_token=ACCESS_TOKEN&media_id=MEDIA_ID}
+     * </pre>
+     *
+     * @param media_id
+     * @return 文件内容
+     * @throws WxErrorException
+     */
+    byte[] mediaDownloadBytes(String media_id) throws WxErrorException;
+
     /**
      * <pre>
      * 上传图文消息内的图片获取URL
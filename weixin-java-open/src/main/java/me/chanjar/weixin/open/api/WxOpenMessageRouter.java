@@ -1,5 +1,6 @@
 package me.chanjar.weixin.open.api;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import me.chanjar.weixin.common.api.WxErrorExceptionHandler;
 import me.chanjar.weixin.common.api.WxMessageDuplicateChecker;
 import me.chanjar.weixin.common.api.WxMessageInMemoryDuplicateChecker;
@@ -14,11 +15,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <pre>
@@ -51,13 +57,23 @@ import java.util.concurrent.Future;
 public class WxOpenMessageRouter {
 
     private static final int DEFAULT_THREAD_POOL_SIZE = 100;
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    private static final int DEFAULT_SPILL_CAPACITY = 10000;
     protected final Logger log = LoggerFactory.getLogger(WxOpenMessageRouter.class);
     private final List<WxOpenMessageRouterRule> rules = new ArrayList<>();
 
+    private volatile RuleIndex ruleIndex;
+
     private final WxOpenService wxOpenService;
 
     private ExecutorService executorService;
 
+    private OverflowPolicy overflowPolicy = OverflowPolicy.CALLER_RUNS;
+
+    private BlockingDeque<AsyncRuleTask> spillQueue = new LinkedBlockingDeque<>(DEFAULT_SPILL_CAPACITY);
+
     private WxMessageDuplicateChecker messageDuplicateChecker;
 
     private WxSessionManager sessionManager;
@@ -66,16 +82,32 @@ public class WxOpenMessageRouter {
 
     public WxOpenMessageRouter(WxOpenService wxOpenService) {
         this.wxOpenService = wxOpenService;
-        this.executorService = Executors.newFixedThreadPool(DEFAULT_THREAD_POOL_SIZE);
+        this.executorService = newBoundedExecutor(DEFAULT_THREAD_POOL_SIZE, DEFAULT_QUEUE_CAPACITY);
         this.messageDuplicateChecker = new WxMessageInMemoryDuplicateChecker();
         this.sessionManager = new StandardSessionManager();
         this.exceptionHandler = new LogExceptionHandler();
     }
 
+    /**
+     * <pre>
+     * 有界队列的固定大小线程池，队列满时拒绝提交，由 {@link OverflowPolicy} 决定如何处理
+     * </pre>
+     *
+     * @param threads       线程数
+     * @param queueCapacity 队列长度
+     */
+    public static ThreadPoolExecutor newBoundedExecutor(int threads, int queueCapacity) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat("wx-open-router-%d").build(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
     /**
      * <pre>
      * 设置自定义的 {@link ExecutorService}
-     * 如果不调用该方法，默认使用 Executors.newFixedThreadPool(100)
+     * 如果不调用该方法，默认使用 newBoundedExecutor(100, 10000)
+     * 提交被拒绝(RejectedExecutionException)时按 {@link #setOverflowPolicy(OverflowPolicy)} 处理
      * </pre>
      *
      * @param executorService
@@ -84,6 +116,37 @@ public class WxOpenMessageRouter {
         this.executorService = executorService;
     }
 
+    /**
+     * <pre>
+     * 设置线程池已满时异步规则的处理方式
+     * 如果不调用该方法，默认使用 {@link OverflowPolicy#CALLER_RUNS}
+     * </pre>
+     *
+     * @param overflowPolicy
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * <pre>
+     * 设置 {@link OverflowPolicy#SPILL} 使用的溢出队列长度，溢出队列也满时丢弃
+     * 如果不调用该方法，默认为10000
+     * </pre>
+     *
+     * @param spillCapacity
+     */
+    public void setSpillCapacity(int spillCapacity) {
+        this.spillQueue = new LinkedBlockingDeque<>(spillCapacity);
+    }
+
+    /**
+     * 溢出队列中等待执行的任务数
+     */
+    public int getSpillQueueSize() {
+        return this.spillQueue.size();
+    }
+
     /**
      * <pre>
      * 设置自定义的 {@link me.chanjar.weixin.common.api.WxMessageDuplicateChecker}
@@ -124,6 +187,13 @@ public class WxOpenMessageRouter {
         return this.rules;
     }
 
+    /**
+     * 规则变化后丢弃索引，下次路由时重新建立
+     */
+    void invalidateRuleIndex() {
+        this.ruleIndex = null;
+    }
+
     /**
      * 开始一个新的Route规则
      */
@@ -142,34 +212,17 @@ public class WxOpenMessageRouter {
             return null;
         }
 
-        final List<WxOpenMessageRouterRule> matchRules = new ArrayList<>();
-        // 收集匹配的规则
-        for (final WxOpenMessageRouterRule rule : this.rules) {
-            if (rule.test(wxMessage)) {
-                matchRules.add(rule);
-                if (!rule.isReEnter()) {
-                    break;
-                }
-            }
-        }
+        final List<WxOpenMessageRouterRule> matchRules = match(wxMessage);
 
         if (matchRules.size() == 0) {
             return null;
         }
 
         WxOpenXmlOutMessage res = null;
-        final List<Future<?>> futures = new ArrayList<>();
         for (final WxOpenMessageRouterRule rule : matchRules) {
             // 返回最后一个非异步的rule的执行结果
             if (rule.isAsync()) {
-                futures.add(
-                        this.executorService.submit(new Runnable() {
-                            @Override
-                            public void run() {
-                                rule.service(wxMessage, WxOpenMessageRouter.this.wxOpenService, WxOpenMessageRouter.this.sessionManager, WxOpenMessageRouter.this.exceptionHandler);
-                            }
-                        })
-                );
+                dispatch(new AsyncRuleTask(rule, wxMessage));
             } else {
                 res = rule.service(wxMessage, this.wxOpenService, this.sessionManager, this.exceptionHandler);
                 // 在同步操作结束，session访问结束
@@ -177,43 +230,98 @@ public class WxOpenMessageRouter {
                 sessionEndAccess(wxMessage);
             }
         }
+        return res;
+    }
+
+    /**
+     * 提交异步规则，线程池拒绝时按溢出策略处理
+     */
+    private void dispatch(AsyncRuleTask task) {
+        WxOpenMessageRouterRuleStats stats = task.rule.getStats();
+        stats.submitted();
+        if (trySubmit(task)) {
+            return;
+        }
 
-        if (futures.size() > 0) {
-            this.executorService.submit(new Runnable() {
-                @Override
-                public void run() {
-                    for (Future<?> future : futures) {
-                        try {
-                            future.get();
-                            WxOpenMessageRouter.this.log.debug("End session access: async=true, sessionId={}", wxMessage.getFromUser());
-                            // 异步操作结束，session访问结束
-                            sessionEndAccess(wxMessage);
-                        } catch (InterruptedException e) {
-                            WxOpenMessageRouter.this.log.error("Error happened when wait task finish", e);
-                        } catch (ExecutionException e) {
-                            WxOpenMessageRouter.this.log.error("Error happened when wait task finish", e);
-                        }
-                    }
+        if (this.overflowPolicy == OverflowPolicy.CALLER_RUNS) {
+            stats.callerRun();
+            task.run();
+        } else if (this.overflowPolicy == OverflowPolicy.SPILL && this.spillQueue.offer(task)) {
+            stats.spilled();
+            // 放入溢出队列期间线程池可能已经空闲下来
+            drainSpillQueue();
+        } else {
+            drop(task);
+        }
+    }
+
+    private boolean trySubmit(AsyncRuleTask task) {
+        try {
+            this.executorService.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 把溢出队列中的任务转交给线程池，直到线程池再次拒绝
+     */
+    private void drainSpillQueue() {
+        AsyncRuleTask task;
+        while ((task = this.spillQueue.poll()) != null) {
+            if (!trySubmit(task)) {
+                if (!this.spillQueue.offerFirst(task)) {
+                    drop(task);
                 }
-            });
+                return;
+            }
         }
-        return res;
+    }
+
+    private void drop(AsyncRuleTask task) {
+        task.rule.getStats().dropped();
+        this.log.warn("Router executor is full, message dropped, msgId={}, fromUser={}",
+                task.wxMessage.getMsgId(), task.wxMessage.getFromUser());
+    }
+
+    /**
+     * 按规则的先后顺序收集匹配的规则，遇到不是 next() 结束的规则就停止
+     */
+    List<WxOpenMessageRouterRule> match(WxOpenXmlMessage wxMessage) {
+        RuleIndex index = this.ruleIndex;
+        if (index == null) {
+            index = new RuleIndex(this.rules);
+            this.ruleIndex = index;
+        }
+
+        String lowerEventKey = WxOpenMessageRouterRule.toLowerCase(wxMessage.getEventKey());
+        String trimmedContent = wxMessage.getContent() == null ? null : wxMessage.getContent().trim();
+        List<WxOpenMessageRouterRule> matchRules = new ArrayList<>();
+        for (WxOpenMessageRouterRule rule : index.candidates(wxMessage)) {
+            if (rule.test(wxMessage, lowerEventKey, trimmedContent)) {
+                matchRules.add(rule);
+                if (!rule.isReEnter()) {
+                    break;
+                }
+            }
+        }
+        return matchRules;
     }
 
     protected boolean isDuplicateMessage(WxOpenXmlMessage wxMessage) {
 
-        StringBuffer messageId = new StringBuffer();
+        String messageId;
         if (wxMessage.getMsgId() == null) {
-            messageId.append(wxMessage.getCreateTime())
-                    .append("-").append(wxMessage.getFromUser())
-                    .append("-").append(wxMessage.getEventKey() == null ? "" : wxMessage.getEventKey())
-                    .append("-").append(wxMessage.getEvent() == null ? "" : wxMessage.getEvent())
-            ;
+            messageId = wxMessage.getCreateTime()
+                    + "-" + wxMessage.getFromUser()
+                    + "-" + (wxMessage.getEventKey() == null ? "" : wxMessage.getEventKey())
+                    + "-" + (wxMessage.getEvent() == null ? "" : wxMessage.getEvent());
         } else {
-            messageId.append(wxMessage.getMsgId());
+            messageId = String.valueOf(wxMessage.getMsgId());
         }
 
-        return this.messageDuplicateChecker.isDuplicate(messageId.toString());
+        return this.messageDuplicateChecker.isDuplicate(messageId);
 
     }
 
@@ -230,4 +338,116 @@ public class WxOpenMessageRouter {
         }
 
     }
+
+    /**
+     * <pre>
+     * 按msgType和event(都不区分大小写)建立的规则索引
+     * 对规则中出现过的每一种msgType、event组合(以及"其他"值)，预先按原来的顺序挑出可能匹配的规则，
+     * 没有限定msgType或event的规则会出现在每个组合中，所以路由时只需要检查候选规则的其余条件，匹配结果和逐条检查完全一致
+     * </pre>
+     */
+    private static final class RuleIndex {
+        private static final WxOpenMessageRouterRule[] NO_RULES = new WxOpenMessageRouterRule[0];
+
+        /**
+         * 小写的msgType/event -> 下标，下标0表示规则中没有出现过的值(包括null)
+         */
+        private final Map<String, Integer> msgTypes = new HashMap<>();
+        private final Map<String, Integer> events = new HashMap<>();
+        private final WxOpenMessageRouterRule[][][] candidates;
+
+        private RuleIndex(List<WxOpenMessageRouterRule> rules) {
+            WxOpenMessageRouterRule[] allRules = rules.toArray(NO_RULES);
+            for (WxOpenMessageRouterRule rule : allRules) {
+                if (rule.getLowerMsgType() != null && !this.msgTypes.containsKey(rule.getLowerMsgType())) {
+                    this.msgTypes.put(rule.getLowerMsgType(), this.msgTypes.size() + 1);
+                }
+                if (rule.getLowerEvent() != null && !this.events.containsKey(rule.getLowerEvent())) {
+                    this.events.put(rule.getLowerEvent(), this.events.size() + 1);
+                }
+            }
+
+            this.candidates = new WxOpenMessageRouterRule[this.msgTypes.size() + 1][this.events.size() + 1][];
+            for (int m = 0; m < this.candidates.length; m++) {
+                for (int e = 0; e < this.candidates[m].length; e++) {
+                    List<WxOpenMessageRouterRule> matched = new ArrayList<>();
+                    for (WxOpenMessageRouterRule rule : allRules) {
+                        if (matches(this.msgTypes, rule.getLowerMsgType(), m) && matches(this.events, rule.getLowerEvent(), e)) {
+                            matched.add(rule);
+                        }
+                    }
+                    this.candidates[m][e] = matched.toArray(NO_RULES);
+                }
+            }
+        }
+
+        private static boolean matches(Map<String, Integer> values, String ruleValue, int index) {
+            return ruleValue == null || values.get(ruleValue) == index;
+        }
+
+        private static int indexOf(Map<String, Integer> values, String value) {
+            if (value == null || values.isEmpty()) {
+                return 0;
+            }
+            Integer index = values.get(value.toLowerCase());
+            return index == null ? 0 : index;
+        }
+
+        private WxOpenMessageRouterRule[] candidates(WxOpenXmlMessage wxMessage) {
+            return this.candidates[indexOf(this.msgTypes, wxMessage.getMsgType())][indexOf(this.events, wxMessage.getEvent())];
+        }
+    }
+
+    /**
+     * 线程池已满(提交被拒绝)时异步规则的处理方式
+     */
+    public enum OverflowPolicy {
+        /**
+         * 在调用 route 的线程中直接执行，减慢消息的接收速度
+         */
+        CALLER_RUNS,
+        /**
+         * 丢弃并计入 {@link WxOpenMessageRouterRuleStats#getDropped()}
+         */
+        DROP,
+        /**
+         * 放入本地的溢出队列，线程池中有任务完成时再提交；溢出队列也满时丢弃
+         */
+        SPILL
+    }
+
+    /**
+     * 异步执行一条规则，结束时结束session访问，并把溢出队列中的任务转交给线程池
+     */
+    private final class AsyncRuleTask implements Runnable {
+        private final WxOpenMessageRouterRule rule;
+        private final WxOpenXmlMessage wxMessage;
+        private final long submitNanos = System.nanoTime();
+
+        private AsyncRuleTask(WxOpenMessageRouterRule rule, WxOpenXmlMessage wxMessage) {
+            this.rule = rule;
+            this.wxMessage = wxMessage;
+        }
+
+        @Override
+        public void run() {
+            long startNanos = System.nanoTime();
+            this.rule.getStats().started(startNanos - this.submitNanos);
+            try {
+                this.rule.service(this.wxMessage, WxOpenMessageRouter.this.wxOpenService,
+                        WxOpenMessageRouter.this.sessionManager, WxOpenMessageRouter.this.exceptionHandler);
+            } catch (RuntimeException e) {
+                WxOpenMessageRouter.this.log.error("Error happened when handle message", e);
+            } finally {
+                this.rule.getStats().completed(System.nanoTime() - startNanos);
+                WxOpenMessageRouter.this.log.debug("End session access: async=true, sessionId={}", this.wxMessage.getFromUser());
+                // 异步操作结束，session访问结束
+                sessionEndAccess(this.wxMessage);
+            }
+
+            if (!WxOpenMessageRouter.this.spillQueue.isEmpty()) {
+                drainSpillQueue();
+            }
+        }
+    }
 }
@@ -38,6 +38,23 @@ public class WxOpenMessageRouterRule {
 
     private List<WxOpenMessageInterceptor> interceptors = new ArrayList<>();
 
+    private final WxOpenMessageRouterRuleStats stats = new WxOpenMessageRouterRuleStats();
+
+    /**
+     * 以下是规则结束时预先计算好的匹配条件，避免每条消息都重新转小写、编译正则
+     */
+    private volatile boolean compiled;
+
+    private String lowerMsgType;
+
+    private String lowerEvent;
+
+    private String lowerEventKey;
+
+    private Pattern contentPattern;
+
+    private String literalContent;
+
     public WxOpenMessageRouterRule(WxOpenMessageRouter routerBuilder) {
         this.routerBuilder = routerBuilder;
     }
@@ -55,6 +72,7 @@ public class WxOpenMessageRouterRule {
      */
     public WxOpenMessageRouterRule msgType(String msgType) {
         this.msgType = msgType;
+        changed();
         return this;
     }
 
@@ -63,6 +81,7 @@ public class WxOpenMessageRouterRule {
      */
     public WxOpenMessageRouterRule event(String event) {
         this.event = event;
+        changed();
         return this;
     }
 
@@ -71,6 +90,7 @@ public class WxOpenMessageRouterRule {
      */
     public WxOpenMessageRouterRule eventKey(String eventKey) {
         this.eventKey = eventKey;
+        changed();
         return this;
     }
 
@@ -87,6 +107,7 @@ public class WxOpenMessageRouterRule {
      */
     public WxOpenMessageRouterRule rContent(String regex) {
         this.rContent = regex;
+        changed();
         return this;
     }
 
@@ -150,7 +171,9 @@ public class WxOpenMessageRouterRule {
      * 规则结束，代表如果一个消息匹配该规则，那么它将不再会进入其他规则
      */
     public WxOpenMessageRouter end() {
+        compile();
         this.routerBuilder.getRules().add(this);
+        this.routerBuilder.invalidateRuleIndex();
         return this.routerBuilder;
     }
 
@@ -167,25 +190,94 @@ public class WxOpenMessageRouterRule {
      * 比如框架定义的事件常量为click，但微信传递过来的却是CLICK
      */
     protected boolean test(WxOpenXmlMessage wxMessage) {
+        compile();
         return
-                (this.fromUser == null || this.fromUser.equals(wxMessage.getFromUser()))
+                (this.lowerMsgType == null || this.lowerMsgType.equals(toLowerCase(wxMessage.getMsgType())))
+                        &&
+                        (this.lowerEvent == null || this.lowerEvent.equals(toLowerCase(wxMessage.getEvent())))
                         &&
-                        (this.msgType == null || this.msgType.toLowerCase().equals((wxMessage.getMsgType() == null ? null : wxMessage.getMsgType().toLowerCase())))
+                        test(wxMessage, toLowerCase(wxMessage.getEventKey()),
+                                wxMessage.getContent() == null ? null : wxMessage.getContent().trim());
+    }
+
+    /**
+     * 路由器按msgType和event选出候选规则后调用，只检查其余的条件。
+     * eventKey的小写和去掉首尾空白的content由路由器对每条消息只计算一次
+     */
+    boolean test(WxOpenXmlMessage wxMessage, String lowerEventKey, String trimmedContent) {
+        compile();
+        return
+                (this.fromUser == null || this.fromUser.equals(wxMessage.getFromUser()))
                         &&
-                        (this.event == null || this.event.toLowerCase().equals((wxMessage.getEvent() == null ? null : wxMessage.getEvent().toLowerCase())))
+                        (this.lowerEventKey == null || this.lowerEventKey.equals(lowerEventKey))
                         &&
-                        (this.eventKey == null || this.eventKey.toLowerCase().equals((wxMessage.getEventKey() == null ? null : wxMessage.getEventKey().toLowerCase())))
+                        (this.content == null || this.content.equals(trimmedContent))
                         &&
-                        (this.content == null || this.content
-                                .equals(wxMessage.getContent() == null ? null : wxMessage.getContent().trim()))
+                        (this.literalContent == null || this.literalContent.equals(trimmedContent == null ? "" : trimmedContent))
                         &&
-                        (this.rContent == null || Pattern
-                                .matches(this.rContent, wxMessage.getContent() == null ? "" : wxMessage.getContent().trim()))
+                        (this.contentPattern == null || this.contentPattern.matcher(trimmedContent == null ? "" : trimmedContent).matches())
                         &&
                         (this.matcher == null || this.matcher.match(wxMessage))
                 ;
     }
 
+    /**
+     * 转小写、编译正则，不含正则元字符的rContent直接按字符串比较
+     */
+    void compile() {
+        if (this.compiled) {
+            return;
+        }
+        synchronized (this) {
+            if (this.compiled) {
+                return;
+            }
+            this.lowerMsgType = toLowerCase(this.msgType);
+            this.lowerEvent = toLowerCase(this.event);
+            this.lowerEventKey = toLowerCase(this.eventKey);
+            this.literalContent = null;
+            this.contentPattern = null;
+            if (this.rContent != null) {
+                if (isLiteral(this.rContent)) {
+                    this.literalContent = this.rContent;
+                } else {
+                    this.contentPattern = Pattern.compile(this.rContent);
+                }
+            }
+            this.compiled = true;
+        }
+    }
+
+    String getLowerMsgType() {
+        compile();
+        return this.lowerMsgType;
+    }
+
+    String getLowerEvent() {
+        compile();
+        return this.lowerEvent;
+    }
+
+    private void changed() {
+        this.compiled = false;
+        if (this.routerBuilder != null) {
+            this.routerBuilder.invalidateRuleIndex();
+        }
+    }
+
+    static String toLowerCase(String value) {
+        return value == null ? null : value.toLowerCase();
+    }
+
+    private static boolean isLiteral(String regex) {
+        for (int i = 0; i < regex.length(); i++) {
+            if ("\\^$.|?*+()[]{}".indexOf(regex.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * 处理微信推送过来的消息
      *
@@ -228,6 +320,13 @@ public class WxOpenMessageRouterRule {
         return this.routerBuilder;
     }
 
+    /**
+     * 异步执行的排队、丢弃和耗时统计
+     */
+    public WxOpenMessageRouterRuleStats getStats() {
+        return this.stats;
+    }
+
     public boolean isAsync() {
         return this.async;
     }
@@ -250,6 +349,7 @@ public class WxOpenMessageRouterRule {
 
     public void setMsgType(String msgType) {
         this.msgType = msgType;
+        changed();
     }
 
     public String getEvent() {
@@ -258,6 +358,7 @@ public class WxOpenMessageRouterRule {
 
     public void setEvent(String event) {
         this.event = event;
+        changed();
     }
 
     public String getEventKey() {
@@ -266,6 +367,7 @@ public class WxOpenMessageRouterRule {
 
     public void setEventKey(String eventKey) {
         this.eventKey = eventKey;
+        changed();
     }
 
     public String getContent() {
@@ -282,6 +384,7 @@ public class WxOpenMessageRouterRule {
 
     public void setrContent(String rContent) {
         this.rContent = rContent;
+        changed();
     }
 
     public WxOpenMessageMatcher getMatcher() {
@@ -0,0 +1,141 @@
+package me.chanjar.weixin.open.api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <pre>
+ * 单条路由规则异步执行的统计
+ * 排队数包括线程池队列和溢出队列中还没有开始执行的消息，
+ * 等待时间是从提交到开始执行，处理时间是handler执行的时间
+ * </pre>
+ */
+public class WxOpenMessageRouterRuleStats {
+
+    private final LongAdder submitted = new LongAdder();
+
+    private final LongAdder completed = new LongAdder();
+
+    private final LongAdder callerRuns = new LongAdder();
+
+    private final LongAdder spilled = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LongAdder totalWaitNanos = new LongAdder();
+
+    private final LongAdder totalServiceNanos = new LongAdder();
+
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private final AtomicLong maxServiceNanos = new AtomicLong();
+
+    void submitted() {
+        this.submitted.increment();
+        this.queued.incrementAndGet();
+    }
+
+    void callerRun() {
+        this.callerRuns.increment();
+    }
+
+    void spilled() {
+        this.spilled.increment();
+    }
+
+    void dropped() {
+        this.dropped.increment();
+        this.queued.decrementAndGet();
+    }
+
+    void started(long waitNanos) {
+        this.queued.decrementAndGet();
+        this.totalWaitNanos.add(waitNanos);
+        this.maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    void completed(long serviceNanos) {
+        this.completed.increment();
+        this.totalServiceNanos.add(serviceNanos);
+        this.maxServiceNanos.accumulateAndGet(serviceNanos, Math::max);
+    }
+
+    /**
+     * 提交的异步任务数
+     */
+    public long getSubmitted() {
+        return this.submitted.sum();
+    }
+
+    /**
+     * 执行完成的异步任务数(包括在调用线程中执行的)
+     */
+    public long getCompleted() {
+        return this.completed.sum();
+    }
+
+    /**
+     * 线程池已满，在调用线程中执行的任务数
+     */
+    public long getCallerRuns() {
+        return this.callerRuns.sum();
+    }
+
+    /**
+     * 线程池已满，放入溢出队列的任务数
+     */
+    public long getSpilled() {
+        return this.spilled.sum();
+    }
+
+    /**
+     * 线程池和溢出队列都已满，被丢弃的任务数
+     */
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    /**
+     * 当前排队中的任务数
+     */
+    public int getQueued() {
+        return this.queued.get();
+    }
+
+    public double getAvgWaitMillis() {
+        return average(this.totalWaitNanos.sum());
+    }
+
+    public double getMaxWaitMillis() {
+        return toMillis(this.maxWaitNanos.get());
+    }
+
+    public double getAvgServiceMillis() {
+        return average(this.totalServiceNanos.sum());
+    }
+
+    public double getMaxServiceMillis() {
+        return toMillis(this.maxServiceNanos.get());
+    }
+
+    private double average(long totalNanos) {
+        long count = this.completed.sum();
+        return count == 0 ? 0 : toMillis(totalNanos) / count;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("submitted=%d, completed=%d, callerRuns=%d, spilled=%d, dropped=%d, queued=%d, "
+                        + "avgWait=%.1fms, maxWait=%.1fms, avgService=%.1fms, maxService=%.1fms",
+                getSubmitted(), getCompleted(), getCallerRuns(), getSpilled(), getDropped(), getQueued(),
+                getAvgWaitMillis(), getMaxWaitMillis(), getAvgServiceMillis(), getMaxServiceMillis());
+    }
+}
@@ -45,7 +45,7 @@ public interface WxOpenQrcodeService {
 
     /**
      * <pre>
-     * 换取二维码图片文件，jpg格式
+     * 换取二维码图片文件，jpg格式，使用完后由调用方删除
      * 详情请见: <a href="http://mp.weixin.qq.com/wiki/18/167e7d94df85d8389df6c94a7a8f78ba.html">生成带参数的二维码</a>
      * </pre>
      *
@@ -2,11 +2,15 @@ package me.chanjar.weixin.open.api;
 
 import me.chanjar.weixin.common.bean.WxJsapiSignature;
 import me.chanjar.weixin.common.exception.WxErrorException;
+import me.chanjar.weixin.common.util.http.AsyncRequestExecutor;
 import me.chanjar.weixin.common.util.http.RequestExecutor;
+import me.chanjar.weixin.open.api.impl.WxOpenAuthorizerTokenRefresher;
 import me.chanjar.weixin.open.bean.component.*;
 import me.chanjar.weixin.open.bean.result.WxOpenUser;
 import org.apache.http.HttpHost;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 微信API的Service
  */
@@ -128,6 +132,19 @@ public interface WxOpenService {
 
     WxOpenSetAuthorizerOption setAuthorizerOption(String authorizer_appid, String option_name) throws WxErrorException;
 
+    /**
+     * <pre>
+     * 使用授权方的刷新令牌获取(刷新)授权方的接口调用凭据
+     * 详情请见: https://open.weixin.qq.com/cgi-bin/showdocument?action=dir_list&t=resource/res_list&verify=1&id=open1453779503&token=&lang=zh_CN
+     * </pre>
+     */
+    WxOpenAuthorizationAccessToken refreshAuthorizerAccessToken(String authorizerAppId, String authorizerRefreshToken) throws WxErrorException;
+
+    /**
+     * 使用授权方的接口调用凭据获取它的jsapi_ticket
+     */
+    WxOpenJsapiTicket getAuthorizerJsapiTicket(String authorizerAccessToken) throws WxErrorException;
+
     String oauth2buildAuthorizationUrl(String redirectURI, String scope, String state);
 
 
@@ -155,6 +172,25 @@ public interface WxOpenService {
      */
     <T, E> T execute(RequestExecutor<T, E> executor, String uri, E data) throws WxErrorException;
 
+    /**
+     * {@link #get} 的非阻塞版本
+     */
+    CompletableFuture<String> getAsync(String url, String queryParam);
+
+    /**
+     * {@link #post} 的非阻塞版本
+     */
+    CompletableFuture<String> postAsync(String url, String postData);
+
+    /**
+     * <pre>
+     * {@link #execute} 的非阻塞版本，请求由异步httpclient的少量I/O线程承载，调用线程不会被阻塞。
+     * 错误码的处理与同步版本一致：-1 系统繁忙时延时重试，40001/42001 时刷新access_token后重新请求。
+     * 失败时返回的 CompletableFuture 以 {@link WxErrorException} 异常结束
+     * </pre>
+     */
+    <T, E> CompletableFuture<T> executeAsync(AsyncRequestExecutor<T, E> executor, String uri, E data);
+
     /**
      * 获取代理对象
      */
@@ -188,6 +224,12 @@ public interface WxOpenService {
      */
     void setWxOpenConfigStorage(WxOpenConfigStorage wxConfigProvider);
 
+    /**
+     * 注入授权方令牌的后台刷新器，设置后本授权方的access_token和jsapi_ticket从刷新器的存储中读取，
+     * 由刷新器在过期前刷新，请求线程不再等待刷新
+     */
+    void setAuthorizerTokenRefresher(WxOpenAuthorizerTokenRefresher authorizerTokenRefresher);
+
     /**
      * 返回客服接口方法实现类，以方便调用其各个接口
      *
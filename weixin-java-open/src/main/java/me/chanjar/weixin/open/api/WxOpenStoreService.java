@@ -6,6 +6,7 @@ import me.chanjar.weixin.open.bean.store.WxOpenStoreInfo;
 import me.chanjar.weixin.open.bean.store.WxOpenStoreListResult;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 门店管理的相关接口代码
@@ -70,18 +71,36 @@ public interface WxOpenStoreService {
      */
     WxOpenStoreListResult list(int begin, int limit) throws WxErrorException;
 
+    /**
+     * {@link #list(int, int)} 的非阻塞版本
+     *
+     * @param begin 开始位置，0 即为从第一条开始查询
+     * @param limit 返回数据条数，最大允许50，默认为20
+     */
+    CompletableFuture<WxOpenStoreListResult> listAsync(int begin, int limit);
+
     /**
      * <pre>
      * 查询门店列表（所有）
      * 商户可以通过该接口，批量查询自己名下的门店list，并获取已审核通过的poi_id（所有状态均会返回poi_id，但该poi_id不一定为最终id）、商户自身sid 用于对应、商户名、分店名、地址字段。
      * 详情请见: <a href="https://mp.weixin.qq.com/wiki?t=resource/res_main&id=mp1444378120&token=&lang=zh_CN">微信门店接口</a>
      * 接口格式：http://api.weixin.qq.com/cgi-bin/poi/getpoilist?access_token=TOKEN
+     * 先查询第一页得到门店总数，其余各页同时查询(最多4页同时进行)，结果按原顺序返回
      * </pre>
      *
      * @throws WxErrorException
      */
     List<WxOpenStoreInfo> listAll() throws WxErrorException;
 
+    /**
+     * 查询门店列表（所有）
+     *
+     * @param parallelism 同时查询的最大页数
+     * @throws WxErrorException
+     * @see #listAll()
+     */
+    List<WxOpenStoreInfo> listAll(int parallelism) throws WxErrorException;
+
     /**
      * <pre>
      * 修改门店服务信息
@@ -6,6 +6,7 @@ import me.chanjar.weixin.open.bean.template.WxOpenTemplateIndustry;
 import me.chanjar.weixin.open.bean.template.WxOpenTemplateMessage;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * <pre>
@@ -49,6 +50,13 @@ public interface WxOpenTemplateMsgService {
      */
     String sendTemplateMsg(WxOpenTemplateMessage templateMessage) throws WxErrorException;
 
+    /**
+     * {@link #sendTemplateMsg(WxOpenTemplateMessage)} 的非阻塞版本
+     *
+     * @return 消息Id
+     */
+    CompletableFuture<String> sendTemplateMsgAsync(WxOpenTemplateMessage templateMessage);
+
     /**
      * <pre>
      * 获得模板ID
@@ -2,8 +2,10 @@ package me.chanjar.weixin.open.api;
 
 import me.chanjar.weixin.common.exception.WxErrorException;
 import me.chanjar.weixin.open.bean.result.WxOpenUserBlacklistGetResult;
+import me.chanjar.weixin.open.util.WxOpenPaginator;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author miller
@@ -17,6 +19,20 @@ public interface WxOpenUserBlacklistService {
      */
     WxOpenUserBlacklistGetResult getBlacklist(String nextOpenid) throws WxErrorException;
 
+    /**
+     * {@link #getBlacklist(String)} 的非阻塞版本
+     */
+    CompletableFuture<WxOpenUserBlacklistGetResult> getBlacklistAsync(String nextOpenid);
+
+    /**
+     * <pre>
+     * 从头逐页处理黑名单列表，处理当前页的同时已经在拉取下一页
+     * </pre>
+     *
+     * @param handler 对每一页的处理
+     */
+    void forEachBlacklistPage(WxOpenPaginator.PageHandler<WxOpenUserBlacklistGetResult> handler) throws WxErrorException;
+
     /**
      * <pre>
      *   拉黑用户
@@ -6,6 +6,7 @@ import me.chanjar.weixin.open.bean.result.WxOpenUser;
 import me.chanjar.weixin.open.bean.result.WxOpenUserList;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 用户管理相关操作接口
@@ -52,6 +53,14 @@ public interface WxOpenUserService {
      */
     WxOpenUser userInfo(String openid, String lang) throws WxErrorException;
 
+    /**
+     * {@link #userInfo(String, String)} 的非阻塞版本
+     *
+     * @param openid 用户openid
+     * @param lang   语言，zh_CN 简体(默认)，zh_TW 繁体，en 英语
+     */
+    CompletableFuture<WxOpenUser> userInfoAsync(String openid, String lang);
+
     /**
      * <pre>
      * 获取用户基本信息列表
@@ -78,6 +87,13 @@ public interface WxOpenUserService {
      */
     List<WxOpenUser> userInfoList(WxOpenUserQuery userQuery) throws WxErrorException;
 
+    /**
+     * {@link #userInfoList(WxOpenUserQuery)} 的非阻塞版本
+     *
+     * @param userQuery 详细查询参数
+     */
+    CompletableFuture<List<WxOpenUser>> userInfoListAsync(WxOpenUserQuery userQuery);
+
     /**
      * <pre>
      * 获取用户列表
@@ -90,4 +106,11 @@ public interface WxOpenUserService {
      * @param nextOpenid 可选，第一个拉取的OPENID，null为从头开始拉取
      */
     WxOpenUserList userList(String nextOpenid) throws WxErrorException;
+
+    /**
+     * {@link #userList(String)} 的非阻塞版本
+     *
+     * @param nextOpenid 可选，第一个拉取的OPENID，null为从头开始拉取
+     */
+    CompletableFuture<WxOpenUserList> userListAsync(String nextOpenid);
 }
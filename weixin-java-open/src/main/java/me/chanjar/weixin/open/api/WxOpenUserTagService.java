@@ -3,8 +3,10 @@ package me.chanjar.weixin.open.api;
 import me.chanjar.weixin.common.exception.WxErrorException;
 import me.chanjar.weixin.open.bean.tag.WxTagListUser;
 import me.chanjar.weixin.open.bean.tag.WxUserTag;
+import me.chanjar.weixin.open.util.WxOpenPaginator;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 用户标签管理相关接口
@@ -63,6 +65,21 @@ public interface WxOpenUserTagService {
     WxTagListUser tagListUser(Long tagId, String nextOpenid)
             throws WxErrorException;
 
+    /**
+     * {@link #tagListUser(Long, String)} 的非阻塞版本
+     */
+    CompletableFuture<WxTagListUser> tagListUserAsync(Long tagId, String nextOpenid);
+
+    /**
+     * <pre>
+     * 从头逐页处理标签下的粉丝列表，处理当前页的同时已经在拉取下一页
+     * </pre>
+     *
+     * @param tagId   标签id
+     * @param handler 对每一页的处理
+     */
+    void forEachTagListUserPage(Long tagId, WxOpenPaginator.PageHandler<WxTagListUser> handler) throws WxErrorException;
+
     /**
      * <pre>
      * 批量为用户打标签
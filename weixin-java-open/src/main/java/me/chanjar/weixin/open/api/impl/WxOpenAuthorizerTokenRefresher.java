@@ -0,0 +1,284 @@
+package me.chanjar.weixin.open.api.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import me.chanjar.weixin.common.exception.WxErrorException;
+import me.chanjar.weixin.open.api.WxOpenAuthorizerTokenStorage;
+import me.chanjar.weixin.open.api.WxOpenService;
+import me.chanjar.weixin.open.bean.component.WxOpenAuthorizationAccessToken;
+import me.chanjar.weixin.open.bean.component.WxOpenJsapiTicket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * 授权方令牌的后台刷新器
+ * 每个授权方在令牌过期前 refreshAheadMillis 再提前一个随机抖动(0 ~ jitterMillis)的时间刷新令牌和jsapi_ticket，
+ * 请求线程只从 {@link WxOpenAuthorizerTokenStorage} 中读取，不会因为等待刷新而阻塞。
+ * 多个节点共用同一个存储时，抖动让各节点的刷新时间错开，先到的节点刷新之后，其他节点发现令牌还没到刷新时间就只重新排期
+ * </pre>
+ */
+public class WxOpenAuthorizerTokenRefresher {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final WxOpenService wxOpenService;
+
+    private final WxOpenAuthorizerTokenStorage tokenStorage;
+
+    private final ConcurrentMap<String, ScheduledFuture<?>> scheduledRefreshes = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, PendingRefresh> pendingRefreshes = new ConcurrentHashMap<>();
+
+    private volatile ScheduledExecutorService scheduler;
+
+    private volatile long refreshAheadMillis = 10 * 60 * 1000L;
+
+    private volatile long jitterMillis = 5 * 60 * 1000L;
+
+    private volatile long retryDelayMillis = 60 * 1000L;
+
+    private volatile boolean refreshJsapiTicket = true;
+
+    private int threads = 2;
+
+    public WxOpenAuthorizerTokenRefresher(WxOpenService wxOpenService, WxOpenAuthorizerTokenStorage tokenStorage) {
+        this.wxOpenService = wxOpenService;
+        this.tokenStorage = tokenStorage;
+    }
+
+    public WxOpenAuthorizerTokenStorage getTokenStorage() {
+        return this.tokenStorage;
+    }
+
+    /**
+     * 启动刷新线程，并为存储中已有的授权方安排刷新
+     */
+    public synchronized void start() {
+        if (this.scheduler != null) {
+            return;
+        }
+        this.scheduler = Executors.newScheduledThreadPool(this.threads,
+                new ThreadFactoryBuilder().setNameFormat("wx-open-token-refresh-%d").setDaemon(true).build());
+        for (String authorizerAppId : this.tokenStorage.getAuthorizerAppIds()) {
+            schedule(authorizerAppId, delayUntilRefresh(authorizerAppId));
+        }
+    }
+
+    public synchronized void shutdown() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+            this.scheduler = null;
+        }
+        this.scheduledRefreshes.clear();
+        for (PendingRefresh pending : this.pendingRefreshes.values()) {
+            pending.future.cancel(false);
+        }
+        this.pendingRefreshes.clear();
+    }
+
+    /**
+     * 公众号授权(或更新授权)后保存它的令牌，并开始定时刷新
+     */
+    public void register(String authorizerAppId, WxOpenAuthorizationAccessToken accessToken) {
+        this.tokenStorage.updateAccessToken(authorizerAppId, accessToken.getAuthorizerAccessToken(),
+                accessToken.getExpiresIn(), accessToken.getAuthorizerRefreshToken());
+        schedule(authorizerAppId, delayUntilRefresh(authorizerAppId));
+    }
+
+    /**
+     * 公众号取消授权后停止刷新并删除它的令牌
+     */
+    public void unregister(String authorizerAppId) {
+        ScheduledFuture<?> future = this.scheduledRefreshes.remove(authorizerAppId);
+        if (future != null) {
+            future.cancel(false);
+        }
+        this.tokenStorage.removeAuthorizer(authorizerAppId);
+    }
+
+    /**
+     * 直接返回存储中的令牌，不等待刷新。令牌已过期(例如接口返回40001后被作废)时安排一次立即刷新
+     */
+    public String getAccessToken(String authorizerAppId) {
+        if (this.tokenStorage.getAccessTokenExpiresTime(authorizerAppId) <= System.currentTimeMillis()) {
+            refreshNow(authorizerAppId);
+        }
+        return this.tokenStorage.getAccessToken(authorizerAppId);
+    }
+
+    /**
+     * 直接返回存储中的jsapi_ticket，不等待刷新。已过期时安排一次立即刷新
+     */
+    public String getJsapiTicket(String authorizerAppId) {
+        if (this.tokenStorage.getJsapiTicketExpiresTime(authorizerAppId) <= System.currentTimeMillis()) {
+            refreshNow(authorizerAppId);
+        }
+        return this.tokenStorage.getJsapiTicket(authorizerAppId);
+    }
+
+    /**
+     * 安排立即刷新，已经有一个到期或正在执行的刷新时不重复安排
+     */
+    public void refreshNow(String authorizerAppId) {
+        ScheduledFuture<?> future = this.scheduledRefreshes.get(authorizerAppId);
+        if (future != null && !future.isDone() && future.getDelay(TimeUnit.MILLISECONDS) <= 0) {
+            return;
+        }
+        schedule(authorizerAppId, 0);
+    }
+
+    /**
+     * 安排立即刷新，返回的future在存储中有了未过期的令牌后完成，同一授权方的并发调用共用同一次刷新。
+     * 用于令牌被作废(40001/42001)或存储中还没有这个授权方、没有令牌可用的情况
+     *
+     * @param refreshToken 存储中还没有这个授权方的刷新令牌时使用
+     */
+    public CompletableFuture<String> refreshNow(String authorizerAppId, String refreshToken) {
+        if (this.scheduler == null) {
+            CompletableFuture<String> notStarted = new CompletableFuture<>();
+            notStarted.completeExceptionally(new IllegalStateException("令牌刷新器还没有启动"));
+            return notStarted;
+        }
+        PendingRefresh pending = this.pendingRefreshes.computeIfAbsent(authorizerAppId, appId -> new PendingRefresh(refreshToken));
+        refreshNow(authorizerAppId);
+        return pending.future;
+    }
+
+    private void refresh(String authorizerAppId) {
+        PendingRefresh pending = this.pendingRefreshes.get(authorizerAppId);
+        try {
+            String refreshToken = this.tokenStorage.getRefreshToken(authorizerAppId);
+            if (refreshToken == null && pending != null) {
+                refreshToken = pending.refreshToken;
+            }
+            if (refreshToken == null) {
+                // 已取消授权
+                this.scheduledRefreshes.remove(authorizerAppId);
+                if (pending != null && this.pendingRefreshes.remove(authorizerAppId, pending)) {
+                    pending.future.completeExceptionally(new IllegalStateException("授权方[" + authorizerAppId + "]没有刷新令牌"));
+                }
+                return;
+            }
+
+            if (isDue(this.tokenStorage.getAccessTokenExpiresTime(authorizerAppId))) {
+                WxOpenAuthorizationAccessToken accessToken = this.wxOpenService.refreshAuthorizerAccessToken(authorizerAppId, refreshToken);
+                this.tokenStorage.updateAccessToken(authorizerAppId, accessToken.getAuthorizerAccessToken(),
+                        accessToken.getExpiresIn(), accessToken.getAuthorizerRefreshToken());
+            }
+            if (this.refreshJsapiTicket && isDue(this.tokenStorage.getJsapiTicketExpiresTime(authorizerAppId))) {
+                WxOpenJsapiTicket jsapiTicket = this.wxOpenService.getAuthorizerJsapiTicket(this.tokenStorage.getAccessToken(authorizerAppId));
+                this.tokenStorage.updateJsapiTicket(authorizerAppId, jsapiTicket.getTicket(), jsapiTicket.getExpiresIn());
+            }
+            completePending(authorizerAppId);
+            schedule(authorizerAppId, delayUntilRefresh(authorizerAppId));
+        } catch (WxErrorException | RuntimeException e) {
+            this.logger.error("授权方[{}]令牌刷新失败，{}ms 后重试", authorizerAppId, this.retryDelayMillis, e);
+            PendingRefresh failed = this.pendingRefreshes.remove(authorizerAppId);
+            if (failed != null) {
+                failed.future.completeExceptionally(e);
+            }
+            schedule(authorizerAppId, this.retryDelayMillis);
+        }
+    }
+
+    /**
+     * 本次刷新开始之后令牌才被作废时，存储中的令牌仍是过期的，等待中的调用方留给紧接着的下一次刷新
+     */
+    private void completePending(String authorizerAppId) {
+        PendingRefresh pending = this.pendingRefreshes.get(authorizerAppId);
+        if (pending != null && this.tokenStorage.getAccessTokenExpiresTime(authorizerAppId) > System.currentTimeMillis()
+                && this.pendingRefreshes.remove(authorizerAppId, pending)) {
+            pending.future.complete(this.tokenStorage.getAccessToken(authorizerAppId));
+        }
+    }
+
+    /**
+     * 到了抖动范围内最早的刷新时间就算到期，保证按抖动提前执行的刷新一定会刷新
+     */
+    private boolean isDue(long expiresTime) {
+        return expiresTime - this.refreshAheadMillis - this.jitterMillis <= System.currentTimeMillis();
+    }
+
+    private long delayUntilRefresh(String authorizerAppId) {
+        long expiresTime = this.tokenStorage.getAccessTokenExpiresTime(authorizerAppId);
+        if (this.refreshJsapiTicket) {
+            expiresTime = Math.min(expiresTime, this.tokenStorage.getJsapiTicketExpiresTime(authorizerAppId));
+        }
+        long jitter = this.jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(this.jitterMillis) : 0;
+        return Math.max(0, expiresTime - this.refreshAheadMillis - jitter - System.currentTimeMillis());
+    }
+
+    private void schedule(String authorizerAppId, long delayMillis) {
+        ScheduledExecutorService scheduler = this.scheduler;
+        if (scheduler == null) {
+            // 还没有启动，启动时会为存储中的所有授权方安排刷新
+            return;
+        }
+        try {
+            // 在compute中替换，避免刚安排的刷新在放入map之前就执行完并安排了下一次，随后又被这里覆盖掉
+            this.scheduledRefreshes.compute(authorizerAppId, (appId, previous) -> {
+                if (previous != null) {
+                    // 正在执行的刷新不会被中断
+                    previous.cancel(false);
+                }
+                return scheduler.schedule(() -> refresh(appId), delayMillis, TimeUnit.MILLISECONDS);
+            });
+        } catch (RejectedExecutionException e) {
+            // 已经关闭
+        }
+    }
+
+    /**
+     * 令牌过期前多久开始刷新(毫秒)，默认10分钟
+     */
+    public void setRefreshAheadMillis(long refreshAheadMillis) {
+        this.refreshAheadMillis = refreshAheadMillis;
+    }
+
+    /**
+     * 刷新时间的随机抖动范围(毫秒)，默认5分钟
+     */
+    public void setJitterMillis(long jitterMillis) {
+        this.jitterMillis = jitterMillis;
+    }
+
+    /**
+     * 刷新失败后的重试间隔(毫秒)，默认1分钟
+     */
+    public void setRetryDelayMillis(long retryDelayMillis) {
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    /**
+     * 是否同时刷新jsapi_ticket，默认是
+     */
+    public void setRefreshJsapiTicket(boolean refreshJsapiTicket) {
+        this.refreshJsapiTicket = refreshJsapiTicket;
+    }
+
+    /**
+     * 刷新线程数，默认2个，需要在 {@link #start()} 之前设置
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    private static class PendingRefresh {
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+        private final String refreshToken;
+
+        private PendingRefresh(String refreshToken) {
+            this.refreshToken = refreshToken;
+        }
+    }
+}
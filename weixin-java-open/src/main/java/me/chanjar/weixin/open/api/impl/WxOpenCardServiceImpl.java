@@ -19,7 +19,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Created by Binary Wang on 2016/7/27.
@@ -31,8 +32,19 @@ public class WxOpenCardServiceImpl implements WxOpenCardService {
 
     private WxOpenService wxOpenService;
 
-    public WxOpenCardServiceImpl(WxOpenService wxOpenService) {
+    private final WxOpenTicketRefresher cardApiTicketRefresher;
+
+    /**
+     * @param wxOpenService 微信服务
+     * @param scheduler     安排卡券api_ticket的后台刷新
+     * @param worker        执行后台的getticket请求
+     */
+    public WxOpenCardServiceImpl(WxOpenService wxOpenService, ScheduledExecutorService scheduler, Executor worker) {
         this.wxOpenService = wxOpenService;
+        this.cardApiTicketRefresher = new WxOpenTicketRefresher("卡券api_ticket",
+                () -> this.wxOpenService.getWxOpenConfigStorage().getCardApiTicket(),
+                () -> this.wxOpenService.getWxOpenConfigStorage().getCardApiTicketExpiresTime(), this::loadCardApiTicket,
+                scheduler, worker);
     }
 
     /**
@@ -49,7 +61,8 @@ public class WxOpenCardServiceImpl implements WxOpenCardService {
     /**
      * <pre>
      * 获得卡券api_ticket
-     * 获得时会检查卡券apiToken是否过期，如果过期了，那么就刷新一下，否则就什么都不干
+     * 读取时不加锁：快要过期时在后台刷新并先返回当前的ticket，只有已经过期或强制刷新时才等待刷新，
+     * 并发的调用方共用同一次请求
      *
      * 详情请见：http://mp.weixin.qq.com/wiki/7/aaa137b55fb2e0456bf8dd9148dd613f.html#.E9.99.84.E5.BD
      * .954-.E5.8D.A1.E5.88.B8.E6.89.A9.E5.B1.95.E5.AD.97.E6.AE.B5.E5.8F.8A.E7.AD.BE.E5.90.8D.E7.94
@@ -61,27 +74,17 @@ public class WxOpenCardServiceImpl implements WxOpenCardService {
      */
     @Override
     public String getCardApiTicket(boolean forceRefresh) throws WxErrorException {
-        Lock lock = wxOpenService.getWxOpenConfigStorage().getCardApiTicketLock();
-        try {
-            lock.lock();
-
-            if (forceRefresh) {
-                this.wxOpenService.getWxOpenConfigStorage().expireCardApiTicket();
-            }
-
-            if (this.wxOpenService.getWxOpenConfigStorage().isCardApiTicketExpired()) {
-                String url = "https://api.weixin.qq.com/cgi-bin/ticket/getticket?type=wx_card";
-                String responseContent = this.wxOpenService.execute(new SimpleGetRequestExecutor(), url, null);
-                JsonElement tmpJsonElement = new JsonParser().parse(responseContent);
-                JsonObject tmpJsonObject = tmpJsonElement.getAsJsonObject();
-                String cardApiTicket = tmpJsonObject.get("ticket").getAsString();
-                int expiresInSeconds = tmpJsonObject.get("expires_in").getAsInt();
-                this.wxOpenService.getWxOpenConfigStorage().updateCardApiTicket(cardApiTicket, expiresInSeconds);
-            }
-        } finally {
-            lock.unlock();
-        }
-        return this.wxOpenService.getWxOpenConfigStorage().getCardApiTicket();
+        return this.cardApiTicketRefresher.get(forceRefresh);
+    }
+
+    private void loadCardApiTicket() throws WxErrorException {
+        String url = "https://api.weixin.qq.com/cgi-bin/ticket/getticket?type=wx_card";
+        String responseContent = this.wxOpenService.execute(new SimpleGetRequestExecutor(), url, null);
+        JsonElement tmpJsonElement = new JsonParser().parse(responseContent);
+        JsonObject tmpJsonObject = tmpJsonElement.getAsJsonObject();
+        String cardApiTicket = tmpJsonObject.get("ticket").getAsString();
+        int expiresInSeconds = tmpJsonObject.get("expires_in").getAsInt();
+        this.wxOpenService.getWxOpenConfigStorage().updateCardApiTicket(cardApiTicket, expiresInSeconds);
     }
 
     /**
@@ -152,7 +155,7 @@ public class WxOpenCardServiceImpl implements WxOpenCardService {
         param.addProperty("check_consume", checkConsume);
         String responseContent = this.wxOpenService.post(url, param.toString());
         JsonElement tmpJsonElement = new JsonParser().parse(responseContent);
-        return WxOpenGsonBuilder.INSTANCE.create().fromJson(tmpJsonElement,
+        return WxOpenGsonBuilder.create().fromJson(tmpJsonElement,
                 new TypeToken<WxOpenCardResult>() {
                 }.getType());
     }
@@ -211,7 +214,7 @@ public class WxOpenCardServiceImpl implements WxOpenCardService {
         param.addProperty("is_mark", isMark);
         String responseContent = this.wxOpenService.post(url, param.toString());
         JsonElement tmpJsonElement = new JsonParser().parse(responseContent);
-        WxOpenCardResult cardResult = WxOpenGsonBuilder.INSTANCE.create().fromJson(tmpJsonElement,
+        WxOpenCardResult cardResult = WxOpenGsonBuilder.create().fromJson(tmpJsonElement,
                 new TypeToken<WxOpenCardResult>() {
                 }.getType());
         if (!cardResult.getErrorCode().equals("0")) {
@@ -16,6 +16,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Binary Wang
@@ -72,6 +73,13 @@ public class WxOpenKefuServiceImpl implements WxOpenKefuService {
         return responseContent != null;
     }
 
+    @Override
+    public CompletableFuture<Boolean> sendKefuMessageAsync(WxOpenKefuMessage message) {
+        String url = "https://api.weixin.qq.com/cgi-bin/message/custom/send";
+        return this.wxOpenService.postAsync(url, message.toJson())
+                .thenApply(responseContent -> responseContent != null);
+    }
+
     @Override
     public WxOpenKfOnlineList kfOnlineList() throws WxErrorException {
         String url = API_URL_PREFIX_WITH_CGI_BIN + "/getonlinekflist";
@@ -5,8 +5,10 @@ import me.chanjar.weixin.common.api.WxConsts;
 import me.chanjar.weixin.common.bean.result.WxError;
 import me.chanjar.weixin.common.bean.result.WxMediaUploadResult;
 import me.chanjar.weixin.common.exception.WxErrorException;
-import me.chanjar.weixin.common.util.fs.FileUtils;
+import me.chanjar.weixin.common.util.http.InputStreamData;
+import me.chanjar.weixin.common.util.http.MediaBytesDownloadRequestExecutor;
 import me.chanjar.weixin.common.util.http.MediaDownloadRequestExecutor;
+import me.chanjar.weixin.common.util.http.MediaInputStreamUploadRequestExecutor;
 import me.chanjar.weixin.common.util.http.MediaUploadRequestExecutor;
 import me.chanjar.weixin.open.api.WxOpenMaterialService;
 import me.chanjar.weixin.open.api.WxOpenService;
@@ -17,7 +19,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.IOException;
 import java.io.InputStream;
 import java.util.UUID;
 
@@ -36,12 +37,17 @@ public class WxOpenMaterialServiceImpl implements WxOpenMaterialService {
 
     @Override
     public WxMediaUploadResult mediaUpload(String mediaType, String fileType, InputStream inputStream) throws WxErrorException {
-        try {
-            return this.mediaUpload(mediaType, FileUtils.createTmpFile(inputStream, UUID.randomUUID().toString(), fileType));
-        } catch (IOException e) {
-            this.logger.error("素材上传失败,{}", e.getMessage());
-            throw new WxErrorException(WxError.newBuilder().setErrorMsg(e.getMessage()).build());
-        }
+        return mediaUpload(mediaType, new InputStreamData(inputStream, UUID.randomUUID().toString() + '.' + fileType));
+    }
+
+    @Override
+    public WxMediaUploadResult mediaUpload(String mediaType, String fileType, byte[] data) throws WxErrorException {
+        return mediaUpload(mediaType, new InputStreamData(data, UUID.randomUUID().toString() + '.' + fileType));
+    }
+
+    private WxMediaUploadResult mediaUpload(String mediaType, InputStreamData data) throws WxErrorException {
+        String url = MEDIA_API_URL_PREFIX + "/upload?type=" + mediaType;
+        return this.wxOpenService.execute(new MediaInputStreamUploadRequestExecutor(), url, data);
     }
 
     @Override
@@ -56,6 +62,12 @@ public class WxOpenMaterialServiceImpl implements WxOpenMaterialService {
         return this.wxOpenService.execute(new MediaDownloadRequestExecutor(this.wxOpenService.getWxOpenConfigStorage().getTmpDirFile()), url, "media_id=" + media_id);
     }
 
+    @Override
+    public byte[] mediaDownloadBytes(String media_id) throws WxErrorException {
+        String url = MEDIA_API_URL_PREFIX + "/get";
+        return this.wxOpenService.execute(new MediaBytesDownloadRequestExecutor(), url, "media_id=" + media_id);
+    }
+
     @Override
     public WxOpenMaterialUploadResult materialNewsUpload(WxOpenMaterialNews news) throws WxErrorException {
         if (news == null || news.isEmpty()) {
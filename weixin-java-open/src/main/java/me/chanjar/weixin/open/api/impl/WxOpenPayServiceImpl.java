@@ -1,37 +1,30 @@
 package me.chanjar.weixin.open.api.impl;
 
-import com.thoughtworks.xstream.XStream;
 import me.chanjar.weixin.common.bean.result.WxError;
 import me.chanjar.weixin.common.exception.WxErrorException;
 import me.chanjar.weixin.common.util.BeanUtils;
-import me.chanjar.weixin.common.util.xml.XStreamInitializer;
 import me.chanjar.weixin.open.api.WxOpenPayService;
 import me.chanjar.weixin.open.api.WxOpenService;
 import me.chanjar.weixin.open.bean.pay.WxPayJsSDKCallback;
 import me.chanjar.weixin.open.bean.pay.request.*;
 import me.chanjar.weixin.open.bean.pay.result.*;
-import org.apache.commons.codec.digest.DigestUtils;
+import me.chanjar.weixin.open.util.crypto.WxPaySignUtils;
+import me.chanjar.weixin.open.util.http.WxPayHttpClientManager;
+import me.chanjar.weixin.open.util.xml.WxPayXmlTransformer;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.Consts;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.conn.ssl.DefaultHostnameVerifier;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.ssl.SSLContexts;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.net.ssl.SSLContext;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.security.KeyStore;
 import java.util.*;
 
 /**
@@ -47,6 +40,7 @@ public class WxOpenPayServiceImpl implements WxOpenPayService {
             "REFUND_SOURCE_UNSETTLED_FUNDS"};
     protected final Logger log = LoggerFactory.getLogger(this.getClass());
     private WxOpenService wxOpenService;
+    private volatile WxPayHttpClientManager httpClientManager = new WxPayHttpClientManager();
 
     public WxOpenPayServiceImpl(WxOpenService wxOpenService) {
         this.wxOpenService = wxOpenService;
@@ -57,21 +51,17 @@ public class WxOpenPayServiceImpl implements WxOpenPayService {
             throws WxErrorException {
         checkParameters(request);
 
-        XStream xstream = XStreamInitializer.getInstance();
-        xstream.processAnnotations(WxPayRefundRequest.class);
-        xstream.processAnnotations(WxPayRefundResult.class);
-
         request.setAppid(this.wxOpenService.getWxOpenConfigStorage().getAppId());
         String partnerId = this.wxOpenService.getWxOpenConfigStorage().getPartnerId();
         request.setMchId(partnerId);
         request.setNonceStr(System.currentTimeMillis() + "");
         request.setOpUserId(partnerId);
-        String sign = this.createSign(BeanUtils.xmlBean2Map(request), this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
+        String sign = WxPaySignUtils.createSign(request, this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
         request.setSign(sign);
 
         String url = PAY_BASE_URL + "/secapi/pay/refund";
-        String responseContent = this.executeRequestWithKeyFile(url, keyFile, xstream.toXML(request), partnerId);
-        WxPayRefundResult result = (WxPayRefundResult) xstream.fromXML(responseContent);
+        String responseContent = this.executeRequestWithKeyFile(url, keyFile, WxPayXmlTransformer.toXml(request), partnerId);
+        WxPayRefundResult result = WxPayXmlTransformer.fromXml(WxPayRefundResult.class, responseContent);
         this.checkResult(result);
         return result;
     }
@@ -83,10 +73,6 @@ public class WxOpenPayServiceImpl implements WxOpenPayService {
             throw new IllegalArgumentException("transaction_id ， out_trade_no，out_refund_no， refund_id 必须四选一");
         }
 
-        XStream xstream = XStreamInitializer.getInstance();
-        xstream.processAnnotations(WxPayRefundQueryRequest.class);
-        xstream.processAnnotations(WxPayRefundQueryResult.class);
-
         WxPayRefundQueryRequest request = new WxPayRefundQueryRequest();
         request.setOutTradeNo(StringUtils.trimToNull(outTradeNo));
         request.setTransactionId(StringUtils.trimToNull(transactionId));
@@ -97,14 +83,13 @@ public class WxOpenPayServiceImpl implements WxOpenPayService {
         request.setMchId(this.wxOpenService.getWxOpenConfigStorage().getPartnerId());
         request.setNonceStr(System.currentTimeMillis() + "");
 
-        String sign = this.createSign(BeanUtils.xmlBean2Map(request),
-                this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
+        String sign = WxPaySignUtils.createSign(request, this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
         request.setSign(sign);
 
         String url = PAY_BASE_URL + "/pay/refundquery";
 
-        String responseContent = this.executeRequest(url, xstream.toXML(request));
-        WxPayRefundQueryResult result = (WxPayRefundQueryResult) xstream.fromXML(responseContent);
+        String responseContent = this.executeRequest(url, WxPayXmlTransformer.toXml(request));
+        WxPayRefundQueryResult result = WxPayXmlTransformer.fromXml(WxPayRefundQueryResult.class, responseContent);
         result.composeRefundRecords(responseContent);
         this.checkResult(result);
         return result;
@@ -138,9 +123,7 @@ public class WxOpenPayServiceImpl implements WxOpenPayService {
     @Override
     public WxPayJsSDKCallback getJSSDKCallbackData(String xmlData) throws WxErrorException {
         try {
-            XStream xstream = XStreamInitializer.getInstance();
-            xstream.alias("xml", WxPayJsSDKCallback.class);
-            return (WxPayJsSDKCallback) xstream.fromXML(xmlData);
+            return WxPayXmlTransformer.fromXml(WxPayJsSDKCallback.class, xmlData);
         } catch (Exception e) {
             e.printStackTrace();
             throw new WxErrorException(WxError.newBuilder().setErrorMsg("发生异常" + e.getMessage()).build());
@@ -150,24 +133,19 @@ public class WxOpenPayServiceImpl implements WxOpenPayService {
     @Override
     public boolean checkJSSDKCallbackDataSignature(Map<String, String> kvm,
                                                    String signature) {
-        return signature.equals(this.createSign(kvm,
+        return signature.equals(WxPaySignUtils.createSign(kvm,
                 this.wxOpenService.getWxOpenConfigStorage().getPartnerKey()));
     }
 
     @Override
     public WxPaySendRedpackResult sendRedpack(WxPaySendRedpackRequest request, File keyFile)
             throws WxErrorException {
-        XStream xstream = XStreamInitializer.getInstance();
-        xstream.processAnnotations(WxPaySendRedpackRequest.class);
-        xstream.processAnnotations(WxPaySendRedpackResult.class);
-
         request.setWxAppid(this.wxOpenService.getWxOpenConfigStorage().getAppId());
         String mchId = this.wxOpenService.getWxOpenConfigStorage().getPartnerId();
         request.setMchId(mchId);
         request.setNonceStr(System.currentTimeMillis() + "");
 
-        String sign = this.createSign(BeanUtils.xmlBean2Map(request),
-                this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
+        String sign = WxPaySignUtils.createSign(request, this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
         request.setSign(sign);
 
         String url = PAY_BASE_URL + "/mmpaymkttransfers/sendredpack";
@@ -176,19 +154,14 @@ public class WxOpenPayServiceImpl implements WxOpenPayService {
             url = PAY_BASE_URL + "/mmpaymkttransfers/sendgroupredpack";
         }
 
-        String responseContent = this.executeRequestWithKeyFile(url, keyFile, xstream.toXML(request), mchId);
-        WxPaySendRedpackResult result = (WxPaySendRedpackResult) xstream
-                .fromXML(responseContent);
+        String responseContent = this.executeRequestWithKeyFile(url, keyFile, WxPayXmlTransformer.toXml(request), mchId);
+        WxPaySendRedpackResult result = WxPayXmlTransformer.fromXml(WxPaySendRedpackResult.class, responseContent);
         this.checkResult(result);
         return result;
     }
 
     @Override
     public WxPayRedpackQueryResult queryRedpack(String mchBillNo, File keyFile) throws WxErrorException {
-        XStream xstream = XStreamInitializer.getInstance();
-        xstream.processAnnotations(WxPayRedpackQueryRequest.class);
-        xstream.processAnnotations(WxPayRedpackQueryResult.class);
-
         WxPayRedpackQueryRequest request = new WxPayRedpackQueryRequest();
         request.setMchBillNo(mchBillNo);
         request.setBillType("MCHT");
@@ -198,41 +171,16 @@ public class WxOpenPayServiceImpl implements WxOpenPayService {
         request.setMchId(mchId);
         request.setNonceStr(System.currentTimeMillis() + "");
 
-        String sign = this.createSign(BeanUtils.xmlBean2Map(request),
-                this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
+        String sign = WxPaySignUtils.createSign(request, this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
         request.setSign(sign);
 
         String url = PAY_BASE_URL + "/mmpaymkttransfers/gethbinfo";
-        String responseContent = this.executeRequestWithKeyFile(url, keyFile, xstream.toXML(request), mchId);
-        WxPayRedpackQueryResult result = (WxPayRedpackQueryResult) xstream.fromXML(responseContent);
+        String responseContent = this.executeRequestWithKeyFile(url, keyFile, WxPayXmlTransformer.toXml(request), mchId);
+        WxPayRedpackQueryResult result = WxPayXmlTransformer.fromXml(WxPayRedpackQueryResult.class, responseContent);
         this.checkResult(result);
         return result;
     }
 
-    /**
-     * 微信公众号支付签名算法(详见:https://pay.weixin.qq.com/wiki/doc/api/tools/cash_coupon.php?chapter=4_3)
-     *
-     * @param packageParams 原始参数
-     * @param signKey       加密Key(即 商户Key)
-     * @return 签名字符串
-     */
-    private String createSign(Map<String, String> packageParams, String signKey) {
-        SortedMap<String, String> sortedMap = new TreeMap<>(packageParams);
-
-        StringBuilder toSign = new StringBuilder();
-        for (String key : sortedMap.keySet()) {
-            String value = packageParams.get(key);
-            if (null != value && !"".equals(value) && !"sign".equals(key)
-                    && !"key".equals(key)) {
-                toSign.append(key + "=" + value + "&");
-            }
-        }
-
-        toSign.append("key=" + signKey);
-
-        return DigestUtils.md5Hex(toSign.toString()).toUpperCase();
-    }
-
     @Override
     public WxPayOrderQueryResult queryOrder(String transactionId, String outTradeNo) throws WxErrorException {
         if ((StringUtils.isBlank(transactionId) && StringUtils.isBlank(outTradeNo)) ||
@@ -240,10 +188,6 @@ public class WxOpenPayServiceImpl implements WxOpenPayService {
             throw new IllegalArgumentException("transaction_id 和 out_trade_no 不能同时存在或同时为空，必须二选一");
         }
 
-        XStream xstream = XStreamInitializer.getInstance();
-        xstream.processAnnotations(WxPayOrderQueryRequest.class);
-        xstream.processAnnotations(WxPayOrderQueryResult.class);
-
         WxPayOrderQueryRequest request = new WxPayOrderQueryRequest();
         request.setOutTradeNo(StringUtils.trimToNull(outTradeNo));
         request.setTransactionId(StringUtils.trimToNull(transactionId));
@@ -251,14 +195,13 @@ public class WxOpenPayServiceImpl implements WxOpenPayService {
         request.setMchId(this.wxOpenService.getWxOpenConfigStorage().getPartnerId());
         request.setNonceStr(System.currentTimeMillis() + "");
 
-        String sign = this.createSign(BeanUtils.xmlBean2Map(request),
-                this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
+        String sign = WxPaySignUtils.createSign(request, this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
         request.setSign(sign);
 
         String url = PAY_BASE_URL + "/pay/orderquery";
 
-        String responseContent = this.executeRequest(url, xstream.toXML(request));
-        WxPayOrderQueryResult result = (WxPayOrderQueryResult) xstream.fromXML(responseContent);
+        String responseContent = this.executeRequest(url, WxPayXmlTransformer.toXml(request));
+        WxPayOrderQueryResult result = WxPayXmlTransformer.fromXml(WxPayOrderQueryResult.class, responseContent);
         result.composeCoupons(responseContent);
         this.checkResult(result);
         return result;
@@ -270,24 +213,19 @@ public class WxOpenPayServiceImpl implements WxOpenPayService {
             throw new IllegalArgumentException("out_trade_no 不能为空");
         }
 
-        XStream xstream = XStreamInitializer.getInstance();
-        xstream.processAnnotations(WxPayOrderCloseRequest.class);
-        xstream.processAnnotations(WxPayOrderCloseResult.class);
-
         WxPayOrderCloseRequest request = new WxPayOrderCloseRequest();
         request.setOutTradeNo(StringUtils.trimToNull(outTradeNo));
         request.setAppid(this.wxOpenService.getWxOpenConfigStorage().getAppId());
         request.setMchId(this.wxOpenService.getWxOpenConfigStorage().getPartnerId());
         request.setNonceStr(System.currentTimeMillis() + "");
 
-        String sign = this.createSign(BeanUtils.xmlBean2Map(request),
-                this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
+        String sign = WxPaySignUtils.createSign(request, this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
         request.setSign(sign);
 
         String url = PAY_BASE_URL + "/pay/closeorder";
 
-        String responseContent = this.executeRequest(url, xstream.toXML(request));
-        WxPayOrderCloseResult result = (WxPayOrderCloseResult) xstream.fromXML(responseContent);
+        String responseContent = this.executeRequest(url, WxPayXmlTransformer.toXml(request));
+        WxPayOrderCloseResult result = WxPayXmlTransformer.fromXml(WxPayOrderCloseResult.class, responseContent);
         this.checkResult(result);
 
         return result;
@@ -298,23 +236,17 @@ public class WxOpenPayServiceImpl implements WxOpenPayService {
             throws WxErrorException {
         checkParameters(request);
 
-        XStream xstream = XStreamInitializer.getInstance();
-        xstream.processAnnotations(WxPayUnifiedOrderRequest.class);
-        xstream.processAnnotations(WxPayUnifiedOrderResult.class);
-
         request.setAppid(this.wxOpenService.getWxOpenConfigStorage().getAppId());
         request.setMchId(this.wxOpenService.getWxOpenConfigStorage().getPartnerId());
         request.setNonceStr(System.currentTimeMillis() + "");
 
-        String sign = this.createSign(BeanUtils.xmlBean2Map(request),
-                this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
+        String sign = WxPaySignUtils.createSign(request, this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
         request.setSign(sign);
 
         String url = PAY_BASE_URL + "/pay/unifiedorder";
 
-        String responseContent = this.executeRequest(url, xstream.toXML(request));
-        WxPayUnifiedOrderResult result = (WxPayUnifiedOrderResult) xstream
-                .fromXML(responseContent);
+        String responseContent = this.executeRequest(url, WxPayXmlTransformer.toXml(request));
+        WxPayUnifiedOrderResult result = WxPayXmlTransformer.fromXml(WxPayUnifiedOrderResult.class, responseContent);
         this.checkResult(result);
         return result;
     }
@@ -355,7 +287,7 @@ public class WxOpenPayServiceImpl implements WxOpenPayService {
             payInfo.put("codeUrl", unifiedOrderResult.getCodeURL());
         }
 
-        String finalSign = this.createSign(payInfo, this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
+        String finalSign = WxPaySignUtils.createSign(payInfo, this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
         payInfo.put("paySign", finalSign);
         return payInfo;
     }
@@ -364,97 +296,80 @@ public class WxOpenPayServiceImpl implements WxOpenPayService {
     public WxEntPayResult entPay(WxEntPayRequest request, File keyFile) throws WxErrorException {
         BeanUtils.checkRequiredFields(request);
 
-        XStream xstream = XStreamInitializer.getInstance();
-        xstream.processAnnotations(WxEntPayRequest.class);
-        xstream.processAnnotations(WxEntPayResult.class);
-
         request.setMchAppid(this.wxOpenService.getWxOpenConfigStorage().getAppId());
         request.setMchId(this.wxOpenService.getWxOpenConfigStorage().getPartnerId());
         request.setNonceStr(System.currentTimeMillis() + "");
 
-        String sign = this.createSign(BeanUtils.xmlBean2Map(request), this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
+        String sign = WxPaySignUtils.createSign(request, this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
         request.setSign(sign);
 
         String url = PAY_BASE_URL + "/mmpaymkttransfers/promotion/transfers";
 
-        String responseContent = this.executeRequestWithKeyFile(url, keyFile, xstream.toXML(request), request.getMchId());
-        WxEntPayResult result = (WxEntPayResult) xstream.fromXML(responseContent);
+        String responseContent = this.executeRequestWithKeyFile(url, keyFile, WxPayXmlTransformer.toXml(request), request.getMchId());
+        WxEntPayResult result = WxPayXmlTransformer.fromXml(WxEntPayResult.class, responseContent);
         this.checkResult(result);
         return result;
     }
 
     @Override
     public WxEntPayQueryResult queryEntPay(String partnerTradeNo, File keyFile) throws WxErrorException {
-        XStream xstream = XStreamInitializer.getInstance();
-        xstream.processAnnotations(WxEntPayQueryRequest.class);
-        xstream.processAnnotations(WxEntPayQueryResult.class);
-
         WxEntPayQueryRequest request = new WxEntPayQueryRequest();
         request.setAppid(this.wxOpenService.getWxOpenConfigStorage().getAppId());
         request.setMchId(this.wxOpenService.getWxOpenConfigStorage().getPartnerId());
         request.setNonceStr(System.currentTimeMillis() + "");
 
-        String sign = this.createSign(BeanUtils.xmlBean2Map(request), this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
+        String sign = WxPaySignUtils.createSign(request, this.wxOpenService.getWxOpenConfigStorage().getPartnerKey());
         request.setSign(sign);
 
         String url = PAY_BASE_URL + "/mmpaymkttransfers/gettransferinfo";
 
-        String responseContent = this.executeRequestWithKeyFile(url, keyFile, xstream.toXML(request), request.getMchId());
-        WxEntPayQueryResult result = (WxEntPayQueryResult) xstream.fromXML(responseContent);
+        String responseContent = this.executeRequestWithKeyFile(url, keyFile, WxPayXmlTransformer.toXml(request), request.getMchId());
+        WxEntPayQueryResult result = WxPayXmlTransformer.fromXml(WxEntPayQueryResult.class, responseContent);
         this.checkResult(result);
         return result;
     }
 
     private String executeRequest(String url, String requestStr) throws WxErrorException {
+        try {
+            return this.executeRequest(this.httpClientManager.getHttpClient(), url, requestStr);
+        } catch (IOException e) {
+            this.log.error("\n[URL]:  {}\n[PARAMS]: {}\n[EXCEPTION]: {}", url, requestStr, e.getMessage());
+            throw new WxErrorException(WxError.newBuilder().setErrorCode(-1).setErrorMsg(e.getMessage()).build(), e);
+        }
+    }
+
+    private String executeRequestWithKeyFile(String url, File keyFile, String requestStr, String mchId) throws WxErrorException {
+        try {
+            return this.executeRequest(this.httpClientManager.getHttpClient(keyFile, mchId), url, requestStr);
+        } catch (Exception e) {
+            this.log.error("\n[URL]:  {}\n[PARAMS]: {}\n[EXCEPTION]: {}", url, requestStr, e.getMessage());
+            throw new WxErrorException(WxError.newBuilder().setErrorCode(-1).setErrorMsg(e.getMessage()).build(), e);
+        }
+    }
+
+    private String executeRequest(CloseableHttpClient httpclient, String url, String requestStr) throws IOException {
         HttpPost httpPost = new HttpPost(url);
         if (this.wxOpenService.getHttpProxy() != null) {
             httpPost.setConfig(RequestConfig.custom().setProxy(this.wxOpenService.getHttpProxy()).build());
         }
 
-        try (CloseableHttpClient httpclient = HttpClients.custom().build()) {
+        try {
             httpPost.setEntity(new StringEntity(new String(requestStr.getBytes("UTF-8"), "ISO-8859-1")));
-
             try (CloseableHttpResponse response = httpclient.execute(httpPost)) {
                 String result = EntityUtils.toString(response.getEntity(), Consts.UTF_8);
                 this.log.debug("\n[URL]:  {}\n[PARAMS]: {}\n[RESPONSE]: {}", url, requestStr, result);
                 return result;
             }
-        } catch (IOException e) {
-            this.log.error("\n[URL]:  {}\n[PARAMS]: {}\n[EXCEPTION]: {}", url, requestStr, e.getMessage());
-            throw new WxErrorException(WxError.newBuilder().setErrorCode(-1).setErrorMsg(e.getMessage()).build(), e);
         } finally {
             httpPost.releaseConnection();
         }
     }
 
-    private String executeRequestWithKeyFile(String url, File keyFile, String requestStr, String mchId) throws WxErrorException {
-        try (FileInputStream inputStream = new FileInputStream(keyFile)) {
-            KeyStore keyStore = KeyStore.getInstance("PKCS12");
-            keyStore.load(inputStream, mchId.toCharArray());
-
-            SSLContext sslcontext = SSLContexts.custom().loadKeyMaterial(keyStore, mchId.toCharArray()).build();
-            SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(sslcontext, new String[]{"TLSv1"}, null,
-                    new DefaultHostnameVerifier());
-
-            HttpPost httpPost = new HttpPost(url);
-            if (this.wxOpenService.getHttpProxy() != null) {
-                httpPost.setConfig(RequestConfig.custom().setProxy(this.wxOpenService.getHttpProxy()).build());
-            }
-
-            try (CloseableHttpClient httpclient = HttpClients.custom().setSSLSocketFactory(sslsf).build()) {
-                httpPost.setEntity(new StringEntity(new String(requestStr.getBytes("UTF-8"), "ISO-8859-1")));
-                try (CloseableHttpResponse response = httpclient.execute(httpPost)) {
-                    String result = EntityUtils.toString(response.getEntity(), Consts.UTF_8);
-                    this.log.debug("\n[URL]:  {}\n[PARAMS]: {}\n[RESPONSE]: {}", url, requestStr, result);
-                    return result;
-                }
-            } finally {
-                httpPost.releaseConnection();
-            }
-        } catch (Exception e) {
-            this.log.error("\n[URL]:  {}\n[PARAMS]: {}\n[EXCEPTION]: {}", url, requestStr, e.getMessage());
-            throw new WxErrorException(WxError.newBuilder().setErrorCode(-1).setErrorMsg(e.getMessage()).build(), e);
-        }
+    /**
+     * 替换支付请求使用的httpclient管理器，例如需要调整连接池大小或超时时间时
+     */
+    public void setHttpClientManager(WxPayHttpClientManager httpClientManager) {
+        this.httpClientManager = httpClientManager;
     }
 
 }
@@ -0,0 +1,307 @@
+package me.chanjar.weixin.open.api.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import me.chanjar.weixin.common.bean.result.WxError;
+import me.chanjar.weixin.common.exception.WxErrorException;
+import me.chanjar.weixin.open.api.WxOpenService;
+import me.chanjar.weixin.open.bean.result.WxOpenQrCodeTicket;
+import me.chanjar.weixin.open.bean.result.WxOpenUser;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * <pre>
+ * 推广海报用到的用户信息、二维码ticket、二维码图片和用户头像的缓存
+ * 同一个用户重复生成海报时，用户信息、ticket和图片都没有变化，直接使用缓存，不再请求微信接口和下载图片。
+ * 图片解码并缩放到海报上的尺寸后再缓存，内存中按像素占用的字节数限制总大小；
+ * 可以设置本地磁盘目录作为第二级缓存，应用重启后不用重新下载。
+ * ticket和二维码图片的有效期与ticket一致(永久二维码使用 permanentTicketTtlMillis)，用户信息和头像使用 avatarTtlMillis。
+ * 同一个key同时未命中时只有一个线程去获取，其他线程等待它的结果
+ * </pre>
+ */
+public class WxOpenPosterImageCache {
+
+    private static final long DEFAULT_MAX_IMAGE_BYTES = 64 * 1024 * 1024L;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final WxOpenService wxOpenService;
+
+    private final Cache<String, Entry<WxOpenUser>> users;
+
+    private final Cache<String, Entry<WxOpenQrCodeTicket>> tickets;
+
+    private final Cache<String, Entry<BufferedImage>> images;
+
+    private volatile File diskDirectory;
+
+    private volatile long permanentTicketTtlMillis = 7 * 24 * 60 * 60 * 1000L;
+
+    private volatile long avatarTtlMillis = 24 * 60 * 60 * 1000L;
+
+    private volatile int connectTimeoutMillis = 5000;
+
+    private volatile int readTimeoutMillis = 10000;
+
+    public WxOpenPosterImageCache(WxOpenService wxOpenService) {
+        this(wxOpenService, DEFAULT_MAX_IMAGE_BYTES);
+    }
+
+    /**
+     * @param wxOpenService 微信服务
+     * @param maxImageBytes 内存中缓存的图片最多占用的字节数
+     */
+    public WxOpenPosterImageCache(WxOpenService wxOpenService, long maxImageBytes) {
+        this.wxOpenService = wxOpenService;
+        this.users = CacheBuilder.newBuilder()
+                .maximumSize(100000)
+                .build();
+        this.tickets = CacheBuilder.newBuilder()
+                .maximumSize(100000)
+                .build();
+        this.images = CacheBuilder.newBuilder()
+                .maximumWeight(maxImageBytes)
+                .weigher((String key, Entry<BufferedImage> entry) -> entry.value.getWidth() * entry.value.getHeight() * 4)
+                .build();
+    }
+
+    /**
+     * 获取海报上使用的用户信息(昵称和头像地址)，与头像一起过期，头像地址变化后能及时换成新头像
+     *
+     * @param openid 用户的openid，与永久二维码的场景值相同
+     */
+    public WxOpenUser getUserInfo(String openid) throws WxErrorException {
+        return get(this.users, openid, () -> new Entry<>(this.wxOpenService.getUserService().userInfo(openid),
+                System.currentTimeMillis() + this.avatarTtlMillis));
+    }
+
+    /**
+     * 获取永久二维码ticket
+     *
+     * @param sceneStr 场景值
+     */
+    public WxOpenQrCodeTicket getLastTicket(String sceneStr) throws WxErrorException {
+        return get(this.tickets, sceneStr, () -> {
+            WxOpenQrCodeTicket ticket = this.wxOpenService.getQrCodeService().qrCodeCreateLastTicket(sceneStr);
+            return new Entry<>(ticket, expireTime(ticket));
+        });
+    }
+
+    /**
+     * 获取缩放到指定大小以内(保持比例)的二维码图片
+     *
+     * @param ticket 二维码ticket
+     * @param width  最大宽度
+     * @param height 最大高度
+     */
+    public BufferedImage getQrCode(WxOpenQrCodeTicket ticket, int width, int height) throws WxErrorException {
+        String key = "qrcode:" + ticket.getTicket() + ':' + width + 'x' + height;
+        return get(this.images, key, () -> {
+            String url = this.wxOpenService.getQrCodeService().qrCodePictureUrl(ticket.getTicket());
+            return loadImage(key, url, width, height, expireTime(ticket));
+        });
+    }
+
+    /**
+     * 获取缩放到指定大小以内(保持比例)的头像
+     *
+     * @param url    头像地址，为空时返回null
+     * @param width  最大宽度
+     * @param height 最大高度
+     */
+    public BufferedImage getAvatar(String url, int width, int height) throws WxErrorException {
+        if (url == null || url.isEmpty()) {
+            return null;
+        }
+        String key = "avatar:" + url + ':' + width + 'x' + height;
+        return get(this.images, key,
+                () -> loadImage(key, url, width, height, System.currentTimeMillis() + this.avatarTtlMillis));
+    }
+
+    /**
+     * 清空内存中的缓存，磁盘上的图片在过期后才会被覆盖
+     */
+    public void invalidateAll() {
+        this.users.invalidateAll();
+        this.tickets.invalidateAll();
+        this.images.invalidateAll();
+    }
+
+    public long getImageCount() {
+        return this.images.size();
+    }
+
+    /**
+     * Cache.get 会让同一个key上并发的未命中等待同一次加载；过期的条目先从缓存中移除再重新加载
+     */
+    private <T> T get(Cache<String, Entry<T>> cache, String key, Callable<Entry<T>> loader) throws WxErrorException {
+        Entry<T> entry = cache.getIfPresent(key);
+        if (entry != null) {
+            if (!entry.isExpired()) {
+                return entry.value;
+            }
+            cache.asMap().remove(key, entry);
+        }
+
+        try {
+            return cache.get(key, loader).value;
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            if (e.getCause() instanceof WxErrorException) {
+                throw (WxErrorException) e.getCause();
+            }
+            throw new WxErrorException(WxError.newBuilder().setErrorMsg(String.valueOf(e.getCause())).build());
+        }
+    }
+
+    private Entry<BufferedImage> loadImage(String key, String url, int width, int height, long expireTime) throws WxErrorException {
+        File diskFile = diskFile(key);
+        if (diskFile != null && diskFile.lastModified() > System.currentTimeMillis()) {
+            try {
+                BufferedImage image = ImageIO.read(diskFile);
+                if (image != null) {
+                    return new Entry<>(image, diskFile.lastModified());
+                }
+            } catch (IOException e) {
+                this.logger.warn("读取缓存图片 {} 失败: {}", diskFile, e.getMessage());
+            }
+        }
+
+        BufferedImage image = scale(download(url), width, height);
+        if (diskFile != null) {
+            writeDiskFile(diskFile, image, expireTime);
+        }
+        return new Entry<>(image, expireTime);
+    }
+
+    private BufferedImage download(String url) throws WxErrorException {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(this.connectTimeoutMillis);
+            connection.setReadTimeout(this.readTimeoutMillis);
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new WxErrorException(WxError.newBuilder()
+                        .setErrorMsg("图片下载失败,状态码: " + connection.getResponseCode() + ", " + url).build());
+            }
+            try (InputStream inputStream = connection.getInputStream()) {
+                BufferedImage image = ImageIO.read(inputStream);
+                if (image == null) {
+                    throw new WxErrorException(WxError.newBuilder().setErrorMsg("无法识别的图片格式: " + url).build());
+                }
+                return image;
+            }
+        } catch (IOException e) {
+            throw new WxErrorException(WxError.newBuilder().setErrorMsg(e.getMessage()).build());
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * 按比例缩放到指定大小以内，海报上绘制时不需要再次缩放
+     */
+    private static BufferedImage scale(BufferedImage image, int width, int height) {
+        double ratio = Math.min((double) width / image.getWidth(), (double) height / image.getHeight());
+        int scaledWidth = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int scaledHeight = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        BufferedImage scaled = new BufferedImage(scaledWidth, scaledHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, scaledWidth, scaledHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private File diskFile(String key) {
+        File directory = this.diskDirectory;
+        return directory == null ? null : new File(directory, DigestUtils.md5Hex(key) + ".png");
+    }
+
+    /**
+     * 先写临时文件再改名，避免其他进程读到写了一半的图片；文件的修改时间设置为过期时间
+     */
+    private void writeDiskFile(File diskFile, BufferedImage image, long expireTime) {
+        File tmpFile = new File(diskFile.getParentFile(), diskFile.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            if (ImageIO.write(image, "png", tmpFile) && tmpFile.setLastModified(expireTime)
+                    && (tmpFile.renameTo(diskFile) || (diskFile.delete() && tmpFile.renameTo(diskFile)))) {
+                return;
+            }
+            this.logger.warn("写入缓存图片 {} 失败", diskFile);
+        } catch (IOException e) {
+            this.logger.warn("写入缓存图片 {} 失败: {}", diskFile, e.getMessage());
+        }
+        tmpFile.delete();
+    }
+
+    private long expireTime(WxOpenQrCodeTicket ticket) {
+        long ttlMillis = ticket.getExpire_seconds() > 0 ? ticket.getExpire_seconds() * 1000L : this.permanentTicketTtlMillis;
+        return System.currentTimeMillis() + ttlMillis;
+    }
+
+    /**
+     * 本地磁盘缓存目录，默认为null不使用磁盘缓存
+     */
+    public void setDiskDirectory(File diskDirectory) {
+        if (diskDirectory != null && !diskDirectory.isDirectory() && !diskDirectory.mkdirs()) {
+            throw new IllegalArgumentException("无法创建缓存目录: " + diskDirectory);
+        }
+        this.diskDirectory = diskDirectory;
+    }
+
+    /**
+     * 永久二维码ticket及其图片的缓存时间，默认7天
+     */
+    public void setPermanentTicketTtlMillis(long permanentTicketTtlMillis) {
+        this.permanentTicketTtlMillis = permanentTicketTtlMillis;
+    }
+
+    /**
+     * 用户信息和头像的缓存时间，默认1天
+     */
+    public void setAvatarTtlMillis(long avatarTtlMillis) {
+        this.avatarTtlMillis = avatarTtlMillis;
+    }
+
+    public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public void setReadTimeoutMillis(int readTimeoutMillis) {
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    private static class Entry<T> {
+        private final T value;
+        private final long expireTime;
+
+        private Entry(T value, long expireTime) {
+            this.value = value;
+            this.expireTime = expireTime;
+        }
+
+        private boolean isExpired() {
+            return this.expireTime <= System.currentTimeMillis();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package me.chanjar.weixin.open.api.impl;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -20,12 +21,24 @@ import org.apache.http.HttpHost;
 import org.apache.http.conn.ssl.DefaultHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
 
 //TODO 待添加摇一摇 //微信小店 微信WIFI相关接口 //小程序
 public class WxOpenServiceImpl implements WxOpenService {
@@ -36,19 +49,53 @@ public class WxOpenServiceImpl implements WxOpenService {
 
     private static final String OAUTH2_API_URL_PREFIX = "https://api.weixin.qq.com/sns/oauth2/component";
 
+    /**
+     * 异步请求的延时重试在这里调度，避免占用异步httpclient的I/O线程
+     */
+    private static final ScheduledExecutorService ASYNC_RETRY_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("wx-open-async-retry-%d").setDaemon(true).build());
+
+    /**
+     * 异步请求需要刷新或作废令牌时在这里执行阻塞的请求和存储读写，调用方线程和httpclient的回调线程都不会被阻塞
+     */
+    private static final ExecutorService ASYNC_TOKEN_EXECUTOR = Executors.newFixedThreadPool(4,
+            new ThreadFactoryBuilder().setNameFormat("wx-open-async-token-%d").setDaemon(true).build());
+
+    /**
+     * 没有令牌可用、需要等待刷新器刷新时最多等待的时间
+     */
+    private static final long AUTHORIZER_TOKEN_WAIT_MILLIS = 10000;
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     protected WxSessionManager sessionManager = new StandardSessionManager();
 
     private WxOpenConfigStorage configStorage;
 
+    private volatile WxOpenAuthorizerTokenRefresher authorizerTokenRefresher;
+
+    /**
+     * 只负责安排jsapi_ticket、卡券api_ticket的后台刷新，不执行请求
+     */
+    private final ScheduledExecutorService ticketScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("wx-open-ticket-schedule-%d").setDaemon(true).build());
+
+    /**
+     * 执行后台的getticket请求，空闲时线程会退出
+     */
+    private final ThreadPoolExecutor ticketWorkers = newTicketWorkers();
+
+    private final WxOpenTicketRefresher jsapiTicketRefresher = new WxOpenTicketRefresher("jsapi_ticket",
+            () -> this.configStorage.getJsapiTicket(), () -> this.configStorage.getJsapiTicketExpiresTime(), this::loadJsapiTicket,
+            this.ticketScheduler, this.ticketWorkers);
+
     private WxOpenKefuService kefuService = new WxOpenKefuServiceImpl(this);
     private WxOpenMaterialService materialService = new WxOpenMaterialServiceImpl(this);
     private WxOpenMenuService menuService = new WxOpenMenuServiceImpl(this);
     private WxOpenUserService userService = new WxOpenUserServiceImpl(this);
     private WxOpenUserTagService userTagService = new WxOpenUserTagServiceImpl(this);
     private WxOpenQrcodeService qrCodeService = new WxOpenQrcodeServiceImpl(this);
-    private WxOpenCardService cardService = new WxOpenCardServiceImpl(this);
+    private WxOpenCardService cardService = new WxOpenCardServiceImpl(this, this.ticketScheduler, this.ticketWorkers);
     private WxOpenPayService payService = new WxOpenPayServiceImpl(this);
     private WxOpenStoreService storeService = new WxOpenStoreServiceImpl(this);
     private WxOpenDataCubeService dataCubeService = new WxOpenDataCubeServiceImpl(this);
@@ -62,6 +109,7 @@ public class WxOpenServiceImpl implements WxOpenService {
 
 
     private CloseableHttpClient httpClient;
+    private volatile CloseableHttpAsyncClient httpAsyncClient;
     private HttpHost httpProxy;
     private int retrySleepMillis = 1000;
     private int maxRetryTimes = 5;
@@ -79,6 +127,14 @@ public class WxOpenServiceImpl implements WxOpenService {
 
     @Override
     public String getAccessToken(boolean forceRefresh) throws WxErrorException {
+        WxOpenAuthorizerTokenRefresher refresher = this.authorizerTokenRefresher;
+        if (refresher != null) {
+            return getAuthorizerAccessToken(refresher, forceRefresh);
+        }
+        // 令牌未过期时直接返回，只有刷新令牌时才需要竞争锁
+        if (!forceRefresh && !this.configStorage.isAccessTokenExpired()) {
+            return this.configStorage.getAccessToken();
+        }
         Lock lock = this.configStorage.getAccessTokenLock();
         try {
             lock.lock();
@@ -86,13 +142,7 @@ public class WxOpenServiceImpl implements WxOpenService {
                 this.configStorage.expireAccessToken();
             }
             if (this.configStorage.isAccessTokenExpired()) {
-                String url = API_URL_PREFIX + "/api_authorizer_token?component_access_token=COMPONENT_ACCESS_TOKEN";
-                JsonObject json = new JsonObject();
-                json.addProperty("component_appid", configStorage.getComponentAppId());
-                json.addProperty("authorizer_appid", configStorage.getAppId());
-                json.addProperty("authorizer_refresh_token", configStorage.getRefreshToken());
-                String resultContent = post(url, json.toString());
-                WxOpenAuthorizationAccessToken accessToken = WxOpenAuthorizationAccessToken.fromJson(resultContent);
+                WxOpenAuthorizationAccessToken accessToken = refreshAuthorizerAccessToken(this.configStorage.getAppId(), this.configStorage.getRefreshToken());
                 this.configStorage.updateAccessToken(accessToken.getAuthorizerAccessToken(), accessToken.getExpiresIn(), accessToken.getAuthorizerRefreshToken());
             }
         } finally {
@@ -101,6 +151,66 @@ public class WxOpenServiceImpl implements WxOpenService {
         return this.configStorage.getAccessToken();
     }
 
+    /**
+     * 令牌由刷新器在后台刷新，这里不加锁也不发请求：令牌过期时让刷新器立即刷新，刷新完成前继续使用上一个令牌。
+     * 只有存储中还没有本授权方(没有令牌可用)或强制刷新时，才等待刷新器的这次刷新，并发的调用方共用同一次刷新
+     */
+    private String getAuthorizerAccessToken(WxOpenAuthorizerTokenRefresher refresher, boolean forceRefresh) throws WxErrorException {
+        String appId = this.configStorage.getAppId();
+        if (forceRefresh) {
+            refresher.getTokenStorage().expireAccessToken(appId);
+            return awaitAuthorizerAccessToken(refresher);
+        }
+        String accessToken = refresher.getAccessToken(appId);
+        if (accessToken == null) {
+            return awaitAuthorizerAccessToken(refresher);
+        }
+        return accessToken;
+    }
+
+    /**
+     * 等待刷新器刷新出本授权方的新令牌。令牌被作废后重试请求前调用，避免重试时拿到同一个已失效的令牌
+     */
+    private String awaitAuthorizerAccessToken(WxOpenAuthorizerTokenRefresher refresher) throws WxErrorException {
+        try {
+            return refresher.refreshNow(this.configStorage.getAppId(), this.configStorage.getRefreshToken())
+                    .get(AUTHORIZER_TOKEN_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof WxErrorException) {
+                throw (WxErrorException) cause;
+            }
+            throw new WxErrorException(new WxError().setErrorCode(100004).setErrorMsg(MessageFormat.format("刷新令牌失败,{0}", cause.getMessage())));
+        } catch (TimeoutException e) {
+            throw new WxErrorException(new WxError().setErrorCode(100004).setErrorMsg(MessageFormat.format("等待刷新令牌超过{0}ms", AUTHORIZER_TOKEN_WAIT_MILLIS)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WxErrorException(new WxError().setErrorCode(100003).setErrorMsg(MessageFormat.format("等待刷新令牌时被中断,{0}", e.getMessage())));
+        }
+    }
+
+    /**
+     * 作废本授权方的令牌，下一次请求时刷新
+     */
+    private void expireAccessToken() {
+        this.configStorage.expireAccessToken();
+        WxOpenAuthorizerTokenRefresher refresher = this.authorizerTokenRefresher;
+        if (refresher != null) {
+            refresher.getTokenStorage().expireAccessToken(this.configStorage.getAppId());
+        }
+    }
+
+    /**
+     * 使用刷新器时，令牌被作废后读取令牌仍会先拿到旧的令牌，重试前要等刷新器刷新出新令牌；
+     * 不使用刷新器时重试请求会自己刷新令牌
+     */
+    private void awaitRefreshedAccessToken() throws WxErrorException {
+        WxOpenAuthorizerTokenRefresher refresher = this.authorizerTokenRefresher;
+        if (refresher != null) {
+            awaitAuthorizerAccessToken(refresher);
+        }
+    }
+
     @Override
     public String getComponentAccessToken() throws WxErrorException {
         return this.getComponentAccessToken(false);
@@ -108,6 +218,9 @@ public class WxOpenServiceImpl implements WxOpenService {
 
     @Override
     public String getComponentAccessToken(boolean forceRefresh) throws WxErrorException {
+        if (!forceRefresh && !this.configStorage.isComponentAccessTokenExpired()) {
+            return this.configStorage.getComponentAccessToken();
+        }
         Lock lock = this.configStorage.getComponentAccessTokenLock();
         try {
             lock.lock();
@@ -135,27 +248,29 @@ public class WxOpenServiceImpl implements WxOpenService {
         return this.getJsapiTicket(false);
     }
 
+    /**
+     * 读取jsapi_ticket不加锁；ticket快要过期时在后台刷新，只有已过期或强制刷新时才等待(并发的调用方共用一次请求)
+     */
     @Override
     public String getJsapiTicket(boolean forceRefresh) throws WxErrorException {
-        Lock lock = this.configStorage.getJsapiTicketLock();
-        try {
-            lock.lock();
-            if (forceRefresh) {
-                this.configStorage.expireJsapiTicket();
+        WxOpenAuthorizerTokenRefresher refresher = this.authorizerTokenRefresher;
+        if (refresher != null && !forceRefresh) {
+            String appId = this.configStorage.getAppId();
+            if (refresher.getTokenStorage().getJsapiTicketExpiresTime(appId) > System.currentTimeMillis()) {
+                return refresher.getTokenStorage().getJsapiTicket(appId);
             }
-            if (this.configStorage.isJsapiTicketExpired()) {
-                String url = "https://api.weixin.qq.com/cgi-bin/ticket/getticket?type=jsapi";
-                String responseContent = execute(new SimpleGetRequestExecutor(), url, null);
-                JsonElement tmpJsonElement = JSON_PARSER.parse(responseContent);
-                JsonObject tmpJsonObject = tmpJsonElement.getAsJsonObject();
-                String jsapiTicket = tmpJsonObject.get("ticket").getAsString();
-                int expiresInSeconds = tmpJsonObject.get("expires_in").getAsInt();
-                this.configStorage.updateJsapiTicket(jsapiTicket, expiresInSeconds);
-            }
-        } finally {
-            lock.unlock();
         }
-        return this.configStorage.getJsapiTicket();
+        return this.jsapiTicketRefresher.get(forceRefresh);
+    }
+
+    private void loadJsapiTicket() throws WxErrorException {
+        String url = "https://api.weixin.qq.com/cgi-bin/ticket/getticket?type=jsapi";
+        String responseContent = execute(new SimpleGetRequestExecutor(), url, null);
+        JsonElement tmpJsonElement = JSON_PARSER.parse(responseContent);
+        JsonObject tmpJsonObject = tmpJsonElement.getAsJsonObject();
+        String jsapiTicket = tmpJsonObject.get("ticket").getAsString();
+        int expiresInSeconds = tmpJsonObject.get("expires_in").getAsInt();
+        this.configStorage.updateJsapiTicket(jsapiTicket, expiresInSeconds);
     }
 
     @Override
@@ -306,6 +421,29 @@ public class WxOpenServiceImpl implements WxOpenService {
         return WxOpenSetAuthorizerOption.fromJson(responseContent);
     }
 
+    @Override
+    public WxOpenAuthorizationAccessToken refreshAuthorizerAccessToken(String authorizerAppId, String authorizerRefreshToken) throws WxErrorException {
+        String url = API_URL_PREFIX + "/api_authorizer_token?component_access_token=COMPONENT_ACCESS_TOKEN";
+        JsonObject json = new JsonObject();
+        json.addProperty("component_appid", this.configStorage.getComponentAppId());
+        json.addProperty("authorizer_appid", authorizerAppId);
+        json.addProperty("authorizer_refresh_token", authorizerRefreshToken);
+        String responseContent = this.post(url, json.toString());
+        return WxOpenAuthorizationAccessToken.fromJson(responseContent);
+    }
+
+    @Override
+    public WxOpenJsapiTicket getAuthorizerJsapiTicket(String authorizerAccessToken) throws WxErrorException {
+        // 使用授权方自己的令牌，不能经过 execute 附加本Service的access_token
+        String url = "https://api.weixin.qq.com/cgi-bin/ticket/getticket?type=jsapi&access_token=" + authorizerAccessToken;
+        try {
+            return WxOpenJsapiTicket.fromJson(new SimpleGetRequestExecutor().execute(getHttpclient(), this.httpProxy, url, null));
+        } catch (IOException e) {
+            this.logger.error("\n[URL]:  {}\n[EXCEPTION]: {}", url, e.getMessage());
+            throw new WxErrorException(new WxError().setErrorCode(100001).setErrorMsg(MessageFormat.format("连接建立失败,{0}", e.getMessage())));
+        }
+    }
+
     @Override
     public String oauth2buildAuthorizationUrl(String redirectURI, String scope, String state) {
         StringBuilder url = new StringBuilder();
@@ -393,17 +531,15 @@ public class WxOpenServiceImpl implements WxOpenService {
         throw new WxErrorException(new WxError().setErrorCode(100002).setErrorMsg(MessageFormat.format("重试达到最大次数【{0}】,微信服务端异常，超出重试次数", this.maxRetryTimes)));
     }
 
-    protected synchronized <T, E> T executeInternal(RequestExecutor<T, E> executor, String uri, E data) throws WxErrorException {
+    /**
+     * 执行单次请求，不持有任何全局锁，多个线程可以并发地通过连接池访问微信服务端，
+     * 只有在令牌需要刷新时才会在 {@link #getAccessToken(boolean)} 中竞争令牌锁
+     */
+    protected <T, E> T executeInternal(RequestExecutor<T, E> executor, String uri, E data) throws WxErrorException {
         if (!uri.contains("component_access_token") && uri.contains("access_token=")) {
             throw new IllegalArgumentException("uri参数中不允许有access_token: " + uri);
         }
-        String uriWithAccessToken = uri;
-        if (!uri.contains("component_access_token") && !uri.contains("api_component_token")) {
-            String accessToken = this.getAccessToken(false);
-            uriWithAccessToken += uri.indexOf('?') == -1 ? "?access_token=" + accessToken : "&access_token=" + accessToken;
-        } else if (!uri.contains("api_component_token")) {
-            uriWithAccessToken = uri.replace("COMPONENT_ACCESS_TOKEN", this.getComponentAccessToken(false));
-        }
+        String uriWithAccessToken = appendAccessToken(uri);
         try {
             return executor.execute(getHttpclient(), this.httpProxy, uriWithAccessToken, data);
         } catch (WxErrorException e) {
@@ -416,8 +552,9 @@ public class WxOpenServiceImpl implements WxOpenService {
              */
             if (error.getErrorCode() == 42001 || error.getErrorCode() == 40001) {
                 // 强制设置wxOpenConfigStorage它的access token过期了，这样在下一次请求里就会刷新access token
-                this.configStorage.expireAccessToken();
+                expireAccessToken();
                 if (this.configStorage.autoRefreshToken()) {
+                    awaitRefreshedAccessToken();
                     return this.execute(executor, uri, data);
                 }
             }
@@ -434,6 +571,177 @@ public class WxOpenServiceImpl implements WxOpenService {
 
     }
 
+    @Override
+    public CompletableFuture<String> getAsync(String url, String queryParam) {
+        return executeAsync(new SimpleGetAsyncRequestExecutor(), url, queryParam);
+    }
+
+    @Override
+    public CompletableFuture<String> postAsync(String url, String postData) {
+        return executeAsync(new SimplePostAsyncRequestExecutor(), url, postData);
+    }
+
+    @Override
+    public <T, E> CompletableFuture<T> executeAsync(AsyncRequestExecutor<T, E> executor, String uri, E data) {
+        return executeAsync(executor, uri, data, 0);
+    }
+
+    private <T, E> CompletableFuture<T> executeAsync(AsyncRequestExecutor<T, E> executor, String uri, E data, int retryTimes) {
+        CompletableFuture<T> resultFuture = new CompletableFuture<>();
+        executeInternalAsync(executor, uri, data).whenComplete((result, throwable) -> {
+            if (throwable == null) {
+                this.logger.debug("\n[URL]:  {}\n[PARAMS]: {}\n[RESPONSE]: {}", uri, data, result);
+                resultFuture.complete(result);
+                return;
+            }
+            Throwable cause = unwrap(throwable);
+            if (!(cause instanceof WxErrorException)) {
+                resultFuture.completeExceptionally(cause);
+                return;
+            }
+            if (retryTimes + 1 > this.maxRetryTimes) {
+                this.logger.warn("重试达到最大次数【{}】", this.maxRetryTimes);
+                resultFuture.completeExceptionally(new WxErrorException(new WxError().setErrorCode(100002).setErrorMsg(MessageFormat.format("重试达到最大次数【{0}】,微信服务端异常，超出重试次数", this.maxRetryTimes))));
+                return;
+            }
+            // -1 系统繁忙, 延时后重试，不阻塞任何线程
+            if (((WxErrorException) cause).getError().getErrorCode() == -1) {
+                int sleepMillis = this.retrySleepMillis * (1 << retryTimes);
+                this.logger.debug("微信系统繁忙，{}ms 后重试(第{}次)", sleepMillis, retryTimes + 1);
+                ASYNC_RETRY_SCHEDULER.schedule(() -> executeAsync(executor, uri, data, retryTimes + 1)
+                        .whenComplete((retryResult, retryThrowable) -> {
+                            if (retryThrowable == null) {
+                                resultFuture.complete(retryResult);
+                            } else {
+                                resultFuture.completeExceptionally(unwrap(retryThrowable));
+                            }
+                        }), sleepMillis, TimeUnit.MILLISECONDS);
+            } else {
+                resultFuture.completeExceptionally(cause);
+            }
+        });
+        return resultFuture;
+    }
+
+    /**
+     * {@link #executeInternal} 的非阻塞版本
+     */
+    protected <T, E> CompletableFuture<T> executeInternalAsync(AsyncRequestExecutor<T, E> executor, String uri, E data) {
+        CompletableFuture<T> failedFuture = new CompletableFuture<>();
+        if (!uri.contains("component_access_token") && uri.contains("access_token=")) {
+            failedFuture.completeExceptionally(new IllegalArgumentException("uri参数中不允许有access_token: " + uri));
+            return failedFuture;
+        }
+        return appendAccessTokenAsync(uri)
+                .thenCompose(requestUri -> executeWithAccessTokenAsync(executor, uri, requestUri, data));
+    }
+
+    private <T, E> CompletableFuture<T> executeWithAccessTokenAsync(AsyncRequestExecutor<T, E> executor, String uri,
+                                                                   String requestUri, E data) {
+        return executor.execute(getHttpAsyncClient(), this.httpProxy, requestUri, data)
+                .handle((result, throwable) -> {
+                    if (throwable == null) {
+                        return CompletableFuture.completedFuture(result);
+                    }
+                    Throwable cause = unwrap(throwable);
+                    if (cause instanceof WxErrorException) {
+                        WxError error = ((WxErrorException) cause).getError();
+                        this.logger.error("\n[URL]:  {}\n[PARAMS]: {}\n[RESPONSE]: {}", requestUri, data, error);
+                        // 40001/42001 时作废access_token后重试。作废令牌要访问存储(例如Redis)，和重试一起放到令牌线程池里执行，
+                        // 不占用httpclient的I/O线程
+                        if (error.getErrorCode() == 42001 || error.getErrorCode() == 40001) {
+                            return CompletableFuture.supplyAsync(() -> {
+                                expireAccessToken();
+                                if (!this.configStorage.autoRefreshToken()) {
+                                    throw new CompletionException(cause);
+                                }
+                                try {
+                                    awaitRefreshedAccessToken();
+                                } catch (WxErrorException e) {
+                                    throw new CompletionException(e);
+                                }
+                                return this.executeAsync(executor, uri, data);
+                            }, ASYNC_TOKEN_EXECUTOR).thenCompose(Function.<CompletableFuture<T>>identity());
+                        }
+                        throw new CompletionException(cause);
+                    }
+                    if (cause instanceof IOException) {
+                        this.logger.error("\n[URL]:  {}\n[PARAMS]: {}\n[EXCEPTION]: {}", uri, data, cause.getMessage());
+                        throw new CompletionException(new WxErrorException(new WxError().setErrorCode(100001).setErrorMsg(MessageFormat.format("连接建立失败,{0}", cause.getMessage()))));
+                    }
+                    throw new CompletionException(cause);
+                })
+                .thenCompose(Function.<CompletableFuture<T>>identity());
+    }
+
+    /**
+     * 在uri上拼接access_token或component_access_token
+     */
+    private String appendAccessToken(String uri) throws WxErrorException {
+        if (!uri.contains("component_access_token") && !uri.contains("api_component_token")) {
+            String accessToken = this.getAccessToken(false);
+            return uri + (uri.indexOf('?') == -1 ? "?access_token=" + accessToken : "&access_token=" + accessToken);
+        } else if (!uri.contains("api_component_token")) {
+            return uri.replace("COMPONENT_ACCESS_TOKEN", this.getComponentAccessToken(false));
+        }
+        return uri;
+    }
+
+    /**
+     * {@link #appendAccessToken} 的非阻塞版本：令牌有效时直接读取存储，需要刷新时交给令牌线程池执行
+     */
+    private CompletableFuture<String> appendAccessTokenAsync(String uri) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        if (!isAccessTokenExpired(uri)) {
+            try {
+                future.complete(appendAccessToken(uri));
+            } catch (WxErrorException e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+        ASYNC_TOKEN_EXECUTOR.execute(() -> {
+            try {
+                future.complete(appendAccessToken(uri));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * @return 请求这个uri前是否需要刷新令牌
+     */
+    private boolean isAccessTokenExpired(String uri) {
+        if (uri.contains("api_component_token")) {
+            return false;
+        }
+        if (uri.contains("component_access_token")) {
+            return this.configStorage.isComponentAccessTokenExpired();
+        }
+        WxOpenAuthorizerTokenRefresher refresher = this.authorizerTokenRefresher;
+        if (refresher != null) {
+            return refresher.getTokenStorage().getAccessTokenExpiresTime(this.configStorage.getAppId()) <= System.currentTimeMillis();
+        }
+        return this.configStorage.isAccessTokenExpired();
+    }
+
+    private static ThreadPoolExecutor newTicketWorkers() {
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(2, 2, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("wx-open-ticket-refresh-%d").setDaemon(true).build());
+        workers.allowCoreThreadTimeOut(true);
+        return workers;
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        while ((throwable instanceof CompletionException || throwable instanceof ExecutionException)
+                && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        return throwable;
+    }
+
     @Override
     public HttpHost getHttpProxy() {
         return this.httpProxy;
@@ -443,6 +751,32 @@ public class WxOpenServiceImpl implements WxOpenService {
         return this.httpClient;
     }
 
+    public CloseableHttpAsyncClient getHttpAsyncClient() {
+        if (this.httpAsyncClient == null) {
+            synchronized (this) {
+                if (this.httpAsyncClient == null) {
+                    this.httpAsyncClient = buildHttpAsyncClient();
+                }
+            }
+        }
+        return this.httpAsyncClient;
+    }
+
+    private CloseableHttpAsyncClient buildHttpAsyncClient() {
+        ApacheHttpAsyncClientBuilder apacheHttpAsyncClientBuilder = this.configStorage
+                .getApacheHttpAsyncClientBuilder();
+        if (null == apacheHttpAsyncClientBuilder) {
+            apacheHttpAsyncClientBuilder = DefaultApacheHttpAsyncClientBuilder.get();
+        }
+
+        return apacheHttpAsyncClientBuilder.httpProxyHost(this.configStorage.getHttpProxyHost())
+                .httpProxyPort(this.configStorage.getHttpProxyPort())
+                .httpProxyUsername(this.configStorage.getHttpProxyUsername())
+                .httpProxyPassword(this.configStorage.getHttpProxyPassword())
+                .sslContext(this.configStorage.getSSLContext())
+                .build();
+    }
+
     private void initHttpClient() {
         ApacheHttpClientBuilder apacheHttpClientBuilder = this.configStorage
                 .getApacheHttpClientBuilder();
@@ -474,10 +808,33 @@ public class WxOpenServiceImpl implements WxOpenService {
         return this.configStorage;
     }
 
+    @Override
+    public void setAuthorizerTokenRefresher(WxOpenAuthorizerTokenRefresher authorizerTokenRefresher) {
+        this.authorizerTokenRefresher = authorizerTokenRefresher;
+    }
+
+    /**
+     * 停止jsapi_ticket、卡券api_ticket的后台刷新并关闭其线程，服务不再使用时调用。
+     * 关闭后读取ticket仍然可用，过期时在调用方线程上刷新
+     */
+    public void shutdown() {
+        this.ticketScheduler.shutdownNow();
+        this.ticketWorkers.shutdown();
+    }
+
     @Override
     public void setWxOpenConfigStorage(WxOpenConfigStorage wxConfigProvider) {
         this.configStorage = wxConfigProvider;
         this.initHttpClient();
+        CloseableHttpAsyncClient oldHttpAsyncClient = this.httpAsyncClient;
+        this.httpAsyncClient = null;
+        if (oldHttpAsyncClient != null) {
+            try {
+                oldHttpAsyncClient.close();
+            } catch (IOException e) {
+                this.logger.warn("关闭异步httpclient失败", e);
+            }
+        }
     }
 
     @Override
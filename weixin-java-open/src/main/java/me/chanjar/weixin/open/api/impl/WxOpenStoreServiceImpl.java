@@ -11,9 +11,12 @@ import me.chanjar.weixin.open.api.WxOpenStoreService;
 import me.chanjar.weixin.open.bean.store.WxOpenStoreBaseInfo;
 import me.chanjar.weixin.open.bean.store.WxOpenStoreInfo;
 import me.chanjar.weixin.open.bean.store.WxOpenStoreListResult;
+import me.chanjar.weixin.open.util.WxOpenPaginator;
 import me.chanjar.weixin.open.util.json.WxOpenGsonBuilder;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Created by Binary Wang on 2016/9/26.
@@ -23,6 +26,10 @@ import java.util.List;
 public class WxOpenStoreServiceImpl implements WxOpenStoreService {
     private static final String API_BASE_URL = "http://api.weixin.qq.com/cgi-bin/poi";
 
+    private static final int LIST_ALL_LIMIT = 50;
+
+    private static final int LIST_ALL_PARALLELISM = 4;
+
     private WxOpenService wxOpenService;
 
     public WxOpenStoreServiceImpl(WxOpenService wxOpenService) {
@@ -85,24 +92,29 @@ public class WxOpenStoreServiceImpl implements WxOpenStoreService {
     }
 
     @Override
-    public List<WxOpenStoreInfo> listAll() throws WxErrorException {
-        int limit = 50;
-        WxOpenStoreListResult list = this.list(0, limit);
-        List<WxOpenStoreInfo> stores = list.getBusinessList();
-        if (list.getTotalCount() > limit) {
-            int begin = limit;
-            WxOpenStoreListResult followingList = this.list(begin, limit);
-            while (followingList.getBusinessList().size() > 0) {
-                stores.addAll(followingList.getBusinessList());
-                begin += limit;
-                if (begin >= list.getTotalCount()) {
-                    break;
-                }
-                followingList = this.list(begin, limit);
+    public CompletableFuture<WxOpenStoreListResult> listAsync(int begin, int limit) {
+        String url = API_BASE_URL + "/getpoilist";
+        JsonObject params = new JsonObject();
+        params.addProperty("begin", begin);
+        params.addProperty("limit", limit);
+        return this.wxOpenService.postAsync(url, params.toString()).thenApply(response -> {
+            WxError wxError = WxError.fromJson(response);
+            if (wxError.getErrorCode() != 0) {
+                throw new CompletionException(new WxErrorException(wxError));
             }
-        }
+            return WxOpenStoreListResult.fromJson(response);
+        });
+    }
 
-        return stores;
+    @Override
+    public List<WxOpenStoreInfo> listAll() throws WxErrorException {
+        return listAll(LIST_ALL_PARALLELISM);
+    }
+
+    @Override
+    public List<WxOpenStoreInfo> listAll(int parallelism) throws WxErrorException {
+        return WxOpenPaginator.fetchAll(this::listAsync, LIST_ALL_LIMIT, parallelism,
+                list -> list.getTotalCount() == null ? 0 : list.getTotalCount(), WxOpenStoreListResult::getBusinessList);
     }
 
     @Override
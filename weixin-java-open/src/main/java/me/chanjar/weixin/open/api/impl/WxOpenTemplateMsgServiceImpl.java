@@ -11,6 +11,7 @@ import me.chanjar.weixin.open.bean.template.WxOpenTemplateIndustry;
 import me.chanjar.weixin.open.bean.template.WxOpenTemplateMessage;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * <pre>
@@ -39,6 +40,14 @@ public class WxOpenTemplateMsgServiceImpl implements WxOpenTemplateMsgService {
         throw new WxErrorException(WxError.fromJson(responseContent));
     }
 
+    @Override
+    public CompletableFuture<String> sendTemplateMsgAsync(WxOpenTemplateMessage templateMessage) {
+        String url = "https://api.weixin.qq.com/cgi-bin/message/template/send";
+        // 错误码非0时 postAsync 已经以 WxErrorException 异常结束
+        return this.wxOpenService.postAsync(url, templateMessage.toJson())
+                .thenApply(responseContent -> JSON_PARSER.parse(responseContent).getAsJsonObject().get("msgid").getAsString());
+    }
+
     @Override
     public boolean setIndustry(WxOpenTemplateIndustry wxOpenIndustry) throws WxErrorException {
         if (null == wxOpenIndustry.getPrimaryIndustry() || null == wxOpenIndustry.getPrimaryIndustry().getId()
@@ -0,0 +1,205 @@
+package me.chanjar.weixin.open.api.impl;
+
+import me.chanjar.weixin.common.bean.result.WxError;
+import me.chanjar.weixin.common.exception.WxErrorException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.MessageFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * <pre>
+ * jsapi_ticket、卡券api_ticket的刷新
+ * 读取时不加锁，ticket未过期就直接返回存储中的值；进入过期前 refreshAheadMillis 的时间段后由后台线程刷新，
+ * 刷新期间读取的仍是旧ticket。
+ * 只有ticket已经过期(或从未获取)以及强制刷新时调用方才需要等待，同一时间最多只有一个getticket请求，
+ * 并发的调用方共用它的结果。每次刷新成功后按新的过期时间安排下一次后台刷新。
+ * 调度线程只负责定时，getticket请求在工作线程上执行，两者都由所属的服务提供并随服务一起关闭
+ * </pre>
+ */
+class WxOpenTicketRefresher {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final String name;
+
+    private final Supplier<String> ticket;
+
+    private final LongSupplier expiresTime;
+
+    private final TicketLoader loader;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Executor worker;
+
+    private final AtomicReference<CompletableFuture<String>> inFlight = new AtomicReference<>();
+
+    private final AtomicReference<ScheduledFuture<?>> scheduledRefresh = new AtomicReference<>();
+
+    private volatile long refreshAheadMillis = 10 * 60 * 1000L;
+
+    private volatile long retryDelayMillis = 60 * 1000L;
+
+    /**
+     * @param name        ticket名称，用于日志
+     * @param ticket      读取存储中的ticket
+     * @param expiresTime 读取存储中ticket的过期时间
+     * @param loader      调用getticket接口并把结果写入存储
+     * @param scheduler   安排下一次后台刷新，只做定时，不执行请求
+     * @param worker      执行后台的getticket请求
+     */
+    WxOpenTicketRefresher(String name, Supplier<String> ticket, LongSupplier expiresTime, TicketLoader loader,
+                          ScheduledExecutorService scheduler, Executor worker) {
+        this.name = name;
+        this.ticket = ticket;
+        this.expiresTime = expiresTime;
+        this.loader = loader;
+        this.scheduler = scheduler;
+        this.worker = worker;
+    }
+
+    /**
+     * 获取ticket
+     *
+     * @param forceRefresh 强制刷新，与正在进行的刷新合并
+     */
+    String get(boolean forceRefresh) throws WxErrorException {
+        if (!forceRefresh) {
+            long expiresTime = this.expiresTime.getAsLong();
+            long now = System.currentTimeMillis();
+            if (now <= expiresTime) {
+                if (now >= expiresTime - this.refreshAheadMillis) {
+                    refreshInBackground();
+                }
+                return this.ticket.get();
+            }
+        }
+        return await(refresh(false));
+    }
+
+    private void refreshInBackground() {
+        if (this.inFlight.get() == null) {
+            refresh(true);
+        }
+    }
+
+    /**
+     * 已有正在进行的刷新时直接返回它，否则由当前线程(或后台线程)发起一次刷新
+     */
+    private CompletableFuture<String> refresh(boolean background) {
+        while (true) {
+            CompletableFuture<String> current = this.inFlight.get();
+            if (current != null) {
+                return current;
+            }
+            CompletableFuture<String> created = new CompletableFuture<>();
+            if (this.inFlight.compareAndSet(null, created)) {
+                if (background) {
+                    try {
+                        this.worker.execute(() -> load(created));
+                    } catch (RejectedExecutionException e) {
+                        load(created);
+                    }
+                } else {
+                    load(created);
+                }
+                return created;
+            }
+        }
+    }
+
+    private void load(CompletableFuture<String> future) {
+        try {
+            this.loader.load();
+            // 先清除再完成，之后到达的调用方会看到新的过期时间而不会再次加入这次刷新
+            this.inFlight.compareAndSet(future, null);
+            future.complete(this.ticket.get());
+            scheduleRefresh(this.expiresTime.getAsLong() - this.refreshAheadMillis - System.currentTimeMillis());
+        } catch (WxErrorException | RuntimeException e) {
+            this.inFlight.compareAndSet(future, null);
+            future.completeExceptionally(e);
+            if (System.currentTimeMillis() <= this.expiresTime.getAsLong()) {
+                // 旧ticket还能用，后台重试；已经过期时由下一个调用方重新发起刷新
+                this.logger.error("{}刷新失败，{}ms 后重试", this.name, this.retryDelayMillis, e);
+                scheduleRefresh(this.retryDelayMillis);
+            } else {
+                this.logger.error("{}刷新失败", this.name, e);
+            }
+        }
+    }
+
+    private void scheduleRefresh(long delayMillis) {
+        try {
+            ScheduledFuture<?> previous = this.scheduledRefresh.getAndSet(this.scheduler.schedule(
+                    () -> this.worker.execute(this::scheduledRefresh), Math.max(0, delayMillis), TimeUnit.MILLISECONDS));
+            if (previous != null) {
+                previous.cancel(false);
+            }
+        } catch (RejectedExecutionException e) {
+            // 已经关闭
+        }
+    }
+
+    /**
+     * 多个节点共用同一个存储时，其他节点可能已经刷新过，这时只按新的过期时间重新排期
+     */
+    private void scheduledRefresh() {
+        long delayMillis = this.expiresTime.getAsLong() - this.refreshAheadMillis - System.currentTimeMillis();
+        if (delayMillis > 0) {
+            scheduleRefresh(delayMillis);
+        } else if (this.inFlight.get() == null) {
+            refresh(false);
+        }
+    }
+
+    private static String await(CompletableFuture<String> future) throws WxErrorException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WxErrorException(new WxError().setErrorCode(100003)
+                    .setErrorMsg(MessageFormat.format("等待ticket刷新时被中断,{0}", e.getMessage())));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof WxErrorException) {
+                throw (WxErrorException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * ticket过期前多久开始后台刷新(毫秒)，默认10分钟
+     */
+    void setRefreshAheadMillis(long refreshAheadMillis) {
+        this.refreshAheadMillis = refreshAheadMillis;
+    }
+
+    /**
+     * 后台刷新失败后的重试间隔(毫秒)，默认1分钟
+     */
+    void setRetryDelayMillis(long retryDelayMillis) {
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    interface TicketLoader {
+        /**
+         * 调用getticket接口并更新存储
+         */
+        void load() throws WxErrorException;
+    }
+}
@@ -7,10 +7,12 @@ import me.chanjar.weixin.common.util.http.SimplePostRequestExecutor;
 import me.chanjar.weixin.open.api.WxOpenService;
 import me.chanjar.weixin.open.api.WxOpenUserBlacklistService;
 import me.chanjar.weixin.open.bean.result.WxOpenUserBlacklistGetResult;
+import me.chanjar.weixin.open.util.WxOpenPaginator;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author miller
@@ -32,6 +34,22 @@ public class WxOpenUserBlacklistServiceImpl implements WxOpenUserBlacklistServic
         return WxOpenUserBlacklistGetResult.fromJson(responseContent);
     }
 
+    @Override
+    public CompletableFuture<WxOpenUserBlacklistGetResult> getBlacklistAsync(String nextOpenid) {
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("begin_openid", nextOpenid);
+        String url = API_BLACKLIST_PREFIX + "/getblacklist";
+        return this.wxOpenService.postAsync(url, jsonObject.toString())
+                .thenApply(WxOpenUserBlacklistGetResult::fromJson);
+    }
+
+    @Override
+    public void forEachBlacklistPage(WxOpenPaginator.PageHandler<WxOpenUserBlacklistGetResult> handler) throws WxErrorException {
+        // 最后一页之后next_openid仍不为空，拉取到空的一页才算结束
+        WxOpenPaginator.forEachPage(null, this::getBlacklistAsync,
+                result -> result.getCount() > 0 ? result.getNextOpenid() : null, handler);
+    }
+
     @Override
     public void pushToBlacklist(List<String> openidList) throws WxErrorException {
         Map<String, Object> map = new HashMap<>();
@@ -9,6 +9,7 @@ import me.chanjar.weixin.open.bean.result.WxOpenUser;
 import me.chanjar.weixin.open.bean.result.WxOpenUserList;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by Binary Wang on 2016/7/21.
@@ -44,6 +45,14 @@ public class WxOpenUserServiceImpl implements WxOpenUserService {
         return WxOpenUser.fromJson(responseContent);
     }
 
+    @Override
+    public CompletableFuture<WxOpenUser> userInfoAsync(String openid, String lang) {
+        String url = API_URL_PREFIX + "/info";
+        lang = lang == null ? "zh_CN" : lang;
+        return this.wxOpenService.getAsync(url, "openid=" + openid + "&lang=" + lang)
+                .thenApply(WxOpenUser::fromJson);
+    }
+
     @Override
     public WxOpenUserList userList(String next_openid) throws WxErrorException {
         String url = API_URL_PREFIX + "/get";
@@ -52,6 +61,13 @@ public class WxOpenUserServiceImpl implements WxOpenUserService {
         return WxOpenUserList.fromJson(responseContent);
     }
 
+    @Override
+    public CompletableFuture<WxOpenUserList> userListAsync(String nextOpenid) {
+        String url = API_URL_PREFIX + "/get";
+        return this.wxOpenService.getAsync(url, nextOpenid == null ? null : "next_openid=" + nextOpenid)
+                .thenApply(WxOpenUserList::fromJson);
+    }
+
     @Override
     public List<WxOpenUser> userInfoList(List<String> openids)
             throws WxErrorException {
@@ -66,4 +82,11 @@ public class WxOpenUserServiceImpl implements WxOpenUserService {
         return WxOpenUser.fromJsonList(responseContent);
     }
 
+    @Override
+    public CompletableFuture<List<WxOpenUser>> userInfoListAsync(WxOpenUserQuery userQuery) {
+        String url = API_URL_PREFIX + "/info/batchget";
+        return this.wxOpenService.postAsync(url, userQuery.toJsonString())
+                .thenApply(WxOpenUser::fromJsonList);
+    }
+
 }
@@ -10,10 +10,12 @@ import me.chanjar.weixin.open.api.WxOpenService;
 import me.chanjar.weixin.open.api.WxOpenUserTagService;
 import me.chanjar.weixin.open.bean.tag.WxTagListUser;
 import me.chanjar.weixin.open.bean.tag.WxUserTag;
+import me.chanjar.weixin.open.util.WxOpenPaginator;
 import me.chanjar.weixin.open.util.json.WxOpenGsonBuilder;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author <a href="https://github.com/binarywang">binarywang(Binary Wang)</a>
@@ -98,6 +100,24 @@ public class WxOpenUserTagServiceImpl implements WxOpenUserTagService {
         return WxTagListUser.fromJson(responseContent);
     }
 
+    @Override
+    public CompletableFuture<WxTagListUser> tagListUserAsync(Long tagId, String nextOpenid) {
+        String url = "https://api.weixin.qq.com/cgi-bin/user/tag/get";
+
+        JsonObject json = new JsonObject();
+        json.addProperty("tagid", tagId);
+        json.addProperty("next_openid", StringUtils.trimToEmpty(nextOpenid));
+
+        return this.wxOpenService.postAsync(url, json.toString()).thenApply(WxTagListUser::fromJson);
+    }
+
+    @Override
+    public void forEachTagListUserPage(Long tagId, WxOpenPaginator.PageHandler<WxTagListUser> handler) throws WxErrorException {
+        // 最后一页之后next_openid仍不为空，拉取到空的一页才算结束
+        WxOpenPaginator.forEachPage(null, nextOpenid -> tagListUserAsync(tagId, nextOpenid),
+                result -> result.getCount() != null && result.getCount() > 0 ? result.getNextOpenid() : null, handler);
+    }
+
     @Override
     public boolean batchTagging(Long tagId, String[] openids)
             throws WxErrorException {
@@ -29,7 +29,7 @@ public class WxOpenMassNews implements Serializable {
     }
 
     public String toJson() {
-        return WxOpenGsonBuilder.INSTANCE.create().toJson(this);
+        return WxOpenGsonBuilder.create().toJson(this);
     }
 
     public boolean isEmpty() {
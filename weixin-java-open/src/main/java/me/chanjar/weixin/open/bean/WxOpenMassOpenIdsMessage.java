@@ -61,7 +61,7 @@ public class WxOpenMassOpenIdsMessage implements Serializable {
     }
 
     public String toJson() {
-        return WxOpenGsonBuilder.INSTANCE.create().toJson(this);
+        return WxOpenGsonBuilder.create().toJson(this);
     }
 
     /**
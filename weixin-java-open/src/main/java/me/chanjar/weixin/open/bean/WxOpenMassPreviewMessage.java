@@ -64,6 +64,6 @@ public class WxOpenMassPreviewMessage implements Serializable {
     }
 
     public String toJson() {
-        return WxOpenGsonBuilder.INSTANCE.create().toJson(this);
+        return WxOpenGsonBuilder.create().toJson(this);
     }
 }
@@ -59,7 +59,7 @@ public class WxOpenMassTagMessage implements Serializable {
     }
 
     public String toJson() {
-        return WxOpenGsonBuilder.INSTANCE.create().toJson(this);
+        return WxOpenGsonBuilder.create().toJson(this);
     }
 
     public Long getTagId() {
@@ -44,6 +44,6 @@ public class WxOpenMassVideo implements Serializable {
     }
 
     public String toJson() {
-        return WxOpenGsonBuilder.INSTANCE.create().toJson(this);
+        return WxOpenGsonBuilder.create().toJson(this);
     }
 }
@@ -111,7 +111,7 @@ public class WxDataCubeArticleResult extends WxDataCubeBaseResult {
     private Integer userSource;
 
     public static List<WxDataCubeArticleResult> fromJson(String json) {
-        return WxOpenGsonBuilder.INSTANCE.create().fromJson(
+        return WxOpenGsonBuilder.create().fromJson(
                 JSON_PARSER.parse(json).getAsJsonObject().get("list"),
                 new TypeToken<List<WxDataCubeArticleResult>>() {
                 }.getType());
@@ -39,7 +39,7 @@ public class WxDataCubeArticleTotal extends WxDataCubeBaseResult {
     private List<WxDataCubeArticleTotalDetail> details;
 
     public static List<WxDataCubeArticleTotal> fromJson(String json) {
-        return WxOpenGsonBuilder.INSTANCE.create().fromJson(
+        return WxOpenGsonBuilder.create().fromJson(
                 JSON_PARSER.parse(json).getAsJsonObject().get("list"),
                 new TypeToken<List<WxDataCubeArticleTotal>>() {
                 }.getType());
@@ -53,7 +53,7 @@ public class WxDataCubeInterfaceResult extends WxDataCubeBaseResult {
     private Integer maxTimeCost;
 
     public static List<WxDataCubeInterfaceResult> fromJson(String json) {
-        return WxOpenGsonBuilder.INSTANCE.create().fromJson(
+        return WxOpenGsonBuilder.create().fromJson(
                 JSON_PARSER.parse(json).getAsJsonObject().get("list"),
                 new TypeToken<List<WxDataCubeInterfaceResult>>() {
                 }.getType());
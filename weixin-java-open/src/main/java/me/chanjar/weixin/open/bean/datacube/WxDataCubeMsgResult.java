@@ -67,7 +67,7 @@ public class WxDataCubeMsgResult extends WxDataCubeBaseResult {
     private Integer oriPageReadUser;
 
     public static List<WxDataCubeMsgResult> fromJson(String json) {
-        return WxOpenGsonBuilder.INSTANCE.create().fromJson(
+        return WxOpenGsonBuilder.create().fromJson(
                 JSON_PARSER.parse(json).getAsJsonObject().get("list"),
                 new TypeToken<List<WxDataCubeMsgResult>>() {
                 }.getType());
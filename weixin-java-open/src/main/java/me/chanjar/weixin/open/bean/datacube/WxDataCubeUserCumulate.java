@@ -26,7 +26,7 @@ public class WxDataCubeUserCumulate implements Serializable {
     private Integer cumulateUser;
 
     public static List<WxDataCubeUserCumulate> fromJson(String json) {
-        return WxOpenGsonBuilder.INSTANCE.create().fromJson(
+        return WxOpenGsonBuilder.create().fromJson(
                 JSON_PARSER.parse(json).getAsJsonObject().get("list"),
                 new TypeToken<List<WxDataCubeUserCumulate>>() {
                 }.getType());
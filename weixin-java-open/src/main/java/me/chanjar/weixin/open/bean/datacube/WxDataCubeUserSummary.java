@@ -29,7 +29,7 @@ public class WxDataCubeUserSummary implements Serializable {
     private Integer cancelUser;
 
     public static List<WxDataCubeUserSummary> fromJson(String json) {
-        return WxOpenGsonBuilder.INSTANCE.create().fromJson(
+        return WxOpenGsonBuilder.create().fromJson(
                 JSON_PARSER.parse(json).getAsJsonObject().get("list"),
                 new TypeToken<List<WxDataCubeUserSummary>>() {
                 }.getType());
@@ -197,7 +197,7 @@ public class WxOpenKefuMessage implements Serializable {
     }
 
     public String toJson() {
-        return WxOpenGsonBuilder.INSTANCE.create().toJson(this);
+        return WxOpenGsonBuilder.create().toJson(this);
     }
 
     public String getKfAccount() {
@@ -37,7 +37,7 @@ public class WxOpenKfAccountRequest implements Serializable {
     }
 
     public String toJson() {
-        return WxOpenGsonBuilder.INSTANCE.create().toJson(this);
+        return WxOpenGsonBuilder.create().toJson(this);
     }
 
     public String getKfAccount() {
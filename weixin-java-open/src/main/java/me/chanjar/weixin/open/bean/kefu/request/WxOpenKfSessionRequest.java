@@ -32,7 +32,7 @@ public class WxOpenKfSessionRequest implements Serializable {
     }
 
     public String toJson() {
-        return WxOpenGsonBuilder.INSTANCE.create().toJson(this);
+        return WxOpenGsonBuilder.create().toJson(this);
     }
 
     public String getKfAccount() {
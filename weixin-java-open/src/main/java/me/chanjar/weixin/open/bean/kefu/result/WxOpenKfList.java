@@ -14,7 +14,7 @@ public class WxOpenKfList {
     private List<WxOpenKfInfo> kfList;
 
     public static WxOpenKfList fromJson(String json) {
-        return WxOpenGsonBuilder.INSTANCE.create().fromJson(json, WxOpenKfList.class);
+        return WxOpenGsonBuilder.create().fromJson(json, WxOpenKfList.class);
     }
 
     @Override
@@ -20,7 +20,7 @@ public class WxOpenKfMsgList {
     private Long msgId;
 
     public static WxOpenKfMsgList fromJson(String responseContent) {
-        return WxOpenGsonBuilder.INSTANCE.create().fromJson(responseContent, WxOpenKfMsgList.class);
+        return WxOpenGsonBuilder.create().fromJson(responseContent, WxOpenKfMsgList.class);
     }
 
     public List<WxOpenKfMsgRecord> getRecords() {
@@ -14,7 +14,7 @@ public class WxOpenKfOnlineList {
     private List<WxOpenKfInfo> kfOnlineList;
 
     public static WxOpenKfOnlineList fromJson(String json) {
-        return WxOpenGsonBuilder.INSTANCE.create().fromJson(json, WxOpenKfOnlineList.class);
+        return WxOpenGsonBuilder.create().fromJson(json, WxOpenKfOnlineList.class);
     }
 
     @Override
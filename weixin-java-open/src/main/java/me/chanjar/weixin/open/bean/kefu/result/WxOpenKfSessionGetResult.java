@@ -21,7 +21,7 @@ public class WxOpenKfSessionGetResult {
     private long createTime;
 
     public static WxOpenKfSessionGetResult fromJson(String json) {
-        return WxOpenGsonBuilder.INSTANCE.create().fromJson(json, WxOpenKfSessionGetResult.class);
+        return WxOpenGsonBuilder.create().fromJson(json, WxOpenKfSessionGetResult.class);
     }
 
     @Override
@@ -17,7 +17,7 @@ public class WxOpenKfSessionList {
     private List<WxOpenKfSession> kfSessionList;
 
     public static WxOpenKfSessionList fromJson(String json) {
-        return WxOpenGsonBuilder.INSTANCE.create().fromJson(json,
+        return WxOpenGsonBuilder.create().fromJson(json,
                 WxOpenKfSessionList.class);
     }
 
@@ -23,7 +23,7 @@ public class WxOpenKfSessionWaitCaseList {
     private List<WxOpenKfSession> kfSessionWaitCaseList;
 
     public static WxOpenKfSessionWaitCaseList fromJson(String json) {
-        return WxOpenGsonBuilder.INSTANCE.create().fromJson(json,
+        return WxOpenGsonBuilder.create().fromJson(json,
                 WxOpenKfSessionWaitCaseList.class);
     }
 
@@ -21,7 +21,7 @@ public class WxOpenMaterialNews implements Serializable {
     }
 
     public String toJson() {
-        return WxOpenGsonBuilder.INSTANCE.create().toJson(this);
+        return WxOpenGsonBuilder.create().toJson(this);
     }
 
     public boolean isEmpty() {
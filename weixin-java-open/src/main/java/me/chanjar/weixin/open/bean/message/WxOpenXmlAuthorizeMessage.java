@@ -22,7 +22,7 @@ import com.thoughtworks.xstream.annotations.XStreamConverter;
 import me.chanjar.weixin.common.util.xml.XStreamCDataConverter;
 import me.chanjar.weixin.open.api.WxOpenConfigStorage;
 import me.chanjar.weixin.open.util.crypto.WxOpenCryptUtil;
-import me.chanjar.weixin.open.util.xml.XStreamTransformer;
+import me.chanjar.weixin.open.util.xml.WxOpenXmlMessageParser;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
@@ -56,15 +56,15 @@ public class WxOpenXmlAuthorizeMessage implements Serializable {
 
 
     public static WxOpenXmlAuthorizeMessage fromXml(String xml) {
-        return XStreamTransformer.fromXml(WxOpenXmlAuthorizeMessage.class, xml);
+        return WxOpenXmlMessageParser.parseAuthorizeMessage(xml);
     }
 
     public static WxOpenXmlAuthorizeMessage fromXml(InputStream is) {
-        return XStreamTransformer.fromXml(WxOpenXmlAuthorizeMessage.class, is);
+        return WxOpenXmlMessageParser.parseAuthorizeMessage(is);
     }
 
     public static WxOpenXmlAuthorizeMessage fromEncryptedXml(String encryptedXml, WxOpenConfigStorage wxOpenConfigStorage, String timestamp, String nonce, String msgSignature) {
-        WxOpenCryptUtil cryptUtil = new WxOpenCryptUtil(wxOpenConfigStorage);
+        WxOpenCryptUtil cryptUtil = WxOpenCryptUtil.getInstance(wxOpenConfigStorage);
         String plainText = cryptUtil.decrypt(msgSignature, timestamp, nonce, encryptedXml);
         return fromXml(plainText);
     }
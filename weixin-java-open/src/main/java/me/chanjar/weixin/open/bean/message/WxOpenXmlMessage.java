@@ -23,7 +23,7 @@ import me.chanjar.weixin.common.util.ToStringUtils;
 import me.chanjar.weixin.common.util.xml.XStreamCDataConverter;
 import me.chanjar.weixin.open.api.WxOpenConfigStorage;
 import me.chanjar.weixin.open.util.crypto.WxOpenCryptUtil;
-import me.chanjar.weixin.open.util.xml.XStreamTransformer;
+import me.chanjar.weixin.open.util.xml.WxOpenXmlMessageParser;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
@@ -315,11 +315,11 @@ public class WxOpenXmlMessage implements Serializable {
     private Integer deviceStatus;
 
     public static WxOpenXmlMessage fromXml(String xml) {
-        return XStreamTransformer.fromXml(WxOpenXmlMessage.class, xml);
+        return WxOpenXmlMessageParser.parseMessage(xml);
     }
 
     public static WxOpenXmlMessage fromXml(InputStream is) {
-        return XStreamTransformer.fromXml(WxOpenXmlMessage.class, is);
+        return WxOpenXmlMessageParser.parseMessage(is);
     }
 
     /**
@@ -334,7 +334,7 @@ public class WxOpenXmlMessage implements Serializable {
     public static WxOpenXmlMessage fromEncryptedXml(String encryptedXml,
                                                     WxOpenConfigStorage wxOpenConfigStorage, String timestamp, String nonce,
                                                     String msgSignature) {
-        WxOpenCryptUtil cryptUtil = new WxOpenCryptUtil(wxOpenConfigStorage);
+        WxOpenCryptUtil cryptUtil = WxOpenCryptUtil.getInstance(wxOpenConfigStorage);
         String plainText = cryptUtil.decrypt(msgSignature, timestamp, nonce, encryptedXml);
         return fromXml(plainText);
     }
@@ -138,7 +138,7 @@ public abstract class WxOpenXmlOutMessage implements Serializable {
      */
     public String toEncryptedXml(WxOpenConfigStorage wxOpenConfigStorage) {
         String plainXml = toXml();
-        WxOpenCryptUtil pc = new WxOpenCryptUtil(wxOpenConfigStorage);
+        WxOpenCryptUtil pc = WxOpenCryptUtil.getInstance(wxOpenConfigStorage);
         return pc.encrypt(plainXml);
     }
 }
@@ -20,7 +20,7 @@ public class WxOpenQrCodeTicket implements Serializable {
     protected String url;
 
     public static WxOpenQrCodeTicket fromJson(String json) {
-        return WxOpenGsonBuilder.INSTANCE.create().fromJson(json, WxOpenQrCodeTicket.class);
+        return WxOpenGsonBuilder.create().fromJson(json, WxOpenQrCodeTicket.class);
     }
 
     public String getTicket() {
@@ -52,6 +52,6 @@ public class WxOpenQrCodeTicket implements Serializable {
 
     @Override
     public String toString() {
-        return WxOpenGsonBuilder.INSTANCE.create().toJson(this);
+        return WxOpenGsonBuilder.create().toJson(this);
     }
 }
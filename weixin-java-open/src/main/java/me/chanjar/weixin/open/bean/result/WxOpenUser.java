@@ -37,13 +37,13 @@ public class WxOpenUser implements Serializable {
     private String[] privilege;
 
     public static WxOpenUser fromJson(String json) {
-        return WxOpenGsonBuilder.INSTANCE.create().fromJson(json, WxOpenUser.class);
+        return WxOpenGsonBuilder.create().fromJson(json, WxOpenUser.class);
     }
 
     public static List<WxOpenUser> fromJsonList(String json) {
         Type collectionType = new TypeToken<List<WxOpenUser>>() {
         }.getType();
-        Gson gson = WxOpenGsonBuilder.INSTANCE.create();
+        Gson gson = WxOpenGsonBuilder.create();
         JsonObject jsonObject = gson.fromJson(json, JsonObject.class);
         return gson.fromJson(jsonObject.get("user_info_list"), collectionType);
     }
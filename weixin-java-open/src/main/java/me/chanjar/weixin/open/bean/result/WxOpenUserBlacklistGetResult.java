@@ -15,7 +15,7 @@ public class WxOpenUserBlacklistGetResult {
     protected String nextOpenid;
 
     public static WxOpenUserBlacklistGetResult fromJson(String json) {
-        return WxOpenGsonBuilder.INSTANCE.create().fromJson(json, WxOpenUserBlacklistGetResult.class);
+        return WxOpenGsonBuilder.create().fromJson(json, WxOpenUserBlacklistGetResult.class);
     }
 
     public int getTotal() {
@@ -52,6 +52,6 @@ public class WxOpenUserBlacklistGetResult {
 
     @Override
     public String toString() {
-        return WxOpenGsonBuilder.INSTANCE.create().toJson(this);
+        return WxOpenGsonBuilder.create().toJson(this);
     }
 }
@@ -18,7 +18,7 @@ public class WxOpenUserList {
     protected String nextOpenId;
 
     public static WxOpenUserList fromJson(String json) {
-        return WxOpenGsonBuilder.INSTANCE.create().fromJson(json, WxOpenUserList.class);
+        return WxOpenGsonBuilder.create().fromJson(json, WxOpenUserList.class);
     }
 
     public int getTotal() {
@@ -55,6 +55,6 @@ public class WxOpenUserList {
 
     @Override
     public String toString() {
-        return WxOpenGsonBuilder.INSTANCE.create().toJson(this);
+        return WxOpenGsonBuilder.create().toJson(this);
     }
 }
@@ -58,7 +58,7 @@ public class WxOpenTemplateMessage implements Serializable {
     }
 
     public String toJson() {
-        return WxOpenGsonBuilder.INSTANCE.create().toJson(this);
+        return WxOpenGsonBuilder.create().toJson(this);
     }
 
     public static class WxOpenTemplateMessageBuilder {
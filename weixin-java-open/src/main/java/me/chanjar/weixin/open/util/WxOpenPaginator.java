@@ -0,0 +1,213 @@
+package me.chanjar.weixin.open.util;
+
+import me.chanjar.weixin.common.bean.result.WxError;
+import me.chanjar.weixin.common.exception.WxErrorException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * <pre>
+ * 分页接口的并行拉取，每一页都通过非阻塞的请求获取，不占用额外的线程
+ * 按偏移量分页(begin/limit)：先取第一页得到总数，其余的页最多同时请求 parallelism 个，结果按页的顺序合并
+ * 按游标分页(next_openid)：处理当前页的同时已经在请求下一页
+ * </pre>
+ */
+public class WxOpenPaginator {
+
+    /**
+     * 按偏移量分页的接口
+     */
+    public interface OffsetPageFetcher<P> {
+        CompletableFuture<P> fetch(int begin, int limit);
+    }
+
+    /**
+     * 按游标分页的接口
+     */
+    public interface CursorPageFetcher<P> {
+        CompletableFuture<P> fetch(String cursor);
+    }
+
+    /**
+     * 游标分页时调用方对每一页的处理
+     */
+    public interface PageHandler<P> {
+        void handle(P page) throws WxErrorException;
+    }
+
+    /**
+     * 拉取按偏移量分页的全部数据
+     *
+     * @param fetcher     请求一页
+     * @param limit       每页数量
+     * @param parallelism 同时请求的最大页数，至少为1
+     * @param totalCount  从一页结果中取总数
+     * @param items       从一页结果中取数据
+     * @return 按页的顺序合并的全部数据
+     */
+    public static <P, T> List<T> fetchAll(OffsetPageFetcher<P> fetcher, int limit, int parallelism,
+                                          ToIntFunction<P> totalCount, Function<P, List<T>> items) throws WxErrorException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism 至少为1: " + parallelism);
+        }
+        P first = await(fetcher.fetch(0, limit));
+        List<T> firstItems = items.apply(first);
+        int total = totalCount.applyAsInt(first);
+        List<T> result = new ArrayList<>(Math.max(total, firstItems == null ? 0 : firstItems.size()));
+        if (firstItems != null) {
+            result.addAll(firstItems);
+        }
+        if (total <= limit) {
+            return result;
+        }
+
+        int pageCount = (total - 1) / limit;
+        List<CompletableFuture<P>> pages = new ArrayList<>(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            pages.add(new CompletableFuture<>());
+        }
+        OffsetWindow<P> window = new OffsetWindow<>(fetcher, limit, pages);
+        for (int i = 0; i < Math.min(parallelism, pageCount); i++) {
+            window.launchNext();
+        }
+
+        for (CompletableFuture<P> page : pages) {
+            P value;
+            try {
+                value = await(page);
+            } catch (CancellationException e) {
+                // 后面的某一页已经失败，这一页没有再发出请求
+                throw window.failure();
+            }
+            List<T> pageItems = items.apply(value);
+            if (pageItems != null) {
+                result.addAll(pageItems);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 逐页处理按游标分页的数据，处理当前页时下一页已经在请求中
+     *
+     * @param cursor     第一页的游标，一般为null
+     * @param fetcher    请求一页
+     * @param nextCursor 从一页结果中取下一页的游标，没有下一页时返回null或空字符串
+     * @param handler    调用方对每一页的处理
+     */
+    public static <P> void forEachPage(String cursor, CursorPageFetcher<P> fetcher, Function<P, String> nextCursor,
+                                       PageHandler<P> handler) throws WxErrorException {
+        CompletableFuture<P> current = fetcher.fetch(cursor);
+        while (current != null) {
+            P page = await(current);
+            String next = nextCursor.apply(page);
+            current = StringUtils.isEmpty(next) ? null : fetcher.fetch(next);
+            handler.handle(page);
+        }
+    }
+
+    private static <P> P await(CompletableFuture<P> future) throws WxErrorException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WxErrorException(new WxError().setErrorCode(100003)
+                    .setErrorMsg(MessageFormat.format("等待分页结果时被中断,{0}", e.getMessage())));
+        } catch (ExecutionException e) {
+            throw toWxErrorException(e.getCause());
+        }
+    }
+
+    private static WxErrorException toWxErrorException(Throwable throwable) {
+        while ((throwable instanceof CompletionException || throwable instanceof ExecutionException)
+                && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        if (throwable instanceof WxErrorException) {
+            return (WxErrorException) throwable;
+        }
+        if (throwable instanceof RuntimeException) {
+            throw (RuntimeException) throwable;
+        }
+        throw new RuntimeException(throwable);
+    }
+
+    /**
+     * 一页完成后再发出下一页的请求，保证同时进行的请求数不超过初始发出的数量。
+     * 请求同步完成时回调会在发出请求的线程上再次调用 launchNext，这时只记一次数，由最外层的循环继续发出，
+     * 调用栈的深度与页数无关
+     */
+    private static class OffsetWindow<P> {
+        private final OffsetPageFetcher<P> fetcher;
+        private final int limit;
+        private final List<CompletableFuture<P>> pages;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final AtomicInteger launchRequests = new AtomicInteger();
+
+        private OffsetWindow(OffsetPageFetcher<P> fetcher, int limit, List<CompletableFuture<P>> pages) {
+            this.fetcher = fetcher;
+            this.limit = limit;
+            this.pages = pages;
+        }
+
+        private void launchNext() {
+            if (this.launchRequests.getAndIncrement() > 0) {
+                // 已经有线程在循环中发出请求
+                return;
+            }
+            do {
+                launchOne();
+            } while (this.launchRequests.decrementAndGet() > 0);
+        }
+
+        private void launchOne() {
+            while (true) {
+                int index = this.next.getAndIncrement();
+                if (index >= this.pages.size()) {
+                    return;
+                }
+                if (this.failure.get() == null) {
+                    launch(index, this.pages.get(index));
+                    return;
+                }
+                // 已经有一页失败，剩下的页不再请求
+                this.pages.get(index).cancel(false);
+            }
+        }
+
+        private void launch(int index, CompletableFuture<P> page) {
+            CompletableFuture<P> request;
+            try {
+                request = this.fetcher.fetch((index + 1) * this.limit, this.limit);
+            } catch (RuntimeException e) {
+                request = new CompletableFuture<>();
+                request.completeExceptionally(e);
+            }
+            request.whenComplete((value, throwable) -> {
+                if (throwable == null) {
+                    page.complete(value);
+                } else {
+                    this.failure.compareAndSet(null, throwable);
+                    page.completeExceptionally(throwable);
+                }
+                launchNext();
+            });
+        }
+
+        private WxErrorException failure() {
+            return toWxErrorException(this.failure.get());
+        }
+    }
+}
@@ -24,6 +24,8 @@
  */
 package me.chanjar.weixin.open.util.crypto;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import me.chanjar.weixin.open.api.WxOpenConfigStorage;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.StringUtils;
@@ -39,6 +41,13 @@ public class WxOpenCryptUtil extends me.chanjar.weixin.common.util.crypto.WxCryp
 
     private static final Logger LOGGER = LoggerFactory.getLogger(WxOpenCryptUtil.class);
 
+    /**
+     * 每个配置存储对应一个加解密实例，配置存储被回收后实例随之回收
+     */
+    private static final Cache<WxOpenConfigStorage, WxOpenCryptUtil> INSTANCES = CacheBuilder.newBuilder().weakKeys().build();
+
+    private final String encodingAesKey;
+
     /**
      * 构造函数
      *
@@ -50,15 +59,43 @@ public class WxOpenCryptUtil extends me.chanjar.weixin.common.util.crypto.WxCryp
      * @param encodingAesKey 公众平台上，开发者设置的EncodingAESKey
      * @param appId          公众平台appid
      */
-        String encodingAesKey = wxOpenConfigStorage.getComponentEncodingAesKey();
-        String token = wxOpenConfigStorage.getComponentToken();
-        String appId = wxOpenConfigStorage.getComponentAppId();
+        this(wxOpenConfigStorage.getComponentToken(), wxOpenConfigStorage.getComponentEncodingAesKey(),
+                wxOpenConfigStorage.getComponentAppId());
+    }
 
+    private WxOpenCryptUtil(String token, String encodingAesKey, String appId) {
         this.token = token;
         this.appidOrCorpid = appId;
+        this.encodingAesKey = encodingAesKey;
         this.aesKey = Base64.decodeBase64(encodingAesKey + "=");
     }
 
+    /**
+     * 获取配置存储对应的加解密实例
+     * <p>
+     * 实例可以在多个线程中共享，只有配置中的token、EncodingAESKey或appid变化后才会重新创建；
+     * 密钥不变时每个线程缓存的Cipher也不需要重新init
+     *
+     * @param wxOpenConfigStorage
+     */
+    public static WxOpenCryptUtil getInstance(WxOpenConfigStorage wxOpenConfigStorage) {
+        String token = wxOpenConfigStorage.getComponentToken();
+        String encodingAesKey = wxOpenConfigStorage.getComponentEncodingAesKey();
+        String appId = wxOpenConfigStorage.getComponentAppId();
+
+        WxOpenCryptUtil cryptUtil = INSTANCES.getIfPresent(wxOpenConfigStorage);
+        if (cryptUtil == null || !cryptUtil.isSameConfig(token, encodingAesKey, appId)) {
+            cryptUtil = new WxOpenCryptUtil(token, encodingAesKey, appId);
+            INSTANCES.put(wxOpenConfigStorage, cryptUtil);
+        }
+        return cryptUtil;
+    }
+
+    private boolean isSameConfig(String token, String encodingAesKey, String appId) {
+        return Objects.equals(this.token, token) && Objects.equals(this.encodingAesKey, encodingAesKey)
+                && Objects.equals(this.appidOrCorpid, appId);
+    }
+
 
     /**
      * 判断是否加密
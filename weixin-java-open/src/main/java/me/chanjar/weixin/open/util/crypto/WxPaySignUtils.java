@@ -0,0 +1,181 @@
+package me.chanjar.weixin.open.util.crypto;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <pre>
+ * 微信支付签名算法(详见:https://pay.weixin.qq.com/wiki/doc/api/tools/cash_coupon.php?chapter=4_3)
+ * 对于支付请求对象，每个类型只在第一次签名时解析一次@XStreamAlias字段并按参数名排好序，
+ * 之后直接通过MethodHandle读取字段值写入MD5摘要，不再需要先转成Map再排序拼接字符串。
+ * 签名结果与 BeanUtils.xmlBean2Map + 排序拼接 的方式完全一致
+ * </pre>
+ */
+public class WxPaySignUtils {
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private static final byte[] SIGN_KEY_PREFIX = "key=".getBytes(StandardCharsets.UTF_8);
+
+    private static final ConcurrentMap<Class<?>, SignField[]> SIGN_FIELDS = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<MessageDigest> MD5_DIGEST = ThreadLocal.withInitial(DigestUtils::getMd5Digest);
+
+    /**
+     * 根据支付请求对象中带@XStreamAlias的字段生成签名
+     *
+     * @param xmlBean 支付请求对象
+     * @param signKey 加密Key(即 商户Key)
+     * @return 签名字符串
+     */
+    public static String createSign(Object xmlBean, String signKey) {
+        MessageDigest digest = getDigest();
+        for (SignField signField : getSignFields(xmlBean.getClass())) {
+            signField.update(digest, xmlBean);
+        }
+        return sign(digest, signKey);
+    }
+
+    /**
+     * 根据参数Map生成签名
+     *
+     * @param params  原始参数
+     * @param signKey 加密Key(即 商户Key)
+     * @return 签名字符串
+     */
+    public static String createSign(Map<String, String> params, String signKey) {
+        String[] names = params.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+
+        MessageDigest digest = getDigest();
+        for (String name : names) {
+            String value = params.get(name);
+            if (isSignParam(name) && value != null && !value.isEmpty()) {
+                update(digest, name.getBytes(StandardCharsets.UTF_8), value);
+            }
+        }
+        return sign(digest, signKey);
+    }
+
+    private static MessageDigest getDigest() {
+        MessageDigest digest = MD5_DIGEST.get();
+        // 上次计算中途抛出异常时可能残留数据
+        digest.reset();
+        return digest;
+    }
+
+    private static void update(MessageDigest digest, byte[] name, String value) {
+        digest.update(name);
+        digest.update((byte) '=');
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '&');
+    }
+
+    private static String sign(MessageDigest digest, String signKey) {
+        digest.update(SIGN_KEY_PREFIX);
+        digest.update(String.valueOf(signKey).getBytes(StandardCharsets.UTF_8));
+        byte[] md5 = digest.digest();
+
+        char[] result = new char[md5.length * 2];
+        for (int i = 0; i < md5.length; i++) {
+            result[i * 2] = HEX_DIGITS[(md5[i] >> 4) & 0x0f];
+            result[i * 2 + 1] = HEX_DIGITS[md5[i] & 0x0f];
+        }
+        return new String(result);
+    }
+
+    private static boolean isSignParam(String name) {
+        return !"sign".equals(name) && !"key".equals(name);
+    }
+
+    private static SignField[] getSignFields(Class<?> clz) {
+        SignField[] signFields = SIGN_FIELDS.get(clz);
+        if (signFields != null) {
+            return signFields;
+        }
+        return SIGN_FIELDS.computeIfAbsent(clz, WxPaySignUtils::resolveSignFields);
+    }
+
+    /**
+     * 与 BeanUtils.xmlBean2Map 的取值范围保持一致：本类及直接父类中声明的带@XStreamAlias的字段。
+     * 参数名重复时，xmlBean2Map 中父类字段的非空值会覆盖子类字段，所以父类字段排在前面优先取值
+     */
+    private static SignField[] resolveSignFields(Class<?> clz) {
+        List<Field> fields = new ArrayList<>();
+        if (clz.getSuperclass() != null) {
+            fields.addAll(Arrays.asList(clz.getSuperclass().getDeclaredFields()));
+        }
+        fields.addAll(Arrays.asList(clz.getDeclaredFields()));
+
+        Map<String, List<MethodHandle>> getters = new TreeMap<>();
+        for (Field field : fields) {
+            XStreamAlias alias = field.getAnnotation(XStreamAlias.class);
+            if (alias == null || !isSignParam(alias.value())) {
+                continue;
+            }
+            getters.computeIfAbsent(alias.value(), name -> new ArrayList<>()).add(unreflectGetter(field));
+        }
+
+        List<SignField> signFields = new ArrayList<>(getters.size());
+        for (Map.Entry<String, List<MethodHandle>> entry : getters.entrySet()) {
+            signFields.add(new SignField(entry.getKey(), entry.getValue().toArray(new MethodHandle[0])));
+        }
+        return signFields.toArray(new SignField[0]);
+    }
+
+    private static MethodHandle unreflectGetter(Field field) {
+        try {
+            field.setAccessible(true);
+            MethodHandle getter = MethodHandles.lookup().unreflectGetter(field);
+            if (Modifier.isStatic(field.getModifiers())) {
+                getter = MethodHandles.dropArguments(getter, 0, Object.class);
+            }
+            return getter.asType(MethodType.methodType(Object.class, Object.class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("无法读取字段 " + field, e);
+        }
+    }
+
+    private static class SignField {
+        private final byte[] name;
+        private final MethodHandle[] getters;
+
+        private SignField(String name, MethodHandle[] getters) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            this.getters = getters;
+        }
+
+        private void update(MessageDigest digest, Object bean) {
+            Object value = null;
+            try {
+                for (int i = 0; i < this.getters.length && value == null; i++) {
+                    value = (Object) this.getters[i].invokeExact(bean);
+                }
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+
+            if (value != null) {
+                String text = value.toString();
+                if (!text.isEmpty()) {
+                    WxPaySignUtils.update(digest, this.name, text);
+                }
+            }
+        }
+    }
+}
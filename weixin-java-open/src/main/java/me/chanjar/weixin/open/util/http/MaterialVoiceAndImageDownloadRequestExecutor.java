@@ -51,7 +51,7 @@ public class MaterialVoiceAndImageDownloadRequestExecutor implements RequestExec
             String responseContentString = new String(responseContent, "UTF-8");
             if (responseContentString.length() < 100) {
                 try {
-                    WxError wxError = WxGsonBuilder.create().fromJson(responseContentString, WxError.class);
+                    WxError wxError = WxError.fromJson(responseContentString);
                     if (wxError.getErrorCode() != 0) {
                         throw new WxErrorException(wxError);
                     }
@@ -0,0 +1,258 @@
+package me.chanjar.weixin.open.util.http;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.DefaultHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.ssl.SSLContexts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * 微信支付httpclient管理器
+ * 按 (商户号, 证书文件) 缓存带连接池和keep-alive的双向认证httpclient，证书只在首次使用或文件变化时才重新加载，
+ * 避免每次发红包、退款、企业付款都重新解析证书并进行完整的TLS握手。
+ * 不需要证书的接口共用一个带连接池的httpclient
+ * </pre>
+ */
+public class WxPayHttpClientManager {
+
+    private static final ScheduledExecutorService RETIRED_CLIENT_CLOSER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("wx-pay-client-closer-%d").setDaemon(true).build());
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final ConcurrentMap<String, KeyFileHttpClient> keyFileHttpClients = new ConcurrentHashMap<>();
+
+    private volatile CloseableHttpClient defaultHttpClient;
+
+    private String[] supportedProtocols = new String[]{"TLSv1.2", "TLSv1.1", "TLSv1"};
+    private HostnameVerifier hostnameVerifier = new DefaultHostnameVerifier();
+    private int connectionRequestTimeout = 3000;
+    private int connectionTimeout = 5000;
+    private int soTimeout = 10000;
+    private int maxConnPerHost = 50;
+    private int maxTotalConn = 100;
+    private long keyFileCheckIntervalMillis = 5000;
+
+    /**
+     * 获取不需要商户证书的httpclient
+     */
+    public CloseableHttpClient getHttpClient() {
+        if (this.defaultHttpClient == null) {
+            synchronized (this) {
+                if (this.defaultHttpClient == null) {
+                    this.defaultHttpClient = buildHttpClient(SSLConnectionSocketFactory.getSocketFactory());
+                }
+            }
+        }
+        return this.defaultHttpClient;
+    }
+
+    /**
+     * 获取使用商户证书的httpclient，证书文件被替换后会重新加载
+     *
+     * @param keyFile 商户证书文件(PKCS12)
+     * @param mchId   商户号，同时也是证书密码
+     */
+    public CloseableHttpClient getHttpClient(File keyFile, String mchId) throws IOException, GeneralSecurityException {
+        String cacheKey = mchId + '@' + keyFile.getAbsolutePath();
+        KeyFileHttpClient cached = this.keyFileHttpClients.get(cacheKey);
+        if (cached != null && !(cached.isCheckDue() && cached.isChanged(keyFile))) {
+            return cached.httpClient;
+        }
+
+        synchronized (this.keyFileHttpClients) {
+            // 锁外已经确认需要重新加载，这里不再受检查间隔限制，只判断其他线程是否已经换上了新的httpclient
+            cached = this.keyFileHttpClients.get(cacheKey);
+            if (cached != null && !cached.isChanged(keyFile)) {
+                return cached.httpClient;
+            }
+            KeyFileHttpClient created = new KeyFileHttpClient(keyFile, buildHttpClient(buildSslSocketFactory(keyFile, mchId)));
+            this.keyFileHttpClients.put(cacheKey, created);
+            if (cached != null) {
+                this.log.info("商户证书[{}]已变化，重新加载", keyFile.getAbsolutePath());
+                retire(cached.httpClient);
+            }
+            return created.httpClient;
+        }
+    }
+
+    /**
+     * 关闭所有缓存的httpclient
+     */
+    public void close() {
+        synchronized (this.keyFileHttpClients) {
+            for (KeyFileHttpClient cached : this.keyFileHttpClients.values()) {
+                closeQuietly(cached.httpClient);
+            }
+            this.keyFileHttpClients.clear();
+        }
+        synchronized (this) {
+            if (this.defaultHttpClient != null) {
+                closeQuietly(this.defaultHttpClient);
+                this.defaultHttpClient = null;
+            }
+        }
+    }
+
+    protected SSLConnectionSocketFactory buildSslSocketFactory(File keyFile, String mchId) throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (FileInputStream inputStream = new FileInputStream(keyFile)) {
+            keyStore.load(inputStream, mchId.toCharArray());
+        }
+        SSLContext sslContext = buildSslContext(keyStore, mchId.toCharArray());
+        return new SSLConnectionSocketFactory(sslContext, this.supportedProtocols, null, this.hostnameVerifier);
+    }
+
+    /**
+     * 根据商户证书构造SSLContext，子类可以覆盖以加载额外的信任证书
+     */
+    protected SSLContext buildSslContext(KeyStore keyStore, char[] password) throws GeneralSecurityException {
+        return SSLContexts.custom().loadKeyMaterial(keyStore, password).build();
+    }
+
+    private CloseableHttpClient buildHttpClient(SSLConnectionSocketFactory sslConnectionSocketFactory) {
+        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslConnectionSocketFactory)
+                .build();
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(registry);
+        connectionManager.setMaxTotal(this.maxTotalConn);
+        connectionManager.setDefaultMaxPerRoute(this.maxConnPerHost);
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(60, TimeUnit.SECONDS)
+                .setDefaultRequestConfig(
+                        RequestConfig.custom()
+                                .setSocketTimeout(this.soTimeout)
+                                .setConnectTimeout(this.connectionTimeout)
+                                .setConnectionRequestTimeout(this.connectionRequestTimeout)
+                                .build()
+                )
+                .build();
+    }
+
+    /**
+     * 被替换的httpclient上可能还有正在进行的请求，等待超时时间过后再关闭
+     */
+    private void retire(final CloseableHttpClient httpClient) {
+        RETIRED_CLIENT_CLOSER.schedule(() -> closeQuietly(httpClient),
+                this.connectionRequestTimeout + this.soTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    private void closeQuietly(CloseableHttpClient httpClient) {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            this.log.warn("关闭httpclient失败", e);
+        }
+    }
+
+    /**
+     * TLS协议版本，默认 TLSv1.2, TLSv1.1, TLSv1
+     */
+    public void setSupportedProtocols(String[] supportedProtocols) {
+        this.supportedProtocols = supportedProtocols;
+    }
+
+    public void setHostnameVerifier(HostnameVerifier hostnameVerifier) {
+        this.hostnameVerifier = hostnameVerifier;
+    }
+
+    /**
+     * 获取链接的超时时间设置,默认3000ms
+     */
+    public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    /**
+     * 建立链接的超时时间,默认为5000ms
+     */
+    public void setConnectionTimeout(int connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    /**
+     * socket超时设置,默认10000ms
+     */
+    public void setSoTimeout(int soTimeout) {
+        this.soTimeout = soTimeout;
+    }
+
+    /**
+     * 每路的最大链接数,默认50
+     */
+    public void setMaxConnPerHost(int maxConnPerHost) {
+        this.maxConnPerHost = maxConnPerHost;
+    }
+
+    /**
+     * 最大总连接数,默认100
+     */
+    public void setMaxTotalConn(int maxTotalConn) {
+        this.maxTotalConn = maxTotalConn;
+    }
+
+    /**
+     * 检查证书文件是否变化的最小间隔,默认5000ms
+     */
+    public void setKeyFileCheckIntervalMillis(long keyFileCheckIntervalMillis) {
+        this.keyFileCheckIntervalMillis = keyFileCheckIntervalMillis;
+    }
+
+    private class KeyFileHttpClient {
+        private final CloseableHttpClient httpClient;
+        private final long lastModified;
+        private final long length;
+        private volatile long lastCheckTime;
+
+        private KeyFileHttpClient(File keyFile, CloseableHttpClient httpClient) {
+            this.httpClient = httpClient;
+            this.lastModified = keyFile.lastModified();
+            this.length = keyFile.length();
+            this.lastCheckTime = System.currentTimeMillis();
+        }
+
+        /**
+         * 距离上次检查是否已超过检查间隔，超过时记录本次检查时间
+         */
+        private boolean isCheckDue() {
+            long now = System.currentTimeMillis();
+            if (now - this.lastCheckTime < keyFileCheckIntervalMillis) {
+                return false;
+            }
+            this.lastCheckTime = now;
+            return true;
+        }
+
+        private boolean isChanged(File keyFile) {
+            return keyFile.lastModified() != this.lastModified || keyFile.length() != this.length;
+        }
+    }
+}
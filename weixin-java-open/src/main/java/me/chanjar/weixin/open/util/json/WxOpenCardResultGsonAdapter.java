@@ -26,7 +26,7 @@ public class WxOpenCardResultGsonAdapter implements JsonDeserializer<WxOpenCardR
         cardResult.setCanConsume(GsonHelper.getBoolean(jsonObject, "can_consume"));
         cardResult.setUserCardStatus(GsonHelper.getString(jsonObject, "user_card_status"));
 
-        WxOpenCard card = WxOpenGsonBuilder.INSTANCE.create().fromJson(jsonObject.get("card"),
+        WxOpenCard card = WxOpenGsonBuilder.create().fromJson(jsonObject.get("card"),
                 new TypeToken<WxOpenCard>() {
                 }.getType());
 
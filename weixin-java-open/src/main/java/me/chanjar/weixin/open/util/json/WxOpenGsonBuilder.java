@@ -22,8 +22,8 @@ public class WxOpenGsonBuilder {
         INSTANCE.registerTypeAdapter(WxOpenMassNews.class, new WxOpenMassNewsGsonAdapter());
         INSTANCE.registerTypeAdapter(WxOpenMassTagMessage.class, new WxOpenMassTagMessageGsonAdapter());
         INSTANCE.registerTypeAdapter(WxOpenMassOpenIdsMessage.class, new WxOpenMassOpenIdsMessageGsonAdapter());
-        INSTANCE.registerTypeAdapter(WxOpenUser.class, new WxOpenUserGsonAdapter());
-        INSTANCE.registerTypeAdapter(WxOpenUserList.class, new WxUserListGsonAdapter());
+        INSTANCE.registerTypeAdapterFactory(new WxOpenUserGsonAdapter());
+        INSTANCE.registerTypeAdapterFactory(new WxUserListGsonAdapter());
         INSTANCE.registerTypeAdapter(WxOpenMassVideo.class, new WxOpenMassVideoAdapter());
         INSTANCE.registerTypeAdapter(WxOpenMassSendResult.class, new WxOpenMassSendResultAdapter());
         INSTANCE.registerTypeAdapter(WxOpenMassUploadResult.class, new WxOpenMassUploadResultAdapter());
@@ -52,8 +52,16 @@ public class WxOpenGsonBuilder {
         INSTANCE.registerTypeAdapter(WxOpenUserBlacklistGetResult.class, new WxUserBlacklistGetResultGsonAdapter());
     }
 
+    /**
+     * 开放平台所有接口的序列化都用这一个实例，上面注册的几十个适配器只在第一次调用时构建一次。
+     * 自定义适配器要在第一次调用前注册到 INSTANCE 上
+     */
     public static Gson create() {
-        return INSTANCE.create();
+        return GsonHolder.GSON;
+    }
+
+    private static class GsonHolder {
+        private static final Gson GSON = INSTANCE.create();
     }
 
 }
@@ -8,40 +8,95 @@
  */
 package me.chanjar.weixin.open.util.json;
 
-import com.google.gson.*;
-import me.chanjar.weixin.common.util.json.GsonHelper;
+import com.google.gson.stream.JsonReader;
+import me.chanjar.weixin.common.util.json.StreamingDeserializer;
 import me.chanjar.weixin.open.bean.result.WxOpenUser;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 
-public class WxOpenUserGsonAdapter implements JsonDeserializer<WxOpenUser> {
+public class WxOpenUserGsonAdapter extends StreamingDeserializer<WxOpenUser> {
+
+    public WxOpenUserGsonAdapter() {
+        super(WxOpenUser.class);
+    }
 
     @Override
-    public WxOpenUser deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-        JsonObject o = json.getAsJsonObject();
+    protected WxOpenUser read(JsonReader in) throws IOException {
         WxOpenUser wxOpenUser = new WxOpenUser();
-        Integer subscribe = GsonHelper.getInteger(o, "subscribe");
-        if (subscribe != null) {
-            wxOpenUser.setSubscribe(!new Integer(0).equals(subscribe));
+        // 与原来按字段取值一致：缺少的字符串字段也要经过setter(会被置为空字符串)
+        String city = null, country = null, headImgUrl = null, language = null, nickname = null, openId = null,
+                province = null, unionId = null, remark = null;
+        Integer sexId = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "subscribe":
+                    Integer subscribe = nextInteger(in);
+                    if (subscribe != null) {
+                        wxOpenUser.setSubscribe(subscribe != 0);
+                    }
+                    break;
+                case "city":
+                    city = nextString(in);
+                    break;
+                case "country":
+                    country = nextString(in);
+                    break;
+                case "headimgurl":
+                    headImgUrl = nextString(in);
+                    break;
+                case "language":
+                    language = nextString(in);
+                    break;
+                case "nickname":
+                    nickname = nextString(in);
+                    break;
+                case "openid":
+                    openId = nextString(in);
+                    break;
+                case "province":
+                    province = nextString(in);
+                    break;
+                case "subscribe_time":
+                    wxOpenUser.setSubscribeTime(nextLong(in));
+                    break;
+                case "unionid":
+                    unionId = nextString(in);
+                    break;
+                case "sex":
+                    sexId = nextInteger(in);
+                    break;
+                case "remark":
+                    remark = nextString(in);
+                    break;
+                case "groupid":
+                    wxOpenUser.setGroupId(nextInteger(in));
+                    break;
+                case "tagid_list":
+                    wxOpenUser.setTagIds(nextIntArray(in));
+                    break;
+                case "privilege":
+                    wxOpenUser.setPrivilege(nextStringArray(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
         }
-        wxOpenUser.setCity(GsonHelper.getString(o, "city"));
-        wxOpenUser.setCountry(GsonHelper.getString(o, "country"));
-        wxOpenUser.setHeadImgUrl(GsonHelper.getString(o, "headimgurl"));
-        wxOpenUser.setLanguage(GsonHelper.getString(o, "language"));
-        wxOpenUser.setNickname(GsonHelper.getString(o, "nickname"));
-        wxOpenUser.setOpenId(GsonHelper.getString(o, "openid"));
-        wxOpenUser.setProvince(GsonHelper.getString(o, "province"));
-        wxOpenUser.setSubscribeTime(GsonHelper.getLong(o, "subscribe_time"));
-        wxOpenUser.setUnionId(GsonHelper.getString(o, "unionid"));
-        Integer sexId = GsonHelper.getInteger(o, "sex");
-        wxOpenUser.setRemark(GsonHelper.getString(o, "remark"));
-        wxOpenUser.setGroupId(GsonHelper.getInteger(o, "groupid"));
-        wxOpenUser.setTagIds(GsonHelper.getIntArray(o, "tagid_list"));
-        wxOpenUser.setPrivilege(GsonHelper.getStringArray(o, "privilege"));
+        in.endObject();
+
+        wxOpenUser.setCity(city);
+        wxOpenUser.setCountry(country);
+        wxOpenUser.setHeadImgUrl(headImgUrl);
+        wxOpenUser.setLanguage(language);
+        wxOpenUser.setNickname(nickname);
+        wxOpenUser.setOpenId(openId);
+        wxOpenUser.setProvince(province);
+        wxOpenUser.setUnionId(unionId);
+        wxOpenUser.setRemark(remark);
         wxOpenUser.setSexId(sexId);
-        if (new Integer(1).equals(sexId)) {
+        if (Integer.valueOf(1).equals(sexId)) {
             wxOpenUser.setSex("男");
-        } else if (new Integer(2).equals(sexId)) {
+        } else if (Integer.valueOf(2).equals(sexId)) {
             wxOpenUser.setSex("女");
         } else {
             wxOpenUser.setSex("未知");
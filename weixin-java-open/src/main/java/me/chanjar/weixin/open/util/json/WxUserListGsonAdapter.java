@@ -8,28 +8,65 @@
  */
 package me.chanjar.weixin.open.util.json;
 
-import com.google.gson.*;
-import me.chanjar.weixin.common.util.json.GsonHelper;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import me.chanjar.weixin.common.util.json.StreamingDeserializer;
 import me.chanjar.weixin.open.bean.result.WxOpenUserList;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 
-public class WxUserListGsonAdapter implements JsonDeserializer<WxOpenUserList> {
+public class WxUserListGsonAdapter extends StreamingDeserializer<WxOpenUserList> {
+
+    public WxUserListGsonAdapter() {
+        super(WxOpenUserList.class);
+    }
 
     @Override
-    public WxOpenUserList deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-        JsonObject o = json.getAsJsonObject();
+    protected WxOpenUserList read(JsonReader in) throws IOException {
         WxOpenUserList wxOpenUserList = new WxOpenUserList();
-        wxOpenUserList.setTotal(GsonHelper.getInteger(o, "total"));
-        wxOpenUserList.setCount(GsonHelper.getInteger(o, "count"));
-        wxOpenUserList.setNextOpenId(GsonHelper.getString(o, "next_openid"));
-        if (o.get("data") != null && !o.get("data").isJsonNull() && !o.get("data").getAsJsonObject().get("openid").isJsonNull()) {
-            JsonArray data = o.get("data").getAsJsonObject().get("openid").getAsJsonArray();
-            for (int i = 0; i < data.size(); i++) {
-                wxOpenUserList.getOpenIds().add(GsonHelper.getAsString(data.get(i)));
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "total":
+                    Integer total = nextInteger(in);
+                    if (total != null) {
+                        wxOpenUserList.setTotal(total);
+                    }
+                    break;
+                case "count":
+                    Integer count = nextInteger(in);
+                    if (count != null) {
+                        wxOpenUserList.setCount(count);
+                    }
+                    break;
+                case "next_openid":
+                    wxOpenUserList.setNextOpenId(nextString(in));
+                    break;
+                case "data":
+                    readData(in, wxOpenUserList);
+                    break;
+                default:
+                    in.skipValue();
             }
         }
+        in.endObject();
         return wxOpenUserList;
     }
 
+    private static void readData(JsonReader in, WxOpenUserList wxOpenUserList) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return;
+        }
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("openid".equals(in.nextName()) && in.peek() != JsonToken.NULL) {
+                nextStrings(in, wxOpenUserList.getOpenIds());
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
 }
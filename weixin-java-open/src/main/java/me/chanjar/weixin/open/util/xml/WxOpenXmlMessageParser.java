@@ -0,0 +1,415 @@
+package me.chanjar.weixin.open.util.xml;
+
+import me.chanjar.weixin.open.bean.message.WxOpenXmlAuthorizeMessage;
+import me.chanjar.weixin.open.bean.message.WxOpenXmlMessage;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.StringReader;
+
+/**
+ * <pre>
+ * 微信推送消息的解析器
+ * 使用StAX直接从输入流中逐个读取节点，按节点名称switch到对应的字段，不需要先把请求体读成字符串，
+ * 也不需要XStream的反射和转换器查找。
+ * 解析结果与 {@link XStreamTransformer} 一致：未知节点忽略，消息中没有的ScanCodeInfo等子对象为null。
+ * 唯一的区别是SendPicsInfo中没有PicList节点时picList为空列表而不是null
+ * </pre>
+ */
+public class WxOpenXmlMessageParser {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+    public static WxOpenXmlMessage parseMessage(InputStream is) {
+        try {
+            return readMessage(XML_INPUT_FACTORY.createXMLStreamReader(is));
+        } catch (XMLStreamException | RuntimeException e) {
+            throw new IllegalArgumentException("无法解析的消息xml", e);
+        }
+    }
+
+    public static WxOpenXmlMessage parseMessage(String xml) {
+        try {
+            return readMessage(XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(xml)));
+        } catch (XMLStreamException | RuntimeException e) {
+            throw new IllegalArgumentException("无法解析的消息xml", e);
+        }
+    }
+
+    public static WxOpenXmlAuthorizeMessage parseAuthorizeMessage(InputStream is) {
+        try {
+            return readAuthorizeMessage(XML_INPUT_FACTORY.createXMLStreamReader(is));
+        } catch (XMLStreamException | RuntimeException e) {
+            throw new IllegalArgumentException("无法解析的授权事件xml", e);
+        }
+    }
+
+    public static WxOpenXmlAuthorizeMessage parseAuthorizeMessage(String xml) {
+        try {
+            return readAuthorizeMessage(XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(xml)));
+        } catch (XMLStreamException | RuntimeException e) {
+            throw new IllegalArgumentException("无法解析的授权事件xml", e);
+        }
+    }
+
+    private static WxOpenXmlMessage readMessage(XMLStreamReader reader) throws XMLStreamException {
+        try {
+            WxOpenXmlMessage message = new WxOpenXmlMessage();
+            message.setScanCodeInfo(null);
+            message.setSendPicsInfo(null);
+            message.setSendLocationInfo(null);
+            message.setHardWare(null);
+
+            nextRoot(reader);
+            while (nextChild(reader)) {
+                switch (reader.getLocalName()) {
+                    case "ToUserName":
+                        message.setToUser(reader.getElementText());
+                        break;
+                    case "FromUserName":
+                        message.setFromUser(reader.getElementText());
+                        break;
+                    case "CreateTime":
+                        message.setCreateTime(Long.decode(reader.getElementText()));
+                        break;
+                    case "MsgType":
+                        message.setMsgType(reader.getElementText());
+                        break;
+                    case "Content":
+                        message.setContent(reader.getElementText());
+                        break;
+                    case "MenuId":
+                        message.setMenuId(Long.decode(reader.getElementText()));
+                        break;
+                    case "MsgId":
+                        message.setMsgId(Long.decode(reader.getElementText()));
+                        break;
+                    case "PicUrl":
+                        message.setPicUrl(reader.getElementText());
+                        break;
+                    case "MediaId":
+                        message.setMediaId(reader.getElementText());
+                        break;
+                    case "Format":
+                        message.setFormat(reader.getElementText());
+                        break;
+                    case "ThumbMediaId":
+                        message.setThumbMediaId(reader.getElementText());
+                        break;
+                    case "Location_X":
+                        message.setLocationX(Double.valueOf(reader.getElementText()));
+                        break;
+                    case "Location_Y":
+                        message.setLocationY(Double.valueOf(reader.getElementText()));
+                        break;
+                    case "Scale":
+                        message.setScale(Double.valueOf(reader.getElementText()));
+                        break;
+                    case "Label":
+                        message.setLabel(reader.getElementText());
+                        break;
+                    case "Title":
+                        message.setTitle(reader.getElementText());
+                        break;
+                    case "Description":
+                        message.setDescription(reader.getElementText());
+                        break;
+                    case "Url":
+                        message.setUrl(reader.getElementText());
+                        break;
+                    case "Event":
+                        message.setEvent(reader.getElementText());
+                        break;
+                    case "EventKey":
+                        message.setEventKey(reader.getElementText());
+                        break;
+                    case "Ticket":
+                        message.setTicket(reader.getElementText());
+                        break;
+                    case "Latitude":
+                        message.setLatitude(Double.valueOf(reader.getElementText()));
+                        break;
+                    case "Longitude":
+                        message.setLongitude(Double.valueOf(reader.getElementText()));
+                        break;
+                    case "Precision":
+                        message.setPrecision(Double.valueOf(reader.getElementText()));
+                        break;
+                    case "Recognition":
+                        message.setRecognition(reader.getElementText());
+                        break;
+                    case "Status":
+                        message.setStatus(reader.getElementText());
+                        break;
+                    case "TotalCount":
+                        message.setTotalCount(Integer.decode(reader.getElementText()));
+                        break;
+                    case "FilterCount":
+                        message.setFilterCount(Integer.decode(reader.getElementText()));
+                        break;
+                    case "SentCount":
+                        message.setSentCount(Integer.decode(reader.getElementText()));
+                        break;
+                    case "ErrorCount":
+                        message.setErrorCount(Integer.decode(reader.getElementText()));
+                        break;
+                    case "KfAccount":
+                        message.setKfAccount(reader.getElementText());
+                        break;
+                    case "ToKfAccount":
+                        message.setToKfAccount(reader.getElementText());
+                        break;
+                    case "FromKfAccount":
+                        message.setFromKfAccount(reader.getElementText());
+                        break;
+                    case "CardId":
+                        message.setCardId(reader.getElementText());
+                        break;
+                    case "FriendUserName":
+                        message.setFriendUserName(reader.getElementText());
+                        break;
+                    case "IsGiveByFriend":
+                        message.setIsGiveByFriend(Integer.decode(reader.getElementText()));
+                        break;
+                    case "UserCardCode":
+                        message.setUserCardCode(reader.getElementText());
+                        break;
+                    case "OldUserCardCode":
+                        message.setOldUserCardCode(reader.getElementText());
+                        break;
+                    case "OuterId":
+                        message.setOuterId(Integer.decode(reader.getElementText()));
+                        break;
+                    case "ScanCodeInfo":
+                        message.setScanCodeInfo(readScanCodeInfo(reader));
+                        break;
+                    case "SendPicsInfo":
+                        message.setSendPicsInfo(readSendPicsInfo(reader));
+                        break;
+                    case "SendLocationInfo":
+                        message.setSendLocationInfo(readSendLocationInfo(reader));
+                        break;
+                    case "UniqId":
+                        message.setStoreUniqId(reader.getElementText());
+                        break;
+                    case "PoiId":
+                        message.setPoiId(reader.getElementText());
+                        break;
+                    case "Result":
+                        message.setResult(reader.getElementText());
+                        break;
+                    case "msg":
+                        message.setMsg(reader.getElementText());
+                        break;
+                    case "ExpiredTime":
+                        message.setExpiredTime(Long.decode(reader.getElementText()));
+                        break;
+                    case "FailTime":
+                        message.setFailTime(Long.decode(reader.getElementText()));
+                        break;
+                    case "FailReason":
+                        message.setFailReason(reader.getElementText());
+                        break;
+                    case "DeviceType":
+                        message.setDeviceType(reader.getElementText());
+                        break;
+                    case "DeviceID":
+                        message.setDeviceId(reader.getElementText());
+                        break;
+                    case "HardWare":
+                        message.setHardWare(readHardWare(reader));
+                        break;
+                    case "OpType":
+                        message.setOpType(Integer.decode(reader.getElementText()));
+                        break;
+                    case "DeviceStatus":
+                        message.setDeviceStatus(Integer.decode(reader.getElementText()));
+                        break;
+                    default:
+                        skipElement(reader);
+                }
+            }
+            return message;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static WxOpenXmlMessage.ScanCodeInfo readScanCodeInfo(XMLStreamReader reader) throws XMLStreamException {
+        WxOpenXmlMessage.ScanCodeInfo scanCodeInfo = new WxOpenXmlMessage.ScanCodeInfo();
+        while (nextChild(reader)) {
+            switch (reader.getLocalName()) {
+                case "ScanType":
+                    scanCodeInfo.setScanType(reader.getElementText());
+                    break;
+                case "ScanResult":
+                    scanCodeInfo.setScanResult(reader.getElementText());
+                    break;
+                default:
+                    skipElement(reader);
+            }
+        }
+        return scanCodeInfo;
+    }
+
+    private static WxOpenXmlMessage.SendPicsInfo readSendPicsInfo(XMLStreamReader reader) throws XMLStreamException {
+        WxOpenXmlMessage.SendPicsInfo sendPicsInfo = new WxOpenXmlMessage.SendPicsInfo();
+        while (nextChild(reader)) {
+            switch (reader.getLocalName()) {
+                case "Count":
+                    sendPicsInfo.setCount(Long.decode(reader.getElementText()));
+                    break;
+                case "PicList":
+                    // 与XStream一致，后出现的PicList替换前面的
+                    sendPicsInfo.getPicList().clear();
+                    while (nextChild(reader)) {
+                        if ("item".equals(reader.getLocalName())) {
+                            sendPicsInfo.getPicList().add(readPicItem(reader));
+                        } else {
+                            skipElement(reader);
+                        }
+                    }
+                    break;
+                default:
+                    skipElement(reader);
+            }
+        }
+        return sendPicsInfo;
+    }
+
+    private static WxOpenXmlMessage.SendPicsInfo.Item readPicItem(XMLStreamReader reader) throws XMLStreamException {
+        WxOpenXmlMessage.SendPicsInfo.Item item = new WxOpenXmlMessage.SendPicsInfo.Item();
+        while (nextChild(reader)) {
+            if ("PicMd5Sum".equals(reader.getLocalName())) {
+                item.setPicMd5Sum(reader.getElementText());
+            } else {
+                skipElement(reader);
+            }
+        }
+        return item;
+    }
+
+    private static WxOpenXmlMessage.SendLocationInfo readSendLocationInfo(XMLStreamReader reader) throws XMLStreamException {
+        WxOpenXmlMessage.SendLocationInfo sendLocationInfo = new WxOpenXmlMessage.SendLocationInfo();
+        while (nextChild(reader)) {
+            switch (reader.getLocalName()) {
+                case "Location_X":
+                    sendLocationInfo.setLocationX(reader.getElementText());
+                    break;
+                case "Location_Y":
+                    sendLocationInfo.setLocationY(reader.getElementText());
+                    break;
+                case "Scale":
+                    sendLocationInfo.setScale(reader.getElementText());
+                    break;
+                case "Label":
+                    sendLocationInfo.setLabel(reader.getElementText());
+                    break;
+                case "Poiname":
+                    sendLocationInfo.setPoiname(reader.getElementText());
+                    break;
+                default:
+                    skipElement(reader);
+            }
+        }
+        return sendLocationInfo;
+    }
+
+    private static WxOpenXmlMessage.HardWare readHardWare(XMLStreamReader reader) throws XMLStreamException {
+        WxOpenXmlMessage.HardWare hardWare = new WxOpenXmlMessage.HardWare();
+        while (nextChild(reader)) {
+            switch (reader.getLocalName()) {
+                case "MessageView":
+                    hardWare.setMessageView(reader.getElementText());
+                    break;
+                case "MessageAction":
+                    hardWare.setMessageAction(reader.getElementText());
+                    break;
+                default:
+                    skipElement(reader);
+            }
+        }
+        return hardWare;
+    }
+
+    private static WxOpenXmlAuthorizeMessage readAuthorizeMessage(XMLStreamReader reader) throws XMLStreamException {
+        try {
+            WxOpenXmlAuthorizeMessage message = new WxOpenXmlAuthorizeMessage();
+            nextRoot(reader);
+            while (nextChild(reader)) {
+                switch (reader.getLocalName()) {
+                    case "AppId":
+                        message.setAppId(reader.getElementText());
+                        break;
+                    case "CreateTime":
+                        message.setCreateTime(reader.getElementText());
+                        break;
+                    case "InfoType":
+                        message.setInfoType(reader.getElementText());
+                        break;
+                    case "ComponentVerifyTicket":
+                        message.setComponentVerifyTicket(reader.getElementText());
+                        break;
+                    default:
+                        skipElement(reader);
+                }
+            }
+            return message;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void nextRoot(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+            if (!reader.hasNext()) {
+                throw new XMLStreamException("没有根节点");
+            }
+        }
+    }
+
+    /**
+     * 移动到当前节点的下一个子节点，遇到当前节点的结束标签时返回false
+     */
+    private static boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 跳过当前节点及其所有子节点
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * 不处理DTD和外部实体，避免XXE
+     */
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        return factory;
+    }
+}
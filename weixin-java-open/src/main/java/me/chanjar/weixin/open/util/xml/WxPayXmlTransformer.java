@@ -0,0 +1,100 @@
+package me.chanjar.weixin.open.util.xml;
+
+import com.thoughtworks.xstream.XStream;
+import me.chanjar.weixin.common.util.xml.XStreamInitializer;
+import me.chanjar.weixin.open.bean.pay.WxPayJsSDKCallback;
+import me.chanjar.weixin.open.bean.pay.request.*;
+import me.chanjar.weixin.open.bean.pay.result.*;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <pre>
+ * 微信支付请求/结果对象的xml转换器
+ * 每个类型对应一个预先处理好注解的XStream实例，XStream配置完成后可以被多线程共享，
+ * 避免每次调用支付接口都重新构建XStream并解析注解。
+ * 支付对象的根节点都是xml，所以不能像消息那样共用同一个实例，只能一个类型一个实例
+ * </pre>
+ */
+public class WxPayXmlTransformer {
+    private static final ConcurrentMap<Class<?>, XStream> CLASS_2_XSTREAM_INSTANCE = new ConcurrentHashMap<>();
+
+    static {
+        registerClass(WxPayUnifiedOrderRequest.class);
+        registerClass(WxPayOrderQueryRequest.class);
+        registerClass(WxPayOrderCloseRequest.class);
+        registerClass(WxPayRefundRequest.class);
+        registerClass(WxPayRefundQueryRequest.class);
+        registerClass(WxPaySendRedpackRequest.class);
+        registerClass(WxPayRedpackQueryRequest.class);
+        registerClass(WxEntPayRequest.class);
+        registerClass(WxEntPayQueryRequest.class);
+
+        registerClass(WxPayUnifiedOrderResult.class);
+        registerClass(WxPayOrderQueryResult.class);
+        registerClass(WxPayOrderCloseResult.class);
+        registerClass(WxPayRefundResult.class);
+        registerClass(WxPayRefundQueryResult.class);
+        registerClass(WxPaySendRedpackResult.class);
+        registerClass(WxPayRedpackQueryResult.class);
+        registerClass(WxEntPayResult.class);
+        registerClass(WxEntPayQueryResult.class);
+
+        XStream callbackXStream = XStreamInitializer.getInstance();
+        callbackXStream.alias("xml", WxPayJsSDKCallback.class);
+        register(WxPayJsSDKCallback.class, callbackXStream);
+    }
+
+    /**
+     * xml -&gt; pojo
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T fromXml(Class<T> clazz, String xml) {
+        return (T) getXStream(clazz).fromXML(xml);
+    }
+
+    /**
+     * pojo -&gt; xml
+     */
+    public static String toXml(Object object) {
+        return getXStream(object.getClass()).toXML(object);
+    }
+
+    /**
+     * 注册自定义的解析器
+     *
+     * @param clz     类型
+     * @param xStream xml解析器
+     */
+    public static void register(Class<?> clz, XStream xStream) {
+        CLASS_2_XSTREAM_INSTANCE.put(clz, xStream);
+    }
+
+    /**
+     * 根据类上的注解注册解析器
+     *
+     * @param clz 要注册的类
+     */
+    public static void registerClass(Class<?> clz) {
+        register(clz, buildXStream(clz));
+    }
+
+    /**
+     * 未注册的类型(例如使用方扩展的子类)在第一次使用时注册
+     */
+    private static XStream getXStream(Class<?> clz) {
+        XStream xstream = CLASS_2_XSTREAM_INSTANCE.get(clz);
+        if (xstream != null) {
+            return xstream;
+        }
+        return CLASS_2_XSTREAM_INSTANCE.computeIfAbsent(clz, WxPayXmlTransformer::buildXStream);
+    }
+
+    private static XStream buildXStream(Class<?> clz) {
+        XStream xstream = XStreamInitializer.getInstance();
+        xstream.setClassLoader(clz.getClassLoader());
+        xstream.processAnnotations(clz);
+        return xstream;
+    }
+}
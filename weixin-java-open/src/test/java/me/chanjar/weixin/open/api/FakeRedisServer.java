@@ -0,0 +1,414 @@
+package me.chanjar.weixin.open.api;
+
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaInteger;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.VarArgFunction;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 测试用的本地Redis替身，实现了PING/GET/SET/MGET/DEL/INCR/EXPIRE/TTL/RPUSH/LLEN/LRANGE/SADD/SREM/SMEMBERS/EVAL/MULTI/EXEC/QUIT，
+ * SET支持NX和PX选项，并记录收到的命令数，用于验证令牌读取是否访问了Redis。
+ * EVAL由luaj执行真正的Lua脚本，脚本中的redis.call会回到这里执行命令，整个脚本和Redis一样原子执行。
+ * weixin-java-web的测试也通过本模块的测试jar使用这个类
+ */
+public class FakeRedisServer implements Closeable {
+
+    private final Map<String, String> data = new HashMap<>();
+
+    private final Map<String, List<String>> lists = new HashMap<>();
+
+    private final Map<String, Set<String>> sets = new HashMap<>();
+
+    private final AtomicLong commandCount = new AtomicLong();
+
+    private final Map<String, Long> expiresAt = new HashMap<>();
+
+    private final Map<String, LuaValue> scripts = new HashMap<>();
+
+    private final Globals globals = JsePlatform.standardGlobals();
+
+    private final ServerSocket serverSocket;
+
+    public FakeRedisServer() throws IOException {
+        this.serverSocket = new ServerSocket(0, 200, InetAddress.getLoopbackAddress());
+        LuaTable redis = new LuaTable();
+        redis.set("call", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                List<String> command = new ArrayList<>(args.narg());
+                for (int i = 1; i <= args.narg(); i++) {
+                    command.add(args.checkjstring(i));
+                }
+                Object reply = execute(command);
+                if (reply instanceof ErrorReply) {
+                    throw new LuaError(((ErrorReply) reply).message);
+                }
+                return toLua(reply);
+            }
+        });
+        this.globals.set("redis", redis);
+
+        Thread acceptor = new Thread(this::accept, "fake-redis");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    public long getCommandCount() {
+        return this.commandCount.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.serverSocket.close();
+    }
+
+    private void accept() {
+        while (!this.serverSocket.isClosed()) {
+            try {
+                Socket socket = this.serverSocket.accept();
+                Thread handler = new Thread(() -> handle(socket), "fake-redis-connection");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = new BufferedOutputStream(s.getOutputStream());
+            List<List<String>> transaction = null;
+            while (true) {
+                List<String> command = readCommand(in);
+                if (command == null) {
+                    return;
+                }
+                this.commandCount.incrementAndGet();
+                String name = command.get(0).toUpperCase();
+                if ("MULTI".equals(name)) {
+                    transaction = new ArrayList<>();
+                    write(out, new StatusReply("OK"));
+                } else if ("EXEC".equals(name)) {
+                    List<Object> replies = new ArrayList<>(transaction.size());
+                    synchronized (this) {
+                        for (List<String> queued : transaction) {
+                            replies.add(execute(queued));
+                        }
+                    }
+                    write(out, replies);
+                    transaction = null;
+                } else if (transaction != null) {
+                    transaction.add(command);
+                    write(out, new StatusReply("QUEUED"));
+                } else if ("QUIT".equals(name)) {
+                    write(out, new StatusReply("OK"));
+                    out.flush();
+                    return;
+                } else {
+                    write(out, execute(command));
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // 连接关闭
+        }
+    }
+
+    /**
+     * @return Long、String、null、StatusReply、ErrorReply 或它们组成的List
+     */
+    private synchronized Object execute(List<String> command) {
+        for (String key : command.subList(Math.min(1, command.size()), command.size())) {
+            expireIfNeeded(key);
+        }
+        String key = command.size() > 1 ? command.get(1) : null;
+        switch (command.get(0).toUpperCase()) {
+            case "PING":
+                return new StatusReply("PONG");
+            case "GET":
+                return this.data.get(key);
+            case "MGET":
+                List<Object> values = new ArrayList<>(command.size() - 1);
+                for (String requested : command.subList(1, command.size())) {
+                    values.add(this.data.get(requested));
+                }
+                return values;
+            case "SET":
+                List<String> options = upperCase(command.subList(3, command.size()));
+                if (options.contains("NX") && this.data.containsKey(key)) {
+                    return null;
+                }
+                this.data.put(key, command.get(2));
+                this.expiresAt.remove(key);
+                int px = options.indexOf("PX");
+                if (px >= 0) {
+                    this.expiresAt.put(key, System.currentTimeMillis() + Long.parseLong(options.get(px + 1)));
+                }
+                return new StatusReply("OK");
+            case "DEL":
+                long removed = 0;
+                for (String deleted : command.subList(1, command.size())) {
+                    this.expiresAt.remove(deleted);
+                    removed += this.data.remove(deleted) == null && this.lists.remove(deleted) == null
+                            && this.sets.remove(deleted) == null ? 0 : 1;
+                }
+                return removed;
+            case "INCR":
+                String value = this.data.get(key);
+                long incremented = (value == null ? 0 : Long.parseLong(value)) + 1;
+                this.data.put(key, String.valueOf(incremented));
+                return incremented;
+            case "RPUSH":
+                List<String> pushed = this.lists.computeIfAbsent(key, k -> new ArrayList<>());
+                pushed.addAll(command.subList(2, command.size()));
+                return (long) pushed.size();
+            case "LLEN":
+                return (long) this.lists.getOrDefault(key, Collections.emptyList()).size();
+            case "LRANGE":
+                List<String> list = this.lists.getOrDefault(key, Collections.emptyList());
+                int start = index(Integer.parseInt(command.get(2)), list.size());
+                int stop = Math.min(index(Integer.parseInt(command.get(3)), list.size()), list.size() - 1);
+                return start > stop ? Collections.emptyList() : new ArrayList<Object>(list.subList(start, stop + 1));
+            case "SADD":
+                Set<String> members = this.sets.computeIfAbsent(key, k -> new LinkedHashSet<>());
+                long added = 0;
+                for (String member : command.subList(2, command.size())) {
+                    added += members.add(member) ? 1 : 0;
+                }
+                return added;
+            case "SREM":
+                Set<String> remaining = this.sets.getOrDefault(key, Collections.emptySet());
+                long srem = 0;
+                for (String member : command.subList(2, command.size())) {
+                    srem += remaining.remove(member) ? 1 : 0;
+                }
+                if (remaining.isEmpty()) {
+                    this.sets.remove(key);
+                }
+                return srem;
+            case "SMEMBERS":
+                return new ArrayList<Object>(this.sets.getOrDefault(key, Collections.emptySet()));
+            case "EXPIRE":
+                if (!this.data.containsKey(key) && !this.lists.containsKey(key)) {
+                    return 0L;
+                }
+                this.expiresAt.put(key, System.currentTimeMillis() + Long.parseLong(command.get(2)) * 1000);
+                return 1L;
+            case "TTL":
+                if (!this.data.containsKey(key) && !this.lists.containsKey(key)) {
+                    return -2L;
+                }
+                Long expires = this.expiresAt.get(key);
+                return expires == null ? -1L : (expires - System.currentTimeMillis() + 999) / 1000;
+            case "EVAL":
+                return eval(command);
+            default:
+                return new ErrorReply("ERR unknown command '" + command.get(0) + "'");
+        }
+    }
+
+    private Object eval(List<String> command) {
+        int numKeys = Integer.parseInt(command.get(2));
+        LuaTable keys = new LuaTable();
+        LuaTable argv = new LuaTable();
+        for (int i = 0; i < numKeys; i++) {
+            keys.set(i + 1, LuaValue.valueOf(command.get(3 + i)));
+        }
+        for (int i = 3 + numKeys; i < command.size(); i++) {
+            argv.set(i - 2 - numKeys, LuaValue.valueOf(command.get(i)));
+        }
+        this.globals.set("KEYS", keys);
+        this.globals.set("ARGV", argv);
+        try {
+            LuaValue script = this.scripts.computeIfAbsent(command.get(1), source -> this.globals.load(source, "@user_script"));
+            return fromLua(script.call());
+        } catch (LuaError e) {
+            return new ErrorReply("ERR Error running script: " + e.getMessage());
+        }
+    }
+
+    private void expireIfNeeded(String key) {
+        Long expires = this.expiresAt.get(key);
+        if (expires != null && expires <= System.currentTimeMillis()) {
+            this.expiresAt.remove(key);
+            this.data.remove(key);
+            this.lists.remove(key);
+        }
+    }
+
+    /**
+     * 与LRANGE一致：负数下标从列表尾部算起
+     */
+    private static int index(int index, int size) {
+        return Math.max(index < 0 ? size + index : index, 0);
+    }
+
+    /**
+     * 与Redis的转换规则一致：整数回复转为number，空回复转为false，状态回复转为{ok=...}
+     */
+    private static LuaValue toLua(Object reply) {
+        if (reply == null) {
+            return LuaValue.FALSE;
+        }
+        if (reply instanceof Long) {
+            return LuaInteger.valueOf((Long) reply);
+        }
+        if (reply instanceof StatusReply) {
+            LuaTable status = new LuaTable();
+            status.set("ok", ((StatusReply) reply).message);
+            return status;
+        }
+        if (reply instanceof List) {
+            LuaTable array = new LuaTable();
+            int i = 1;
+            for (Object element : (List<?>) reply) {
+                array.set(i++, toLua(element));
+            }
+            return array;
+        }
+        return LuaValue.valueOf(reply.toString());
+    }
+
+    /**
+     * 与Redis的转换规则一致：number截断为整数，false和nil转为空回复
+     */
+    private static Object fromLua(LuaValue value) {
+        if (value.isnil() || value.isboolean() && !value.toboolean()) {
+            return null;
+        }
+        if (value.isboolean()) {
+            return 1L;
+        }
+        if (value.type() == LuaValue.TNUMBER) {
+            return value.tolong();
+        }
+        if (value.istable()) {
+            LuaTable table = value.checktable();
+            if (!table.get("ok").isnil()) {
+                return new StatusReply(table.get("ok").tojstring());
+            }
+            if (!table.get("err").isnil()) {
+                return new ErrorReply(table.get("err").tojstring());
+            }
+            List<Object> array = new ArrayList<>();
+            for (int i = 1; !table.get(i).isnil(); i++) {
+                array.add(fromLua(table.get(i)));
+            }
+            return array;
+        }
+        return value.tojstring();
+    }
+
+    private static void write(OutputStream out, Object reply) throws IOException {
+        if (reply == null) {
+            out.write("$-1\r\n".getBytes(StandardCharsets.UTF_8));
+        } else if (reply instanceof Long) {
+            out.write((":" + reply + "\r\n").getBytes(StandardCharsets.UTF_8));
+        } else if (reply instanceof StatusReply) {
+            out.write(("+" + ((StatusReply) reply).message + "\r\n").getBytes(StandardCharsets.UTF_8));
+        } else if (reply instanceof ErrorReply) {
+            out.write(("-" + ((ErrorReply) reply).message + "\r\n").getBytes(StandardCharsets.UTF_8));
+        } else if (reply instanceof List) {
+            List<?> array = (List<?>) reply;
+            out.write(("*" + array.size() + "\r\n").getBytes(StandardCharsets.UTF_8));
+            for (Object element : array) {
+                write(out, element);
+            }
+        } else {
+            byte[] bytes = reply.toString().getBytes(StandardCharsets.UTF_8);
+            out.write(("$" + bytes.length + "\r\n").getBytes(StandardCharsets.UTF_8));
+            out.write(bytes);
+            out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static List<String> upperCase(List<String> values) {
+        List<String> result = new ArrayList<>(values.size());
+        for (String value : values) {
+            result.add(value.toUpperCase());
+        }
+        return result;
+    }
+
+    private static List<String> readCommand(InputStream in) throws IOException {
+        String header = readLine(in);
+        if (header == null) {
+            return null;
+        }
+        int count = Integer.parseInt(header.substring(1));
+        List<String> command = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = Integer.parseInt(readLine(in).substring(1));
+            byte[] bytes = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int n = in.read(bytes, read, length - read);
+                if (n < 0) {
+                    return null;
+                }
+                read += n;
+            }
+            readLine(in);
+            command.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return command;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\r') {
+                in.read();
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+        return null;
+    }
+
+    private static class StatusReply {
+        private final String message;
+
+        private StatusReply(String message) {
+            this.message = message;
+        }
+    }
+
+    private static class ErrorReply {
+        private final String message;
+
+        private ErrorReply(String message) {
+            this.message = message;
+        }
+    }
+}
@@ -20,7 +20,7 @@ public class WxOpenBusyRetryTest {
         WxOpenService service = new WxOpenServiceImpl() {
 
             @Override
-            protected synchronized <T, E> T executeInternal(
+            protected <T, E> T executeInternal(
                     RequestExecutor<T, E> executor, String uri, E data)
                     throws WxErrorException {
                 WxError error = new WxError();
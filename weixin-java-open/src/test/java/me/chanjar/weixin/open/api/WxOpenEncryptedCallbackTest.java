@@ -0,0 +1,138 @@
+package me.chanjar.weixin.open.api;
+
+import me.chanjar.weixin.open.bean.message.WxOpenXmlMessage;
+import me.chanjar.weixin.open.bean.message.WxOpenXmlMessageTest;
+import me.chanjar.weixin.open.bean.message.WxOpenXmlOutMessage;
+import me.chanjar.weixin.open.util.crypto.WxOpenCryptUtil;
+import me.chanjar.weixin.open.util.xml.WxOpenXmlMessageParser;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 加密消息的收发：同一个配置存储共用一个加解密实例，token或EncodingAESKey变化后立即使用新的配置，
+ * 并对比每条消息新建加解密实例时的端到端吞吐量
+ */
+@Test
+public class WxOpenEncryptedCallbackTest {
+
+    private static final String ENCODING_AES_KEY = "abcdefghijklmnopqrstuvwxyz0123456789ABCDEFG";
+
+    private static final int BENCHMARK_ITERATIONS = 20000;
+
+    private static final Pattern SIGNATURE = Pattern.compile("<MsgSignature><!\\[CDATA\\[(.*?)]]></MsgSignature>");
+
+    private static final Pattern TIMESTAMP = Pattern.compile("<TimeStamp>(.*?)</TimeStamp>");
+
+    private static final Pattern NONCE = Pattern.compile("<Nonce><!\\[CDATA\\[(.*?)]]></Nonce>");
+
+    private FakeRedisServer redisServer;
+
+    private WxOpenJedisConfigStorage storage;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        this.redisServer = new FakeRedisServer();
+        this.storage = new WxOpenJedisConfigStorage("127.0.0.1", this.redisServer.getPort(), null);
+        this.storage.setComponentAppId("wx_component_appid");
+        this.storage.setComponentToken("component_token");
+        this.storage.setComponentEncodingAesKey(ENCODING_AES_KEY);
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        this.storage.destroy();
+        this.redisServer.close();
+    }
+
+    public void testInstanceSharedUntilConfigChanges() {
+        WxOpenCryptUtil cryptUtil = WxOpenCryptUtil.getInstance(this.storage);
+        Assert.assertSame(WxOpenCryptUtil.getInstance(this.storage), cryptUtil);
+
+        try {
+            this.storage.setComponentEncodingAesKey("ABCDEFGabcdefghijklmnopqrstuvwxyz0123456789");
+            WxOpenCryptUtil changedKey = WxOpenCryptUtil.getInstance(this.storage);
+            Assert.assertNotSame(changedKey, cryptUtil);
+            Assert.assertEquals(changedKey.decrypt(extractEncrypt(changedKey.encrypt("<xml/>"))), "<xml/>");
+
+            this.storage.setComponentToken("another_token");
+            Assert.assertNotSame(WxOpenCryptUtil.getInstance(this.storage), changedKey);
+        } finally {
+            this.storage.setComponentToken("component_token");
+            this.storage.setComponentEncodingAesKey(ENCODING_AES_KEY);
+        }
+    }
+
+    public void testEncryptedRoundTrip() {
+        String encryptedXml = WxOpenCryptUtil.getInstance(this.storage).encrypt(WxOpenXmlMessageTest.TEXT_MESSAGE_XML);
+        WxOpenXmlMessage message = WxOpenXmlMessage.fromEncryptedXml(encryptedXml, this.storage,
+                find(TIMESTAMP, encryptedXml), find(NONCE, encryptedXml), find(SIGNATURE, encryptedXml));
+        Assert.assertEquals(message.getContent(), "this is a test");
+
+        String reply = reply(message).toEncryptedXml(this.storage);
+        String plainReply = WxOpenCryptUtil.getInstance(this.storage).decrypt(find(SIGNATURE, reply),
+                find(TIMESTAMP, reply), find(NONCE, reply), reply);
+        Assert.assertTrue(plainReply.contains("<Content><![CDATA[echo: this is a test]]></Content>"), plainReply);
+    }
+
+    public void testSharedInstanceCallbackThroughput() {
+        String encryptedXml = WxOpenCryptUtil.getInstance(this.storage).encrypt(WxOpenXmlMessageTest.TEXT_MESSAGE_XML);
+        String timestamp = find(TIMESTAMP, encryptedXml);
+        String nonce = find(NONCE, encryptedXml);
+        String signature = find(SIGNATURE, encryptedXml);
+        // 预热
+        for (int i = 0; i < 2000; i++) {
+            perMessage(encryptedXml, timestamp, nonce, signature);
+            shared(encryptedXml, timestamp, nonce, signature);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            perMessage(encryptedXml, timestamp, nonce, signature);
+        }
+        double perMessageRate = BENCHMARK_ITERATIONS * 1e9 / (System.nanoTime() - start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            shared(encryptedXml, timestamp, nonce, signature);
+        }
+        double sharedRate = BENCHMARK_ITERATIONS * 1e9 / (System.nanoTime() - start);
+
+        System.out.println(String.format("encrypted callbacks, crypto per message: %.0f/s, shared crypto: %.0f/s",
+                perMessageRate, sharedRate));
+        Assert.assertTrue(sharedRate > perMessageRate, "共用加解密实例应该更快");
+    }
+
+    /**
+     * 与改造前一致：解密请求和加密回复各新建一次加解密实例
+     */
+    private String perMessage(String encryptedXml, String timestamp, String nonce, String signature) {
+        String plainText = new WxOpenCryptUtil(this.storage).decrypt(signature, timestamp, nonce, encryptedXml);
+        WxOpenXmlMessage message = WxOpenXmlMessageParser.parseMessage(plainText);
+        return new WxOpenCryptUtil(this.storage).encrypt(reply(message).toXml());
+    }
+
+    private String shared(String encryptedXml, String timestamp, String nonce, String signature) {
+        WxOpenXmlMessage message = WxOpenXmlMessage.fromEncryptedXml(encryptedXml, this.storage, timestamp, nonce, signature);
+        return reply(message).toEncryptedXml(this.storage);
+    }
+
+    private static WxOpenXmlOutMessage reply(WxOpenXmlMessage message) {
+        return WxOpenXmlOutMessage.TEXT().content("echo: " + message.getContent())
+                .fromUser(message.getToUser()).toUser(message.getFromUser()).build();
+    }
+
+    private static String extractEncrypt(String encryptedXml) {
+        return find(Pattern.compile("<Encrypt><!\\[CDATA\\[(.*?)]]></Encrypt>"), encryptedXml);
+    }
+
+    private static String find(Pattern pattern, String xml) {
+        Matcher matcher = pattern.matcher(xml);
+        Assert.assertTrue(matcher.find(), xml);
+        return matcher.group(1);
+    }
+}
@@ -0,0 +1,227 @@
+package me.chanjar.weixin.open.api;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import me.chanjar.weixin.common.bean.result.WxError;
+import me.chanjar.weixin.common.exception.WxErrorException;
+import me.chanjar.weixin.open.api.impl.WxOpenServiceImpl;
+import me.chanjar.weixin.open.bean.result.WxOpenUser;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 用本地的关注者列表和批量获取用户信息桩验证关注者同步：100万关注者的耗时、并发与限流、中断后从记录的位置继续
+ */
+@Test
+public class WxOpenFollowerSyncTest {
+
+    private static final int PAGE_SIZE = 10000;
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(8);
+
+    @AfterClass
+    public void tearDown() {
+        this.scheduler.shutdownNow();
+    }
+
+    public void testSyncMillionFollowers() throws Exception {
+        int followers = 1000000;
+        StubService service = new StubService("wx_sync_million", followers, 20);
+        RecordingSink sink = new RecordingSink(followers);
+        MemoryCheckpoint checkpoint = new MemoryCheckpoint();
+
+        long start = System.nanoTime();
+        long synced = new WxOpenFollowerSync(service).concurrency(64).permitsPerSecond(20000).writeBatchSize(1000)
+                .sync(sink, checkpoint);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        int batchRequests = followers / 100;
+        System.out.println(String.format("follower sync of %d followers: %d ms, %d user/get + %d batchget requests "
+                        + "(%d ms latency each, %d max in flight), %d upsert batches; serial requests would take %d ms",
+                followers, elapsedMillis, service.listRequests.get(), service.batchRequests.get(), service.latencyMillis,
+                service.maxInFlight.get(), sink.batches, (long) (service.listRequests.get() + batchRequests) * service.latencyMillis));
+        Assert.assertEquals(synced, followers);
+        Assert.assertEquals(sink.seen.cardinality(), followers);
+        Assert.assertEquals(sink.upserts, followers);
+        Assert.assertEquals(service.batchRequests.get(), batchRequests);
+        // 100页加最后一次空页
+        Assert.assertEquals(service.listRequests.get(), followers / PAGE_SIZE + 1);
+        Assert.assertTrue(service.maxInFlight.get() <= 64 + 1, "同时进行的请求数: " + service.maxInFlight.get());
+        Assert.assertTrue(sink.maxBatch <= 1000);
+        Assert.assertNull(checkpoint.nextOpenid, "同步完成后应清除进度");
+    }
+
+    public void testResumeFromCheckpointAfterFailure() throws Exception {
+        int followers = 50000;
+        StubService service = new StubService("wx_sync_resume", followers, 5);
+        service.failAt = 27345;
+        RecordingSink sink = new RecordingSink(followers);
+        MemoryCheckpoint checkpoint = new MemoryCheckpoint();
+        WxOpenFollowerSync followerSync = new WxOpenFollowerSync(service).concurrency(8).permitsPerSecond(10000);
+
+        try {
+            followerSync.sync(sink, checkpoint);
+            Assert.fail("批量获取失败时应该抛出异常");
+        } catch (WxErrorException e) {
+            Assert.assertEquals(e.getError().getErrorCode(), 45009);
+        }
+        // 第3页没有写完，进度停在第2页之后
+        Assert.assertEquals(checkpoint.nextOpenid, openid(2 * PAGE_SIZE - 1));
+        for (int i = 0; i < 2 * PAGE_SIZE; i++) {
+            Assert.assertTrue(sink.seen.get(i));
+        }
+
+        service.failAt = -1;
+        service.listRequests.set(0);
+        long synced = followerSync.sync(sink, checkpoint);
+        Assert.assertEquals(synced, followers - 2 * PAGE_SIZE, "应该从记录的位置继续");
+        Assert.assertEquals(service.listRequests.get(), 4);
+        Assert.assertEquals(sink.seen.cardinality(), followers);
+        Assert.assertNull(checkpoint.nextOpenid);
+    }
+
+    public void testRateLimitPerAppId() throws Exception {
+        StubService service = new StubService("wx_sync_rate_limit", 3000, 1);
+        long start = System.nanoTime();
+        new WxOpenFollowerSync(service).concurrency(64).permitsPerSecond(50)
+                .sync(new RecordingSink(3000), new MemoryCheckpoint());
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 2次user/get加30次batchget，每秒50次
+        Assert.assertTrue(elapsedMillis >= 500, "限流未生效: " + elapsedMillis + " ms");
+    }
+
+    private static String openid(int i) {
+        return String.format("o%07d", i);
+    }
+
+    private static int index(String openid) {
+        return Integer.parseInt(openid.substring(1));
+    }
+
+    private static class RecordingSink implements WxOpenFollowerSync.FollowerSink {
+        private final BitSet seen;
+        private long upserts;
+        private int batches;
+        private int maxBatch;
+
+        private RecordingSink(int followers) {
+            this.seen = new BitSet(followers);
+        }
+
+        @Override
+        public void upsert(List<WxOpenUser> users) {
+            for (WxOpenUser user : users) {
+                Assert.assertEquals(user.getNickname(), "nick_" + user.getOpenId());
+                this.seen.set(index(user.getOpenId()));
+            }
+            this.upserts += users.size();
+            this.batches++;
+            this.maxBatch = Math.max(this.maxBatch, users.size());
+        }
+    }
+
+    private static class MemoryCheckpoint implements WxOpenFollowerSync.Checkpoint {
+        private volatile String nextOpenid;
+
+        @Override
+        public String load() {
+            return this.nextOpenid;
+        }
+
+        @Override
+        public void save(String nextOpenid) {
+            this.nextOpenid = nextOpenid;
+        }
+    }
+
+    /**
+     * user/get 和 user/info/batchget 的本地桩，每个请求固定延迟 latencyMillis 后返回
+     */
+    private class StubService extends WxOpenServiceImpl {
+        private final AtomicInteger listRequests = new AtomicInteger();
+        private final AtomicInteger batchRequests = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final int followers;
+        private final long latencyMillis;
+        private volatile int failAt = -1;
+
+        private StubService(String appId, int followers, long latencyMillis) {
+            this.followers = followers;
+            this.latencyMillis = latencyMillis;
+            WxOpenInMemoryConfigStorage configStorage = new WxOpenInMemoryConfigStorage();
+            configStorage.setAppId(appId);
+            setWxOpenConfigStorage(configStorage);
+        }
+
+        @Override
+        public CompletableFuture<String> getAsync(String url, String queryParam) {
+            Assert.assertTrue(url.endsWith("/user/get"), url);
+            this.listRequests.incrementAndGet();
+            int begin = queryParam == null ? 0 : index(queryParam.substring("next_openid=".length())) + 1;
+            return respond(() -> userList(begin));
+        }
+
+        @Override
+        public CompletableFuture<String> postAsync(String url, String postData) {
+            Assert.assertTrue(url.endsWith("/user/info/batchget"), url);
+            this.batchRequests.incrementAndGet();
+            return respond(() -> userInfoList(postData));
+        }
+
+        private CompletableFuture<String> respond(Response response) {
+            this.maxInFlight.accumulateAndGet(this.inFlight.incrementAndGet(), Math::max);
+            CompletableFuture<String> future = new CompletableFuture<>();
+            WxOpenFollowerSyncTest.this.scheduler.schedule(() -> {
+                this.inFlight.decrementAndGet();
+                try {
+                    future.complete(response.get());
+                } catch (WxErrorException e) {
+                    future.completeExceptionally(new CompletionException(e));
+                }
+            }, this.latencyMillis, TimeUnit.MILLISECONDS);
+            return future;
+        }
+
+        private String userList(int begin) {
+            int end = Math.min(begin + PAGE_SIZE, this.followers);
+            StringBuilder json = new StringBuilder("{\"total\":").append(this.followers)
+                    .append(",\"count\":").append(Math.max(0, end - begin)).append(",\"data\":{\"openid\":[");
+            for (int i = begin; i < end; i++) {
+                json.append(i == begin ? "\"" : ",\"").append(openid(i)).append('"');
+            }
+            // 与微信一致，最后一页之后next_openid为空
+            return json.append("]},\"next_openid\":\"").append(end > begin ? openid(end - 1) : "").append("\"}").toString();
+        }
+
+        private String userInfoList(String postData) throws WxErrorException {
+            StringBuilder json = new StringBuilder("{\"user_info_list\":[");
+            boolean first = true;
+            for (JsonElement param : new JsonParser().parse(postData).getAsJsonObject().getAsJsonArray("user_list")) {
+                String openid = param.getAsJsonObject().get("openid").getAsString();
+                if (index(openid) == this.failAt) {
+                    throw new WxErrorException(WxError.fromJson("{\"errcode\":45009,\"errmsg\":\"api freq out of limit\"}"));
+                }
+                json.append(first ? "" : ",").append("{\"subscribe\":1,\"openid\":\"").append(openid)
+                        .append("\",\"nickname\":\"nick_").append(openid).append("\",\"sex\":1,\"language\":\"zh_CN\",")
+                        .append("\"city\":\"广州\",\"province\":\"广东\",\"country\":\"中国\",\"subscribe_time\":1382694957}");
+                first = false;
+            }
+            return json.append("]}").toString();
+        }
+    }
+
+    private interface Response {
+        String get() throws WxErrorException;
+    }
+}
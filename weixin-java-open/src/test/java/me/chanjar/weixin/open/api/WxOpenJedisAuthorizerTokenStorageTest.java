@@ -0,0 +1,61 @@
+package me.chanjar.weixin.open.api;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import redis.clients.jedis.JedisPool;
+
+import java.util.Collections;
+
+/**
+ * 授权方令牌存储：刷新令牌的接口没有返回新的刷新令牌时保留原来的，删除授权方后所有key和appid集合一起清除
+ */
+@Test
+public class WxOpenJedisAuthorizerTokenStorageTest {
+
+    private static final String APP_ID = "wx_authorizer";
+
+    private FakeRedisServer redisServer;
+
+    private JedisPool jedisPool;
+
+    private WxOpenJedisAuthorizerTokenStorage storage;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        this.redisServer = new FakeRedisServer();
+        this.jedisPool = new JedisPool("127.0.0.1", this.redisServer.getPort());
+        this.storage = new WxOpenJedisAuthorizerTokenStorage(this.jedisPool);
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        this.jedisPool.destroy();
+        this.redisServer.close();
+    }
+
+    public void testBlankRefreshTokenKeepsPrevious() {
+        this.storage.updateAccessToken(APP_ID, "token1", 7200, "refresh1");
+        Assert.assertEquals(this.storage.getAccessToken(APP_ID), "token1");
+        Assert.assertEquals(this.storage.getRefreshToken(APP_ID), "refresh1");
+
+        this.storage.updateAccessToken(APP_ID, "token2", 7200, null);
+        Assert.assertEquals(this.storage.getAccessToken(APP_ID), "token2");
+        Assert.assertEquals(this.storage.getRefreshToken(APP_ID), "refresh1");
+
+        this.storage.updateAccessToken(APP_ID, "token3", 7200, "");
+        Assert.assertEquals(this.storage.getAccessToken(APP_ID), "token3");
+        Assert.assertEquals(this.storage.getRefreshToken(APP_ID), "refresh1");
+        Assert.assertTrue(this.storage.getAccessTokenExpiresTime(APP_ID) > System.currentTimeMillis());
+        Assert.assertEquals(this.storage.getAuthorizerAppIds(), Collections.singleton(APP_ID));
+    }
+
+    @Test(dependsOnMethods = "testBlankRefreshTokenKeepsPrevious")
+    public void testRemoveAuthorizer() {
+        this.storage.removeAuthorizer(APP_ID);
+        Assert.assertNull(this.storage.getAccessToken(APP_ID));
+        Assert.assertNull(this.storage.getRefreshToken(APP_ID));
+        Assert.assertTrue(this.storage.getAuthorizerAppIds().isEmpty());
+    }
+}
@@ -0,0 +1,109 @@
+package me.chanjar.weixin.open.api;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import redis.clients.jedis.Jedis;
+
+/**
+ * 令牌本地缓存：读取不访问Redis，任意实例刷新或作废令牌后其他实例在检查间隔内看到新值
+ */
+@Test
+public class WxOpenJedisConfigStorageTest {
+
+    private static final long CHECK_INTERVAL = 50;
+
+    private static final int BENCHMARK_ITERATIONS = 200000;
+
+    private FakeRedisServer redisServer;
+
+    private WxOpenJedisConfigStorage storage1;
+
+    private WxOpenJedisConfigStorage storage2;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        this.redisServer = new FakeRedisServer();
+        this.storage1 = newStorage();
+        this.storage2 = newStorage();
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        this.storage1.destroy();
+        this.storage2.destroy();
+        this.redisServer.close();
+    }
+
+    public void testRefreshVisibleToOtherInstances() throws Exception {
+        this.storage1.updateAccessToken("token1", 7200, "refresh1");
+        Assert.assertEquals(this.storage2.getAccessToken(), "token1");
+        Assert.assertEquals(this.storage2.getRefreshToken(), "refresh1");
+        Assert.assertFalse(this.storage2.isAccessTokenExpired());
+
+        this.storage1.updateAccessToken("token2", 7200, "refresh2");
+        // 刷新的实例自己立即可见
+        Assert.assertEquals(this.storage1.getAccessToken(), "token2");
+        Thread.sleep(CHECK_INTERVAL * 2);
+        Assert.assertEquals(this.storage2.getAccessToken(), "token2");
+        Assert.assertEquals(this.storage2.getRefreshToken(), "refresh2");
+
+        this.storage2.expireAccessToken();
+        Assert.assertTrue(this.storage2.isAccessTokenExpired());
+        Thread.sleep(CHECK_INTERVAL * 2);
+        Assert.assertTrue(this.storage1.isAccessTokenExpired());
+        Assert.assertEquals(this.storage1.getAccessToken(), "token2");
+
+        this.storage2.updateJsapiTicket("ticket1", 7200);
+        this.storage1.updateComponentVerifyTicket("verify1");
+        Thread.sleep(CHECK_INTERVAL * 2);
+        Assert.assertEquals(this.storage1.getJsapiTicket(), "ticket1");
+        Assert.assertEquals(this.storage2.getComponentVerifyTicket(), "verify1");
+    }
+
+    public void testMissingTokenIsExpired() {
+        Assert.assertNull(this.storage1.getCardApiTicket());
+        Assert.assertTrue(this.storage1.isCardApiTicketExpired());
+    }
+
+    public void testReadsServedFromLocalCache() {
+        this.storage1.updateComponentAccessToken("component1", 7200);
+        for (int i = 0; i < 1000; i++) {
+            this.storage1.getComponentAccessToken();
+            this.storage1.isComponentAccessTokenExpired();
+        }
+
+        long commands = this.redisServer.getCommandCount();
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            this.storage1.getComponentAccessToken();
+            this.storage1.isComponentAccessTokenExpired();
+        }
+        double cachedNanos = (System.nanoTime() - start) / (double) BENCHMARK_ITERATIONS / 2;
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        long redisCommands = this.redisServer.getCommandCount() - commands;
+
+        // 改造前每次读取都要从连接池借一个连接访问Redis
+        int redisIterations = 2000;
+        start = System.nanoTime();
+        for (int i = 0; i < redisIterations; i++) {
+            try (Jedis jedis = this.storage1.getJedisPool().getResource()) {
+                jedis.get("WX_COMPONENT_ACCESS_TOKEN");
+            }
+        }
+        double redisNanos = (System.nanoTime() - start) / (double) redisIterations;
+
+        System.out.println(String.format("token read, near cache: %.1f ns/op, redis get: %.1f ns/op, redis commands during %d cached reads: %d",
+                cachedNanos, redisNanos, BENCHMARK_ITERATIONS * 2, redisCommands));
+        // 每个检查间隔最多一次版本号检查(借连接时还会有一次PING)
+        Assert.assertTrue(redisCommands <= (elapsedMillis / CHECK_INTERVAL + 1) * 2, "读取令牌不应每次都访问Redis");
+        Assert.assertTrue(cachedNanos < redisNanos);
+    }
+
+    private WxOpenJedisConfigStorage newStorage() {
+        WxOpenJedisConfigStorage storage = new WxOpenJedisConfigStorage("127.0.0.1", this.redisServer.getPort(), null);
+        storage.setTokenVersionCheckInterval(CHECK_INTERVAL);
+        return storage;
+    }
+}
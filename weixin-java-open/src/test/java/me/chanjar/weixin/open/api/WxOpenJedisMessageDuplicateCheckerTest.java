@@ -0,0 +1,57 @@
+package me.chanjar.weixin.open.api;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * 多个节点共用Redis排重：同一个消息id在过期时间内只有一个节点处理
+ */
+@Test
+public class WxOpenJedisMessageDuplicateCheckerTest {
+
+    private FakeRedisServer redisServer;
+
+    private JedisPool jedisPool;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        this.redisServer = new FakeRedisServer();
+        this.jedisPool = new JedisPool("127.0.0.1", this.redisServer.getPort());
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        this.jedisPool.destroy();
+        this.redisServer.close();
+    }
+
+    public void testDuplicateAcrossNodes() throws InterruptedException {
+        WxOpenJedisMessageDuplicateChecker node1 = new WxOpenJedisMessageDuplicateChecker(this.jedisPool, 300L);
+        WxOpenJedisMessageDuplicateChecker node2 = new WxOpenJedisMessageDuplicateChecker(this.jedisPool, 300L);
+
+        Assert.assertFalse(node1.isDuplicate("1001"));
+        Assert.assertTrue(node2.isDuplicate("1001"));
+        Assert.assertTrue(node1.isDuplicate("1001"));
+        Assert.assertFalse(node2.isDuplicate("1002"));
+        Assert.assertFalse(node1.isDuplicate(null));
+
+        // 过期之后同一个消息id重新被处理
+        Thread.sleep(400L);
+        Assert.assertFalse(node2.isDuplicate("1001"));
+        Assert.assertTrue(node1.isDuplicate("1001"));
+    }
+
+    public void testFallbackWhenRedisUnavailable() {
+        JedisPool unavailable = new JedisPool("127.0.0.1", 1);
+        try {
+            WxOpenJedisMessageDuplicateChecker checker = new WxOpenJedisMessageDuplicateChecker(unavailable, 15000L);
+            Assert.assertFalse(checker.isDuplicate("2001"));
+            Assert.assertTrue(checker.isDuplicate("2001"));
+        } finally {
+            unavailable.destroy();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package me.chanjar.weixin.open.api;
+
+import me.chanjar.weixin.common.api.WxConsts;
+import me.chanjar.weixin.open.bean.message.WxOpenXmlMessage;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 用很慢的handler压满路由器：线程池队列和溢出队列始终不超过上限，各个溢出策略下都能平稳降级
+ */
+@Test
+public class WxOpenMessageRouterLoadTest {
+
+    private static final int THREADS = 8;
+
+    private static final int QUEUE_CAPACITY = 50;
+
+    private static final int SPILL_CAPACITY = 200;
+
+    private static final int MESSAGES = 1000;
+
+    private static final long HANDLER_MILLIS = 10;
+
+    @DataProvider
+    public Object[][] overflowPolicies() {
+        return new Object[][]{
+                {WxOpenMessageRouter.OverflowPolicy.CALLER_RUNS},
+                {WxOpenMessageRouter.OverflowPolicy.DROP},
+                {WxOpenMessageRouter.OverflowPolicy.SPILL}
+        };
+    }
+
+    @Test(dataProvider = "overflowPolicies")
+    public void testFloodWithSlowHandler(WxOpenMessageRouter.OverflowPolicy overflowPolicy) throws Exception {
+        ThreadPoolExecutor executor = WxOpenMessageRouter.newBoundedExecutor(THREADS, QUEUE_CAPACITY);
+        WxOpenMessageRouter router = new WxOpenMessageRouter(null);
+        router.setExecutorService(executor);
+        router.setOverflowPolicy(overflowPolicy);
+        router.setSpillCapacity(SPILL_CAPACITY);
+
+        AtomicInteger handled = new AtomicInteger();
+        router.rule().async(true).msgType(WxConsts.XML_MSG_TEXT).handler((wxMessage, context, wxOpenService, sessionManager) -> {
+            try {
+                // 模拟生成海报之类的慢操作
+                Thread.sleep(HANDLER_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.incrementAndGet();
+            return null;
+        }).end();
+        WxOpenMessageRouterRuleStats stats = router.getRules().get(0).getStats();
+
+        AtomicInteger maxQueueSize = new AtomicInteger();
+        AtomicInteger maxSpillSize = new AtomicInteger();
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                maxQueueSize.accumulateAndGet(executor.getQueue().size(), Math::max);
+                maxSpillSize.accumulateAndGet(router.getSpillQueueSize(), Math::max);
+                Thread.yield();
+            }
+        });
+        sampler.start();
+
+        long maxRouteNanos = 0;
+        double floodMillis;
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < MESSAGES; i++) {
+                WxOpenXmlMessage message = new WxOpenXmlMessage();
+                message.setMsgId((long) i);
+                message.setMsgType(WxConsts.XML_MSG_TEXT);
+                message.setFromUser("user" + (i % 100));
+                message.setContent("海报");
+
+                long routeStart = System.nanoTime();
+                router.route(message);
+                maxRouteNanos = Math.max(maxRouteNanos, System.nanoTime() - routeStart);
+            }
+            floodMillis = (System.nanoTime() - start) / 1e6;
+
+            long deadline = System.currentTimeMillis() + 30000;
+            while ((stats.getQueued() > 0 || executor.getActiveCount() > 0) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            System.out.println(String.format("%s: flood %d messages in %.0f ms, max route %.1f ms, max queue %d, max spill %d, %s",
+                    overflowPolicy, MESSAGES, floodMillis, maxRouteNanos / 1e6, maxQueueSize.get(), maxSpillSize.get(), stats));
+        } finally {
+            sampler.interrupt();
+            sampler.join();
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(stats.getSubmitted(), MESSAGES);
+        Assert.assertEquals(stats.getQueued(), 0);
+        Assert.assertEquals(stats.getCompleted() + stats.getDropped(), MESSAGES);
+        Assert.assertEquals(handled.get(), stats.getCompleted());
+        Assert.assertTrue(maxQueueSize.get() <= QUEUE_CAPACITY);
+        Assert.assertTrue(maxSpillSize.get() <= SPILL_CAPACITY);
+
+        switch (overflowPolicy) {
+            case CALLER_RUNS:
+                // 调用线程被拖慢，但所有消息都会被处理
+                Assert.assertTrue(stats.getCallerRuns() > 0);
+                Assert.assertEquals(stats.getDropped(), 0);
+                break;
+            case DROP:
+                Assert.assertTrue(stats.getDropped() > 0);
+                Assert.assertEquals(stats.getCallerRuns(), 0);
+                break;
+            default:
+                Assert.assertTrue(stats.getSpilled() > 0);
+                Assert.assertTrue(stats.getDropped() > 0, "溢出队列满了之后应该丢弃");
+                Assert.assertTrue(stats.getCompleted() >= THREADS + QUEUE_CAPACITY + SPILL_CAPACITY);
+                break;
+        }
+        if (overflowPolicy != WxOpenMessageRouter.OverflowPolicy.CALLER_RUNS) {
+            // 线程池满了也不会阻塞接收消息的线程，远快于handler的处理速度
+            Assert.assertTrue(floodMillis < MESSAGES * HANDLER_MILLIS / THREADS / 2, "route不应该等待慢handler");
+        }
+    }
+}
@@ -9,7 +9,11 @@ import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
 
 /**
  * 测试消息路由器
@@ -272,6 +276,145 @@ public class WxOpenMessageRouterTest {
         }
     }
 
+    public void testIndexedDispatchSameAsLinearScan() {
+        WxOpenMessageRouter router = new WxOpenMessageRouter(null);
+        prepareManyRules(router);
+        for (WxOpenXmlMessage message : mixedMessages(5000)) {
+            Assert.assertEquals(router.match(message), linearScan(router, message));
+        }
+
+        // 规则结束后再修改条件，索引要重新建立
+        WxOpenMessageRouterRule rule = router.getRules().get(0);
+        rule.setEvent(WxConsts.EVT_SUBSCRIBE);
+        for (WxOpenXmlMessage message : mixedMessages(1000)) {
+            Assert.assertEquals(router.match(message), linearScan(router, message));
+        }
+    }
+
+    public void testIndexedDispatchFasterThanLinearScan() {
+        WxOpenMessageRouter router = new WxOpenMessageRouter(null);
+        prepareManyRules(router);
+        List<WxOpenXmlMessage> messages = mixedMessages(2000);
+        // 预热
+        for (int i = 0; i < 5; i++) {
+            for (WxOpenXmlMessage message : messages) {
+                router.match(message);
+                linearScan(router, message);
+            }
+        }
+
+        int rounds = 10;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            for (WxOpenXmlMessage message : messages) {
+                linearScan(router, message);
+            }
+        }
+        double linearMicros = (System.nanoTime() - start) / 1000.0 / rounds / messages.size();
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            for (WxOpenXmlMessage message : messages) {
+                router.match(message);
+            }
+        }
+        double indexedMicros = (System.nanoTime() - start) / 1000.0 / rounds / messages.size();
+
+        System.out.println(String.format("route %d rules, linear scan: %.2f us/msg, indexed dispatch: %.2f us/msg",
+                router.getRules().size(), linearMicros, indexedMicros));
+        Assert.assertTrue(indexedMicros < linearMicros, "索引分发应该比逐条检查更快");
+    }
+
+    /**
+     * 240条规则：菜单点击、扫码、关键词、正则指令、其他类型的消息，以及最后的兜底规则
+     */
+    private static void prepareManyRules(WxOpenMessageRouter router) {
+        WxOpenMessageHandler handler = new WxEchoOpenMessageHandler(new StringBuffer(), "");
+        for (int i = 0; i < 60; i++) {
+            router.rule().msgType(WxConsts.XML_MSG_EVENT).event(WxConsts.EVT_CLICK).eventKey("MENU_" + i).handler(handler).end();
+        }
+        for (int i = 0; i < 20; i++) {
+            router.rule().msgType(WxConsts.XML_MSG_EVENT).event(WxConsts.EVT_SCAN).eventKey("QR_" + i).handler(handler).next();
+        }
+        router.rule().msgType(WxConsts.XML_MSG_EVENT).event(WxConsts.EVT_SUBSCRIBE).handler(handler).end();
+        for (int i = 0; i < 100; i++) {
+            router.rule().msgType(WxConsts.XML_MSG_TEXT).content("关键词" + i).handler(handler).end();
+        }
+        for (int i = 0; i < 30; i++) {
+            router.rule().msgType(WxConsts.XML_MSG_TEXT).rContent("^cmd" + i + "\\s+\\w+$").handler(handler).end();
+        }
+        for (int i = 0; i < 10; i++) {
+            router.rule().rContent("help" + i).handler(handler).next();
+        }
+        for (int i = 0; i < 18; i++) {
+            final String format = "format" + i;
+            router.rule().msgType(i % 2 == 0 ? WxConsts.XML_MSG_IMAGE : WxConsts.XML_MSG_VOICE)
+                    .matcher(message -> format.equals(message.getFormat())).handler(handler).end();
+        }
+        router.rule().handler(handler).end();
+    }
+
+    private static List<WxOpenXmlMessage> mixedMessages(int count) {
+        Random random = new Random(42);
+        List<WxOpenXmlMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            WxOpenXmlMessage message = new WxOpenXmlMessage();
+            switch (random.nextInt(6)) {
+                case 0:
+                    message.setMsgType("EVENT");
+                    message.setEvent("CLICK");
+                    message.setEventKey("menu_" + random.nextInt(70));
+                    break;
+                case 1:
+                    message.setMsgType(WxConsts.XML_MSG_EVENT);
+                    message.setEvent(random.nextBoolean() ? WxConsts.EVT_SCAN : WxConsts.EVT_SUBSCRIBE);
+                    message.setEventKey("QR_" + random.nextInt(25));
+                    break;
+                case 2:
+                    message.setMsgType(WxConsts.XML_MSG_TEXT);
+                    message.setContent(" 关键词" + random.nextInt(120) + " ");
+                    break;
+                case 3:
+                    message.setMsgType(WxConsts.XML_MSG_TEXT);
+                    message.setContent("cmd" + random.nextInt(35) + " arg" + random.nextInt(10));
+                    break;
+                case 4:
+                    message.setMsgType(WxConsts.XML_MSG_TEXT);
+                    message.setContent("help" + random.nextInt(12));
+                    break;
+                default:
+                    message.setMsgType(random.nextBoolean() ? WxConsts.XML_MSG_IMAGE : WxConsts.XML_MSG_LOCATION);
+                    message.setFormat("format" + random.nextInt(20));
+                    break;
+            }
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    /**
+     * 改造前的匹配方式：逐条检查规则，每次都转小写、编译正则
+     */
+    private static List<WxOpenMessageRouterRule> linearScan(WxOpenMessageRouter router, WxOpenXmlMessage wxMessage) {
+        List<WxOpenMessageRouterRule> matchRules = new ArrayList<>();
+        for (WxOpenMessageRouterRule rule : router.getRules()) {
+            boolean matched = (rule.getFromUser() == null || rule.getFromUser().equals(wxMessage.getFromUser()))
+                    && (rule.getMsgType() == null || rule.getMsgType().toLowerCase().equals((wxMessage.getMsgType() == null ? null : wxMessage.getMsgType().toLowerCase())))
+                    && (rule.getEvent() == null || rule.getEvent().toLowerCase().equals((wxMessage.getEvent() == null ? null : wxMessage.getEvent().toLowerCase())))
+                    && (rule.getEventKey() == null || rule.getEventKey().toLowerCase().equals((wxMessage.getEventKey() == null ? null : wxMessage.getEventKey().toLowerCase())))
+                    && (rule.getContent() == null || rule.getContent().equals(wxMessage.getContent() == null ? null : wxMessage.getContent().trim()))
+                    && (rule.getrContent() == null || Pattern.matches(rule.getrContent(), wxMessage.getContent() == null ? "" : wxMessage.getContent().trim()))
+                    && (rule.getMatcher() == null || rule.getMatcher().match(wxMessage));
+            if (matched) {
+                matchRules.add(rule);
+                if (!rule.isReEnter()) {
+                    break;
+                }
+            }
+        }
+        return matchRules;
+    }
+
     public static class WxEchoOpenMessageHandler implements WxOpenMessageHandler {
 
         private StringBuffer sb;
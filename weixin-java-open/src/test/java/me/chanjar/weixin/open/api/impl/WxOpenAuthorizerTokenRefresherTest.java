@@ -0,0 +1,247 @@
+package me.chanjar.weixin.open.api.impl;
+
+import me.chanjar.weixin.open.api.WxOpenInMemoryAuthorizerTokenStorage;
+import me.chanjar.weixin.open.api.WxOpenInMemoryConfigStorage;
+import me.chanjar.weixin.open.bean.component.WxOpenAuthorizationAccessToken;
+import me.chanjar.weixin.open.bean.component.WxOpenJsapiTicket;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 模拟几千个授权方：令牌很快过期，后台不断刷新，请求线程读取时不会拿到过期的令牌，也不会等待刷新
+ */
+@Test
+public class WxOpenAuthorizerTokenRefresherTest {
+
+    private static final int AUTHORIZERS = 2000;
+
+    private static final int READER_THREADS = 8;
+
+    private static final long READ_MILLIS = 3000;
+
+    /**
+     * 存储时会减去200秒，所以令牌实际2秒后过期
+     */
+    private static final int EXPIRES_IN_SECONDS = 202;
+
+    public void testRequestsNeverBlockOnRefresh() throws Exception {
+        StubTokenService wxOpenService = new StubTokenService();
+        WxOpenInMemoryAuthorizerTokenStorage tokenStorage = new WxOpenInMemoryAuthorizerTokenStorage();
+        for (int i = 0; i < AUTHORIZERS; i++) {
+            tokenStorage.updateAccessToken(appId(i), "initial_" + i, EXPIRES_IN_SECONDS, "refresh_" + i);
+        }
+
+        WxOpenAuthorizerTokenRefresher refresher = new WxOpenAuthorizerTokenRefresher(wxOpenService, tokenStorage);
+        refresher.setRefreshAheadMillis(1000);
+        refresher.setJitterMillis(500);
+        refresher.setRetryDelayMillis(100);
+        refresher.setThreads(8);
+        refresher.start();
+
+        ExecutorService readers = Executors.newFixedThreadPool(READER_THREADS);
+        try {
+            // 启动时还没有jsapi_ticket，等第一轮获取完成
+            long deadline = System.currentTimeMillis() + 10000;
+            while (wxOpenService.jsapiTicketCalls.get() < AUTHORIZERS && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(wxOpenService.jsapiTicketCalls.get() >= AUTHORIZERS, "首次获取jsapi_ticket超时");
+
+            AtomicInteger expiredReads = new AtomicInteger();
+            AtomicLong maxReadNanos = new AtomicLong();
+            long stopAt = System.currentTimeMillis() + READ_MILLIS;
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < READER_THREADS; t++) {
+                futures.add(readers.submit(() -> {
+                    int reads = 0;
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.currentTimeMillis() < stopAt) {
+                        String appId = appId(random.nextInt(AUTHORIZERS));
+                        long start = System.nanoTime();
+                        String accessToken = refresher.getAccessToken(appId);
+                        String jsapiTicket = refresher.getJsapiTicket(appId);
+                        long elapsed = System.nanoTime() - start;
+                        maxReadNanos.accumulateAndGet(elapsed, Math::max);
+
+                        long now = System.currentTimeMillis();
+                        if (accessToken == null || jsapiTicket == null
+                                || tokenStorage.getAccessTokenExpiresTime(appId) <= now
+                                || tokenStorage.getJsapiTicketExpiresTime(appId) <= now) {
+                            expiredReads.incrementAndGet();
+                        }
+                        reads++;
+                    }
+                    return reads;
+                }));
+            }
+            long reads = 0;
+            for (Future<Integer> future : futures) {
+                reads += future.get();
+            }
+
+            int minRefreshes = Integer.MAX_VALUE;
+            for (int i = 0; i < AUTHORIZERS; i++) {
+                minRefreshes = Math.min(minRefreshes, wxOpenService.accessTokenCalls.getOrDefault(appId(i), new AtomicInteger()).get());
+            }
+            System.out.println(String.format("%d authorizers, %d reads, max read %.3f ms, %d token refreshes, %d ticket refreshes, min refreshes per authorizer %d",
+                    AUTHORIZERS, reads, maxReadNanos.get() / 1e6, wxOpenService.totalAccessTokenCalls.get(),
+                    wxOpenService.jsapiTicketCalls.get(), minRefreshes));
+
+            Assert.assertEquals(expiredReads.get(), 0, "读到了过期的令牌");
+            Assert.assertEquals(wxOpenService.callsFromOtherThreads.get(), 0, "请求线程不应该调用令牌接口");
+            Assert.assertTrue(minRefreshes >= 2, "每个授权方都应该被后台刷新过多次");
+            Assert.assertTrue(maxReadNanos.get() < TimeUnit.MILLISECONDS.toNanos(200), "读取令牌不应该等待刷新");
+        } finally {
+            readers.shutdownNow();
+            refresher.shutdown();
+        }
+    }
+
+    public void testServiceReadsTokenFromRefresher() throws Exception {
+        StubTokenService wxOpenService = new StubTokenService();
+        WxOpenInMemoryConfigStorage configStorage = new WxOpenInMemoryConfigStorage();
+        configStorage.setAppId("wx_service_authorizer");
+        configStorage.setRefreshToken("service_refresh");
+        wxOpenService.setWxOpenConfigStorage(configStorage);
+
+        WxOpenInMemoryAuthorizerTokenStorage tokenStorage = new WxOpenInMemoryAuthorizerTokenStorage();
+        WxOpenAuthorizerTokenRefresher refresher = new WxOpenAuthorizerTokenRefresher(wxOpenService, tokenStorage);
+        refresher.setRefreshAheadMillis(1000);
+        refresher.setJitterMillis(500);
+        refresher.start();
+        wxOpenService.setAuthorizerTokenRefresher(refresher);
+        try {
+            // 存储中还没有本授权方，第一次读取等待刷新器刷新，请求线程自己不调用令牌接口
+            Assert.assertEquals(wxOpenService.getAccessToken(), "wx_service_authorizer_token_1");
+            Assert.assertEquals(wxOpenService.callsFromOtherThreads.get(), 0);
+            Assert.assertEquals(tokenStorage.getRefreshToken("wx_service_authorizer"), "service_refresh");
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (tokenStorage.getJsapiTicket("wx_service_authorizer") == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            long stopAt = System.currentTimeMillis() + READ_MILLIS;
+            while (System.currentTimeMillis() < stopAt) {
+                String accessToken = wxOpenService.getAccessToken();
+                String jsapiTicket = wxOpenService.getJsapiTicket();
+                Assert.assertTrue(jsapiTicket.startsWith("wx_service_authorizer_token_"), jsapiTicket);
+                Assert.assertTrue(accessToken.startsWith("wx_service_authorizer_token_"), accessToken);
+                Thread.sleep(1);
+            }
+            int backgroundRefreshes = wxOpenService.accessTokenCalls.get("wx_service_authorizer").get() - 1;
+            Assert.assertEquals(wxOpenService.callsFromOtherThreads.get(), 0, "读取不应该在请求线程上刷新");
+            Assert.assertTrue(backgroundRefreshes >= 2, "令牌应该由刷新器在后台刷新: " + backgroundRefreshes);
+
+            // 令牌被作废(例如接口返回40001)时强制刷新
+            String before = wxOpenService.getAccessToken();
+            String forced = wxOpenService.getAccessToken(true);
+            Assert.assertNotEquals(forced, before);
+            Assert.assertEquals(wxOpenService.getAccessToken(), forced);
+            Assert.assertEquals(wxOpenService.callsFromOtherThreads.get(), 0, "强制刷新也由刷新器执行");
+        } finally {
+            refresher.shutdown();
+        }
+    }
+
+    public void testExpiredTokenServedWhileRefreshing() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        StubTokenService wxOpenService = new StubTokenService() {
+            @Override
+            public WxOpenAuthorizationAccessToken refreshAuthorizerAccessToken(String authorizerAppId, String authorizerRefreshToken) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.refreshAuthorizerAccessToken(authorizerAppId, authorizerRefreshToken);
+            }
+        };
+        WxOpenInMemoryConfigStorage configStorage = new WxOpenInMemoryConfigStorage();
+        configStorage.setAppId("wx_slow_authorizer");
+        wxOpenService.setWxOpenConfigStorage(configStorage);
+
+        WxOpenInMemoryAuthorizerTokenStorage tokenStorage = new WxOpenInMemoryAuthorizerTokenStorage();
+        // 存储时减去200秒，令牌已经过期
+        tokenStorage.updateAccessToken("wx_slow_authorizer", "stale_token", 200, "slow_refresh");
+        WxOpenAuthorizerTokenRefresher refresher = new WxOpenAuthorizerTokenRefresher(wxOpenService, tokenStorage);
+        refresher.setRefreshAheadMillis(1000);
+        refresher.setJitterMillis(500);
+        refresher.setRefreshJsapiTicket(false);
+        refresher.start();
+        wxOpenService.setAuthorizerTokenRefresher(refresher);
+        try {
+            // 刷新被挡住时读取立即返回上一个令牌，不等待刷新
+            long start = System.nanoTime();
+            for (int i = 0; i < 100; i++) {
+                Assert.assertEquals(wxOpenService.getAccessToken(), "stale_token");
+            }
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "读取令牌不应该等待刷新");
+
+            release.countDown();
+            long deadline = System.currentTimeMillis() + 5000;
+            while ("stale_token".equals(wxOpenService.getAccessToken()) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            String refreshed = wxOpenService.getAccessToken();
+            Assert.assertTrue(refreshed.startsWith("wx_slow_authorizer_token_"), refreshed);
+            Assert.assertEquals(wxOpenService.callsFromOtherThreads.get(), 0);
+        } finally {
+            release.countDown();
+            refresher.shutdown();
+        }
+    }
+
+    private static String appId(int i) {
+        return "wx_authorizer_" + i;
+    }
+
+    /**
+     * 令牌接口桩：每次调用耗时约0.2毫秒，记录调用次数和调用线程
+     */
+    private static class StubTokenService extends WxOpenServiceImpl {
+        private final ConcurrentMap<String, AtomicInteger> accessTokenCalls = new ConcurrentHashMap<>();
+        private final AtomicInteger totalAccessTokenCalls = new AtomicInteger();
+        private final AtomicInteger jsapiTicketCalls = new AtomicInteger();
+        private final AtomicInteger callsFromOtherThreads = new AtomicInteger();
+
+        @Override
+        public WxOpenAuthorizationAccessToken refreshAuthorizerAccessToken(String authorizerAppId, String authorizerRefreshToken) {
+            call();
+            int count = this.accessTokenCalls.computeIfAbsent(authorizerAppId, k -> new AtomicInteger()).incrementAndGet();
+            this.totalAccessTokenCalls.incrementAndGet();
+            return new WxOpenAuthorizationAccessToken()
+                    .setAuthorizerAccessToken(authorizerAppId + "_token_" + count)
+                    .setExpiresIn(EXPIRES_IN_SECONDS)
+                    .setAuthorizerRefreshToken(authorizerRefreshToken);
+        }
+
+        @Override
+        public WxOpenJsapiTicket getAuthorizerJsapiTicket(String authorizerAccessToken) {
+            call();
+            return new WxOpenJsapiTicket()
+                    .setTicket(authorizerAccessToken + "_ticket_" + this.jsapiTicketCalls.incrementAndGet())
+                    .setExpiresIn(EXPIRES_IN_SECONDS);
+        }
+
+        private void call() {
+            if (!Thread.currentThread().getName().startsWith("wx-open-token-refresh-")) {
+                this.callsFromOtherThreads.incrementAndGet();
+            }
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+        }
+    }
+}
@@ -300,5 +300,6 @@ public class WxOpenMaterialServiceImplTest {
         File file = this.wxService.getMaterialService().mediaDownload(mediaId);
         assertNotNull(file);
         System.out.println(file.getAbsolutePath());
+        assertTrue(file.delete());
     }
 }
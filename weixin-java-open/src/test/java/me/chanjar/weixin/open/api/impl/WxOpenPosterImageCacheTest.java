@@ -0,0 +1,237 @@
+package me.chanjar.weixin.open.api.impl;
+
+import com.sun.net.httpserver.HttpServer;
+import me.chanjar.weixin.common.exception.WxErrorException;
+import me.chanjar.weixin.open.api.WxOpenQrcodeService;
+import me.chanjar.weixin.open.api.WxOpenUserService;
+import me.chanjar.weixin.open.bean.result.WxOpenQrCodeTicket;
+import me.chanjar.weixin.open.bean.result.WxOpenUser;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 用本地http服务模拟头像和二维码图片的下载：同一个用户重复生成海报时不再获取用户信息，也没有任何外部请求
+ */
+@Test
+public class WxOpenPosterImageCacheTest {
+
+    private HttpServer server;
+
+    private String baseUrl;
+
+    private final AtomicInteger downloads = new AtomicInteger();
+
+    private volatile CountDownLatch releaseDownloads = new CountDownLatch(0);
+
+    private byte[] png;
+
+    @BeforeClass
+    public void startServer() throws Exception {
+        BufferedImage image = new BufferedImage(430, 430, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        this.png = out.toByteArray();
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", exchange -> {
+            this.downloads.incrementAndGet();
+            try {
+                this.releaseDownloads.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, this.png.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(this.png);
+            }
+        });
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.start();
+        this.baseUrl = "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    @AfterClass
+    public void stopServer() {
+        this.server.stop(0);
+    }
+
+    public void testRepeatPosterMakesNoOutboundCalls() throws Exception {
+        StubQrcodeService qrcodeService = new StubQrcodeService(0);
+        StubService service = new StubService(qrcodeService);
+        WxOpenPosterImageCache cache = new WxOpenPosterImageCache(service);
+        this.downloads.set(0);
+
+        BufferedImage[] first = poster(cache, "openid_1");
+        Assert.assertEquals(service.userInfoCalls.get(), 1);
+        Assert.assertEquals(qrcodeService.ticketCalls.get(), 1);
+        Assert.assertEquals(this.downloads.get(), 2);
+        Assert.assertEquals(first[0].getWidth(), 129);
+        Assert.assertEquals(first[1].getWidth(), 216);
+
+        for (int i = 0; i < 10; i++) {
+            BufferedImage[] repeat = poster(cache, "openid_1");
+            Assert.assertSame(repeat[0], first[0]);
+            Assert.assertSame(repeat[1], first[1]);
+        }
+        Assert.assertEquals(service.userInfoCalls.get(), 1, "重复生成海报不应再获取用户信息");
+        Assert.assertEquals(qrcodeService.ticketCalls.get(), 1, "重复生成海报不应再创建ticket");
+        Assert.assertEquals(this.downloads.get(), 2, "重复生成海报不应再下载图片");
+
+        poster(cache, "openid_2");
+        Assert.assertEquals(service.userInfoCalls.get(), 2);
+        Assert.assertEquals(qrcodeService.ticketCalls.get(), 2);
+        Assert.assertEquals(this.downloads.get(), 4);
+    }
+
+    public void testConcurrentMissesAreCoalesced() throws Exception {
+        StubQrcodeService qrcodeService = new StubQrcodeService(0);
+        WxOpenPosterImageCache cache = new WxOpenPosterImageCache(new StubService(qrcodeService));
+        this.downloads.set(0);
+        this.releaseDownloads = new CountDownLatch(1);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<BufferedImage>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executorService.submit(() -> cache.getAvatar(this.baseUrl + "/avatar/same", 129, 129)));
+            }
+            // 所有线程都在等待同一次下载
+            Thread.sleep(200);
+            this.releaseDownloads.countDown();
+
+            BufferedImage avatar = futures.get(0).get();
+            for (Future<BufferedImage> future : futures) {
+                Assert.assertSame(future.get(), avatar);
+            }
+            Assert.assertEquals(this.downloads.get(), 1);
+        } finally {
+            this.releaseDownloads.countDown();
+            executorService.shutdownNow();
+        }
+    }
+
+    public void testTicketExpiry() throws Exception {
+        StubQrcodeService qrcodeService = new StubQrcodeService(1);
+        WxOpenPosterImageCache cache = new WxOpenPosterImageCache(new StubService(qrcodeService));
+
+        cache.getLastTicket("openid_1");
+        cache.getLastTicket("openid_1");
+        Assert.assertEquals(qrcodeService.ticketCalls.get(), 1);
+
+        Thread.sleep(1100);
+        cache.getLastTicket("openid_1");
+        Assert.assertEquals(qrcodeService.ticketCalls.get(), 2);
+    }
+
+    public void testSizeBound() throws Exception {
+        // 只能放下两张129x129的头像
+        WxOpenPosterImageCache cache = new WxOpenPosterImageCache(new StubService(new StubQrcodeService(0)), 129 * 129 * 4 * 2);
+        for (int i = 0; i < 10; i++) {
+            cache.getAvatar(this.baseUrl + "/avatar/" + i, 129, 129);
+        }
+        Assert.assertTrue(cache.getImageCount() <= 2, "缓存的图片数量: " + cache.getImageCount());
+    }
+
+    public void testDiskTierSurvivesRestart() throws Exception {
+        File directory = Files.createTempDirectory("wx-poster-cache").toFile();
+        try {
+            StubQrcodeService qrcodeService = new StubQrcodeService(0);
+            WxOpenPosterImageCache cache = new WxOpenPosterImageCache(new StubService(qrcodeService));
+            cache.setDiskDirectory(directory);
+            this.downloads.set(0);
+            poster(cache, "openid_1");
+            Assert.assertEquals(this.downloads.get(), 2);
+
+            WxOpenPosterImageCache restarted = new WxOpenPosterImageCache(new StubService(qrcodeService));
+            restarted.setDiskDirectory(directory);
+            BufferedImage[] images = poster(restarted, "openid_1");
+            Assert.assertEquals(this.downloads.get(), 2, "磁盘中有未过期的图片时不应再下载");
+            Assert.assertEquals(images[0].getWidth(), 129);
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    /**
+     * 与海报菜单一致：用户信息 -&gt; 头像，ticket -&gt; 二维码图片
+     */
+    private BufferedImage[] poster(WxOpenPosterImageCache cache, String openid) throws WxErrorException {
+        WxOpenUser user = cache.getUserInfo(openid);
+        WxOpenQrCodeTicket ticket = cache.getLastTicket(openid);
+        BufferedImage qrcode = cache.getQrCode(ticket, 216, 216);
+        BufferedImage avatar = cache.getAvatar(user.getHeadImgUrl(), 129, 129);
+        return new BufferedImage[]{avatar, qrcode};
+    }
+
+    private class StubQrcodeService extends WxOpenQrcodeServiceImpl {
+        private final AtomicInteger ticketCalls = new AtomicInteger();
+        private final int expireSeconds;
+
+        private StubQrcodeService(int expireSeconds) {
+            super(null);
+            this.expireSeconds = expireSeconds;
+        }
+
+        @Override
+        public WxOpenQrCodeTicket qrCodeCreateLastTicket(String scene_str) {
+            this.ticketCalls.incrementAndGet();
+            WxOpenQrCodeTicket ticket = new WxOpenQrCodeTicket();
+            ticket.setTicket("ticket_" + scene_str);
+            ticket.setExpire_seconds(this.expireSeconds);
+            return ticket;
+        }
+
+        @Override
+        public String qrCodePictureUrl(String ticket) {
+            return WxOpenPosterImageCacheTest.this.baseUrl + "/showqrcode?ticket=" + ticket;
+        }
+    }
+
+    private class StubService extends WxOpenServiceImpl {
+        private final WxOpenQrcodeService qrcodeService;
+        private final AtomicInteger userInfoCalls = new AtomicInteger();
+
+        private StubService(WxOpenQrcodeService qrcodeService) {
+            this.qrcodeService = qrcodeService;
+        }
+
+        @Override
+        public WxOpenQrcodeService getQrCodeService() {
+            return this.qrcodeService;
+        }
+
+        @Override
+        public WxOpenUserService getUserService() {
+            return new WxOpenUserServiceImpl(this) {
+                @Override
+                public WxOpenUser userInfo(String openid) {
+                    StubService.this.userInfoCalls.incrementAndGet();
+                    return new WxOpenUser()
+                            .setOpenId(openid)
+                            .setNickname("昵称_" + openid)
+                            .setHeadImgUrl(WxOpenPosterImageCacheTest.this.baseUrl + "/avatar/" + openid);
+                }
+            };
+        }
+    }
+}
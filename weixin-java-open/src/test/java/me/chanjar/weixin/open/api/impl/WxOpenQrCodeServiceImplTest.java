@@ -44,6 +44,7 @@ public class WxOpenQrCodeServiceImplTest {
         File file = this.wxService.getQrCodeService().qrCodePicture(ticket);
         Assert.assertNotNull(file);
         System.out.println(file.getAbsolutePath());
+        Assert.assertTrue(file.delete());
     }
 
     public void testQrCodePictureUrl() throws WxErrorException {
@@ -0,0 +1,198 @@
+package me.chanjar.weixin.open.api.impl;
+
+import me.chanjar.weixin.common.exception.WxErrorException;
+import me.chanjar.weixin.common.util.http.DefaultApacheHttpAsyncClientBuilder;
+import me.chanjar.weixin.open.api.WxOpenInMemoryConfigStorage;
+import me.chanjar.weixin.open.api.WxOpenService;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于本地桩服务测试非阻塞请求：少量I/O线程承载大量并发请求，错误码处理与同步版本一致
+ */
+@Test
+public class WxOpenServiceImplAsyncTest {
+
+    private static final int STUB_LATENCY_MILLIS = 200;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private final AtomicInteger busyTimes = new AtomicInteger();
+
+    private final List<String> refreshThreads = new CopyOnWriteArrayList<>();
+
+    private final List<String> expireThreads = new CopyOnWriteArrayList<>();
+
+    private Server server;
+
+    private String stubUrl;
+
+    private WxOpenInMemoryConfigStorage configStorage;
+
+    private WxOpenService wxService;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        this.server = new Server(new QueuedThreadPool(400));
+        ServerConnector connector = new ServerConnector(this.server);
+        this.server.addConnector(connector);
+        ServletHandler servletHandler = new ServletHandler();
+        servletHandler.addServletWithMapping(new ServletHolder(new StubServlet()), "/*");
+        this.server.setHandler(servletHandler);
+        this.server.start();
+        this.stubUrl = "http://127.0.0.1:" + connector.getLocalPort() + "/cgi-bin";
+
+        DefaultApacheHttpAsyncClientBuilder clientBuilder = DefaultApacheHttpAsyncClientBuilder.get();
+        clientBuilder.setIoThreadCount(2);
+
+        this.configStorage = new WxOpenInMemoryConfigStorage() {
+            @Override
+            public void expireAccessToken() {
+                expireThreads.add(Thread.currentThread().getName());
+                super.expireAccessToken();
+            }
+        };
+        this.configStorage.updateAccessToken("old_token", 7200, "refresh_token");
+        this.configStorage.setApacheHttpAsyncClientBuilder(clientBuilder);
+
+        this.wxService = new WxOpenServiceImpl() {
+            @Override
+            public String getAccessToken(boolean forceRefresh) {
+                // 模拟刷新令牌，避免访问微信服务端
+                if (forceRefresh || configStorage.isAccessTokenExpired()) {
+                    refreshThreads.add(Thread.currentThread().getName());
+                    configStorage.updateAccessToken("new_token", 7200, "refresh_token");
+                }
+                return configStorage.getAccessToken();
+            }
+        };
+        this.wxService.setWxOpenConfigStorage(this.configStorage);
+        this.wxService.setRetrySleepMillis(10);
+        this.wxService.setMaxRetryTimes(3);
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        this.server.stop();
+    }
+
+    public void testManyConcurrentRequestsOnFewThreads() throws Exception {
+        int requests = 300;
+        List<CompletableFuture<String>> futures = new ArrayList<>(requests);
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            futures.add(this.wxService.getAsync(this.stubUrl + "/ok", "i=" + i));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        System.out.println(requests + " async requests on 2 io threads: " + elapsedMillis
+                + " ms, max in flight: " + this.maxInFlight.get());
+        for (CompletableFuture<String> future : futures) {
+            Assert.assertTrue(future.get().contains("\"errcode\":0"));
+        }
+        Assert.assertTrue(this.maxInFlight.get() > 50, "请求没有并发执行");
+        Assert.assertTrue(elapsedMillis < requests * STUB_LATENCY_MILLIS / 10, "请求没有并发执行");
+    }
+
+    public void testRetryWhenBusy() throws Exception {
+        this.busyTimes.set(2);
+        String result = this.wxService.getAsync(this.stubUrl + "/busy", null).get(10, TimeUnit.SECONDS);
+        Assert.assertTrue(result.contains("\"errcode\":0"));
+        Assert.assertEquals(this.busyTimes.get(), 0);
+    }
+
+    public void testRetryExceedsMaxTimes() throws Exception {
+        this.busyTimes.set(100);
+        try {
+            this.wxService.getAsync(this.stubUrl + "/busy", null).get(10, TimeUnit.SECONDS);
+            Assert.fail("应该超出重试次数");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof WxErrorException);
+            Assert.assertEquals(((WxErrorException) e.getCause()).getError().getErrorCode(), 100002);
+        } finally {
+            this.busyTimes.set(0);
+        }
+    }
+
+    public void testRefreshTokenWhenExpired() throws Exception {
+        this.configStorage.updateAccessToken("old_token", 7200, "refresh_token");
+        String result = this.wxService.postAsync(this.stubUrl + "/token", "{}").get(10, TimeUnit.SECONDS);
+        Assert.assertTrue(result.contains("\"errcode\":0"));
+        Assert.assertEquals(this.configStorage.getAccessToken(), "new_token");
+    }
+
+    public void testRefreshTokenOffCallerThread() throws Exception {
+        this.refreshThreads.clear();
+        this.configStorage.expireAccessToken();
+        String result = this.wxService.getAsync(this.stubUrl + "/ok", null).get(10, TimeUnit.SECONDS);
+        Assert.assertTrue(result.contains("\"errcode\":0"));
+
+        // 40001后作废和刷新令牌同样不在httpclient的回调线程上执行
+        this.configStorage.updateAccessToken("old_token", 7200, "refresh_token");
+        this.expireThreads.clear();
+        result = this.wxService.postAsync(this.stubUrl + "/token", "{}").get(10, TimeUnit.SECONDS);
+        Assert.assertTrue(result.contains("\"errcode\":0"));
+
+        Assert.assertEquals(this.refreshThreads.size(), 2);
+        for (String threadName : this.refreshThreads) {
+            Assert.assertTrue(threadName.startsWith("wx-open-async-token-"), "令牌在 " + threadName + " 线程上刷新");
+        }
+        Assert.assertEquals(this.expireThreads.size(), 1);
+        Assert.assertTrue(this.expireThreads.get(0).startsWith("wx-open-async-token-"), "令牌在 " + this.expireThreads.get(0) + " 线程上作废");
+    }
+
+    private class StubServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            String path = req.getRequestURI();
+            String body = "{\"errcode\":0,\"errmsg\":\"ok\"}";
+            if (path.endsWith("/ok")) {
+                int current = inFlight.incrementAndGet();
+                maxInFlight.accumulateAndGet(current, Math::max);
+                try {
+                    Thread.sleep(STUB_LATENCY_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            } else if (path.endsWith("/busy") && busyTimes.getAndUpdate(times -> times > 0 ? times - 1 : 0) > 0) {
+                body = "{\"errcode\":-1,\"errmsg\":\"system error\"}";
+            } else if (path.endsWith("/token") && "old_token".equals(req.getParameter("access_token"))) {
+                body = "{\"errcode\":40001,\"errmsg\":\"invalid credential\"}";
+            }
+            resp.setContentType("application/json;charset=utf-8");
+            resp.getWriter().write(body);
+        }
+
+        @Override
+        protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            doGet(req, resp);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package me.chanjar.weixin.open.api.impl;
+
+import me.chanjar.weixin.common.util.http.DefaultApacheHttpClientBuilder;
+import me.chanjar.weixin.common.util.http.SimpleGetRequestExecutor;
+import me.chanjar.weixin.open.api.WxOpenInMemoryConfigStorage;
+import me.chanjar.weixin.open.api.WxOpenService;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于本地桩服务的多线程压测，验证 execute 不再全局串行，吞吐量随线程数增长
+ */
+@Test
+public class WxOpenServiceImplConcurrencyTest {
+
+    private static final int STUB_LATENCY_MILLIS = 20;
+
+    private static final int REQUESTS_PER_THREAD = 10;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private Server server;
+
+    private String stubUrl;
+
+    private WxOpenService wxService;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        this.server = new Server(0);
+        ServletHandler servletHandler = new ServletHandler();
+        servletHandler.addServletWithMapping(new ServletHolder(new SlowStubServlet()), "/*");
+        this.server.setHandler(servletHandler);
+        this.server.start();
+        int port = ((ServerConnector) this.server.getConnectors()[0]).getLocalPort();
+        this.stubUrl = "http://127.0.0.1:" + port + "/cgi-bin/stub";
+
+        DefaultApacheHttpClientBuilder clientBuilder = DefaultApacheHttpClientBuilder.get();
+        clientBuilder.setMaxConnPerHost(32);
+        clientBuilder.setMaxTotalConn(32);
+
+        WxOpenInMemoryConfigStorage configStorage = new WxOpenInMemoryConfigStorage();
+        configStorage.setAccessToken("stub_access_token");
+        configStorage.setExpiresTime(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+        configStorage.setApacheHttpClientBuilder(clientBuilder);
+
+        this.wxService = new WxOpenServiceImpl();
+        this.wxService.setWxOpenConfigStorage(configStorage);
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        this.server.stop();
+    }
+
+    public void testThroughputScalesWithThreads() throws Exception {
+        // 预热连接池
+        run(4);
+
+        double single = run(1);
+        this.maxInFlight.set(0);
+        double multi = run(16);
+
+        System.out.println("1 thread: " + (long) single + " req/s, 16 threads: " + (long) multi
+                + " req/s, max in flight: " + this.maxInFlight.get());
+        Assert.assertTrue(this.maxInFlight.get() > 1, "请求仍被串行执行");
+        Assert.assertTrue(multi > single * 4, "吞吐量没有随线程数增长");
+    }
+
+    /**
+     * @return 每秒完成的请求数
+     */
+    private double run(int threads) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executorService.submit(() -> {
+                    for (int j = 0; j < REQUESTS_PER_THREAD; j++) {
+                        this.wxService.execute(new SimpleGetRequestExecutor(), this.stubUrl, null);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsed = System.nanoTime() - start;
+            return threads * REQUESTS_PER_THREAD / (elapsed / 1e9);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private class SlowStubServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(STUB_LATENCY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            resp.setContentType("application/json;charset=utf-8");
+            resp.getWriter().write("{\"errcode\":0,\"errmsg\":\"ok\"}");
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package me.chanjar.weixin.open.api.impl;
+
+import me.chanjar.weixin.common.bean.result.WxError;
+import me.chanjar.weixin.common.exception.WxErrorException;
+import me.chanjar.weixin.common.util.http.RequestExecutor;
+import me.chanjar.weixin.open.api.WxOpenInMemoryConfigStorage;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 用一个很慢的本地getticket桩验证：并发的刷新只发出一次请求，后台刷新期间生成签名不需要等待，
+ * 后台刷新在服务自己的工作线程上执行并随服务关闭
+ */
+@Test
+public class WxOpenTicketRefresherTest {
+
+    /**
+     * 存储预留200秒，后台刷新提前10分钟，ticket拿到1秒后就进入刷新时间段
+     */
+    private static final int REFRESH_SOON_EXPIRES_IN = 200 + 600 + 1;
+
+    public void testConcurrentCallersShareOneRequest() throws Exception {
+        StubTicketService service = new StubTicketService(500, 7200);
+        ExecutorService executorService = Executors.newFixedThreadPool(16);
+        try {
+            Assert.assertEquals(callConcurrently(executorService, 16, () -> service.getJsapiTicket()).size(), 1);
+            Assert.assertEquals(service.jsapiCalls.get(), 1, "过期时并发的调用方应该共用一次请求");
+
+            Set<String> forced = callConcurrently(executorService, 16, () -> service.getJsapiTicket(true));
+            Assert.assertEquals(forced.size(), 1);
+            Assert.assertEquals(service.jsapiCalls.get(), 2, "并发的强制刷新应该合并成一次请求");
+            Assert.assertEquals(forced.iterator().next(), "jsapi_2");
+
+            Assert.assertEquals(callConcurrently(executorService, 16, () -> service.getCardService().getCardApiTicket()).size(), 1);
+            Assert.assertEquals(service.cardCalls.get(), 1);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    public void testFailedRefreshIsReportedToWaitingCallers() {
+        StubTicketService service = new StubTicketService(0, 7200);
+        service.fail = true;
+        try {
+            service.getJsapiTicket();
+            Assert.fail("刷新失败时应该抛出异常");
+        } catch (WxErrorException e) {
+            Assert.assertEquals(e.getError().getErrorCode(), 40001);
+        }
+
+        service.fail = false;
+        try {
+            Assert.assertEquals(service.getJsapiTicket(), "jsapi_2");
+        } catch (WxErrorException e) {
+            Assert.fail("失败后下一次调用应该重新刷新", e);
+        }
+    }
+
+    public void testSignatureLatencyUnaffectedDuringRefresh() throws Exception {
+        StubTicketService service = new StubTicketService(1000, REFRESH_SOON_EXPIRES_IN);
+        String firstJsapiTicket = service.getJsapiTicket();
+        String firstCardTicket = service.getCardService().getCardApiTicket();
+
+        long maxNanos = 0;
+        long totalNanos = 0;
+        int signatures = 0;
+        long end = System.currentTimeMillis() + 3000;
+        while (System.currentTimeMillis() < end) {
+            long start = System.nanoTime();
+            service.createJsapiSignature("http://example.com/page");
+            service.getCardService().createCardApiSignature("card_id");
+            long elapsed = System.nanoTime() - start;
+            maxNanos = Math.max(maxNanos, elapsed);
+            totalNanos += elapsed;
+            signatures++;
+            Thread.sleep(1);
+        }
+
+        System.out.println(String.format("signatures during refresh: %d, avg %.3f ms, max %.3f ms, getticket latency 1000 ms, refreshes: jsapi %d, card %d",
+                signatures, totalNanos / 1e6 / signatures, maxNanos / 1e6, service.jsapiCalls.get(), service.cardCalls.get()));
+        Assert.assertNotEquals(service.getJsapiTicket(), firstJsapiTicket, "ticket应该已在后台刷新");
+        Assert.assertNotEquals(service.getCardService().getCardApiTicket(), firstCardTicket, "ticket应该已在后台刷新");
+        Assert.assertTrue(maxNanos < TimeUnit.MILLISECONDS.toNanos(200), "生成签名不应等待getticket请求");
+    }
+
+    public void testBackgroundRefreshRunsOnWorkersAndStopsOnShutdown() throws Exception {
+        StubTicketService service = new StubTicketService(0, REFRESH_SOON_EXPIRES_IN);
+        try {
+            service.getJsapiTicket();
+            service.requestThreads.clear();
+
+            // 1秒后进入刷新时间段，由调度线程安排、工作线程执行
+            long deadline = System.currentTimeMillis() + 5000;
+            while (service.jsapiCalls.get() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(service.jsapiCalls.get() >= 2, "ticket应该已在后台刷新");
+            for (String thread : service.requestThreads) {
+                Assert.assertTrue(thread.startsWith("wx-open-ticket-refresh-"), "getticket请求不应该在调度线程上执行: " + thread);
+            }
+        } finally {
+            service.shutdown();
+        }
+
+        // 关闭后不再有后台刷新，读取仍然可用
+        int calls = service.jsapiCalls.get();
+        Thread.sleep(1500);
+        Assert.assertEquals(service.jsapiCalls.get(), calls, "关闭后不应该再有后台刷新");
+        Assert.assertNotNull(service.getJsapiTicket());
+    }
+
+    private static Set<String> callConcurrently(ExecutorService executorService, int threads, TicketCall call) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executorService.submit(() -> {
+                start.await();
+                return call.get();
+            }));
+        }
+        start.countDown();
+        Set<String> tickets = new HashSet<>();
+        for (Future<String> future : futures) {
+            tickets.add(future.get());
+        }
+        return tickets;
+    }
+
+    private interface TicketCall {
+        String get() throws WxErrorException;
+    }
+
+    /**
+     * getticket请求固定耗时 latencyMillis，其他请求不会发出
+     */
+    private static class StubTicketService extends WxOpenServiceImpl {
+        private final AtomicInteger jsapiCalls = new AtomicInteger();
+        private final AtomicInteger cardCalls = new AtomicInteger();
+        private final Set<String> requestThreads = ConcurrentHashMap.newKeySet();
+        private final long latencyMillis;
+        private final int expiresIn;
+        private volatile boolean fail;
+
+        private StubTicketService(long latencyMillis, int expiresIn) {
+            this.latencyMillis = latencyMillis;
+            this.expiresIn = expiresIn;
+            WxOpenInMemoryConfigStorage configStorage = new WxOpenInMemoryConfigStorage();
+            configStorage.setAppId("wx_appid");
+            setWxOpenConfigStorage(configStorage);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T, E> T execute(RequestExecutor<T, E> executor, String uri, E data) throws WxErrorException {
+            Assert.assertTrue(uri.contains("/ticket/getticket"), uri);
+            this.requestThreads.add(Thread.currentThread().getName());
+            int call = uri.endsWith("type=wx_card") ? this.cardCalls.incrementAndGet() : this.jsapiCalls.incrementAndGet();
+            try {
+                Thread.sleep(this.latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (this.fail) {
+                throw new WxErrorException(WxError.fromJson("{\"errcode\":40001,\"errmsg\":\"invalid credential\"}"));
+            }
+            String type = uri.endsWith("type=wx_card") ? "card" : "jsapi";
+            return (T) ("{\"errcode\":0,\"errmsg\":\"ok\",\"ticket\":\"" + type + "_" + call + "\",\"expires_in\":" + this.expiresIn + "}");
+        }
+    }
+}
@@ -7,52 +7,101 @@ import org.testng.annotations.Test;
 @Test
 public class WxOpenXmlMessageTest {
 
-    public void testFromXml() {
+    public static final String TEXT_MESSAGE_XML = "<xml>"
+            + "<ToUserName><![CDATA[toUser]]></ToUserName>"
+            + "<FromUserName><![CDATA[fromUser]]></FromUserName> "
+            + "<CreateTime>1348831860</CreateTime>"
+            + "<MsgType><![CDATA[text]]></MsgType>"
+            + "<Content><![CDATA[this is a test]]></Content>"
+            + "<MsgId>1234567890123456</MsgId>"
+            + "<PicUrl><![CDATA[this is a url]]></PicUrl>"
+            + "<MediaId><![CDATA[media_id]]></MediaId>"
+            + "<Format><![CDATA[Format]]></Format>"
+            + "<ThumbMediaId><![CDATA[thumb_media_id]]></ThumbMediaId>"
+            + "<Location_X>23.134521</Location_X>"
+            + "<Location_Y>113.358803</Location_Y>"
+            + "<Scale>20</Scale>"
+            + "<Label><![CDATA[位置信息]]></Label>"
+            + "<Description><![CDATA[公众平台官网链接]]></Description>"
+            + "<Url><![CDATA[url]]></Url>"
+            + "<Title><![CDATA[公众平台官网链接]]></Title>"
+            + "<Event><![CDATA[subscribe]]></Event>"
+            + "<EventKey><![CDATA[qrscene_123123]]></EventKey>"
+            + "<Ticket><![CDATA[TICKET]]></Ticket>"
+            + "<Latitude>23.137466</Latitude>"
+            + "<Longitude>113.352425</Longitude>"
+            + "<Precision>119.385040</Precision>"
+            + "<ScanCodeInfo>"
+            + " <ScanType><![CDATA[qrcode]]></ScanType>"
+            + " <ScanResult><![CDATA[1]]></ScanResult>"
+            + "</ScanCodeInfo>"
+            + "<SendPicsInfo>"
+            + " <Count>1</Count>\n"
+            + " <PicList>"
+            + "  <item>"
+            + "   <PicMd5Sum><![CDATA[1b5f7c23b5bf75682a53e7b6d163e185]]></PicMd5Sum>"
+            + "  </item>"
+            + " </PicList>"
+            + "</SendPicsInfo>"
+            + "<SendLocationInfo>"
+            + "  <Location_X><![CDATA[23]]></Location_X>\n"
+            + "  <Location_Y><![CDATA[113]]></Location_Y>\n"
+            + "  <Scale><![CDATA[15]]></Scale>\n"
+            + "  <Label><![CDATA[ 广州市海珠区客村艺苑路 106号]]></Label>\n"
+            + "  <Poiname><![CDATA[wo de poi]]></Poiname>\n"
+            + "</SendLocationInfo>"
+            + "</xml>";
+
+    /**
+     * MsgID大小写与文档不一致
+     */
+    public static final String MSG_ID_UPPER_CASE_XML = "<xml>"
+            + "<ToUserName><![CDATA[toUser]]></ToUserName>"
+            + "<FromUserName><![CDATA[fromUser]]></FromUserName> "
+            + "<CreateTime>1348831860</CreateTime>"
+            + "<MsgType><![CDATA[text]]></MsgType>"
+            + "<Content><![CDATA[this is a test]]></Content>"
+            + "<MsgID>1234567890123456</MsgID>"
+            + "<PicUrl><![CDATA[this is a url]]></PicUrl>"
+            + "<MediaId><![CDATA[media_id]]></MediaId>"
+            + "<Format><![CDATA[Format]]></Format>"
+            + "<ThumbMediaId><![CDATA[thumb_media_id]]></ThumbMediaId>"
+            + "<Location_X>23.134521</Location_X>"
+            + "<Location_Y>113.358803</Location_Y>"
+            + "<Scale>20</Scale>"
+            + "<Label><![CDATA[位置信息]]></Label>"
+            + "<Description><![CDATA[公众平台官网链接]]></Description>"
+            + "<Url><![CDATA[url]]></Url>"
+            + "<Title><![CDATA[公众平台官网链接]]></Title>"
+            + "<Event><![CDATA[subscribe]]></Event>"
+            + "<EventKey><![CDATA[qrscene_123123]]></EventKey>"
+            + "<Ticket><![CDATA[TICKET]]></Ticket>"
+            + "<Latitude>23.137466</Latitude>"
+            + "<Longitude>113.352425</Longitude>"
+            + "<Precision>119.385040</Precision>"
+            + "<ScanCodeInfo>"
+            + " <ScanType><![CDATA[qrcode]]></ScanType>"
+            + " <ScanResult><![CDATA[1]]></ScanResult>"
+            + "</ScanCodeInfo>"
+            + "<SendPicsInfo>"
+            + " <Count>1</Count>\n"
+            + " <PicList>"
+            + "  <item>"
+            + "   <PicMd5Sum><![CDATA[1b5f7c23b5bf75682a53e7b6d163e185]]></PicMd5Sum>"
+            + "  </item>"
+            + " </PicList>"
+            + "</SendPicsInfo>"
+            + "<SendLocationInfo>"
+            + "  <Location_X><![CDATA[23]]></Location_X>\n"
+            + "  <Location_Y><![CDATA[113]]></Location_Y>\n"
+            + "  <Scale><![CDATA[15]]></Scale>\n"
+            + "  <Label><![CDATA[ 广州市海珠区客村艺苑路 106号]]></Label>\n"
+            + "  <Poiname><![CDATA[wo de poi]]></Poiname>\n"
+            + "</SendLocationInfo>"
+            + "</xml>";
 
-        String xml = "<xml>"
-                + "<ToUserName><![CDATA[toUser]]></ToUserName>"
-                + "<FromUserName><![CDATA[fromUser]]></FromUserName> "
-                + "<CreateTime>1348831860</CreateTime>"
-                + "<MsgType><![CDATA[text]]></MsgType>"
-                + "<Content><![CDATA[this is a test]]></Content>"
-                + "<MsgId>1234567890123456</MsgId>"
-                + "<PicUrl><![CDATA[this is a url]]></PicUrl>"
-                + "<MediaId><![CDATA[media_id]]></MediaId>"
-                + "<Format><![CDATA[Format]]></Format>"
-                + "<ThumbMediaId><![CDATA[thumb_media_id]]></ThumbMediaId>"
-                + "<Location_X>23.134521</Location_X>"
-                + "<Location_Y>113.358803</Location_Y>"
-                + "<Scale>20</Scale>"
-                + "<Label><![CDATA[位置信息]]></Label>"
-                + "<Description><![CDATA[公众平台官网链接]]></Description>"
-                + "<Url><![CDATA[url]]></Url>"
-                + "<Title><![CDATA[公众平台官网链接]]></Title>"
-                + "<Event><![CDATA[subscribe]]></Event>"
-                + "<EventKey><![CDATA[qrscene_123123]]></EventKey>"
-                + "<Ticket><![CDATA[TICKET]]></Ticket>"
-                + "<Latitude>23.137466</Latitude>"
-                + "<Longitude>113.352425</Longitude>"
-                + "<Precision>119.385040</Precision>"
-                + "<ScanCodeInfo>"
-                + " <ScanType><![CDATA[qrcode]]></ScanType>"
-                + " <ScanResult><![CDATA[1]]></ScanResult>"
-                + "</ScanCodeInfo>"
-                + "<SendPicsInfo>"
-                + " <Count>1</Count>\n"
-                + " <PicList>"
-                + "  <item>"
-                + "   <PicMd5Sum><![CDATA[1b5f7c23b5bf75682a53e7b6d163e185]]></PicMd5Sum>"
-                + "  </item>"
-                + " </PicList>"
-                + "</SendPicsInfo>"
-                + "<SendLocationInfo>"
-                + "  <Location_X><![CDATA[23]]></Location_X>\n"
-                + "  <Location_Y><![CDATA[113]]></Location_Y>\n"
-                + "  <Scale><![CDATA[15]]></Scale>\n"
-                + "  <Label><![CDATA[ 广州市海珠区客村艺苑路 106号]]></Label>\n"
-                + "  <Poiname><![CDATA[wo de poi]]></Poiname>\n"
-                + "</SendLocationInfo>"
-                + "</xml>";
+    public void testFromXml() {
+        String xml = TEXT_MESSAGE_XML;
         WxOpenXmlMessage wxMessage = WxOpenXmlMessage.fromXml(xml);
         Assert.assertEquals(wxMessage.getToUser(), "toUser");
         Assert.assertEquals(wxMessage.getFromUser(), "fromUser");
@@ -89,51 +138,7 @@ public class WxOpenXmlMessageTest {
     }
 
     public void testFromXml2() {
-
-        String xml = "<xml>"
-                + "<ToUserName><![CDATA[toUser]]></ToUserName>"
-                + "<FromUserName><![CDATA[fromUser]]></FromUserName> "
-                + "<CreateTime>1348831860</CreateTime>"
-                + "<MsgType><![CDATA[text]]></MsgType>"
-                + "<Content><![CDATA[this is a test]]></Content>"
-                + "<MsgID>1234567890123456</MsgID>"
-                + "<PicUrl><![CDATA[this is a url]]></PicUrl>"
-                + "<MediaId><![CDATA[media_id]]></MediaId>"
-                + "<Format><![CDATA[Format]]></Format>"
-                + "<ThumbMediaId><![CDATA[thumb_media_id]]></ThumbMediaId>"
-                + "<Location_X>23.134521</Location_X>"
-                + "<Location_Y>113.358803</Location_Y>"
-                + "<Scale>20</Scale>"
-                + "<Label><![CDATA[位置信息]]></Label>"
-                + "<Description><![CDATA[公众平台官网链接]]></Description>"
-                + "<Url><![CDATA[url]]></Url>"
-                + "<Title><![CDATA[公众平台官网链接]]></Title>"
-                + "<Event><![CDATA[subscribe]]></Event>"
-                + "<EventKey><![CDATA[qrscene_123123]]></EventKey>"
-                + "<Ticket><![CDATA[TICKET]]></Ticket>"
-                + "<Latitude>23.137466</Latitude>"
-                + "<Longitude>113.352425</Longitude>"
-                + "<Precision>119.385040</Precision>"
-                + "<ScanCodeInfo>"
-                + " <ScanType><![CDATA[qrcode]]></ScanType>"
-                + " <ScanResult><![CDATA[1]]></ScanResult>"
-                + "</ScanCodeInfo>"
-                + "<SendPicsInfo>"
-                + " <Count>1</Count>\n"
-                + " <PicList>"
-                + "  <item>"
-                + "   <PicMd5Sum><![CDATA[1b5f7c23b5bf75682a53e7b6d163e185]]></PicMd5Sum>"
-                + "  </item>"
-                + " </PicList>"
-                + "</SendPicsInfo>"
-                + "<SendLocationInfo>"
-                + "  <Location_X><![CDATA[23]]></Location_X>\n"
-                + "  <Location_Y><![CDATA[113]]></Location_Y>\n"
-                + "  <Scale><![CDATA[15]]></Scale>\n"
-                + "  <Label><![CDATA[ 广州市海珠区客村艺苑路 106号]]></Label>\n"
-                + "  <Poiname><![CDATA[wo de poi]]></Poiname>\n"
-                + "</SendLocationInfo>"
-                + "</xml>";
+        String xml = MSG_ID_UPPER_CASE_XML;
         WxOpenXmlMessage wxMessage = WxOpenXmlMessage.fromXml(xml);
         Assert.assertEquals(wxMessage.getToUser(), "toUser");
         Assert.assertEquals(wxMessage.getFromUser(), "fromUser");
@@ -0,0 +1,234 @@
+package me.chanjar.weixin.open.util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import me.chanjar.weixin.common.bean.result.WxError;
+import me.chanjar.weixin.common.exception.WxErrorException;
+import me.chanjar.weixin.open.api.impl.WxOpenServiceImpl;
+import me.chanjar.weixin.open.bean.store.WxOpenStoreInfo;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 用带固定延迟的本地分页桩验证：偏移量分页并行拉取且结果有序，游标分页在调用方处理时预取下一页
+ */
+@Test
+public class WxOpenPaginatorTest {
+
+    private static final long LATENCY_MILLIS = 50;
+
+    private static final int STORE_COUNT = 1000;
+
+    private static final int BLACKLIST_COUNT = 1000;
+
+    private static final int BLACKLIST_PAGE_SIZE = 100;
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(8);
+
+    @AfterClass
+    public void tearDown() {
+        this.scheduler.shutdownNow();
+    }
+
+    public void testStoreListAllInOrder() throws Exception {
+        StubService service = new StubService(-1);
+        long start = System.nanoTime();
+        List<WxOpenStoreInfo> sequential = service.getStoreService().listAll(1);
+        long sequentialMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertEquals(service.maxInFlight.get(), 1);
+
+        service.maxInFlight.set(0);
+        start = System.nanoTime();
+        List<WxOpenStoreInfo> parallel = service.getStoreService().listAll(8);
+        long parallelMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        System.out.println(String.format("store listAll of %d stores, %d ms latency per page: sequential %d ms, parallel(8) %d ms",
+                STORE_COUNT, LATENCY_MILLIS, sequentialMillis, parallelMillis));
+        Assert.assertEquals(parallel.size(), STORE_COUNT);
+        for (int i = 0; i < STORE_COUNT; i++) {
+            Assert.assertEquals(parallel.get(i).getBaseInfo().getSid(), "store_" + i);
+            Assert.assertEquals(sequential.get(i).getBaseInfo().getSid(), "store_" + i);
+        }
+        Assert.assertTrue(service.maxInFlight.get() <= 8, "同时进行的请求数: " + service.maxInFlight.get());
+        Assert.assertTrue(parallelMillis * 3 < sequentialMillis, "并行拉取应该明显更快");
+    }
+
+    public void testStoreListAllSinglePage() throws Exception {
+        StubService service = new StubService(-1);
+        service.storeCount = 20;
+        Assert.assertEquals(service.getStoreService().listAll().size(), 20);
+        Assert.assertEquals(service.requests.get(), 1);
+    }
+
+    @Test(expectedExceptions = WxErrorException.class, timeOut = 10000)
+    public void testStoreListAllFailure() throws Exception {
+        new StubService(500).getStoreService().listAll(8);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testStoreListAllRejectsZeroParallelism() throws Exception {
+        StubService service = new StubService(-1);
+        try {
+            service.getStoreService().listAll(0);
+        } finally {
+            Assert.assertEquals(service.requests.get(), 0, "参数错误时不应该发出请求");
+        }
+    }
+
+    /**
+     * 请求同步完成时，逐页发出请求不会让调用栈随页数加深
+     */
+    @Test(timeOut = 30000)
+    public void testSynchronousPagesDoNotDeepenStack() throws Exception {
+        int total = 200000;
+        AtomicInteger maxDepth = new AtomicInteger();
+        List<Integer> all = WxOpenPaginator.fetchAll((begin, limit) -> {
+            maxDepth.accumulateAndGet(Thread.currentThread().getStackTrace().length, Math::max);
+            return CompletableFuture.completedFuture(begin);
+        }, 1, 4, begin -> total, Collections::singletonList);
+
+        Assert.assertEquals(all.size(), total);
+        for (int i = 0; i < total; i++) {
+            Assert.assertEquals(all.get(i).intValue(), i);
+        }
+        Assert.assertTrue(maxDepth.get() < 200, "调用栈深度: " + maxDepth.get());
+    }
+
+    @Test(expectedExceptions = WxErrorException.class, timeOut = 30000)
+    public void testSynchronousFailureCancelsRemainingPages() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        try {
+            WxOpenPaginator.fetchAll((begin, limit) -> {
+                requests.incrementAndGet();
+                CompletableFuture<Integer> page = new CompletableFuture<>();
+                if (begin == 10) {
+                    page.completeExceptionally(new WxErrorException(WxError.fromJson("{\"errcode\":45009,\"errmsg\":\"api freq out of limit\"}")));
+                } else {
+                    page.complete(begin);
+                }
+                return page;
+            }, 1, 4, begin -> 200000, Collections::singletonList);
+        } finally {
+            Assert.assertTrue(requests.get() < 20, "失败后不应该继续请求: " + requests.get());
+        }
+    }
+
+    public void testBlacklistPrefetchOverlapsProcessing() throws Exception {
+        StubService service = new StubService(-1);
+        long processingMillis = LATENCY_MILLIS;
+        List<String> openids = new ArrayList<>();
+        long start = System.nanoTime();
+        service.getBlackListService().forEachBlacklistPage(page -> {
+            openids.addAll(page.getOpenidList());
+            try {
+                Thread.sleep(processingMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // 10页数据加最后一次空页
+        int pages = BLACKLIST_COUNT / BLACKLIST_PAGE_SIZE + 1;
+        System.out.println(String.format("blacklist of %d openids, %d pages: %d ms with prefetch, %d ms if fetched serially",
+                BLACKLIST_COUNT, pages, elapsedMillis, pages * (LATENCY_MILLIS + processingMillis)));
+        Assert.assertEquals(openids.size(), BLACKLIST_COUNT);
+        for (int i = 0; i < BLACKLIST_COUNT; i++) {
+            Assert.assertEquals(openids.get(i), openid(i));
+        }
+        Assert.assertEquals(service.requests.get(), pages);
+        Assert.assertTrue(elapsedMillis < pages * (LATENCY_MILLIS + processingMillis) * 9 / 10,
+                "拉取下一页应与处理当前页重叠");
+    }
+
+    private static String openid(int i) {
+        return String.format("openid_%05d", i);
+    }
+
+    /**
+     * 门店和黑名单接口的本地桩，每个请求固定延迟 LATENCY_MILLIS 后返回
+     */
+    private class StubService extends WxOpenServiceImpl {
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final int failAtBegin;
+        private volatile int storeCount = STORE_COUNT;
+
+        private StubService(int failAtBegin) {
+            this.failAtBegin = failAtBegin;
+        }
+
+        @Override
+        public CompletableFuture<String> postAsync(String url, String postData) {
+            this.requests.incrementAndGet();
+            this.maxInFlight.accumulateAndGet(this.inFlight.incrementAndGet(), Math::max);
+            JsonObject request = new JsonParser().parse(postData).getAsJsonObject();
+            CompletableFuture<String> future = new CompletableFuture<>();
+            WxOpenPaginatorTest.this.scheduler.schedule(() -> {
+                this.inFlight.decrementAndGet();
+                try {
+                    future.complete(url.endsWith("/getpoilist") ? storePage(request) : blacklistPage(request));
+                } catch (WxErrorException e) {
+                    future.completeExceptionally(new CompletionException(e));
+                }
+            }, LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+            return future;
+        }
+
+        private String storePage(JsonObject request) throws WxErrorException {
+            int begin = request.get("begin").getAsInt();
+            int limit = request.get("limit").getAsInt();
+            if (begin == this.failAtBegin) {
+                throw new WxErrorException(WxError.fromJson("{\"errcode\":45009,\"errmsg\":\"api freq out of limit\"}"));
+            }
+            JsonArray businessList = new JsonArray();
+            for (int i = begin; i < Math.min(begin + limit, this.storeCount); i++) {
+                JsonObject baseInfo = new JsonObject();
+                baseInfo.addProperty("sid", "store_" + i);
+                JsonObject business = new JsonObject();
+                business.add("base_info", baseInfo);
+                businessList.add(business);
+            }
+            JsonObject response = new JsonObject();
+            response.addProperty("errcode", 0);
+            response.addProperty("errmsg", "ok");
+            response.add("business_list", businessList);
+            response.addProperty("total_count", this.storeCount);
+            return response.toString();
+        }
+
+        private String blacklistPage(JsonObject request) {
+            int begin = 0;
+            if (request.has("begin_openid") && !request.get("begin_openid").isJsonNull()) {
+                begin = Integer.parseInt(request.get("begin_openid").getAsString().substring("openid_".length())) + 1;
+            }
+            JsonArray openids = new JsonArray();
+            int end = Math.min(begin + BLACKLIST_PAGE_SIZE, BLACKLIST_COUNT);
+            for (int i = begin; i < end; i++) {
+                openids.add(openid(i));
+            }
+            JsonObject data = new JsonObject();
+            data.add("openid", openids);
+            JsonObject response = new JsonObject();
+            response.addProperty("total", BLACKLIST_COUNT);
+            response.addProperty("count", openids.size());
+            response.add("data", data);
+            // 与微信一致，最后一页之后next_openid仍为最后一个openid
+            response.addProperty("next_openid", openid(Math.max(begin, end) - 1));
+            return response.toString();
+        }
+    }
+}
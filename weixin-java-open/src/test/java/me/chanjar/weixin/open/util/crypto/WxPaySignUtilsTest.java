@@ -0,0 +1,155 @@
+package me.chanjar.weixin.open.util.crypto;
+
+import me.chanjar.weixin.common.util.BeanUtils;
+import me.chanjar.weixin.open.bean.pay.request.*;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * 所有支付请求类型的签名结果必须与原来 BeanUtils.xmlBean2Map + createSign 的结果完全一致
+ */
+@Test
+public class WxPaySignUtilsTest {
+
+    private static final String SIGN_KEY = "192006250b4c09247ec02edce69f6a2d";
+
+    private static final int BENCHMARK_ITERATIONS = 20000;
+
+    @DataProvider
+    public Object[][] requestTypes() {
+        return new Object[][]{
+                {WxPayUnifiedOrderRequest.class},
+                {WxPayOrderQueryRequest.class},
+                {WxPayOrderCloseRequest.class},
+                {WxPayRefundRequest.class},
+                {WxPayRefundQueryRequest.class},
+                {WxPaySendRedpackRequest.class},
+                {WxPayRedpackQueryRequest.class},
+                {WxEntPayRequest.class},
+                {WxEntPayQueryRequest.class}
+        };
+    }
+
+    @Test(dataProvider = "requestTypes")
+    public void testSameSignAsXmlBean2Map(Class<?> requestType) throws Exception {
+        // 所有字段都有值
+        Object request = newRequest(requestType, 0);
+        Assert.assertEquals(WxPaySignUtils.createSign(request, SIGN_KEY), legacySign(request));
+
+        // 部分字段为null或空字符串
+        request = newRequest(requestType, 3);
+        Assert.assertEquals(WxPaySignUtils.createSign(request, SIGN_KEY), legacySign(request));
+
+        // 所有字段都为空
+        request = requestType.newInstance();
+        Assert.assertEquals(WxPaySignUtils.createSign(request, SIGN_KEY), legacySign(request));
+    }
+
+    public void testGoldenSign() {
+        // 微信支付签名算法文档中的示例
+        WxPayUnifiedOrderRequest request = new WxPayUnifiedOrderRequest();
+        request.setAppid("wxd930ea5d5a258f4f");
+        request.setMchId("10000100");
+        request.setDeviceInfo("1000");
+        request.setBody("test");
+        request.setNonceStr("ibuaiVcKdpRxkhJA");
+        Assert.assertEquals(WxPaySignUtils.createSign(request, SIGN_KEY), "9A0A8659F005D6984697E2CA0A9CF3B7");
+
+        Map<String, String> params = new HashMap<>();
+        params.put("appid", "wxd930ea5d5a258f4f");
+        params.put("mch_id", "10000100");
+        params.put("device_info", "1000");
+        params.put("body", "test");
+        params.put("nonce_str", "ibuaiVcKdpRxkhJA");
+        params.put("sign", "C380BEC2BFD727A4B6845133519F3AD6");
+        params.put("attach", "");
+        Assert.assertEquals(WxPaySignUtils.createSign(params, SIGN_KEY), "9A0A8659F005D6984697E2CA0A9CF3B7");
+    }
+
+    public void testFasterThanXmlBean2Map() throws Exception {
+        Object request = newRequest(WxPayUnifiedOrderRequest.class, 0);
+        // 预热
+        for (int i = 0; i < 2000; i++) {
+            legacySign(request);
+            WxPaySignUtils.createSign(request, SIGN_KEY);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            legacySign(request);
+        }
+        double legacyMicros = (System.nanoTime() - start) / 1000.0 / BENCHMARK_ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            WxPaySignUtils.createSign(request, SIGN_KEY);
+        }
+        double planMicros = (System.nanoTime() - start) / 1000.0 / BENCHMARK_ITERATIONS;
+
+        System.out.println(String.format("sign unified order, xmlBean2Map: %.2f us/op, cached field plan: %.2f us/op",
+                legacyMicros, planMicros));
+        Assert.assertTrue(planMicros < legacyMicros, "缓存字段的签名应该更快");
+    }
+
+    /**
+     * 改造前的签名方式
+     */
+    private static String legacySign(Object request) {
+        Map<String, String> packageParams = BeanUtils.xmlBean2Map(request);
+        SortedMap<String, String> sortedMap = new TreeMap<>(packageParams);
+
+        StringBuilder toSign = new StringBuilder();
+        for (String key : sortedMap.keySet()) {
+            String value = packageParams.get(key);
+            if (null != value && !"".equals(value) && !"sign".equals(key)
+                    && !"key".equals(key)) {
+                toSign.append(key + "=" + value + "&");
+            }
+        }
+
+        toSign.append("key=" + SIGN_KEY);
+
+        return DigestUtils.md5Hex(toSign.toString()).toUpperCase();
+    }
+
+    /**
+     * 给每个字段填上不同的值，blankEvery大于0时每隔几个字段留空一个(交替使用null和空字符串)
+     */
+    private static Object newRequest(Class<?> requestType, int blankEvery) throws Exception {
+        Object request = requestType.newInstance();
+        List<Field> fields = new ArrayList<>(Arrays.asList(requestType.getDeclaredFields()));
+        fields.addAll(Arrays.asList(requestType.getSuperclass().getDeclaredFields()));
+        int index = 0;
+        for (Field field : fields) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            index++;
+            field.setAccessible(true);
+            if (blankEvery > 0 && index % blankEvery == 0) {
+                if (field.getType() == String.class && index % (blankEvery * 2) == 0) {
+                    field.set(request, "");
+                }
+                continue;
+            }
+            if (field.getType() == String.class) {
+                field.set(request, field.getName() + "_值_" + index);
+            } else if (field.getType() == Integer.class) {
+                field.set(request, index * 100);
+            }
+        }
+        return request;
+    }
+}
@@ -0,0 +1,210 @@
+package me.chanjar.weixin.open.util.http;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.conn.ssl.DefaultHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.ssl.SSLContexts;
+import org.apache.http.util.EntityUtils;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.SecureRequestCustomizer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+/**
+ * 基于本地双向认证TLS桩服务，对比每次新建httpclient与复用连接池的单次请求耗时
+ */
+@Test
+public class WxPayHttpClientManagerTest {
+
+    private static final String MCH_ID = "10000100";
+
+    private static final int BENCHMARK_REQUESTS = 50;
+
+    private Server server;
+
+    private String stubUrl;
+
+    private KeyStore serverTrustStore;
+
+    private File keyFile;
+
+    private WxPayHttpClientManager httpClientManager;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        String serverKeyStorePath = new File(this.getClass().getResource("/pay/stub-server.p12").toURI()).getAbsolutePath();
+        this.keyFile = File.createTempFile("wxpay-stub-client", ".p12");
+        this.keyFile.deleteOnExit();
+        try (InputStream inputStream = this.getClass().getResourceAsStream("/pay/stub-client.p12")) {
+            FileUtils.copyInputStreamToFile(inputStream, this.keyFile);
+        }
+        this.serverTrustStore = KeyStore.getInstance("PKCS12");
+        try (InputStream inputStream = new FileInputStream(serverKeyStorePath)) {
+            this.serverTrustStore.load(inputStream, MCH_ID.toCharArray());
+        }
+
+        SslContextFactory sslContextFactory = new SslContextFactory();
+        sslContextFactory.setKeyStoreType("PKCS12");
+        sslContextFactory.setKeyStorePath(serverKeyStorePath);
+        sslContextFactory.setKeyStorePassword(MCH_ID);
+        sslContextFactory.setTrustStoreType("PKCS12");
+        sslContextFactory.setTrustStorePath(this.keyFile.getAbsolutePath());
+        sslContextFactory.setTrustStorePassword(MCH_ID);
+        sslContextFactory.setNeedClientAuth(true);
+
+        HttpConfiguration httpsConfig = new HttpConfiguration();
+        httpsConfig.addCustomizer(new SecureRequestCustomizer());
+
+        this.server = new Server();
+        ServerConnector connector = new ServerConnector(this.server,
+                new SslConnectionFactory(sslContextFactory, "http/1.1"), new HttpConnectionFactory(httpsConfig));
+        this.server.addConnector(connector);
+        ServletHandler servletHandler = new ServletHandler();
+        servletHandler.addServletWithMapping(new ServletHolder(new PayStubServlet()), "/*");
+        this.server.setHandler(servletHandler);
+        this.server.start();
+        this.stubUrl = "https://localhost:" + connector.getLocalPort() + "/mmpaymkttransfers/sendredpack";
+
+        this.httpClientManager = new WxPayHttpClientManager() {
+            @Override
+            protected SSLContext buildSslContext(KeyStore keyStore, char[] password) throws GeneralSecurityException {
+                return SSLContexts.custom().loadKeyMaterial(keyStore, password)
+                        .loadTrustMaterial(serverTrustStore, null).build();
+            }
+        };
+        this.httpClientManager.setKeyFileCheckIntervalMillis(0);
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        this.httpClientManager.close();
+        this.server.stop();
+    }
+
+    public void testClientIsReused() throws Exception {
+        CloseableHttpClient first = this.httpClientManager.getHttpClient(this.keyFile, MCH_ID);
+        CloseableHttpClient second = this.httpClientManager.getHttpClient(this.keyFile, MCH_ID);
+        Assert.assertSame(second, first);
+        Assert.assertTrue(post(first).contains("SUCCESS"));
+    }
+
+    public void testReloadWhenKeyFileChanged() throws Exception {
+        CloseableHttpClient before = this.httpClientManager.getHttpClient(this.keyFile, MCH_ID);
+        Assert.assertTrue(this.keyFile.setLastModified(this.keyFile.lastModified() + 10000));
+        CloseableHttpClient after = this.httpClientManager.getHttpClient(this.keyFile, MCH_ID);
+        Assert.assertNotSame(after, before);
+        Assert.assertTrue(post(after).contains("SUCCESS"));
+    }
+
+    public void testReloadAfterCheckInterval() throws Exception {
+        WxPayHttpClientManager throttledManager = new WxPayHttpClientManager() {
+            @Override
+            protected SSLContext buildSslContext(KeyStore keyStore, char[] password) throws GeneralSecurityException {
+                return SSLContexts.custom().loadKeyMaterial(keyStore, password)
+                        .loadTrustMaterial(serverTrustStore, null).build();
+            }
+        };
+        throttledManager.setKeyFileCheckIntervalMillis(200);
+        try {
+            CloseableHttpClient before = throttledManager.getHttpClient(this.keyFile, MCH_ID);
+            Assert.assertTrue(this.keyFile.setLastModified(this.keyFile.lastModified() + 10000));
+            // 检查间隔内不会去看证书文件
+            Assert.assertSame(throttledManager.getHttpClient(this.keyFile, MCH_ID), before);
+
+            Thread.sleep(300);
+            CloseableHttpClient after = throttledManager.getHttpClient(this.keyFile, MCH_ID);
+            Assert.assertNotSame(after, before);
+            Assert.assertSame(throttledManager.getHttpClient(this.keyFile, MCH_ID), after);
+            Assert.assertTrue(post(after).contains("SUCCESS"));
+        } finally {
+            throttledManager.close();
+        }
+    }
+
+    public void testPooledClientIsFasterThanClientPerCall() throws Exception {
+        // 预热
+        for (int i = 0; i < 5; i++) {
+            postWithNewClient();
+            post(this.httpClientManager.getHttpClient(this.keyFile, MCH_ID));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_REQUESTS; i++) {
+            postWithNewClient();
+        }
+        double perCallMicros = (System.nanoTime() - start) / 1000.0 / BENCHMARK_REQUESTS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_REQUESTS; i++) {
+            post(this.httpClientManager.getHttpClient(this.keyFile, MCH_ID));
+        }
+        double pooledMicros = (System.nanoTime() - start) / 1000.0 / BENCHMARK_REQUESTS;
+
+        System.out.println(String.format("client per call: %.0f us/req, pooled client: %.0f us/req", perCallMicros, pooledMicros));
+        Assert.assertTrue(pooledMicros < perCallMicros, "复用连接池的请求应该更快");
+    }
+
+    /**
+     * 与改造前一致：每次请求都重新加载证书、构建SSLContext和httpclient
+     */
+    private String postWithNewClient() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream inputStream = new FileInputStream(this.keyFile)) {
+            keyStore.load(inputStream, MCH_ID.toCharArray());
+        }
+        SSLContext sslContext = SSLContexts.custom().loadKeyMaterial(keyStore, MCH_ID.toCharArray())
+                .loadTrustMaterial(this.serverTrustStore, null).build();
+        SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(sslContext,
+                new String[]{"TLSv1.2"}, null, new DefaultHostnameVerifier());
+        try (CloseableHttpClient httpclient = HttpClients.custom().setSSLSocketFactory(sslsf).build()) {
+            return post(httpclient);
+        }
+    }
+
+    private String post(CloseableHttpClient httpclient) throws IOException {
+        HttpPost httpPost = new HttpPost(this.stubUrl);
+        httpPost.setEntity(new StringEntity("<xml><mch_id>" + MCH_ID + "</mch_id></xml>"));
+        try (CloseableHttpResponse response = httpclient.execute(httpPost)) {
+            return EntityUtils.toString(response.getEntity());
+        } finally {
+            httpPost.releaseConnection();
+        }
+    }
+
+    private static class PayStubServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.setContentType("text/xml;charset=utf-8");
+            resp.getWriter().write("<xml><return_code><![CDATA[SUCCESS]]></return_code>"
+                    + "<result_code><![CDATA[SUCCESS]]></result_code></xml>");
+        }
+    }
+}
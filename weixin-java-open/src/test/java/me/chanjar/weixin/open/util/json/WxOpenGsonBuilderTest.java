@@ -0,0 +1,135 @@
+package me.chanjar.weixin.open.util.json;
+
+import com.google.gson.Gson;
+import me.chanjar.weixin.common.bean.result.WxError;
+import me.chanjar.weixin.common.util.json.WxGsonBuilder;
+import me.chanjar.weixin.open.bean.kefu.result.WxOpenKfList;
+import me.chanjar.weixin.open.bean.result.WxOpenUser;
+import me.chanjar.weixin.open.bean.result.WxOpenUserList;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 共享Gson实例与流式解析器的结果校验，并用一组接口响应对比"每次新建Gson"与"共享Gson"的耗时和内存分配
+ */
+@Test
+public class WxOpenGsonBuilderTest {
+
+    private static final String ERROR = "{\"errcode\":40003,\"errmsg\":\"invalid openid hint: [iXa0ZA0963vr18]\"}";
+
+    private static final String USER = "{\"subscribe\":1,\"openid\":\"o6_bmjrPTlm6_2sgVt7hMZOPfL2M\"," +
+            "\"nickname\":\"Band\",\"sex\":1,\"language\":\"zh_CN\",\"city\":\"广州\",\"province\":\"广东\"," +
+            "\"country\":\"中国\",\"headimgurl\":\"http://wx.qlogo.cn/mmopen/g3MonUZtNHkdmzicIlibx6iaFqAc56vxLSUfpb6n5WKSYVY0ChQKkiaJSgQ1dZuTOgvLLrhJbERQQ4eMsv84eavHiaiceqxibJxCfHe/0\"," +
+            "\"subscribe_time\":1382694957,\"unionid\":\"o6_bmasdasdsad6_2sgVt7hMZOPfL\",\"remark\":\"\"," +
+            "\"groupid\":0,\"tagid_list\":[128,2],\"privilege\":[\"PRIVILEGE1\",\"PRIVILEGE2\"]}";
+
+    private static final String USER_LIST = "{\"total\":2,\"count\":2,\"data\":{\"openid\":" +
+            "[\"OPENID1\",\"OPENID2\"]},\"next_openid\":\"NEXT_OPENID\"}";
+
+    private static final String KF_LIST = "{\"kf_list\":[{\"kf_account\":\"test1@test\",\"kf_nick\":\"ntest1\"," +
+            "\"kf_id\":\"1001\",\"kf_headimgurl\":\"http://mmbiz.qpic.cn/mmbiz/4whpV1VZl2iccsvYbHvnphkyGtnvjfUS8Ym0GSaLic0FD3vN0V8PILcibEGb2fPfEOmw/0\"}," +
+            "{\"kf_account\":\"test2@test\",\"kf_nick\":\"ntest2\",\"kf_id\":\"1002\",\"kf_wx\":\"kfwx\"," +
+            "\"invite_wx\":\"kfwx\",\"invite_expire_time\":123456789,\"invite_status\":\"waiting\"}]}";
+
+    private static final int BENCHMARK_ITERATIONS = 2000;
+
+    public void testWxError() {
+        WxError wxError = WxError.fromJson(ERROR);
+        Assert.assertEquals(wxError.getErrorCode(), 40003);
+        Assert.assertEquals(wxError.getErrorMsg(), "invalid openid hint: [iXa0ZA0963vr18]");
+        Assert.assertEquals(wxError.toString(), ERROR);
+
+        wxError = WxError.fromJson("{\"errcode\":\"45009\",\"errmsg\":null,\"extra\":{\"a\":[1,2]}}");
+        Assert.assertEquals(wxError.getErrorCode(), 45009);
+        Assert.assertNull(wxError.getErrorMsg());
+    }
+
+    public void testWxOpenUser() {
+        WxOpenUser user = WxOpenUser.fromJson(USER);
+        Assert.assertTrue(user.getSubscribe());
+        Assert.assertEquals(user.getOpenId(), "o6_bmjrPTlm6_2sgVt7hMZOPfL2M");
+        Assert.assertEquals(user.getNickname(), "Band");
+        Assert.assertEquals(user.getSex(), "男");
+        Assert.assertEquals(user.getSexId(), Integer.valueOf(1));
+        Assert.assertEquals(user.getCity(), "广州");
+        Assert.assertEquals(user.getSubscribeTime(), Long.valueOf(1382694957));
+        Assert.assertEquals(user.getUnionId(), "o6_bmasdasdsad6_2sgVt7hMZOPfL");
+        Assert.assertEquals(user.getGroupId(), Integer.valueOf(0));
+        Assert.assertEquals(user.getTagIds(), new Integer[]{128, 2});
+        Assert.assertEquals(user.getPrivilege(), new String[]{"PRIVILEGE1", "PRIVILEGE2"});
+
+        // 未关注的用户只返回subscribe和openid，其他字符串字段为空字符串
+        user = WxOpenUser.fromJson("{\"subscribe\":0,\"openid\":\"OPENID\"}");
+        Assert.assertFalse(user.getSubscribe());
+        Assert.assertEquals(user.getNickname(), "");
+        Assert.assertEquals(user.getSex(), "未知");
+        Assert.assertNull(user.getTagIds());
+
+        List<WxOpenUser> users = WxOpenUser.fromJsonList("{\"user_info_list\":[" + USER + "," + USER + "]}");
+        Assert.assertEquals(users.size(), 2);
+        Assert.assertEquals(users.get(1).getProvince(), "广东");
+    }
+
+    public void testWxOpenUserList() {
+        WxOpenUserList userList = WxOpenUserList.fromJson(USER_LIST);
+        Assert.assertEquals(userList.getTotal(), 2);
+        Assert.assertEquals(userList.getCount(), 2);
+        Assert.assertEquals(userList.getOpenIds(), Arrays.asList("OPENID1", "OPENID2"));
+        Assert.assertEquals(userList.getNextOpenId(), "NEXT_OPENID");
+
+        // 最后一页
+        userList = WxOpenUserList.fromJson("{\"total\":2,\"count\":0,\"next_openid\":\"\"}");
+        Assert.assertEquals(userList.getCount(), 0);
+        Assert.assertTrue(userList.getOpenIds().isEmpty());
+    }
+
+    public void testSharedInstance() {
+        Assert.assertSame(WxOpenGsonBuilder.create(), WxOpenGsonBuilder.create());
+        Assert.assertSame(WxGsonBuilder.create(), WxGsonBuilder.create());
+    }
+
+    public void testSharedGsonIsCheaperThanPerCall() {
+        // 预热
+        for (int i = 0; i < 200; i++) {
+            parseCorpus(WxOpenGsonBuilder.INSTANCE.create(), WxGsonBuilder.INSTANCE.create());
+            parseCorpus(WxOpenGsonBuilder.create(), WxGsonBuilder.create());
+        }
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            parseCorpus(WxOpenGsonBuilder.INSTANCE.create(), WxGsonBuilder.INSTANCE.create());
+        }
+        double perCallMicros = (System.nanoTime() - start) / 1000.0 / BENCHMARK_ITERATIONS;
+        long perCallBytes = (threadMXBean.getThreadAllocatedBytes(threadId) - bytes) / BENCHMARK_ITERATIONS;
+
+        bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            parseCorpus(WxOpenGsonBuilder.create(), WxGsonBuilder.create());
+        }
+        double sharedMicros = (System.nanoTime() - start) / 1000.0 / BENCHMARK_ITERATIONS;
+        long sharedBytes = (threadMXBean.getThreadAllocatedBytes(threadId) - bytes) / BENCHMARK_ITERATIONS;
+
+        System.out.println(String.format("parse corpus, gson per call: %.1f us/op %d B/op, shared gson: %.1f us/op %d B/op",
+                perCallMicros, perCallBytes, sharedMicros, sharedBytes));
+        Assert.assertTrue(sharedBytes < perCallBytes, "共享Gson实例应该分配更少的内存");
+    }
+
+    /**
+     * 与改造前的调用方式一致：每个响应都各自获取一次Gson
+     */
+    private static void parseCorpus(Gson openGson, Gson commonGson) {
+        commonGson.fromJson(ERROR, WxError.class);
+        openGson.fromJson(USER, WxOpenUser.class);
+        openGson.fromJson(USER_LIST, WxOpenUserList.class);
+        openGson.fromJson(KF_LIST, WxOpenKfList.class);
+    }
+}
@@ -0,0 +1,279 @@
+package me.chanjar.weixin.open.util.xml;
+
+import me.chanjar.weixin.open.bean.message.WxOpenXmlAuthorizeMessage;
+import me.chanjar.weixin.open.bean.message.WxOpenXmlMessage;
+import me.chanjar.weixin.open.bean.message.WxOpenXmlMessageTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 验证StAX解析与XStream解析得到完全相同的对象，并对比两者的吞吐量和每次解析分配的内存
+ */
+@Test
+public class WxOpenXmlMessageParserTest {
+
+    private static final int BENCHMARK_ITERATIONS = 20000;
+
+    private static final String SUBSCRIBE_EVENT = "<xml>"
+            + "<ToUserName><![CDATA[gh_123456789abc]]></ToUserName>\n"
+            + "<FromUserName><![CDATA[oABCD1234]]></FromUserName>\n"
+            + "<CreateTime>1500000000</CreateTime>\n"
+            + "<MsgType><![CDATA[event]]></MsgType>\n"
+            + "<Event><![CDATA[subscribe]]></Event>\n"
+            + "<EventKey><![CDATA[qrscene_oXYZ]]></EventKey>\n"
+            + "<Ticket><![CDATA[gQH47joAAAAAAAAAASxodHRwOi8vd2VpeGluLnFxLmNvbS9xL2lNVDd0]]></Ticket>\n"
+            + "</xml>";
+
+    private static final String MENU_EVENT = "<xml>"
+            + "<ToUserName><![CDATA[gh_123456789abc]]></ToUserName>"
+            + "<FromUserName><![CDATA[oABCD1234]]></FromUserName>"
+            + "<CreateTime>1500000000</CreateTime>"
+            + "<MsgType><![CDATA[event]]></MsgType>"
+            + "<Event><![CDATA[CLICK]]></Event>"
+            + "<EventKey><![CDATA[poster]]></EventKey>"
+            + "<MenuId>208396938</MenuId>"
+            + "</xml>";
+
+    private static final String EMPTY_PIC_LIST = "<xml>"
+            + "<ToUserName><![CDATA[gh_123456789abc]]></ToUserName>"
+            + "<MsgType><![CDATA[event]]></MsgType>"
+            + "<Event><![CDATA[pic_weixin]]></Event>"
+            + "<SendPicsInfo><Count>0</Count><PicList></PicList></SendPicsInfo>"
+            + "</xml>";
+
+    private static final String KF_EVENT = "<xml>"
+            + "<ToUserName><![CDATA[touser]]></ToUserName>"
+            + "<FromUserName><![CDATA[fromuser]]></FromUserName>"
+            + "<CreateTime>1399197672</CreateTime>"
+            + "<MsgType><![CDATA[event]]></MsgType>"
+            + "<Event><![CDATA[kf_switch_session]]></Event>"
+            + "<FromKfAccount><![CDATA[test1@test]]></FromKfAccount>"
+            + "<ToKfAccount><![CDATA[test2@test]]></ToKfAccount>"
+            + "<KfAccount><![CDATA[test3@test]]></KfAccount>"
+            + "</xml>";
+
+    private static final String MASS_SEND_JOB_FINISH = "<xml>"
+            + "<ToUserName><![CDATA[gh_4d00ed8d6399]]></ToUserName>"
+            + "<FromUserName><![CDATA[oV5CrjpxgaGXNHIQigzNlgLTnwic]]></FromUserName>"
+            + "<CreateTime>1481013459</CreateTime>"
+            + "<MsgType><![CDATA[event]]></MsgType>"
+            + "<Event><![CDATA[MASSSENDJOBFINISH]]></Event>"
+            + "<MsgID>1000001625</MsgID>"
+            + "<Status><![CDATA[err(30003)]]></Status>"
+            + "<TotalCount>0</TotalCount>"
+            + "<FilterCount>0</FilterCount>"
+            + "<SentCount>0</SentCount>"
+            + "<ErrorCount>0</ErrorCount>"
+            + "<CopyrightCheckResult><Count>2</Count><ResultList><item><ArticleIdx>1</ArticleIdx></item></ResultList>"
+            + "<CheckState>2</CheckState></CopyrightCheckResult>"
+            + "</xml>";
+
+    private static final String CARD_EVENT = "<xml>"
+            + "<ToUserName><![CDATA[toUser]]></ToUserName>"
+            + "<FromUserName><![CDATA[FromUser]]></FromUserName>"
+            + "<FriendUserName><![CDATA[FriendUser]]></FriendUserName>"
+            + "<CreateTime>123456789</CreateTime>"
+            + "<MsgType><![CDATA[event]]></MsgType>"
+            + "<Event><![CDATA[user_get_card]]></Event>"
+            + "<CardId><![CDATA[cardid]]></CardId>"
+            + "<IsGiveByFriend>1</IsGiveByFriend>"
+            + "<UserCardCode><![CDATA[12312312]]></UserCardCode>"
+            + "<OldUserCardCode><![CDATA[12312311]]></OldUserCardCode>"
+            + "<OuterId>0x10</OuterId>"
+            + "</xml>";
+
+    private static final String STORE_AND_HARDWARE_EVENT = "<xml>"
+            + "<ToUserName><![CDATA[toUser]]></ToUserName>"
+            + "<FromUserName><![CDATA[fromUser]]></FromUserName>"
+            + "<CreateTime>1408622107</CreateTime>"
+            + "<MsgType><![CDATA[event]]></MsgType>"
+            + "<Event><![CDATA[poi_check_notify]]></Event>"
+            + "<UniqId><![CDATA[123adb]]></UniqId>"
+            + "<PoiId><![CDATA[123123]]></PoiId>"
+            + "<Result><![CDATA[fail]]></Result>"
+            + "<msg><![CDATA[xxxxxx]]></msg>"
+            + "<ExpiredTime>1472549042</ExpiredTime>"
+            + "<FailTime>1472549042</FailTime>"
+            + "<FailReason><![CDATA[by time]]></FailReason>"
+            + "<DeviceType><![CDATA[gh_xxxx]]></DeviceType>"
+            + "<DeviceID><![CDATA[dev1234abcd]]></DeviceID>"
+            + "<OpType>2</OpType>"
+            + "<DeviceStatus>1</DeviceStatus>"
+            + "<HardWare><MessageView><![CDATA[myrank]]></MessageView>"
+            + "<MessageAction><![CDATA[ranklist]]></MessageAction></HardWare>"
+            + "</xml>";
+
+    private static final String VOICE_MESSAGE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<!-- voice -->\n"
+            + "<xml>"
+            + "<ToUserName><![CDATA[toUser]]></ToUserName>"
+            + "<FromUserName><![CDATA[fromUser]]></FromUserName>"
+            + "<CreateTime>1357290913</CreateTime>"
+            + "<MsgType><![CDATA[voice]]></MsgType>"
+            + "<MediaId><![CDATA[media_id]]></MediaId>"
+            + "<Format><![CDATA[Format]]></Format>"
+            + "<Recognition><![CDATA[腾讯微信团队 &amp; <测试>]]></Recognition>"
+            + "<Content>a &lt; b &amp;&amp; c</Content>"
+            + "<MsgId>1234567890123456</MsgId>"
+            + "</xml>";
+
+    private static final String COMPONENT_VERIFY_TICKET = "<xml>"
+            + "<AppId>wx1234567890abcdef</AppId>"
+            + "<CreateTime>1413192605</CreateTime>"
+            + "<InfoType>component_verify_ticket</InfoType>"
+            + "<ComponentVerifyTicket>ticket@@@abcdefg</ComponentVerifyTicket>"
+            + "</xml>";
+
+    private static final String UNAUTHORIZED = "<xml>"
+            + "<AppId><![CDATA[wx1234567890abcdef]]></AppId>\n"
+            + "<CreateTime>1413192760</CreateTime>\n"
+            + "<InfoType><![CDATA[unauthorized]]></InfoType>\n"
+            + "<AuthorizerAppid><![CDATA[wxabcdef1234567890]]></AuthorizerAppid>\n"
+            + "</xml>";
+
+    @DataProvider
+    public Object[][] messages() {
+        return new Object[][]{
+                {WxOpenXmlMessageTest.TEXT_MESSAGE_XML},
+                {WxOpenXmlMessageTest.MSG_ID_UPPER_CASE_XML},
+                {SUBSCRIBE_EVENT},
+                {MENU_EVENT},
+                {KF_EVENT},
+                {MASS_SEND_JOB_FINISH},
+                {CARD_EVENT},
+                {STORE_AND_HARDWARE_EVENT},
+                {VOICE_MESSAGE},
+        };
+    }
+
+    @DataProvider
+    public Object[][] authorizeMessages() {
+        return new Object[][]{
+                {COMPONENT_VERIFY_TICKET},
+                {UNAUTHORIZED},
+        };
+    }
+
+    @Test(dataProvider = "messages")
+    public void testSameAsXStream(String xml) throws Exception {
+        WxOpenXmlMessage expected = XStreamTransformer.fromXml(WxOpenXmlMessage.class, xml);
+        assertSameFields(WxOpenXmlMessageParser.parseMessage(xml), expected, "xml");
+        assertSameFields(WxOpenXmlMessageParser.parseMessage(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))), expected, "xml");
+    }
+
+    @Test(dataProvider = "authorizeMessages")
+    public void testAuthorizeMessageSameAsXStream(String xml) throws Exception {
+        WxOpenXmlAuthorizeMessage expected = XStreamTransformer.fromXml(WxOpenXmlAuthorizeMessage.class, xml);
+        assertSameFields(WxOpenXmlMessageParser.parseAuthorizeMessage(xml), expected, "xml");
+        assertSameFields(WxOpenXmlMessageParser.parseAuthorizeMessage(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))), expected, "xml");
+    }
+
+    public void testEmptyPicList() {
+        WxOpenXmlMessage message = WxOpenXmlMessageParser.parseMessage(EMPTY_PIC_LIST);
+        Assert.assertNull(message.getScanCodeInfo());
+        Assert.assertEquals(message.getSendPicsInfo().getCount(), Long.valueOf(0));
+        Assert.assertTrue(message.getSendPicsInfo().getPicList().isEmpty());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidNumber() {
+        WxOpenXmlMessageParser.parseMessage("<xml><CreateTime>abc</CreateTime></xml>");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testExternalEntityIsRejected() {
+        WxOpenXmlMessageParser.parseMessage("<?xml version=\"1.0\"?>"
+                + "<!DOCTYPE xml [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]>"
+                + "<xml><Content>&xxe;</Content></xml>");
+    }
+
+    public void testParserIsFasterAndAllocatesLess() {
+        byte[] xml = WxOpenXmlMessageTest.TEXT_MESSAGE_XML.getBytes(StandardCharsets.UTF_8);
+        Consumer<byte[]> xstream = bytes -> XStreamTransformer.fromXml(WxOpenXmlMessage.class, new ByteArrayInputStream(bytes));
+        Consumer<byte[]> parser = bytes -> WxOpenXmlMessageParser.parseMessage(new ByteArrayInputStream(bytes));
+        // 预热
+        for (int i = 0; i < 2000; i++) {
+            xstream.accept(xml);
+            parser.accept(xml);
+        }
+
+        double[] xstreamResult = measure(xstream, xml);
+        double[] parserResult = measure(parser, xml);
+        System.out.println(String.format("inbound message decode, xstream: %.0f ops/s %.0f bytes/op, stax: %.0f ops/s %.0f bytes/op",
+                xstreamResult[0], xstreamResult[1], parserResult[0], parserResult[1]));
+        Assert.assertTrue(parserResult[0] > xstreamResult[0], "StAX解析应该更快");
+        if (parserResult[1] >= 0) {
+            Assert.assertTrue(parserResult[1] < xstreamResult[1], "StAX解析分配的内存应该更少");
+        }
+    }
+
+    /**
+     * @return 每秒解析次数，每次解析分配的字节数(无法统计时为-1)
+     */
+    private static double[] measure(Consumer<byte[]> decoder, byte[] xml) {
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            decoder.accept(xml);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+        double bytesPerOp = allocatedBefore < 0 ? -1 : (double) (allocatedAfter - allocatedBefore) / BENCHMARK_ITERATIONS;
+        return new double[]{BENCHMARK_ITERATIONS * 1e9 / elapsed, bytesPerOp};
+    }
+
+    /**
+     * 当前线程累计分配的字节数，非HotSpot虚拟机返回-1
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * 逐个字段比较，嵌套的消息对象和列表递归比较
+     */
+    private static void assertSameFields(Object actual, Object expected, String path) throws IllegalAccessException {
+        if (expected == null || actual == null) {
+            Assert.assertEquals(actual, expected, path);
+            return;
+        }
+        if (expected instanceof List) {
+            List<?> actualList = (List<?>) actual;
+            List<?> expectedList = (List<?>) expected;
+            Assert.assertEquals(actualList.size(), expectedList.size(), path + ".size");
+            for (int i = 0; i < expectedList.size(); i++) {
+                assertSameFields(actualList.get(i), expectedList.get(i), path + "[" + i + "]");
+            }
+            return;
+        }
+        if (!expected.getClass().getName().startsWith("me.chanjar.")) {
+            Assert.assertEquals(actual, expected, path);
+            return;
+        }
+        Assert.assertEquals(actual.getClass(), expected.getClass(), path);
+        for (Class<?> clazz = expected.getClass(); clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                field.setAccessible(true);
+                assertSameFields(field.get(actual), field.get(expected), path + "." + field.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package me.chanjar.weixin.open.util.xml;
+
+import com.thoughtworks.xstream.XStream;
+import me.chanjar.weixin.common.util.xml.XStreamInitializer;
+import me.chanjar.weixin.open.bean.pay.WxPayJsSDKCallback;
+import me.chanjar.weixin.open.bean.pay.request.WxPaySendRedpackRequest;
+import me.chanjar.weixin.open.bean.pay.result.WxPaySendRedpackResult;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 验证缓存的XStream与每次新建的XStream输出一致，并对比单次"序列化请求+解析结果"的耗时
+ */
+@Test
+public class WxPayXmlTransformerTest {
+
+    private static final String REDPACK_RESULT = "<xml>\n" +
+            "<return_code><![CDATA[SUCCESS]]></return_code>\n" +
+            "<return_msg><![CDATA[发放成功.]]></return_msg>\n" +
+            "<result_code><![CDATA[SUCCESS]]></result_code>\n" +
+            "<err_code><![CDATA[0]]></err_code>\n" +
+            "<err_code_des><![CDATA[发放成功.]]></err_code_des>\n" +
+            "<mch_billno><![CDATA[0010010404201411170000046545]]></mch_billno>\n" +
+            "<mch_id>10010404</mch_id>\n" +
+            "<wxappid><![CDATA[wx6fa7e3bab7e15415]]></wxappid>\n" +
+            "<re_openid><![CDATA[onqOjjmM1tad-3ROpncN-yUfa6uI]]></re_openid>\n" +
+            "<total_amount>1</total_amount>\n" +
+            "<send_listid>100000000020150520314766074200</send_listid>\n" +
+            "<send_time>20150520102602</send_time>\n" +
+            "</xml>";
+
+    private static final int BENCHMARK_ITERATIONS = 2000;
+
+    public void testSameXmlAsPerCallXStream() {
+        WxPaySendRedpackRequest request = buildRequest();
+
+        XStream xstream = XStreamInitializer.getInstance();
+        xstream.processAnnotations(WxPaySendRedpackRequest.class);
+        Assert.assertEquals(WxPayXmlTransformer.toXml(request), xstream.toXML(request));
+    }
+
+    public void testFromXml() {
+        WxPaySendRedpackResult result = WxPayXmlTransformer.fromXml(WxPaySendRedpackResult.class, REDPACK_RESULT);
+        Assert.assertEquals(result.getReturnCode(), "SUCCESS");
+        Assert.assertEquals(result.getSendTime(), "20150520102602");
+        Assert.assertEquals(result.getTotalAmount(), 1);
+
+        WxPayJsSDKCallback callback = WxPayXmlTransformer.fromXml(WxPayJsSDKCallback.class,
+                "<xml><return_code>SUCCESS</return_code><out_trade_no>1409811653</out_trade_no></xml>");
+        Assert.assertEquals(callback.getReturn_code(), "SUCCESS");
+        Assert.assertEquals(callback.getOut_trade_no(), "1409811653");
+    }
+
+    public void testConcurrentUse() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                futures.add(executorService.submit(() ->
+                        WxPayXmlTransformer.fromXml(WxPaySendRedpackResult.class, REDPACK_RESULT).getReOpenid()));
+            }
+            for (Future<String> future : futures) {
+                Assert.assertEquals(future.get(), "onqOjjmM1tad-3ROpncN-yUfa6uI");
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    public void testCachedXStreamIsFasterThanPerCall() {
+        WxPaySendRedpackRequest request = buildRequest();
+        // 预热
+        for (int i = 0; i < 200; i++) {
+            perCall(request);
+            cached(request);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            perCall(request);
+        }
+        double perCallMicros = (System.nanoTime() - start) / 1000.0 / BENCHMARK_ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            cached(request);
+        }
+        double cachedMicros = (System.nanoTime() - start) / 1000.0 / BENCHMARK_ITERATIONS;
+
+        System.out.println(String.format("serialize+parse, xstream per call: %.1f us/op, cached xstream: %.1f us/op",
+                perCallMicros, cachedMicros));
+        Assert.assertTrue(cachedMicros < perCallMicros, "缓存的XStream应该更快");
+    }
+
+    /**
+     * 与改造前一致：每次调用都新建XStream并处理注解
+     */
+    private static WxPaySendRedpackResult perCall(WxPaySendRedpackRequest request) {
+        XStream xstream = XStreamInitializer.getInstance();
+        xstream.processAnnotations(WxPaySendRedpackRequest.class);
+        xstream.processAnnotations(WxPaySendRedpackResult.class);
+        xstream.toXML(request);
+        return (WxPaySendRedpackResult) xstream.fromXML(REDPACK_RESULT);
+    }
+
+    private static WxPaySendRedpackResult cached(WxPaySendRedpackRequest request) {
+        WxPayXmlTransformer.toXml(request);
+        return WxPayXmlTransformer.fromXml(WxPaySendRedpackResult.class, REDPACK_RESULT);
+    }
+
+    private static WxPaySendRedpackRequest buildRequest() {
+        WxPaySendRedpackRequest request = new WxPaySendRedpackRequest();
+        request.setMchBillNo("0010010404201411170000046545");
+        request.setSendName("send_name");
+        request.setReOpenid("onqOjjmM1tad-3ROpncN-yUfa6uI");
+        request.setTotalAmount(100);
+        request.setTotalNum(1);
+        request.setWishing("恭喜发财");
+        request.setClientIp("127.0.0.1");
+        request.setActName("act_name");
+        request.setRemark("remark");
+        request.setWxAppid("wx6fa7e3bab7e15415");
+        request.setMchId("10010404");
+        request.setNonceStr("1409811653");
+        request.setSign("C380BEC2BFD727A4B6845133519F3AD6");
+        return request;
+    }
+}
@@ -21,9 +21,11 @@ import com.github.asherli0103.core.jpa.DefaultRepositoryFactoryBean;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableJpaRepositories(repositoryFactoryBeanClass = DefaultRepositoryFactoryBean.class)
+@EnableScheduling
 public class WeixinJavaWebApplication {
 
     public static void main(String[] args) {
@@ -27,8 +27,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * @author AsherLi0103
@@ -37,6 +40,8 @@ import java.io.Serializable;
 @RestControllerAdvice
 public class BaseController {
 
+    private static final int RPUSH_BATCH_SIZE = 1000;
+
     protected final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     protected final WxOpenService wxOpenService;
@@ -104,6 +109,28 @@ public class BaseController {
         }
     }
 
+    /**
+     * 批量追加到列表尾部：每批最多 RPUSH_BATCH_SIZE 个值用一条多参数RPUSH，所有批次通过pipeline一次发出，
+     * 整个过程只借用一次连接，避免每个值一次网络往返
+     *
+     * @return 追加后列表的长度
+     */
+    protected long rpushAll(String key, List<String> values) {
+        if (values.isEmpty()) {
+            return llen(key);
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            Response<Long> length = null;
+            for (int from = 0; from < values.size(); from += RPUSH_BATCH_SIZE) {
+                List<String> batch = values.subList(from, Math.min(from + RPUSH_BATCH_SIZE, values.size()));
+                length = pipeline.rpush(key, batch.toArray(new String[batch.size()]));
+            }
+            pipeline.sync();
+            return length.get();
+        }
+    }
+
     protected void expire(String key, int value){
         try (Jedis jedis = jedisPool.getResource()) {
             jedis.expire(key, value);
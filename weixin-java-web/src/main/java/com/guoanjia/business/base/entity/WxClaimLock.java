@@ -0,0 +1,76 @@
+/*
+ * Copyright  (c) 2017. By AsherLi0103
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.guoanjia.business.base.entity;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 领取红包的锁记录，每个openid、每个手机号各一条，只用来 select ... for update。
+ * 第一次领取时领取记录和wx_user记录都可能还不存在，所以用锁的名字本身做主键
+ *
+ * @author AsherLi0103
+ * @version 1.0.00
+ */
+@Entity
+@Table(name = "wx_claim_lock")
+public class WxClaimLock implements Serializable {
+
+    /**
+     * 锁的名字，如 openid:xxx、userphone:138xxxxxxxx
+     */
+    @Id
+    @Column(name = "CL_KEY", nullable = false, length = 64)
+    private String clKey;
+
+    @Column(name = "CL_CREATETIME")
+    private Date clCreatetime;
+
+    public WxClaimLock() {
+    }
+
+    public String getClKey() {
+        return clKey;
+    }
+
+    public WxClaimLock setClKey(String clKey) {
+        this.clKey = clKey;
+        return this;
+    }
+
+    public Date getClCreatetime() {
+        return clCreatetime;
+    }
+
+    public WxClaimLock setClCreatetime(Date clCreatetime) {
+        this.clCreatetime = clCreatetime;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this, ToStringStyle.JSON_STYLE);
+    }
+}
@@ -22,6 +22,7 @@ import com.github.asherli0103.core.entity.AjaxJson;
 import com.github.asherli0103.core.jpa.service.BaseService;
 import com.guoanjia.business.base.entity.WxActivity;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
 
 /**
@@ -40,5 +41,15 @@ public interface WxActivityService extends BaseService<WxActivity, String> {
 
     AjaxJson createPoster(String photo, File qrcode, String nickName, boolean islocal, String uId);
 
+    /**
+     * 使用已经解码的头像和二维码生成海报
+     *
+     * @param photo    头像，为null时使用默认头像
+     * @param qrcode   二维码
+     * @param nickName 昵称
+     * @return data为png格式的海报(byte[])
+     */
+    AjaxJson createPoster(BufferedImage photo, BufferedImage qrcode, String nickName);
+
     void saveActivity();
 }
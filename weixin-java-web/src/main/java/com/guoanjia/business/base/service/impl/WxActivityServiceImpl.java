@@ -35,10 +35,8 @@ import org.springframework.data.domain.Example;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.InputStream;
 import java.util.Date;
 import java.util.List;
 
@@ -53,12 +51,14 @@ public class WxActivityServiceImpl extends BaseServiceImpl<WxActivity, String> i
 
     private final WxActivityRepository wxActivityRepository;
     private final WxUserRepository wxUserRepository;
+    private final WxPosterRenderer wxPosterRenderer;
 
     @Autowired
-    public WxActivityServiceImpl(BaseRepository<WxActivity, String> baseRepository, WxActivityRepository wxActivityRepository, WxUserRelationRepository wxUserRelationRepository, WxUserRepository wxUserRepository) {
+    public WxActivityServiceImpl(BaseRepository<WxActivity, String> baseRepository, WxActivityRepository wxActivityRepository, WxUserRelationRepository wxUserRelationRepository, WxUserRepository wxUserRepository, WxPosterRenderer wxPosterRenderer) {
         super(baseRepository);
         this.wxActivityRepository = wxActivityRepository;
         this.wxUserRepository = wxUserRepository;
+        this.wxPosterRenderer = wxPosterRenderer;
     }
 
     /**
@@ -126,11 +126,6 @@ public class WxActivityServiceImpl extends BaseServiceImpl<WxActivity, String> i
     @Override
     public AjaxJson createPoster(String photo, File qrcode, String nickName, boolean islocal, String uId) {
         AjaxJson ajaxJson = new AjaxJson();
-        BufferedImage backImg = null;
-        ClassLoader classLoader = this.getClass().getClassLoader();
-        InputStream configInputStream = classLoader.getResourceAsStream("static/image/share.jpg");
-        backImg = ImageUtil.loadImageLocal(configInputStream);
-
         BufferedImage photoImg = null;
         if (islocal) {
             photoImg = ImageUtil.loadImageLocal(photo);
@@ -151,17 +146,16 @@ public class WxActivityServiceImpl extends BaseServiceImpl<WxActivity, String> i
             wxUserRepository.save(one.setuHeadimgLocal(fileName));
         }
         BufferedImage qucodeImg = ImageUtil.loadImageLocal(qrcode);
-        if (photoImg == null) {
-            InputStream configInputStream1 = classLoader.getResourceAsStream("static/image/aa.jpg");
-            photoImg = ImageUtil.loadImageLocal(configInputStream1);
-        }
-        BufferedImage temp = ImageUtil.superpositionImage(backImg, photoImg, 297, 396, 129, 129, true);
-        temp = ImageUtil.superpositionImage(temp, qucodeImg, 263, 855, 216, 216, true);
-        temp = ImageUtil.modifyImage(temp, nickName, 310, 557, "微软雅黑", Font.BOLD, 20, Color.white, Color.white);
 
-        File tempFile = ImageUtil.writeImageTempFile(UUID.generate(), temp, "png");
+        // png格式的海报，可以直接用于mediaUpload
+        ajaxJson.setData(wxPosterRenderer.render(photoImg, qucodeImg, nickName));
+        return ajaxJson;
+    }
 
-        ajaxJson.setData(tempFile);
+    @Override
+    public AjaxJson createPoster(BufferedImage photo, BufferedImage qrcode, String nickName) {
+        AjaxJson ajaxJson = new AjaxJson();
+        ajaxJson.setData(wxPosterRenderer.render(photo, qrcode, nickName));
         return ajaxJson;
     }
 
@@ -0,0 +1,190 @@
+/*
+ * Copyright  (c) 2017. By AsherLi0103
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.guoanjia.business.base.service.impl;
+
+import me.chanjar.weixin.common.exception.WxErrorException;
+import me.chanjar.weixin.open.api.WxOpenFollowerSync;
+import me.chanjar.weixin.open.api.WxOpenService;
+import me.chanjar.weixin.open.bean.result.WxOpenUser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 把公众号的关注者同步到wx_user表
+ * <p>
+ * 拉取由 {@link WxOpenFollowerSync} 完成，每批用户用一条 INSERT ... ON DUPLICATE KEY UPDATE 批量写入：
+ * openid已存在(wx_user上的唯一索引 openid)时更新用户信息，不存在时插入，不需要先查询，
+ * 关注事件处理器同时插入同一个用户时也不会违反唯一索引。一批在一个事务内完成，
+ * MySQL连接串加上 rewriteBatchedStatements=true 后批量语句会合并成一条发出。
+ * <p>
+ * 每天凌晨3点自动同步一次，多个节点中只有拿到Redis锁的节点执行。
+ * 同步进度记在Redis中，中断后再次调用 {@link #syncFollowers()} 会从上次写完的那一页继续
+ *
+ * @author AsherLi0103
+ * @version 1.0.00
+ */
+@Component
+public class WxFollowerSynchronizer {
+
+    private static final String SYNC_CURSOR_KEY = "WX_FOLLOWER_SYNC_CURSOR:";
+
+    private static final String SYNC_LOCK_KEY = "WX_FOLLOWER_SYNC_LOCK:";
+
+    /**
+     * 同步锁的有效期，同步超过这个时间仍未结束时其他节点可以开始同步，写入是幂等的，重复同步不影响结果
+     */
+    private static final long SYNC_LOCK_MILLIS = 60 * 60 * 1000L;
+
+    private static final String UPSERT_SQL = "INSERT INTO wx_user (ID, U_OPENID, U_NICKNAME, U_SEX, U_PROVINCE, U_CITY, "
+            + "U_COUNTRY, U_HEADIMG, U_PRIVILEGE, U_UNIONID, U_CREATE_TIME) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE U_NICKNAME = VALUES(U_NICKNAME), U_SEX = VALUES(U_SEX), "
+            + "U_PROVINCE = VALUES(U_PROVINCE), U_CITY = VALUES(U_CITY), U_COUNTRY = VALUES(U_COUNTRY), "
+            + "U_HEADIMG = VALUES(U_HEADIMG), U_UNIONID = VALUES(U_UNIONID)";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final WxOpenService wxOpenService;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final JedisPool jedisPool;
+
+    private int concurrency = 16;
+
+    private double permitsPerSecond = 100;
+
+    private int writeBatchSize = 500;
+
+    public WxFollowerSynchronizer(WxOpenService wxOpenService, JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager) {
+        this.wxOpenService = wxOpenService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jedisPool = wxOpenService.getWxOpenConfigStorage().getJedisPool();
+    }
+
+    /**
+     * 定时同步，拿不到锁时说明其他节点正在同步
+     */
+    @Scheduled(cron = "0 0 3 * * ?")
+    public void scheduledSync() {
+        String lockKey = SYNC_LOCK_KEY + this.wxOpenService.getWxOpenConfigStorage().getAppId();
+        String lockValue = UUID.randomUUID().toString();
+        try (Jedis jedis = this.jedisPool.getResource()) {
+            if (!"OK".equals(jedis.set(lockKey, lockValue, "NX", "PX", SYNC_LOCK_MILLIS))) {
+                return;
+            }
+        }
+        try {
+            long start = System.currentTimeMillis();
+            long synced = syncFollowers();
+            this.logger.info("关注者同步完成，写入{}个用户，耗时{}ms", synced, System.currentTimeMillis() - start);
+        } catch (WxErrorException | RuntimeException e) {
+            this.logger.error("关注者同步失败，下次从中断的位置继续", e);
+        } finally {
+            // 锁已过期被其他节点拿到时不能删除
+            try (Jedis jedis = this.jedisPool.getResource()) {
+                if (lockValue.equals(jedis.get(lockKey))) {
+                    jedis.del(lockKey);
+                }
+            }
+        }
+    }
+
+    /**
+     * 从上次的进度开始同步全部关注者
+     *
+     * @return 本次写入的用户数
+     */
+    public long syncFollowers() throws WxErrorException {
+        String cursorKey = SYNC_CURSOR_KEY + this.wxOpenService.getWxOpenConfigStorage().getAppId();
+        return new WxOpenFollowerSync(this.wxOpenService)
+                .concurrency(this.concurrency)
+                .permitsPerSecond(this.permitsPerSecond)
+                .writeBatchSize(this.writeBatchSize)
+                .sync(this::upsert, new WxOpenFollowerSync.Checkpoint() {
+                    @Override
+                    public String load() {
+                        try (Jedis jedis = jedisPool.getResource()) {
+                            return jedis.get(cursorKey);
+                        }
+                    }
+
+                    @Override
+                    public void save(String nextOpenid) {
+                        try (Jedis jedis = jedisPool.getResource()) {
+                            if (nextOpenid == null) {
+                                jedis.del(cursorKey);
+                            } else {
+                                jedis.set(cursorKey, nextOpenid);
+                            }
+                        }
+                    }
+                });
+    }
+
+    void upsert(List<WxOpenUser> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(users.size());
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (WxOpenUser user : users) {
+            rows.add(new Object[]{UUID.randomUUID().toString().replace("-", ""), user.getOpenId(),
+                    user.getNickname(), user.getSex(), user.getProvince(), user.getCity(), user.getCountry(),
+                    user.getHeadImgUrl(), Arrays.toString(user.getPrivilege()), user.getUnionId(), now});
+        }
+        this.transactionTemplate.execute(status -> this.jdbcTemplate.batchUpdate(UPSERT_SQL, rows));
+    }
+
+    /**
+     * 同时进行的批量获取用户信息请求数，默认16
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * 每秒最多调用的微信接口次数，默认100
+     */
+    public void setPermitsPerSecond(double permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    /**
+     * 每个事务写入的用户数，默认500
+     */
+    public void setWriteBatchSize(int writeBatchSize) {
+        this.writeBatchSize = writeBatchSize;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright  (c) 2017. By AsherLi0103
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.guoanjia.business.base.service.impl;
+
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 推广海报渲染
+ * <p>
+ * 背景模板和默认头像只在启动时解码一次，之后只读不写；与模板同样大小的画布(720x1280约3.5MB)放在一个有上限的池中复用，
+ * 同时渲染的请求超过池的大小时临时创建画布，编码后池满则丢弃，不会像每个线程一张画布那样随线程数增长。
+ * 渲染时先把模板整张画上去覆盖上一次的内容，再用Graphics2D.drawImage缩放绘制头像和二维码、写上昵称，
+ * 最后直接编码成png字节数组，不再逐像素getRGB/setRGB拷贝，也不再写临时文件
+ *
+ * @author AsherLi0103
+ * @version 1.0.00
+ */
+@Component
+public class WxPosterRenderer {
+
+    private static final String TEMPLATE = "static/image/share.jpg";
+
+    private static final String DEFAULT_AVATAR = "static/image/aa.jpg";
+
+    /**
+     * 海报上头像的边长
+     */
+    public static final int AVATAR_SIZE = 129;
+
+    /**
+     * 海报上二维码的边长
+     */
+    public static final int QRCODE_SIZE = 216;
+
+    private static final Rectangle AVATAR_AREA = new Rectangle(297, 396, AVATAR_SIZE, AVATAR_SIZE);
+
+    private static final Rectangle QRCODE_AREA = new Rectangle(263, 855, QRCODE_SIZE, QRCODE_SIZE);
+
+    private static final int NICKNAME_X = 310;
+
+    private static final int NICKNAME_Y = 557;
+
+    private static final Font NICKNAME_FONT = new Font("微软雅黑", Font.BOLD, 20);
+
+    /**
+     * 池中最多保留的空闲画布数
+     */
+    static final int CANVAS_POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private final BufferedImage template;
+
+    private final BufferedImage defaultAvatar;
+
+    private final BlockingQueue<BufferedImage> canvasPool = new ArrayBlockingQueue<>(CANVAS_POOL_SIZE);
+
+    public WxPosterRenderer() {
+        this(readResource(TEMPLATE), readResource(DEFAULT_AVATAR));
+    }
+
+    public WxPosterRenderer(BufferedImage template, BufferedImage defaultAvatar) {
+        this.template = toIntRgb(template);
+        this.defaultAvatar = toIntRgb(defaultAvatar);
+    }
+
+    /**
+     * 渲染海报
+     *
+     * @param avatar   头像，为null时使用默认头像
+     * @param qrcode   二维码
+     * @param nickName 昵称
+     * @return png格式的海报
+     */
+    public byte[] render(BufferedImage avatar, BufferedImage qrcode, String nickName) {
+        BufferedImage poster = this.canvasPool.poll();
+        if (poster == null) {
+            poster = new BufferedImage(this.template.getWidth(), this.template.getHeight(), BufferedImage.TYPE_INT_RGB);
+        }
+        try {
+            Graphics2D g = poster.createGraphics();
+            try {
+                g.drawImage(this.template, 0, 0, null);
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                drawFitted(g, avatar == null ? this.defaultAvatar : avatar, AVATAR_AREA);
+                if (qrcode != null) {
+                    drawFitted(g, qrcode, QRCODE_AREA);
+                }
+                if (nickName != null) {
+                    g.setColor(Color.white);
+                    g.setFont(NICKNAME_FONT);
+                    g.drawString(nickName, NICKNAME_X, NICKNAME_Y);
+                }
+            } finally {
+                g.dispose();
+            }
+            return encodePng(poster);
+        } finally {
+            // 编码完成后归还画布，池已满时丢弃
+            this.canvasPool.offer(poster);
+        }
+    }
+
+    /**
+     * 池中空闲的画布数
+     */
+    int getPooledCanvases() {
+        return this.canvasPool.size();
+    }
+
+    /**
+     * 与原来Thumbnails.size一致：按比例缩放到区域内，从区域左上角开始绘制
+     */
+    private static void drawFitted(Graphics2D g, BufferedImage image, Rectangle area) {
+        double scale = Math.min((double) area.width / image.getWidth(), (double) area.height / image.getHeight());
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        g.drawImage(image, area.x, area.y, width, height, null);
+    }
+
+    private static byte[] encodePng(BufferedImage image) {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        // 预估压缩后约为原始像素的一半，避免多次扩容
+        ByteArrayOutputStream out = new ByteArrayOutputStream(image.getWidth() * image.getHeight() * 2);
+        try (ImageOutputStream imageOut = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(imageOut);
+            writer.write(image);
+        } catch (IOException e) {
+            throw new UncheckedIOException("海报编码失败", e);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static BufferedImage toIntRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = copy.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return copy;
+    }
+
+    private static BufferedImage readResource(String name) {
+        try (InputStream in = WxPosterRenderer.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IllegalStateException("找不到海报图片: " + name);
+            }
+            return ImageIO.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("海报图片读取失败: " + name, e);
+        }
+    }
+}
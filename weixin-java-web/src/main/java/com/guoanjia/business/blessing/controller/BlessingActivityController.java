@@ -31,6 +31,7 @@ import com.guoanjia.business.blessing.entity.WxBlessingMessage;
 import com.guoanjia.business.blessing.entity.WxMessageCode;
 import com.guoanjia.business.blessing.entity.WxTemp;
 import com.guoanjia.business.blessing.service.*;
+import com.guoanjia.business.blessing.service.impl.WxTempClickThrottle;
 import com.guoanjia.business.utils.MessageUtils;
 import me.chanjar.weixin.common.exception.WxErrorException;
 import me.chanjar.weixin.open.api.WxOpenConfigStorage;
@@ -41,8 +42,6 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPool;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -80,12 +79,13 @@ public class BlessingActivityController extends BaseController {
 
     private final WxTempService wxTempService;
 
-    private JedisPool jedisPool;
+    private final WxTempClickThrottle wxTempClickThrottle;
 
     public BlessingActivityController(WxCapitalPoolService wxCapitalPoolService
             , WxBlessingInfoService wxBlessingInfoService, WxBlessingMessageService wxBlessingMessageService
             , WxUserActivityService wxUserActivityService, WxUserExtractService wxUserExtractService
-            , WxMessageCodeService wxMessageCodeService, WxOpenService wxOpenService, WxTempService wxTempService) {
+            , WxMessageCodeService wxMessageCodeService, WxOpenService wxOpenService, WxTempService wxTempService
+            , WxTempClickThrottle wxTempClickThrottle) {
         super(wxOpenService);
         this.wxCapitalPoolService = wxCapitalPoolService;
         this.wxBlessingInfoService = wxBlessingInfoService;
@@ -95,8 +95,8 @@ public class BlessingActivityController extends BaseController {
         this.wxMessageCodeService = wxMessageCodeService;
         this.wxOpenService = wxOpenService;
         this.wxTempService = wxTempService;
+        this.wxTempClickThrottle = wxTempClickThrottle;
         this.wxOpenConfigStorage = this.wxOpenService.getWxOpenConfigStorage();
-       this.jedisPool = this.wxOpenConfigStorage.getJedisPool();
     }
 
     /**
@@ -190,6 +190,11 @@ public class BlessingActivityController extends BaseController {
         AjaxJson ajaxJson = new AjaxJson();
 
         Date date = new Date();
+        if (wxTempClickThrottle.isSoldOut(date)) {
+            ajaxJson.setSuccess(false);
+            ajaxJson.setMsg("当前时段红包已被抢光，敬请下个发放时段！");
+            return ajaxJson;
+        }
         Criteria<WxTemp> tempCriteria = new Criteria<>();
         tempCriteria.add(Restrictions.lte("cpEndTime", date, true));
         tempCriteria.add(Restrictions.gte("cpCreateTime", date, true));
@@ -286,6 +291,12 @@ public class BlessingActivityController extends BaseController {
         String ip = "";
         AjaxJson ajaxJson = new AjaxJson();
 
+        if (wxTempClickThrottle.isSoldOut(date)) {
+            ajaxJson.setSuccess(false);
+            ajaxJson.setMsg("当前时段红包已被抢光，敬请下个发放时段！");
+            return ajaxJson;
+        }
+
         Criteria<WxTemp> tempCriteria = new Criteria<>();
 
         tempCriteria.add(Restrictions.lte("cpEndTime", date, true));
@@ -293,28 +304,7 @@ public class BlessingActivityController extends BaseController {
         tempCriteria.add(Restrictions.eq("cpStatus", "0", true));
 
         WxTemp wxTemp = wxTempService.findOne(tempCriteria);
-        if (ObjectUtil.isNotEmpty(wxTemp)) {
-            if (Objects.equals("0", wxTemp.getCpStatus())) {
-                int key = 0;
-                try (Jedis jedis = jedisPool.getResource()) {
-                    key = Integer.valueOf(jedis.get("COUNT_CLICK_KEY"));
-                }
-
-                try (Jedis jedis = jedisPool.getResource()) {
-                    jedis.set("COUNT_CLICK_KEY", String.valueOf(key + 1));
-                }
-
-                if (key >=2000) {
-                    wxTempService.save(wxTemp.setCpStatus("1"));
-                    try (Jedis jedis = jedisPool.getResource()) {
-                        jedis.set("COUNT_CLICK_KEY", String.valueOf(0));
-                    }
-                    ajaxJson.setSuccess(false);
-                    ajaxJson.setMsg("当前时段红包已被抢光，敬请下个发放时段！");
-                    return ajaxJson;
-                }
-            }
-        } else {
+        if (ObjectUtil.isEmpty(wxTemp) || !wxTempClickThrottle.admit(wxTemp)) {
             ajaxJson.setSuccess(false);
             ajaxJson.setMsg("当前时段红包已被抢光，敬请下个发放时段！");
             return ajaxJson;
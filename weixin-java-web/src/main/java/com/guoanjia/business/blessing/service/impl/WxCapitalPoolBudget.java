@@ -0,0 +1,387 @@
+/*
+ * Copyright  (c) 2017. By AsherLi0103
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.guoanjia.business.blessing.service.impl;
+
+import com.guoanjia.business.blessing.entity.WxCapitalPool;
+import com.guoanjia.business.blessing.entity.jpa.WxCapitalPoolRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 红包资金池的本地分段预算
+ * <p>
+ * 每个节点按块(默认200元)从数据库资金池中预先扣减额度，平均分到多个分段中，抢红包时随机选一个分段做CAS扣减，
+ * 不再每次都去更新同一行数据。额度用完时再去数据库申请下一块，数据库余额不足一块时按单个红包的金额申请，
+ * 所以数据库余额 + 各节点未用完的额度 + 已发出的红包 始终等于资金池总额。
+ * <p>
+ * 一段时间(默认30秒)没有人抢的额度由定时任务退回对应的资金池记录，其他节点才能申请到，下次抢红包时再重新申请；
+ * 时段结束后本节点的额度也是这样退回的。应用关闭时未用完的额度全部退回。
+ * 资金池第一次被使用时，在同一个事务里把上一时段(id - 1)的余额转到当前资金池并清零上一时段；
+ * 其他节点在结转之后才退回的额度会留在上一时段的记录上，不会丢失也不会重复发放。
+ * 金额统一按分计算，避免浮点误差
+ *
+ * @author AsherLi0103
+ * @version 1.0.00
+ */
+@Component
+public class WxCapitalPoolBudget {
+
+    private static final String BALANCE_FIELD = "cpBalance";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final ConcurrentMap<String, Budget> budgets = new ConcurrentHashMap<>();
+
+    private final WxCapitalPoolRepository wxCapitalPoolRepository;
+
+    private final TransactionTemplate requiresNewTransaction;
+
+    private int stripes = Runtime.getRuntime().availableProcessors() * 2;
+
+    private long leaseCents = 20000;
+
+    private long idleMillis = TimeUnit.SECONDS.toMillis(30);
+
+    public WxCapitalPoolBudget(WxCapitalPoolRepository wxCapitalPoolRepository, PlatformTransactionManager transactionManager) {
+        this.wxCapitalPoolRepository = wxCapitalPoolRepository;
+        // 申请、退回额度和结转都独立提交，不受抢红包事务回滚的影响，也不会和它互相等待行锁
+        this.requiresNewTransaction = new TransactionTemplate(transactionManager);
+        this.requiresNewTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * 进入某个时段的资金池前调用：资金池第一次被使用时结转上一时段的余额
+     */
+    public void prepare(WxCapitalPool wxCapitalPool) {
+        String poolId = wxCapitalPool.getId();
+        if (Objects.equals("0", wxCapitalPool.getCpStatus()) && !Objects.equals("0", poolId)) {
+            Budget budget = this.budgets.computeIfAbsent(poolId, Budget::new);
+            // 同一节点只由一个线程去结转，避免大量请求同时占用第二个数据库连接
+            synchronized (budget) {
+                if (!budget.carriedOver) {
+                    this.requiresNewTransaction.execute(status -> {
+                        carryOverPreviousBalance(poolId);
+                        return null;
+                    });
+                    budget.carriedOver = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * 从资金池中扣减一个红包的金额。在事务中调用时，事务回滚后金额会自动退回
+     *
+     * @param poolId 资金池id
+     * @param cents  红包金额(分)
+     * @return 余额足够并扣减成功返回true
+     */
+    public boolean draw(String poolId, long cents) {
+        Budget budget = drawFrom(poolId, cents);
+        if (budget == null) {
+            return false;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        refund(budget, cents);
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * @return 扣减成功时返回扣减的预算，余额不足返回null
+     */
+    private Budget drawFrom(String poolId, long cents) {
+        Budget budget = this.budgets.computeIfAbsent(poolId, Budget::new);
+        while (!budget.draw(cents)) {
+            if (!budget.isClosed()) {
+                return null;
+            }
+            // 额度刚被定时任务退回，换一个新的预算重新申请
+            this.budgets.remove(poolId, budget);
+            budget = this.budgets.computeIfAbsent(poolId, Budget::new);
+        }
+        return budget;
+    }
+
+    /**
+     * 本节点从资金池记录中申请到、还没有发出去的额度(分)
+     */
+    public long getRemaining(String poolId) {
+        Budget budget = this.budgets.get(poolId);
+        return budget == null ? 0 : budget.remaining();
+    }
+
+    /**
+     * 本节点已发出的红包总额(分)，可以与 WxUserExtract 中对应时段的记录核对
+     */
+    public long getDrawn(String poolId) {
+        Budget budget = this.budgets.get(poolId);
+        return budget == null ? 0 : budget.drawn.get();
+    }
+
+    /**
+     * 把超过 idleMillis 没有人抢的额度退回数据库
+     */
+    @Scheduled(fixedDelay = 10000)
+    public void reclaimIdle() {
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(this.idleMillis);
+        long now = System.nanoTime();
+        for (Budget budget : this.budgets.values()) {
+            if (now - budget.lastUsed >= idleNanos) {
+                release(budget);
+            }
+        }
+    }
+
+    /**
+     * 关闭时把未用完的额度全部退回数据库
+     */
+    @PreDestroy
+    public void releaseAll() {
+        for (Budget budget : this.budgets.values()) {
+            release(budget);
+        }
+    }
+
+    private void carryOverPreviousBalance(String poolId) {
+        // 两条记录都按id从小到大加锁，相邻时段的结转不会死锁
+        WxCapitalPool wxCapitalPool1 = this.wxCapitalPoolRepository.findOneWithLock(String.valueOf(Integer.valueOf(poolId) - 1));
+        WxCapitalPool wxCapitalPool = this.wxCapitalPoolRepository.findOneWithLock(poolId);
+        if (!Objects.equals("0", wxCapitalPool.getCpStatus())) {
+            // 其他请求或节点已经结转过
+            return;
+        }
+
+        BigDecimal carried = BigDecimal.ZERO;
+        if (wxCapitalPool1 != null && wxCapitalPool1.getCpBalance() != null) {
+            carried = new BigDecimal(String.valueOf(wxCapitalPool1.getCpBalance()));
+            wxCapitalPool1.setCpBalance(0D);
+            this.wxCapitalPoolRepository.save(wxCapitalPool1);
+        }
+        BigDecimal balance = new BigDecimal(wxCapitalPool.getCpBalance().toString()).add(carried);
+        this.logger.info("资金池[{}]结转上一时段余额{}后: {}", poolId, carried, balance);
+        wxCapitalPool.setCpBalance(balance.doubleValue());
+        wxCapitalPool.setCpStatus("1");
+        this.wxCapitalPoolRepository.save(wxCapitalPool);
+    }
+
+    private void release(Budget budget) {
+        this.budgets.remove(budget.poolId, budget);
+        long remaining = budget.close();
+        if (remaining > 0) {
+            giveBack(budget.poolId, remaining);
+        }
+    }
+
+    private void refund(Budget budget, long cents) {
+        budget.drawn.addAndGet(-cents);
+        if (!budget.refund(cents)) {
+            // 额度已经退回数据库，这笔金额直接退回资金池记录
+            giveBack(budget.poolId, cents);
+        }
+    }
+
+    private boolean lease(String poolId, long cents) {
+        Boolean leased = this.requiresNewTransaction.execute(
+                status -> this.wxCapitalPoolRepository.decrement(poolId, BALANCE_FIELD, toYuan(cents)));
+        return Boolean.TRUE.equals(leased);
+    }
+
+    private void giveBack(String poolId, long cents) {
+        try {
+            this.requiresNewTransaction.execute(
+                    status -> this.wxCapitalPoolRepository.increment(poolId, BALANCE_FIELD, toYuan(cents)));
+        } catch (RuntimeException e) {
+            this.logger.error("资金池[{}]退回额度{}分失败，需要人工核对", poolId, cents, e);
+        }
+    }
+
+    private static Double toYuan(long cents) {
+        return BigDecimal.valueOf(cents, 2).doubleValue();
+    }
+
+    /**
+     * 分段数量，默认CPU核数的2倍
+     */
+    public void setStripes(int stripes) {
+        this.stripes = stripes;
+    }
+
+    /**
+     * 每次从数据库申请的额度(分)，默认20000分
+     */
+    public void setLeaseCents(long leaseCents) {
+        this.leaseCents = leaseCents;
+    }
+
+    /**
+     * 额度多久没有人抢就退回数据库(毫秒)，默认30秒
+     */
+    public void setIdleMillis(long idleMillis) {
+        this.idleMillis = idleMillis;
+    }
+
+    private class Budget {
+        private final String poolId;
+        private final AtomicLong[] stripes;
+        private final AtomicLong drawn = new AtomicLong();
+        private volatile long lastUsed = System.nanoTime();
+        private boolean closed;
+        private boolean carriedOver;
+
+        private Budget(String poolId) {
+            this.poolId = poolId;
+            this.stripes = new AtomicLong[Math.max(1, WxCapitalPoolBudget.this.stripes)];
+            for (int i = 0; i < this.stripes.length; i++) {
+                this.stripes[i] = new AtomicLong();
+            }
+        }
+
+        /**
+         * 扣减是无锁的；往分段里加额度(申请、收拢、退款)和关闭都在锁内进行，关闭后分段只会减少不会再增加
+         */
+        private boolean draw(long cents) {
+            this.lastUsed = System.nanoTime();
+            if (tryDraw(cents)) {
+                this.drawn.addAndGet(cents);
+                return true;
+            }
+
+            synchronized (this) {
+                // 等锁期间其他线程可能已经申请到新的额度
+                if (tryDraw(cents) || drainInto(cents)) {
+                    this.drawn.addAndGet(cents);
+                    return true;
+                }
+                if (this.closed) {
+                    return false;
+                }
+                long lease = Math.max(leaseCents, cents);
+                if (!lease(this.poolId, lease)) {
+                    // 剩余不足一块，只申请这一个红包的金额
+                    if (lease == cents || !lease(this.poolId, cents)) {
+                        return false;
+                    }
+                    this.drawn.addAndGet(cents);
+                    return true;
+                }
+                spread(lease - cents);
+                this.drawn.addAndGet(cents);
+                return true;
+            }
+        }
+
+        /**
+         * 从随机的分段开始，找到第一个余额足够的分段扣减
+         */
+        private boolean tryDraw(long cents) {
+            int start = ThreadLocalRandom.current().nextInt(this.stripes.length);
+            for (int i = 0; i < this.stripes.length; i++) {
+                AtomicLong stripe = this.stripes[(start + i) % this.stripes.length];
+                long current = stripe.get();
+                while (current >= cents) {
+                    if (stripe.compareAndSet(current, current - cents)) {
+                        return true;
+                    }
+                    current = stripe.get();
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 每个分段都不够，但加起来可能够：把所有分段收拢后扣减，剩余部分放回第一个分段
+         */
+        private boolean drainInto(long cents) {
+            long total = 0;
+            for (AtomicLong stripe : this.stripes) {
+                total += stripe.getAndSet(0);
+            }
+            if (total >= cents) {
+                this.stripes[0].addAndGet(total - cents);
+                return true;
+            }
+            this.stripes[0].addAndGet(total);
+            return false;
+        }
+
+        private void spread(long cents) {
+            long share = cents / this.stripes.length;
+            for (AtomicLong stripe : this.stripes) {
+                stripe.addAndGet(share);
+            }
+            this.stripes[0].addAndGet(cents - share * this.stripes.length);
+        }
+
+        private synchronized boolean refund(long cents) {
+            if (this.closed) {
+                return false;
+            }
+            this.stripes[ThreadLocalRandom.current().nextInt(this.stripes.length)].addAndGet(cents);
+            return true;
+        }
+
+        private long remaining() {
+            long total = 0;
+            for (AtomicLong stripe : this.stripes) {
+                total += stripe.get();
+            }
+            return total;
+        }
+
+        private synchronized boolean isClosed() {
+            return this.closed;
+        }
+
+        /**
+         * 关闭后不再申请新的额度，返回未用完的额度
+         */
+        private synchronized long close() {
+            this.closed = true;
+            long total = 0;
+            for (AtomicLong stripe : this.stripes) {
+                total += stripe.getAndSet(0);
+            }
+            return total;
+        }
+    }
+}
@@ -19,27 +19,35 @@ package com.guoanjia.business.blessing.service.impl;
 
 import com.github.asherli0103.core.entity.AjaxJson;
 import com.github.asherli0103.core.jpa.criteria.Criteria;
+import com.github.asherli0103.core.jpa.criteria.Criterion;
 import com.github.asherli0103.core.jpa.criteria.Restrictions;
 import com.github.asherli0103.core.jpa.domain.BaseRepository;
 import com.github.asherli0103.core.jpa.service.impl.BaseServiceImpl;
 import com.github.asherli0103.utils.ObjectUtil;
 import com.github.asherli0103.utils.RandomUtil;
 import com.guoanjia.business.base.entity.WxActivity;
+import com.guoanjia.business.base.entity.WxClaimLock;
 import com.guoanjia.business.base.entity.WxUserExtract;
 import com.guoanjia.business.base.entity.jpa.*;
 import com.guoanjia.business.blessing.entity.WxCapitalPool;
 import com.guoanjia.business.blessing.entity.jpa.WxCapitalPoolRepository;
 import com.guoanjia.business.blessing.service.WxCapitalPoolService;
 import me.chanjar.weixin.common.exception.WxErrorException;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.Objects;
+import java.util.List;
 
 /**
  * //TODO  需增加日志记录
@@ -59,9 +67,11 @@ public class WxCapitalPoolServiceImpl extends BaseServiceImpl<WxCapitalPool, Str
     private final WxUserExtractRepository wxUserExtractRepository;
     private final WxRedPackRecordRepository wxRedPackRecordRepository;
     private final WxUserRepository wxUserRepository;
+    private final WxCapitalPoolBudget wxCapitalPoolBudget;
+    private final WxClaimLockRepository wxClaimLockRepository;
+    private final TransactionTemplate requiresNewTransaction;
 
-
-    public WxCapitalPoolServiceImpl(BaseRepository<WxCapitalPool, String> baseRepository, WxCapitalPoolRepository wxCapitalPoolRepository, WxUserActivityRepository wxUserActivityRepository, WxActivityRepository wxActivityRepository, WxUserExtractRepository wxUserExtractRepository, WxRedPackRecordRepository wxRedPackRecordRepository, WxUserRepository wxUserRepository) {
+    public WxCapitalPoolServiceImpl(BaseRepository<WxCapitalPool, String> baseRepository, WxCapitalPoolRepository wxCapitalPoolRepository, WxUserActivityRepository wxUserActivityRepository, WxActivityRepository wxActivityRepository, WxUserExtractRepository wxUserExtractRepository, WxRedPackRecordRepository wxRedPackRecordRepository, WxUserRepository wxUserRepository, WxCapitalPoolBudget wxCapitalPoolBudget, WxClaimLockRepository wxClaimLockRepository, PlatformTransactionManager transactionManager) {
         super(baseRepository);
         this.wxCapitalPoolRepository = wxCapitalPoolRepository;
         this.wxUserActivityRepository = wxUserActivityRepository;
@@ -69,14 +79,18 @@ public class WxCapitalPoolServiceImpl extends BaseServiceImpl<WxCapitalPool, Str
         this.wxUserExtractRepository = wxUserExtractRepository;
         this.wxRedPackRecordRepository = wxRedPackRecordRepository;
         this.wxUserRepository = wxUserRepository;
+        this.wxCapitalPoolBudget = wxCapitalPoolBudget;
+        this.wxClaimLockRepository = wxClaimLockRepository;
+        this.requiresNewTransaction = new TransactionTemplate(transactionManager);
+        this.requiresNewTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
     private static final Double[] AMOUNT_OF_RED_PACKETS = new Double[]{1.1, 1.68, 1.8, 1.86, 1.88, 1.89, 1.9, 1.96, 1.98, 1.99};
 
 
     @Override
-    @Transactional(rollbackFor = {Exception.class, WxErrorException.class}, isolation = Isolation.SERIALIZABLE)
-    public synchronized AjaxJson randomRedPack(String openid, String userphone) throws WxErrorException {
+    @Transactional(isolation = Isolation.READ_COMMITTED, rollbackFor = {Exception.class, WxErrorException.class})
+    public AjaxJson randomRedPack(String openid, String userphone) throws WxErrorException {
         AjaxJson ajaxJson = new AjaxJson();
         Date date = new Date();
 
@@ -102,56 +116,62 @@ public class WxCapitalPoolServiceImpl extends BaseServiceImpl<WxCapitalPool, Str
         activityCriteria.add(Restrictions.eq("actType", "01", true));
         WxActivity wxActivity = this.wxActivityRepository.findOne(activityCriteria);
         if (ObjectUtil.isNotNull(wxActivity)) {
-            //2.查询余额
+            //2.查询资金池，余额在扣减时由数据库原子判断，这里不需要加锁
             Criteria<WxCapitalPool> capitalPoolCriteria = new Criteria<>();
 //            capitalPoolCriteria.add(Restrictions.eq("cpDate", DateUtil.stringToDate(DateUtil.dateToString(date, "yyyy-MM-dd"), "yyyy-MM-dd"), true));
             capitalPoolCriteria.add(Restrictions.lte("cpEndTime", date, true));
             capitalPoolCriteria.add(Restrictions.gte("cpCreateTime", date, true));
-            WxCapitalPool wxCapitalPool = this.wxCapitalPoolRepository.findOneWithLock(capitalPoolCriteria);
+            WxCapitalPool wxCapitalPool = this.wxCapitalPoolRepository.findOne(capitalPoolCriteria);
 
             if (ObjectUtil.isNotNull(wxCapitalPool)) {
-                //3.判断用户是否参与
-                Criteria<WxUserExtract> userActivityCriteria = new Criteria<>();
-                userActivityCriteria.add(
-                        Restrictions.or(
-                                Restrictions.eq("ueOpenid", openid, true),
-                                Restrictions.eq("ueUserphone", userphone, true)
-                        )
-                );
-                WxUserExtract wxUserActivity = wxUserExtractRepository.findOne(userActivityCriteria);
-                if (ObjectUtil.isNull(wxUserActivity)) {
-                    BigDecimal bl = BigDecimal.ZERO;
-                    if (Objects.equals("0", wxCapitalPool.getCpStatus()) && !Objects.equals("0", wxCapitalPool.getId())) {
-                        String id = String.valueOf(Integer.valueOf(wxCapitalPool.getId()) - 1);
-                        WxCapitalPool wxCapitalPool1 = this.wxCapitalPoolRepository.findOne(id);
-                        bl = bl.add(new BigDecimal(String.valueOf(wxCapitalPool1.getCpBalance())));
-                        wxCapitalPool.setCpStatus("1");
-                    }
-
-                    BigDecimal balance = new BigDecimal(wxCapitalPool.getCpBalance().toString());
-                    balance = balance.add(bl);
-                    logger.info("balance:  " + balance);
-                    BigDecimal money = new BigDecimal(RandomUtil.randomEle(AMOUNT_OF_RED_PACKETS).toString());
-                    logger.info("Money:  " + money);
-                    BigDecimal balanceCurrent = balance.subtract(money);
-
-                    logger.info("balanceCurrent:  " + balanceCurrent);
-                    //4.修改余额
-                    if (balanceCurrent.compareTo(BigDecimal.ZERO) >= 0) {
-                        wxCapitalPool.setCpBalance(balanceCurrent.doubleValue());
-                        this.wxCapitalPoolRepository.save(wxCapitalPool);
-                        //5.保存用户资金记录
-                        this.wxUserExtractRepository.save(new WxUserExtract()
-                                .setActId(wxActivity.getId())
-                                .setUeCreatetime(date)
-                                .setUeMoney(money.doubleValue())
-                                .setUeOpenid(openid)
-                                .setUeType("02")
-                                .setUeUserphone(userphone)
-                        );
-
-
-                        //7.记录支付结果
+                return randomRedPack(ajaxJson, date, wxActivity, wxCapitalPool, openid, userphone);
+            }
+            ajaxJson.setSuccess(false);
+            ajaxJson.setMsg("当前时段红包已被抢光，敬请下个发放时段！");
+            return ajaxJson;
+        }
+        ajaxJson.setSuccess(false);
+        ajaxJson.setMsg("活动已结束,感谢您的关注");
+        return ajaxJson;
+    }
+
+    private AjaxJson randomRedPack(AjaxJson ajaxJson, Date date, WxActivity wxActivity, WxCapitalPool wxCapitalPool,
+                                   String openid, String userphone) {
+        //3.先锁openid再锁手机号对应的锁记录，同一openid或同一手机号在所有节点上的请求依次执行，锁在事务提交后才释放。
+        //  隔离级别为读已提交，拿到锁后能读到前一个请求已提交的领取记录。
+        //  这里要等待前一个请求提交而不是 skip locked 跳过，跳过的请求无法知道前一个请求最终是否领取成功
+        for (String lockKey : claimLockKeys(openid, userphone)) {
+            lockClaim(lockKey);
+        }
+
+        //4.判断用户是否参与
+        Criteria<WxUserExtract> userActivityCriteria = new Criteria<>();
+        userActivityCriteria.add(byOpenidOrUserphone("ueOpenid", openid, "ueUserphone", userphone));
+        WxUserExtract wxUserActivity = wxUserExtractRepository.findOne(userActivityCriteria);
+        if (ObjectUtil.isNotNull(wxUserActivity)) {
+            ajaxJson.setSuccess(false);
+            ajaxJson.setMsg("您已领取过红包啦！");
+            return ajaxJson;
+        }
+
+        this.wxCapitalPoolBudget.prepare(wxCapitalPool);
+
+        BigDecimal money = new BigDecimal(RandomUtil.randomEle(AMOUNT_OF_RED_PACKETS).toString());
+        logger.info("Money:  " + money);
+
+        //5.扣减余额：从本节点预先申请的分段额度中扣减，额度不足时再从资金池记录中申请
+        if (this.wxCapitalPoolBudget.draw(wxCapitalPool.getId(), money.movePointRight(2).longValueExact())) {
+            //6.保存用户资金记录
+            this.wxUserExtractRepository.save(new WxUserExtract()
+                    .setActId(wxActivity.getId())
+                    .setUeCreatetime(date)
+                    .setUeMoney(money.doubleValue())
+                    .setUeOpenid(openid)
+                    .setUeType("02")
+                    .setUeUserphone(userphone)
+            );
+
+            //7.记录支付结果
 //                            WxRedPackRecord wxRedPackPaymentRecord = new WxRedPackRecord();
 //                            wxRedPackPaymentRecord.setErrCode(wxPaySendRedpackResult.getErrCode());
 //                            wxRedPackPaymentRecord.setErrCodeDes(wxPaySendRedpackResult.getErrCodeDes());
@@ -167,36 +187,57 @@ public class WxCapitalPoolServiceImpl extends BaseServiceImpl<WxCapitalPool, Str
 //                            wxRedPackPaymentRecord.setWxappid(wxPaySendRedpackResult.getWxappid());
 //                            this.wxRedPackRecordRepository.save(wxRedPackPaymentRecord);
 
-                        //wxUserActivityRepository.save(new WxUserActivity().setUactActid(wxActivity.getId()).setUactCreateTime(date).setUactName(wxActivity.getActName()).setUactOpenid(openid).setUactUserphone(userphone));
-
-                        ajaxJson.setData(money.doubleValue());
-                        ajaxJson.setSuccess(true);
-                        ajaxJson.setMsg("红包发送成功,请注意领取红包");
-                        return ajaxJson;
-//                            } else {
-//                                //抛出异常回滚数据
-//                                throw new WxErrorException(new WxError().setErrorMsg("红包发送失败"));
-//                            }
-//                        } catch (WxErrorException e) {
-//                            //抛出异常回滚数据
-//                            throw new WxErrorException(new WxError().setErrorMsg("红包发送失败"));
-//                        }
-                    }
-                    ajaxJson.setSuccess(false);
-                    ajaxJson.setMsg("当前时段红包已被抢光，敬请下个发放时段！");
-                    return ajaxJson;
-                }
-                ajaxJson.setSuccess(false);
-                ajaxJson.setMsg("您已领取过红包啦！");
-                return ajaxJson;
-            }
-            ajaxJson.setSuccess(false);
-            ajaxJson.setMsg("当前时段红包已被抢光，敬请下个发放时段！");
+            //wxUserActivityRepository.save(new WxUserActivity().setUactActid(wxActivity.getId()).setUactCreateTime(date).setUactName(wxActivity.getActName()).setUactOpenid(openid).setUactUserphone(userphone));
+
+            ajaxJson.setData(money.doubleValue());
+            ajaxJson.setSuccess(true);
+            ajaxJson.setMsg("红包发送成功,请注意领取红包");
             return ajaxJson;
         }
         ajaxJson.setSuccess(false);
-        ajaxJson.setMsg("活动已结束,感谢您的关注");
+        ajaxJson.setMsg("当前时段红包已被抢光，敬请下个发放时段！");
         return ajaxJson;
     }
 
+    /**
+     * 锁定一条领取锁记录，第一次领取时先插入
+     */
+    private void lockClaim(String lockKey) {
+        if (this.wxClaimLockRepository.findOneWithLock(lockKey) == null) {
+            createClaimLock(lockKey);
+            this.wxClaimLockRepository.findOneWithLock(lockKey);
+        }
+    }
+
+    /**
+     * 在独立的事务中插入锁记录并立即提交，其他请求同时插入同一条记录时主键冲突，忽略即可
+     */
+    private void createClaimLock(String lockKey) {
+        try {
+            this.requiresNewTransaction.execute(status -> this.wxClaimLockRepository.saveAndFlush(
+                    new WxClaimLock().setClKey(lockKey).setClCreatetime(new Date())));
+        } catch (DataIntegrityViolationException e) {
+            logger.debug("领取锁记录[{}]已被其他请求插入", lockKey);
+        }
+    }
+
+    private static List<String> claimLockKeys(String openid, String userphone) {
+        List<String> lockKeys = new ArrayList<>();
+        lockKeys.add("openid:" + openid);
+        if (StringUtils.isNotBlank(userphone)) {
+            lockKeys.add("userphone:" + userphone);
+        }
+        return lockKeys;
+    }
+
+    private static Criterion byOpenidOrUserphone(String openidField, String openid, String userphoneField, String userphone) {
+        if (StringUtils.isBlank(userphone)) {
+            return Restrictions.eq(openidField, openid, true);
+        }
+        return Restrictions.or(
+                Restrictions.eq(openidField, openid, true),
+                Restrictions.eq(userphoneField, userphone, true)
+        );
+    }
+
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright  (c) 2017. By AsherLi0103
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.guoanjia.business.blessing.service.impl;
+
+import com.guoanjia.business.blessing.entity.WxTemp;
+import com.guoanjia.business.blessing.service.WxTempService;
+import me.chanjar.weixin.open.api.WxOpenService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 抢红包时段的点击限流
+ * <p>
+ * 每个时段在Redis中有一个独立的计数器，通过脚本在服务端完成自增并设置过期时间，一次往返就能知道是第几次点击，
+ * 不会出现先get再set时多个请求读到同一个值的情况。前 limit 次点击放行，第 limit + 1 次点击负责把时段标记为已抢光，
+ * 超出的点击直接拒绝。
+ * <p>
+ * 已抢光的时段缓存在本节点内存中，之后进来的请求不用再查数据库和Redis
+ *
+ * @author AsherLi0103
+ * @version 1.0.00
+ */
+@Component
+public class WxTempClickThrottle {
+
+    private static final String COUNT_CLICK_KEY = "COUNT_CLICK_KEY:";
+
+    private static final String INCR_SCRIPT = "local clicks = redis.call('INCR', KEYS[1]) "
+            + "if clicks == 1 then redis.call('EXPIRE', KEYS[1], ARGV[1]) end "
+            + "return clicks";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final ConcurrentMap<String, WxTemp> soldOutTemps = new ConcurrentHashMap<>();
+
+    private final JedisPool jedisPool;
+
+    private final WxTempService wxTempService;
+
+    private int limit = 2000;
+
+    private int expireSeconds = 24 * 60 * 60;
+
+    public WxTempClickThrottle(WxOpenService wxOpenService, WxTempService wxTempService) {
+        this.jedisPool = wxOpenService.getWxOpenConfigStorage().getJedisPool();
+        this.wxTempService = wxTempService;
+    }
+
+    /**
+     * 本节点已知的、包含该时间点的时段是否已抢光，只检查内存
+     */
+    public boolean isSoldOut(Date date) {
+        for (WxTemp wxTemp : this.soldOutTemps.values()) {
+            // 与查询时段的条件保持一致：Restrictions.lte("cpEndTime")生成的是 cpEndTime >= date
+            if (wxTemp.getCpEndTime().compareTo(date) >= 0 && wxTemp.getCpCreateTime().compareTo(date) <= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 记录一次点击
+     *
+     * @param wxTemp 当前时段
+     * @return 在名额内返回true
+     */
+    public boolean admit(WxTemp wxTemp) {
+        if (this.soldOutTemps.containsKey(wxTemp.getId())) {
+            return false;
+        }
+
+        long clicks;
+        try (Jedis jedis = this.jedisPool.getResource()) {
+            clicks = (Long) jedis.eval(INCR_SCRIPT, 1, COUNT_CLICK_KEY + wxTemp.getId(), String.valueOf(this.expireSeconds));
+        }
+        if (clicks <= this.limit) {
+            return true;
+        }
+
+        this.soldOutTemps.putIfAbsent(wxTemp.getId(), wxTemp);
+        if (clicks == this.limit + 1) {
+            // 所有节点中只有一个请求会拿到这个值，由它更新数据库
+            this.logger.info("时段[{}]已达到{}次点击，标记为已抢光", wxTemp.getId(), this.limit);
+            this.wxTempService.save(wxTemp.setCpStatus("1"));
+        }
+        return false;
+    }
+
+    /**
+     * 每个时段放行的点击次数，默认2000
+     */
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * 计数器的过期时间(秒)，默认一天
+     */
+    public void setExpireSeconds(int expireSeconds) {
+        this.expireSeconds = expireSeconds;
+    }
+}
@@ -104,30 +104,21 @@ public class GuessController extends BaseController {
         level2number = (int) (totalRedenvelope * level2 / 1.68 / 2); // 2380
         level3number = (int) (totalRedenvelope * level3 / 1.18 / 2); // 5084
         level4number = (int) (totalRedenvelope * level4 / 1.08 / 2); // 7407
-        for (int i = 0; i < level4number; i++) {
-            if (i < level1number) {
-                rpush("redenvelopelevel1", "1.88");
-            }
-            if (i < level2number) {
-                rpush("redenvelopelevel1", "1.68");
-            }
-            if (i < level3number) {
-                rpush("redenvelopelevel1", "1.18");
-            }
-            rpush("redenvelopelevel1", "1.08");
-        }
-        for (int i = 0; i < level4number; i++) {
-            if (i < level1number) {
-                rpush("redenvelopelevel2", "1.88");
-            }
-            if (i < level2number) {
-                rpush("redenvelopelevel2", "1.68");
-            }
-            if (i < level3number) {
-                rpush("redenvelopelevel2", "1.18");
-            }
-            rpush("redenvelopelevel2", "1.08");
-        }
+        rpushAll("redenvelopelevel1", shuffledRedenvelopes(level1number, level2number, level3number, level4number));
+        rpushAll("redenvelopelevel2", shuffledRedenvelopes(level1number, level2number, level3number, level4number));
+    }
+
+    /**
+     * 按各档数量生成红包并在内存中打乱顺序
+     */
+    private List<String> shuffledRedenvelopes(int level1number, int level2number, int level3number, int level4number) {
+        List<String> redenvelopes = new ArrayList<>(level1number + level2number + level3number + level4number);
+        redenvelopes.addAll(Collections.nCopies(level1number, "1.88"));
+        redenvelopes.addAll(Collections.nCopies(level2number, "1.68"));
+        redenvelopes.addAll(Collections.nCopies(level3number, "1.18"));
+        redenvelopes.addAll(Collections.nCopies(level4number, "1.08"));
+        Collections.shuffle(redenvelopes);
+        return redenvelopes;
     }
 
     //查询题目存到redis中
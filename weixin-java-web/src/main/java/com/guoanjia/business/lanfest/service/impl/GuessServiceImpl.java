@@ -37,6 +37,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
 
 import java.io.UnsupportedEncodingException;
 import java.text.DateFormat;
@@ -61,18 +62,20 @@ public class GuessServiceImpl extends BaseServiceImpl<Guess, String> implements
     public void listGuess(JedisPool jedisPool){
         List<Guess> guesses = guessRepository.findAll();
         if (guesses.size() > 0) {
-            int j=0;
-            for (Guess guess : guesses) {
-                String keyboard = geneChar(guess.getResult());
-                GuessModel guessModel = new GuessModel().setId(Integer.valueOf(guess.getId()))
-                        .setGuess(guess.getGuess()).setKeyboard(keyboard).setResult(guess.getResult())
-                        .setTitle(guess.getTitle());
-                try(Jedis jedis = jedisPool.getResource()) {
-                    jedis.set("guessModel" + j, JacksonUtil.toJSONString(guessModel));
+            // 所有题目通过同一个连接的pipeline一次写入
+            try (Jedis jedis = jedisPool.getResource()) {
+                Pipeline pipeline = jedis.pipelined();
+                int j = 0;
+                for (Guess guess : guesses) {
+                    String keyboard = geneChar(guess.getResult());
+                    GuessModel guessModel = new GuessModel().setId(Integer.valueOf(guess.getId()))
+                            .setGuess(guess.getGuess()).setKeyboard(keyboard).setResult(guess.getResult())
+                            .setTitle(guess.getTitle());
+                    pipeline.set("guessModel" + j, JacksonUtil.toJSONString(guessModel));
+                    j++;
                 }
-                j++;
+                pipeline.sync();
             }
-
         }
     }
 
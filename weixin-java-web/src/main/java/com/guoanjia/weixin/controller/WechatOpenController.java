@@ -236,10 +236,17 @@ public class WechatOpenController {
         AjaxJson ajaxJson = new AjaxJson();
         File file = this.wxOpenService.getMaterialService().mediaDownload(mediaId);
         if(null != file){
-            if (CdnUtil.cdnUploadFile(file.getName() ,file)){
-                ajaxJson.setSuccess(true).setCode(200).setData(file.getName());
-            }else{
-                ajaxJson.setSuccess(false).setCode(201).setMsg("上传七牛存储失败！");
+            try {
+                if (CdnUtil.cdnUploadFile(file.getName() ,file)){
+                    ajaxJson.setSuccess(true).setCode(200).setData(file.getName());
+                }else{
+                    ajaxJson.setSuccess(false).setCode(201).setMsg("上传七牛存储失败！");
+                }
+            } finally {
+                // 临时文件上传后即删除，不会等到JVM退出
+                if (!file.delete()) {
+                    LOGGER.warn("\n删除临时素材文件失败:{}", file.getAbsolutePath());
+                }
             }
         }else{
             ajaxJson.setSuccess(false).setCode(201).setMsg("获取微信临时素材失败！");
@@ -20,9 +20,11 @@ package com.guoanjia.weixin.core.config;
 import com.guoanjia.weixin.core.handler.*;
 import me.chanjar.weixin.common.api.WxConsts;
 import me.chanjar.weixin.open.api.WxOpenConfigStorage;
+import me.chanjar.weixin.open.api.WxOpenJedisAuthorizerTokenStorage;
 import me.chanjar.weixin.open.api.WxOpenJedisConfigStorage;
 import me.chanjar.weixin.open.api.WxOpenMessageRouter;
 import me.chanjar.weixin.open.api.WxOpenService;
+import me.chanjar.weixin.open.api.impl.WxOpenAuthorizerTokenRefresher;
 import me.chanjar.weixin.open.api.impl.WxOpenServiceImpl;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
@@ -157,7 +159,7 @@ public class WechatOpenConfiguration {
      * @param configStorage 配置参数
      * @return 微信服务
      */
-    @Bean
+    @Bean(destroyMethod = "shutdown")
     @ConditionalOnMissingBean
     public WxOpenService wxOpenService(WxOpenConfigStorage configStorage) {
         WxOpenService wxOpenService = new WxOpenServiceImpl();
@@ -165,6 +167,22 @@ public class WechatOpenConfiguration {
         return wxOpenService;
     }
 
+    /**
+     * 授权方令牌后台刷新，令牌保存在Redis中，多个节点共用
+     *
+     * @param wxOpenService 微信服务
+     * @return 令牌刷新器
+     */
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean
+    public WxOpenAuthorizerTokenRefresher authorizerTokenRefresher(WxOpenService wxOpenService) {
+        WxOpenAuthorizerTokenRefresher refresher = new WxOpenAuthorizerTokenRefresher(wxOpenService,
+                new WxOpenJedisAuthorizerTokenStorage(wxOpenService.getWxOpenConfigStorage().getJedisPool()));
+        refresher.start();
+        wxOpenService.setAuthorizerTokenRefresher(refresher);
+        return refresher;
+    }
+
     /**
      * 微信消息路由规则表
      *
@@ -23,7 +23,6 @@ import com.github.asherli0103.core.jpa.criteria.Criteria;
 import com.github.asherli0103.core.jpa.criteria.Restrictions;
 import com.github.asherli0103.utils.JacksonUtil;
 import com.github.asherli0103.utils.ObjectUtil;
-import com.github.asherli0103.utils.StringUtil;
 import com.github.asherli0103.utils.tools.UUID;
 import com.guoanjia.business.base.entity.WxActivity;
 import com.guoanjia.business.base.entity.WxUser;
@@ -31,14 +30,17 @@ import com.guoanjia.business.base.entity.WxUserFunds;
 import com.guoanjia.business.base.service.WxActivityService;
 import com.guoanjia.business.base.service.WxUserFundsService;
 import com.guoanjia.business.base.service.WxUserService;
+import com.guoanjia.business.base.service.impl.WxPosterRenderer;
 import com.guoanjia.business.poster.entity.WxPrizeDetail;
 import com.guoanjia.business.poster.entity.WxUserClick;
 import com.guoanjia.business.poster.service.WxPrizeDetailService;
 import com.guoanjia.business.poster.service.WxUserClickService;
 import me.chanjar.weixin.common.api.WxConsts;
 import me.chanjar.weixin.common.bean.result.WxMediaUploadResult;
+import me.chanjar.weixin.common.exception.WxErrorException;
 import me.chanjar.weixin.common.session.WxSessionManager;
 import me.chanjar.weixin.open.api.WxOpenService;
+import me.chanjar.weixin.open.api.impl.WxOpenPosterImageCache;
 import me.chanjar.weixin.open.bean.kefu.WxOpenKefuMessage;
 import me.chanjar.weixin.open.bean.message.WxOpenXmlMessage;
 import me.chanjar.weixin.open.bean.message.WxOpenXmlOutMessage;
@@ -48,7 +50,7 @@ import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
-import java.io.File;
+import java.awt.image.BufferedImage;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -73,6 +75,8 @@ public class MenuCreatePosterHandler extends AbstractHandler {
 
     private final WxUserFundsService wxUserFundsService;
 
+    private volatile WxOpenPosterImageCache posterImageCache;
+
     public MenuCreatePosterHandler(WxPrizeDetailService wxPrizeDetailService, WxUserClickService wxUserClickService, WxUserService wxUserService, WxActivityService wxActivityService, WxUserFundsService wxUserFundsService) {
         this.wxPrizeDetailService = wxPrizeDetailService;
         this.wxUserClickService = wxUserClickService;
@@ -81,6 +85,23 @@ public class MenuCreatePosterHandler extends AbstractHandler {
         this.wxUserFundsService = wxUserFundsService;
     }
 
+    /**
+     * 配置类的构造依赖本处理器，不能再注入由配置类创建的缓存，所以在第一次处理消息时用传入的wxOpenService创建
+     */
+    private WxOpenPosterImageCache getPosterImageCache(WxOpenService wxOpenService) {
+        WxOpenPosterImageCache cache = this.posterImageCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = this.posterImageCache;
+                if (cache == null) {
+                    cache = new WxOpenPosterImageCache(wxOpenService);
+                    this.posterImageCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
     @Override
     public WxOpenXmlOutMessage handle(WxOpenXmlMessage wxMessage, Map<String, Object> context, WxOpenService wxOpenService, WxSessionManager sessionManager) {
 
@@ -133,7 +154,9 @@ public class MenuCreatePosterHandler extends AbstractHandler {
                     wxUserClickService.save(wxUserClick1);
                 }
 
-                WxOpenUser wxOpenUser = wxOpenService.getUserService().userInfo(wxMessage.getFromUser());
+                // 用户信息、永久二维码Ticket、二维码图片和头像，同一用户重复生成时直接使用缓存
+                WxOpenPosterImageCache posterImageCache = getPosterImageCache(wxOpenService);
+                WxOpenUser wxOpenUser = posterImageCache.getUserInfo(wxMessage.getFromUser());
 
                 //如不存在则新增
                 Criteria<WxUser> wxUserCriteria = new Criteria<>();
@@ -163,20 +186,19 @@ public class MenuCreatePosterHandler extends AbstractHandler {
                 }
 
 
-                // 获取永久二维码Ticket
-                WxOpenQrCodeTicket wxOpenQrCodeTicket = wxOpenService.getQrCodeService().qrCodeCreateLastTicket(wxMessage.getFromUser());
-
-                // 获取二维码图片
-                File qrcodeFile = wxOpenService.getQrCodeService().qrCodePicture(wxOpenQrCodeTicket);
-                AjaxJson ajaxJson = null;
-                if (StringUtil.isNotBlank(wxUser.getuHeadimgLocal())) {
-                    ajaxJson = wxActivityService.createPoster(wxUser.getuHeadimgLocal(), qrcodeFile, wxOpenUser.getNickname(), true, wxUser.getId());
-                } else {
-                    ajaxJson = wxActivityService.createPoster(wxOpenUser.getHeadImgUrl(), qrcodeFile, wxOpenUser.getNickname(), false, wxUser.getId());
+                WxOpenQrCodeTicket wxOpenQrCodeTicket = posterImageCache.getLastTicket(wxMessage.getFromUser());
+                BufferedImage qrcode = posterImageCache.getQrCode(wxOpenQrCodeTicket, WxPosterRenderer.QRCODE_SIZE, WxPosterRenderer.QRCODE_SIZE);
+                BufferedImage avatar = null;
+                try {
+                    avatar = posterImageCache.getAvatar(wxOpenUser.getHeadImgUrl(), WxPosterRenderer.AVATAR_SIZE, WxPosterRenderer.AVATAR_SIZE);
+                } catch (WxErrorException e) {
+                    // 头像地址失效或下载失败时使用默认头像，不影响海报生成
+                    this.logger.warn("用户 {} 的头像 {} 获取失败，使用默认头像: {}", wxMessage.getFromUser(), wxOpenUser.getHeadImgUrl(), e.getMessage());
                 }
+                AjaxJson ajaxJson = wxActivityService.createPoster(avatar, qrcode, wxOpenUser.getNickname());
 
                 // 上传微信素材
-                WxMediaUploadResult wxMediaUploadResult = wxOpenService.getMaterialService().mediaUpload("image", (File) ajaxJson.getData());
+                WxMediaUploadResult wxMediaUploadResult = wxOpenService.getMaterialService().mediaUpload(WxConsts.MEDIA_IMAGE, "png", (byte[]) ajaxJson.getData());
 
                 String mediaId = wxMediaUploadResult.getMediaId();
                 WxOpenKefuMessage wxOpenKefuMessage1 = new WxOpenKefuMessage();
@@ -198,8 +220,8 @@ public class MenuCreatePosterHandler extends AbstractHandler {
                 wxOpenService.getKefuService().sendKefuMessage(wxOpenKefuMessage2);
 
 
-            } catch (Exception ignored) {
-                System.out.println(ignored);
+            } catch (Exception e) {
+                this.logger.error("用户 {} 生成海报失败", wxMessage.getFromUser(), e);
             }
         }
         return null;
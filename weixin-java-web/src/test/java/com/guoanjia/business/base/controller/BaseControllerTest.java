@@ -0,0 +1,108 @@
+/*
+ * Copyright  (c) 2017. By AsherLi0103
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.guoanjia.business.base.controller;
+
+import me.chanjar.weixin.open.api.FakeRedisServer;
+import me.chanjar.weixin.open.api.WxOpenJedisConfigStorage;
+import me.chanjar.weixin.open.api.WxOpenService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 在本地Redis替身上批量写入10万个红包：RPUSH按每批1000个合并，列表长度和顺序与写入的一致，
+ * 以及与逐个RPUSH的耗时对比
+ */
+public class BaseControllerTest {
+
+    private static final int REDENVELOPES = 100000;
+
+    private FakeRedisServer redisServer;
+
+    private WxOpenJedisConfigStorage storage;
+
+    private BaseController controller;
+
+    @Before
+    public void setUp() throws Exception {
+        this.redisServer = new FakeRedisServer();
+        this.storage = new WxOpenJedisConfigStorage("127.0.0.1", this.redisServer.getPort(), null);
+        WxOpenService wxOpenService = mock(WxOpenService.class);
+        when(wxOpenService.getWxOpenConfigStorage()).thenReturn(this.storage);
+        this.controller = new BaseController(wxOpenService);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.storage.destroy();
+        this.redisServer.close();
+    }
+
+    @Test
+    public void rpushAllKeepsCountAndOrder() {
+        List<String> redenvelopes = redenvelopes();
+
+        long commandsBefore = this.redisServer.getCommandCount();
+        long start = System.nanoTime();
+        assertEquals(REDENVELOPES, this.controller.rpushAll("redenvelopelevel1", redenvelopes));
+        double pipelinedMillis = (System.nanoTime() - start) / 1e6;
+        long commands = this.redisServer.getCommandCount() - commandsBefore;
+
+        // 每1000个一条RPUSH，再加上借用连接时校验连接的一条PING
+        assertEquals(REDENVELOPES / 1000 + 1, commands);
+        try (Jedis jedis = this.storage.getJedisPool().getResource()) {
+            assertEquals(REDENVELOPES, jedis.llen("redenvelopelevel1").longValue());
+            assertEquals(redenvelopes, jedis.lrange("redenvelopelevel1", 0, -1));
+        }
+
+        // 追加到已有列表的尾部
+        assertEquals(REDENVELOPES + 1, this.controller.rpushAll("redenvelopelevel1", Collections.singletonList("1.88")));
+        assertEquals(REDENVELOPES + 1, this.controller.rpushAll("redenvelopelevel1", Collections.emptyList()));
+
+        start = System.nanoTime();
+        for (String redenvelope : redenvelopes) {
+            this.controller.rpush("redenvelopelevel2", redenvelope);
+        }
+        double oneByOneMillis = (System.nanoTime() - start) / 1e6;
+
+        System.out.println(String.format("BENCH rpush %d redenvelopes: one by one %.0f ms, pipelined batches %.0f ms (%d commands)",
+                REDENVELOPES, oneByOneMillis, pipelinedMillis, commands));
+    }
+
+    /**
+     * 与初始化红包时一样的四档金额，打乱顺序
+     */
+    private static List<String> redenvelopes() {
+        List<String> redenvelopes = new ArrayList<>(REDENVELOPES);
+        String[] levels = {"1.88", "1.68", "1.18", "1.08"};
+        for (int i = 0; i < REDENVELOPES; i++) {
+            redenvelopes.add(levels[i % levels.length]);
+        }
+        Collections.shuffle(redenvelopes);
+        return redenvelopes;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright  (c) 2017. By AsherLi0103
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.guoanjia.business.base.service.impl;
+
+import me.chanjar.weixin.open.api.WxOpenConfigStorage;
+import me.chanjar.weixin.open.api.WxOpenService;
+import me.chanjar.weixin.open.bean.result.WxOpenUser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 在MySQL兼容模式的H2上批量写入关注者：已存在的openid更新用户信息并保留其他字段，不存在的插入，
+ * 关注事件已经插入的用户和同一批中重复的openid都不会违反唯一索引
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@TestPropertySource(properties = "spring.jpa.show-sql=false")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class WxFollowerSynchronizerTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private WxFollowerSynchronizer synchronizer;
+
+    @Before
+    public void setUp() {
+        // 与线上库一致：wx_user上有openid唯一索引，ON DUPLICATE KEY UPDATE需要MySQL兼容模式
+        this.jdbcTemplate.execute("SET MODE MySQL");
+        this.jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS openid ON wx_user (U_OPENID)");
+
+        WxOpenService wxOpenService = mock(WxOpenService.class);
+        when(wxOpenService.getWxOpenConfigStorage()).thenReturn(mock(WxOpenConfigStorage.class));
+        this.synchronizer = new WxFollowerSynchronizer(wxOpenService, this.jdbcTemplate, this.transactionManager);
+    }
+
+    @After
+    public void tearDown() {
+        this.jdbcTemplate.update("DELETE FROM wx_user");
+        this.jdbcTemplate.execute("DROP INDEX IF EXISTS openid");
+        this.jdbcTemplate.execute("SET MODE REGULAR");
+    }
+
+    @Test
+    public void insertsNewAndUpdatesExistingFollowers() {
+        // 关注事件处理器已经插入了openid_1，并且用户绑定了手机号
+        this.jdbcTemplate.update("INSERT INTO wx_user (ID, U_OPENID, U_NICKNAME, U_USERPHONE) VALUES (?, ?, ?, ?)",
+                "subscribed", "openid_1", "旧昵称", "13800000000");
+
+        List<WxOpenUser> users = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            users.add(user("openid_" + i, "用户" + i));
+        }
+        // 同一批中重复出现的openid以后一次为准
+        users.add(user("openid_2", "改名"));
+        this.synchronizer.upsert(users);
+
+        assertEquals(100, this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wx_user", Integer.class).intValue());
+        Map<String, Object> subscribed = this.jdbcTemplate.queryForMap(
+                "SELECT ID, U_NICKNAME, U_USERPHONE, U_CITY FROM wx_user WHERE U_OPENID = 'openid_1'");
+        assertEquals("subscribed", subscribed.get("ID"));
+        assertEquals("用户1", subscribed.get("U_NICKNAME"));
+        assertEquals("13800000000", subscribed.get("U_USERPHONE"));
+        assertEquals("杭州", subscribed.get("U_CITY"));
+        assertEquals("改名", this.jdbcTemplate.queryForObject(
+                "SELECT U_NICKNAME FROM wx_user WHERE U_OPENID = 'openid_2'", String.class));
+
+        // 再次同步同一批用户只更新，不会新增记录
+        this.synchronizer.upsert(users);
+        assertEquals(100, this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wx_user", Integer.class).intValue());
+    }
+
+    private static WxOpenUser user(String openid, String nickname) {
+        return new WxOpenUser()
+                .setOpenId(openid)
+                .setNickname(nickname)
+                .setSex("1")
+                .setProvince("浙江")
+                .setCity("杭州")
+                .setCountry("中国")
+                .setHeadImgUrl("http://wx.qlogo.cn/mmopen/" + openid + "/0")
+                .setPrivilege(new String[0]);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright  (c) 2017. By AsherLi0103
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.guoanjia.business.base.service.impl;
+
+import com.github.asherli0103.utils.ImageUtil;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 海报渲染：画布池复用画布且数量有上限，并发渲染结果与逐个渲染一致，以及与原来逐像素拷贝、写临时文件的方式对比的吞吐量
+ */
+public class WxPosterRendererTest {
+
+    private static final int THREADS = 8;
+
+    private static final int POSTERS = 40;
+
+    @Test
+    public void usesDefaultAvatarWhenMissing() throws IOException {
+        BufferedImage template = solid(720, 1280, Color.black);
+        WxPosterRenderer renderer = new WxPosterRenderer(template, solid(64, 64, Color.red));
+
+        BufferedImage poster = ImageIO.read(new ByteArrayInputStream(renderer.render(null, solid(64, 64, Color.blue), "昵称")));
+        assertEquals(720, poster.getWidth());
+        assertEquals(1280, poster.getHeight());
+        assertEquals(Color.red.getRGB(), poster.getRGB(297 + 60, 396 + 60));
+        assertEquals(Color.blue.getRGB(), poster.getRGB(263 + 100, 855 + 100));
+    }
+
+    @Test
+    public void concurrentRendersKeepCanvasesApart() throws Exception {
+        WxPosterRenderer renderer = new WxPosterRenderer();
+        List<BufferedImage> qrcodes = new ArrayList<>();
+        List<byte[]> expected = new ArrayList<>();
+        for (int i = 0; i < POSTERS; i++) {
+            BufferedImage qrcode = solid(WxPosterRenderer.QRCODE_SIZE, WxPosterRenderer.QRCODE_SIZE, new Color(i * 6, 0, 255 - i * 6));
+            qrcodes.add(qrcode);
+            expected.add(renderer.render(null, qrcode, "用户" + i));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<byte[]>> posters = new ArrayList<>();
+            for (int i = 0; i < POSTERS; i++) {
+                BufferedImage qrcode = qrcodes.get(i);
+                String nickName = "用户" + i;
+                posters.add(executor.submit(() -> renderer.render(null, qrcode, nickName)));
+            }
+            for (int i = 0; i < POSTERS; i++) {
+                assertArrayEquals("第" + i + "张海报与逐个渲染的结果不同", expected.get(i), posters.get(i).get(1, TimeUnit.MINUTES));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue("空闲画布超过了池的上限", renderer.getPooledCanvases() <= WxPosterRenderer.CANVAS_POOL_SIZE);
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        WxPosterRenderer renderer = new WxPosterRenderer();
+        BufferedImage avatar = solid(132, 132, Color.orange);
+        BufferedImage qrcode = solid(430, 430, Color.darkGray);
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        // 预热
+        for (int i = 0; i < 5; i++) {
+            renderer.render(avatar, qrcode, "预热");
+            renderLegacy(avatar, qrcode, "预热").delete();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < POSTERS; i++) {
+            renderLegacy(avatar, qrcode, "用户" + i).delete();
+        }
+        double legacyPerSecond = POSTERS / ((System.nanoTime() - start) / 1e9);
+
+        start = System.nanoTime();
+        for (int i = 0; i < POSTERS; i++) {
+            renderer.render(avatar, qrcode, "用户" + i);
+        }
+        double singlePerSecond = POSTERS / ((System.nanoTime() - start) / 1e9);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<byte[]>> posters = new ArrayList<>();
+            start = System.nanoTime();
+            for (int i = 0; i < POSTERS; i++) {
+                String nickName = "用户" + i;
+                posters.add(executor.submit(() -> renderer.render(avatar, qrcode, nickName)));
+            }
+            for (Future<byte[]> poster : posters) {
+                poster.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        double concurrentPerSecond = POSTERS / ((System.nanoTime() - start) / 1e9);
+
+        System.out.println(String.format("BENCH poster render, %d cores: legacy getRGB/setRGB + temp file %.1f posters/s, "
+                        + "cached template 1 thread %.1f posters/s, %d threads %.1f posters/s (%.1f per core), %d pooled canvases",
+                cores, legacyPerSecond, singlePerSecond, THREADS, concurrentPerSecond, concurrentPerSecond / cores,
+                renderer.getPooledCanvases()));
+        assertTrue(renderer.getPooledCanvases() <= WxPosterRenderer.CANVAS_POOL_SIZE);
+    }
+
+    /**
+     * 改造前的渲染方式：每次解码模板，逐像素叠加头像和二维码，写入临时png文件
+     */
+    private static File renderLegacy(BufferedImage avatar, BufferedImage qrcode, String nickName) throws IOException {
+        BufferedImage backImg;
+        try (InputStream in = WxPosterRendererTest.class.getClassLoader().getResourceAsStream("static/image/share.jpg")) {
+            backImg = ImageUtil.loadImageLocal(in);
+        }
+        BufferedImage temp = ImageUtil.superpositionImage(backImg, avatar, 297, 396, 129, 129, true);
+        temp = ImageUtil.superpositionImage(temp, qrcode, 263, 855, 216, 216, true);
+        temp = ImageUtil.modifyImage(temp, nickName, 310, 557, "微软雅黑", Font.BOLD, 20, Color.white, Color.white);
+        return ImageUtil.writeImageTempFile("poster", temp, "png");
+    }
+
+    private static BufferedImage solid(int width, int height, Color color) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(color);
+            g.fillRect(0, 0, width, height);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+}
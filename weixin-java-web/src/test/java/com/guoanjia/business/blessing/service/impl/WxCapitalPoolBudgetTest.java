@@ -0,0 +1,234 @@
+/*
+ * Copyright  (c) 2017. By AsherLi0103
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.guoanjia.business.blessing.service.impl;
+
+import com.guoanjia.business.blessing.entity.jpa.WxCapitalPoolRepository;
+import com.guoanjia.business.blessing.service.WxCapitalPoolService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 资金池分段预算：结转上一时段、回收空闲节点的额度，以及1000人同时抢红包后额度与领取记录的核对
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import({WxCapitalPoolServiceImpl.class, WxCapitalPoolBudget.class})
+@TestPropertySource(properties = "spring.jpa.show-sql=false")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class WxCapitalPoolBudgetTest {
+
+    private static final String ACTIVITY_ID = "4028daf3593f3e4201593f418ad70002";
+
+    private static final int GRABBERS = 1000;
+
+    @Autowired
+    private WxCapitalPoolBudget wxCapitalPoolBudget;
+
+    @Autowired
+    private WxCapitalPoolService wxCapitalPoolService;
+
+    @Autowired
+    private WxCapitalPoolRepository wxCapitalPoolRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<WxCapitalPoolBudget> otherNodes = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        this.jdbcTemplate.execute("SET DEFAULT_LOCK_TIMEOUT 30000");
+        this.wxCapitalPoolBudget.setLeaseCents(20000);
+    }
+
+    @After
+    public void tearDown() {
+        this.wxCapitalPoolBudget.releaseAll();
+        this.otherNodes.forEach(WxCapitalPoolBudget::releaseAll);
+        this.jdbcTemplate.update("DELETE FROM wx_user_extract");
+        this.jdbcTemplate.update("DELETE FROM wx_user");
+        this.jdbcTemplate.update("DELETE FROM wx_capital_pool");
+        this.jdbcTemplate.update("DELETE FROM wx_activity");
+    }
+
+    @Test
+    public void carryOverMovesPreviousBalance() {
+        insertPool("1", 10000, 3000, "1");
+        insertPool("2", 10000, 10000, "0");
+
+        this.wxCapitalPoolBudget.prepare(this.wxCapitalPoolRepository.findOne("2"));
+        this.wxCapitalPoolBudget.prepare(this.wxCapitalPoolRepository.findOne("2"));
+
+        assertEquals(0, balance("1"));
+        assertEquals(13000, balance("2"));
+        assertEquals("1", this.wxCapitalPoolRepository.findOne("2").getCpStatus());
+    }
+
+    @Test
+    public void idleLeasesReturnToOtherNodes() {
+        insertPool("1", 10000, 10000, "1");
+        WxCapitalPoolBudget otherNode = otherNode(8000);
+
+        assertTrue(otherNode.draw("1", 100));
+        int drawn = 0;
+        while (this.wxCapitalPoolBudget.draw("1", 100)) {
+            drawn++;
+        }
+        assertEquals("另一个节点占着8000分的额度", 20, drawn);
+
+        // 另一个节点空闲后额度退回数据库，本节点可以继续抢到
+        otherNode.setIdleMillis(0);
+        otherNode.reclaimIdle();
+        assertEquals(0, otherNode.getRemaining("1"));
+        while (this.wxCapitalPoolBudget.draw("1", 100)) {
+            drawn++;
+        }
+        assertEquals(99, drawn);
+        assertEquals(0, balance("1") + this.wxCapitalPoolBudget.getRemaining("1"));
+        assertFalse(otherNode.draw("1", 100));
+    }
+
+    @Test
+    public void thousandGrabbersReconcileWithExtracts() throws Exception {
+        long poolCents = 100000;
+        long now = System.currentTimeMillis();
+        Timestamp start = new Timestamp(now - TimeUnit.HOURS.toMillis(1));
+        Timestamp end = new Timestamp(now + TimeUnit.HOURS.toMillis(1));
+        this.jdbcTemplate.update("INSERT INTO wx_activity (ID, ACT_NAME, ACT_TYPE, ACT_START_TIME, ACT_END_TIME) "
+                + "VALUES (?, ?, '01', ?, ?)", ACTIVITY_ID, "新春红包", start, end);
+
+        StringBuilder report = new StringBuilder();
+        for (long leaseCents : new long[]{20000, 0}) {
+            this.jdbcTemplate.update("DELETE FROM wx_user_extract");
+            this.jdbcTemplate.update("DELETE FROM wx_user");
+            this.jdbcTemplate.update("DELETE FROM wx_capital_pool");
+            this.jdbcTemplate.update("INSERT INTO wx_capital_pool (ID, CP_MONEY, CP_BALANCE, CP_CREATE_TIME, CP_END_TIME, "
+                    + "CP_STATUS) VALUES ('1', ?, ?, ?, ?, '1')", toYuan(poolCents), toYuan(poolCents), start, end);
+            for (int i = 0; i < GRABBERS; i++) {
+                this.jdbcTemplate.update("INSERT INTO wx_user (ID, U_OPENID, U_USERPHONE) VALUES (?, ?, ?)",
+                        "user_" + i, "openid_" + i, String.valueOf(13800000000L + i));
+            }
+            this.wxCapitalPoolBudget.releaseAll();
+            this.wxCapitalPoolBudget.setLeaseCents(leaseCents);
+
+            AtomicInteger succeeded = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            long elapsedMillis = grab(succeeded, failed);
+
+            long extractedCents = toCents(this.jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(SUM(UE_MONEY), 0) FROM wx_user_extract", Double.class));
+            Integer extracts = this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wx_user_extract", Integer.class);
+            assertEquals(0, failed.get());
+            assertEquals(succeeded.get(), extracts.intValue());
+            assertEquals(extractedCents, this.wxCapitalPoolBudget.getDrawn("1"));
+            assertEquals(poolCents, balance("1") + this.wxCapitalPoolBudget.getRemaining("1") + extractedCents);
+            // 抢光时剩下的不够一个最大的红包(1.99元)
+            assertTrue(poolCents - extractedCents < 199);
+
+            this.wxCapitalPoolBudget.releaseAll();
+            assertEquals(poolCents, balance("1") + extractedCents);
+            report.append(String.format("%n  lease %d cents: %d ms, %d succeeded, %d cents drawn",
+                    leaseCents, elapsedMillis, succeeded.get(), extractedCents));
+        }
+        System.out.println(String.format("BENCH capital pool, %d concurrent grabbers on H2:%s", GRABBERS, report));
+    }
+
+    /**
+     * 1000个线程同时开始抢红包，返回全部结束的耗时
+     */
+    private long grab(AtomicInteger succeeded, AtomicInteger failed) throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(GRABBERS);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(GRABBERS);
+        for (int i = 0; i < GRABBERS; i++) {
+            String openid = "openid_" + i;
+            String userphone = String.valueOf(13800000000L + i);
+            Thread grabber = new Thread(() -> {
+                try {
+                    ready.countDown();
+                    go.await();
+                    if (this.wxCapitalPoolService.randomRedPack(openid, userphone).isSuccess()) {
+                        succeeded.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+            grabber.start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        assertTrue("抢红包超时", done.await(5, TimeUnit.MINUTES));
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private WxCapitalPoolBudget otherNode(long leaseCents) {
+        WxCapitalPoolBudget otherNode = new WxCapitalPoolBudget(this.wxCapitalPoolRepository, this.transactionManager);
+        otherNode.setLeaseCents(leaseCents);
+        this.otherNodes.add(otherNode);
+        return otherNode;
+    }
+
+    private void insertPool(String id, long moneyCents, long balanceCents, String status) {
+        this.jdbcTemplate.update("INSERT INTO wx_capital_pool (ID, CP_MONEY, CP_BALANCE, CP_STATUS) VALUES (?, ?, ?, ?)",
+                id, toYuan(moneyCents), toYuan(balanceCents), status);
+    }
+
+    private long balance(String poolId) {
+        return toCents(this.jdbcTemplate.queryForObject(
+                "SELECT CP_BALANCE FROM wx_capital_pool WHERE ID = ?", Double.class, poolId));
+    }
+
+    private static Double toYuan(long cents) {
+        return BigDecimal.valueOf(cents, 2).doubleValue();
+    }
+
+    private static long toCents(Double yuan) {
+        // SUM是浮点数累加的结果，按分四舍五入
+        return Math.round(yuan * 100);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright  (c) 2017. By AsherLi0103
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.guoanjia.business.blessing.service.impl;
+
+import com.github.asherli0103.core.entity.AjaxJson;
+import com.guoanjia.business.blessing.service.WxCapitalPoolService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 在H2上用多个线程同时抢红包：同一openid或同一手机号只能领取一次，发出的总额不超过资金池，
+ * 数据库余额 + 未用完的额度 + 领取记录总额 等于资金池总额
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import({WxCapitalPoolServiceImpl.class, WxCapitalPoolBudget.class})
+@TestPropertySource(properties = "spring.jpa.show-sql=false")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class WxCapitalPoolServiceImplTest {
+
+    private static final String ACTIVITY_ID = "4028daf3593f3e4201593f418ad70002";
+
+    private static final String POOL_ID = "1";
+
+    private static final long POOL_CENTS = 10000;
+
+    private static final int PHONES = 100;
+
+    private static final int USERS = 2 * PHONES;
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private WxCapitalPoolService wxCapitalPoolService;
+
+    @Autowired
+    private WxCapitalPoolBudget wxCapitalPoolBudget;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() {
+        // 抢红包时要等其他请求释放用户行锁和资金池行锁，H2默认只等1秒
+        this.jdbcTemplate.execute("SET DEFAULT_LOCK_TIMEOUT 10000");
+        this.wxCapitalPoolBudget.setLeaseCents(500);
+
+        long now = System.currentTimeMillis();
+        Timestamp start = new Timestamp(now - TimeUnit.HOURS.toMillis(1));
+        Timestamp end = new Timestamp(now + TimeUnit.HOURS.toMillis(1));
+        this.jdbcTemplate.update("INSERT INTO wx_activity (ID, ACT_NAME, ACT_TYPE, ACT_START_TIME, ACT_END_TIME) "
+                + "VALUES (?, ?, '01', ?, ?)", ACTIVITY_ID, "新春红包", start, end);
+        this.jdbcTemplate.update("INSERT INTO wx_capital_pool (ID, CP_MONEY, CP_BALANCE, CP_CREATE_TIME, CP_END_TIME, CP_STATUS) "
+                + "VALUES (?, ?, ?, ?, ?, '1')", POOL_ID, toYuan(POOL_CENTS), toYuan(POOL_CENTS), start, end);
+        // 用户不需要有wx_user记录，领取锁记录在第一次领取时插入；一半的openid已经有锁记录
+        for (int i = 0; i < USERS; i += 2) {
+            this.jdbcTemplate.update("INSERT INTO wx_claim_lock (CL_KEY) VALUES (?)", "openid:" + openid(i));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        this.wxCapitalPoolBudget.releaseAll();
+        this.jdbcTemplate.update("DELETE FROM wx_user_extract");
+        this.jdbcTemplate.update("DELETE FROM wx_claim_lock");
+        this.jdbcTemplate.update("DELETE FROM wx_capital_pool");
+        this.jdbcTemplate.update("DELETE FROM wx_activity");
+    }
+
+    @Test
+    public void concurrentClaimsNeverOverdraw() throws Exception {
+        // 每个手机号对应两个openid，各重复提交3次，排在一起让它们尽量同时执行
+        List<Callable<AjaxJson>> claims = new ArrayList<>();
+        for (int phone = 0; phone < PHONES; phone++) {
+            for (int round = 0; round < 3; round++) {
+                for (int i = phone; i < USERS; i += PHONES) {
+                    String openid = openid(i);
+                    String userphone = userphone(i);
+                    claims.add(() -> this.wxCapitalPoolService.randomRedPack(openid, userphone));
+                }
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        int succeeded = 0;
+        try {
+            for (Future<AjaxJson> result : executor.invokeAll(claims)) {
+                if (result.get().isSuccess()) {
+                    succeeded++;
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<Map<String, Object>> perPhone = this.jdbcTemplate.queryForList(
+                "SELECT UE_USERPHONE, COUNT(*) AS CLAIMS FROM wx_user_extract GROUP BY UE_USERPHONE HAVING COUNT(*) > 1");
+        assertTrue("同一手机号领取了多次: " + perPhone, perPhone.isEmpty());
+        List<Map<String, Object>> perOpenid = this.jdbcTemplate.queryForList(
+                "SELECT UE_OPENID, COUNT(*) AS CLAIMS FROM wx_user_extract GROUP BY UE_OPENID HAVING COUNT(*) > 1");
+        assertTrue("同一openid领取了多次: " + perOpenid, perOpenid.isEmpty());
+
+        Integer extracts = this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wx_user_extract", Integer.class);
+        assertEquals(succeeded, extracts.intValue());
+        long extractedCents = toCents(this.jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(UE_MONEY), 0) FROM wx_user_extract", Double.class));
+        long balanceCents = toCents(this.jdbcTemplate.queryForObject(
+                "SELECT CP_BALANCE FROM wx_capital_pool WHERE ID = ?", Double.class, POOL_ID));
+        assertTrue("发出的红包超过了资金池: " + extractedCents, extractedCents <= POOL_CENTS);
+        assertEquals(extractedCents, this.wxCapitalPoolBudget.getDrawn(POOL_ID));
+        assertEquals(POOL_CENTS, balanceCents + this.wxCapitalPoolBudget.getRemaining(POOL_ID) + extractedCents);
+        // 100元最多发出90个1.1元的红包，手机号数量大于这个值时资金池必然被抢光；没有wx_user记录的用户也能领取
+        assertTrue(succeeded > 0);
+        assertTrue(succeeded < PHONES);
+    }
+
+    private static String openid(int i) {
+        return "openid_" + i;
+    }
+
+    private static String userphone(int i) {
+        return String.valueOf(13800000000L + i % PHONES);
+    }
+
+    private static Double toYuan(long cents) {
+        return BigDecimal.valueOf(cents, 2).doubleValue();
+    }
+
+    private static long toCents(Double yuan) {
+        // SUM是浮点数累加的结果，按分四舍五入
+        return Math.round(yuan * 100);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright  (c) 2017. By AsherLi0103
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.guoanjia.business.blessing.service.impl;
+
+import com.guoanjia.business.blessing.entity.WxTemp;
+import com.guoanjia.business.blessing.service.WxTempService;
+import me.chanjar.weixin.open.api.FakeRedisServer;
+import me.chanjar.weixin.open.api.WxOpenJedisConfigStorage;
+import me.chanjar.weixin.open.api.impl.WxOpenServiceImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 在本地Redis替身上执行限流的Lua脚本：10000次并行点击只放行 limit 次，只有一个请求把时段标记为已抢光
+ */
+public class WxTempClickThrottleTest {
+
+    private static final int CLICKS = 10000;
+
+    private static final int LIMIT = 2000;
+
+    private static final int THREADS = 64;
+
+    private FakeRedisServer redisServer;
+
+    private WxOpenJedisConfigStorage storage;
+
+    private WxTempService wxTempService;
+
+    @Before
+    public void setUp() throws Exception {
+        this.redisServer = new FakeRedisServer();
+        this.storage = new WxOpenJedisConfigStorage("127.0.0.1", this.redisServer.getPort(), null);
+        this.wxTempService = mock(WxTempService.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.storage.destroy();
+        this.redisServer.close();
+    }
+
+    @Test
+    public void admitsExactlyLimitUnderParallelClicks() throws Exception {
+        WxTempClickThrottle throttle = newThrottle();
+        WxTemp wxTemp = newTemp("temp_1");
+
+        assertEquals(LIMIT, click(CLICKS, wxTemp, throttle));
+        verify(this.wxTempService, times(1)).save(any(WxTemp.class));
+        assertEquals("1", wxTemp.getCpStatus());
+        assertTrue(throttle.isSoldOut(new Date()));
+        try (Jedis jedis = this.storage.getJedisPool().getResource()) {
+            long ttl = jedis.ttl("COUNT_CLICK_KEY:temp_1");
+            assertTrue("计数器应设置过期时间: " + ttl, ttl > 0 && ttl <= 24 * 60 * 60);
+        }
+    }
+
+    @Test
+    public void nodesShareTheLimit() throws Exception {
+        // 两个节点各自有已抢光的本地缓存，名额由Redis中的计数器统一分配
+        WxTempClickThrottle node1 = newThrottle();
+        WxTempClickThrottle node2 = newThrottle();
+        WxTemp wxTemp = newTemp("temp_2");
+
+        assertEquals(LIMIT, click(CLICKS, wxTemp, node1, node2));
+        verify(this.wxTempService, times(1)).save(any(WxTemp.class));
+        assertFalse(node1.admit(wxTemp));
+        assertFalse(node2.admit(wxTemp));
+    }
+
+    /**
+     * 所有线程同时开始点击，点击轮流分给各个节点
+     *
+     * @return 放行的点击数
+     */
+    private int click(int clicks, WxTemp wxTemp, WxTempClickThrottle... nodes) throws InterruptedException {
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int i = 0; i < clicks; i++) {
+                WxTempClickThrottle node = nodes[i % nodes.length];
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (node.admit(wxTemp)) {
+                        admitted.incrementAndGet();
+                    }
+                });
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue("点击超时", executor.awaitTermination(2, TimeUnit.MINUTES));
+        return admitted.get();
+    }
+
+    private WxTempClickThrottle newThrottle() {
+        WxOpenServiceImpl wxOpenService = new WxOpenServiceImpl();
+        wxOpenService.setWxOpenConfigStorage(this.storage);
+        WxTempClickThrottle throttle = new WxTempClickThrottle(wxOpenService, this.wxTempService);
+        throttle.setLimit(LIMIT);
+        return throttle;
+    }
+
+    private static WxTemp newTemp(String id) {
+        long now = System.currentTimeMillis();
+        WxTemp wxTemp = new WxTemp()
+                .setCpCreateTime(new Date(now - TimeUnit.HOURS.toMillis(1)))
+                .setCpEndTime(new Date(now + TimeUnit.HOURS.toMillis(1)))
+                .setCpStatus("0");
+        wxTemp.setId(id);
+        return wxTemp;
+    }
+}